@@ -0,0 +1,600 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.TooManyListenersException;
+import java.util.concurrent.locks.LockSupport;
+import gnu.io.SerialPort;
+import gnu.io.SerialPortEvent;
+import gnu.io.SerialPortEventListener;
+
+
+/**
+ * Stand-in serial port that echoes every byte written to it back to its
+ * input after a fixed delay, the way a DS2480 answers data bytes on an
+ * empty 1-Wire network.  Arriving bytes raise a
+ * <code>DATA_AVAILABLE</code> event like a real port, so
+ * {@link SerialService SerialService} can be benchmarked in both its
+ * polling and event driven read modes without serial hardware or the
+ * RXTX native library.
+ *
+ * @see SerialServiceBenchmark
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class LoopbackSerialPort
+   extends SerialPort
+{
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Delay between a write and its echo, in nanoseconds */
+   private final long delay;
+
+   /** Bytes written and not yet echoed */
+   private final byte[] pending = new byte [4096];
+
+   private int pendingCount = 0;
+
+   /** Bytes echoed and not yet read */
+   private final byte[] received = new byte [4096];
+
+   private int receivedStart = 0;
+
+   private int receivedCount = 0;
+
+   private SerialPortEventListener listener = null;
+
+   private boolean notifyData = false;
+
+   private int baudRate = 9600;
+
+   private boolean dtr = false;
+
+   private boolean rts = false;
+
+   private volatile boolean closed = false;
+
+   private final InputStream input = new LoopbackInputStream();
+
+   private final OutputStream output = new LoopbackOutputStream();
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a loopback port and starts the thread that echoes the bytes.
+    *
+    * @param  delayNanos  delay between a write and its echo, in
+    *                     nanoseconds
+    */
+   public LoopbackSerialPort (long delayNanos)
+   {
+      delay = delayNanos;
+      name  = "LOOPBACK";
+
+      Thread echo = new Thread(new Runnable()
+      {
+         public void run ()
+         {
+            echo();
+         }
+      }, "LoopbackSerialPort");
+
+      echo.setDaemon(true);
+      echo.start();
+   }
+
+   //--------
+   //-------- Loopback Methods
+   //--------
+
+   /**
+    * Moves written bytes to the input after the delay, until closed.
+    */
+   private void echo ()
+   {
+      byte[] buffer = new byte [pending.length];
+
+      while (!closed)
+      {
+         int count;
+
+         synchronized (pending)
+         {
+            while ((pendingCount == 0) && !closed)
+            {
+               try
+               {
+                  pending.wait();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+            }
+
+            count = pendingCount;
+
+            System.arraycopy(pending, 0, buffer, 0, count);
+
+            pendingCount = 0;
+         }
+
+         if (delay > 0)
+         {
+            long deadline = System.nanoTime() + delay;
+            long remaining;
+
+            while ((remaining = deadline - System.nanoTime()) > 0)
+               LockSupport.parkNanos(remaining);
+         }
+
+         SerialPortEventListener notify;
+
+         synchronized (received)
+         {
+            for (int i = 0; i < count; i++)
+               received [(receivedStart + receivedCount + i) % received.length] =
+                  buffer [i];
+
+            receivedCount += count;
+            notify        = notifyData ? listener : null;
+         }
+
+         if (notify != null)
+            notify.serialEvent(new SerialPortEvent(this,
+               SerialPortEvent.DATA_AVAILABLE, false, true));
+      }
+   }
+
+   /**
+    * Input of the echoed bytes.  Never blocks, a read with nothing
+    * available returns -1 like a port whose receive timeout expired.
+    */
+   private class LoopbackInputStream
+      extends InputStream
+   {
+      public int available ()
+      {
+         synchronized (received)
+         {
+            return receivedCount;
+         }
+      }
+
+      public int read ()
+      {
+         synchronized (received)
+         {
+            if (receivedCount == 0)
+               return -1;
+
+            int b = received [receivedStart] & 0x0FF;
+
+            receivedStart = (receivedStart + 1) % received.length;
+
+            receivedCount--;
+
+            return b;
+         }
+      }
+
+      public int read (byte[] b, int off, int len)
+      {
+         synchronized (received)
+         {
+            if (receivedCount == 0)
+               return (len == 0) ? 0 : -1;
+
+            int count = Math.min(len, receivedCount);
+
+            for (int i = 0; i < count; i++)
+            {
+               b [off + i]   = received [receivedStart];
+               receivedStart = (receivedStart + 1) % received.length;
+            }
+
+            receivedCount -= count;
+
+            return count;
+         }
+      }
+   }
+
+   /**
+    * Output that queues the bytes for the echo thread.
+    */
+   private class LoopbackOutputStream
+      extends OutputStream
+   {
+      public void write (int b)
+         throws IOException
+      {
+         write(new byte[]{ ( byte ) b }, 0, 1);
+      }
+
+      public void write (byte[] b, int off, int len)
+         throws IOException
+      {
+         if (closed)
+            throw new IOException("Port closed");
+
+         synchronized (pending)
+         {
+            if (pendingCount + len > pending.length)
+               throw new IOException("Loopback buffer full");
+
+            System.arraycopy(b, off, pending, pendingCount, len);
+
+            pendingCount += len;
+
+            pending.notifyAll();
+         }
+      }
+   }
+
+   //--------
+   //-------- CommPort Methods
+   //--------
+
+   public InputStream getInputStream ()
+   {
+      return input;
+   }
+
+   public OutputStream getOutputStream ()
+   {
+      return output;
+   }
+
+   public void close ()
+   {
+      closed = true;
+
+      synchronized (pending)
+      {
+         pending.notifyAll();
+      }
+   }
+
+   public void enableReceiveFraming (int f)
+   {
+      // VOID
+   }
+
+   public void disableReceiveFraming ()
+   {
+      // VOID
+   }
+
+   public boolean isReceiveFramingEnabled ()
+   {
+      return false;
+   }
+
+   public int getReceiveFramingByte ()
+   {
+      return 0;
+   }
+
+   public void enableReceiveTimeout (int time)
+   {
+      // VOID
+   }
+
+   public void disableReceiveTimeout ()
+   {
+      // VOID
+   }
+
+   public boolean isReceiveTimeoutEnabled ()
+   {
+      return true;
+   }
+
+   public int getReceiveTimeout ()
+   {
+      return 0;
+   }
+
+   public void enableReceiveThreshold (int thresh)
+   {
+      // VOID
+   }
+
+   public void disableReceiveThreshold ()
+   {
+      // VOID
+   }
+
+   public int getReceiveThreshold ()
+   {
+      return 0;
+   }
+
+   public boolean isReceiveThresholdEnabled ()
+   {
+      return false;
+   }
+
+   public void setInputBufferSize (int size)
+   {
+      // VOID
+   }
+
+   public int getInputBufferSize ()
+   {
+      return received.length;
+   }
+
+   public void setOutputBufferSize (int size)
+   {
+      // VOID
+   }
+
+   public int getOutputBufferSize ()
+   {
+      return pending.length;
+   }
+
+   //--------
+   //-------- SerialPort Methods
+   //--------
+
+   public void setSerialPortParams (int b, int d, int s, int p)
+   {
+      baudRate = b;
+   }
+
+   public int getBaudRate ()
+   {
+      return baudRate;
+   }
+
+   public int getDataBits ()
+   {
+      return DATABITS_8;
+   }
+
+   public int getStopBits ()
+   {
+      return STOPBITS_1;
+   }
+
+   public int getParity ()
+   {
+      return PARITY_NONE;
+   }
+
+   public void setFlowControlMode (int flowcontrol)
+   {
+      // VOID
+   }
+
+   public int getFlowControlMode ()
+   {
+      return FLOWCONTROL_NONE;
+   }
+
+   public boolean isDTR ()
+   {
+      return dtr;
+   }
+
+   public void setDTR (boolean state)
+   {
+      dtr = state;
+   }
+
+   public boolean isRTS ()
+   {
+      return rts;
+   }
+
+   public void setRTS (boolean state)
+   {
+      rts = state;
+   }
+
+   public boolean isCTS ()
+   {
+      return rts;
+   }
+
+   public boolean isDSR ()
+   {
+      return dtr;
+   }
+
+   public boolean isCD ()
+   {
+      return false;
+   }
+
+   public boolean isRI ()
+   {
+      return false;
+   }
+
+   public void sendBreak (int duration)
+   {
+      // VOID
+   }
+
+   public void addEventListener (SerialPortEventListener lsnr)
+      throws TooManyListenersException
+   {
+      synchronized (received)
+      {
+         if (listener != null)
+            throw new TooManyListenersException();
+
+         listener = lsnr;
+      }
+   }
+
+   public void removeEventListener ()
+   {
+      synchronized (received)
+      {
+         listener = null;
+      }
+   }
+
+   public void notifyOnDataAvailable (boolean enable)
+   {
+      synchronized (received)
+      {
+         notifyData = enable;
+      }
+   }
+
+   public void notifyOnOutputEmpty (boolean enable)
+   {
+      // VOID
+   }
+
+   public void notifyOnCTS (boolean enable)
+   {
+      // VOID
+   }
+
+   public void notifyOnDSR (boolean enable)
+   {
+      // VOID
+   }
+
+   public void notifyOnRingIndicator (boolean enable)
+   {
+      // VOID
+   }
+
+   public void notifyOnCarrierDetect (boolean enable)
+   {
+      // VOID
+   }
+
+   public void notifyOnOverrunError (boolean enable)
+   {
+      // VOID
+   }
+
+   public void notifyOnParityError (boolean enable)
+   {
+      // VOID
+   }
+
+   public void notifyOnFramingError (boolean enable)
+   {
+      // VOID
+   }
+
+   public void notifyOnBreakInterrupt (boolean enable)
+   {
+      // VOID
+   }
+
+   public byte getParityErrorChar ()
+   {
+      return 0;
+   }
+
+   public boolean setParityErrorChar (byte b)
+   {
+      return false;
+   }
+
+   public byte getEndOfInputChar ()
+   {
+      return 0;
+   }
+
+   public boolean setEndOfInputChar (byte b)
+   {
+      return false;
+   }
+
+   public boolean setUARTType (String type, boolean test)
+   {
+      return false;
+   }
+
+   public String getUARTType ()
+   {
+      return "loopback";
+   }
+
+   public boolean setBaudBase (int baudBase)
+   {
+      return false;
+   }
+
+   public int getBaudBase ()
+   {
+      return 0;
+   }
+
+   public boolean setDivisor (int divisor)
+   {
+      return false;
+   }
+
+   public int getDivisor ()
+   {
+      return 0;
+   }
+
+   public boolean setLowLatency ()
+   {
+      return false;
+   }
+
+   public boolean getLowLatency ()
+   {
+      return false;
+   }
+
+   public boolean setCallOutHangup (boolean noHup)
+   {
+      return false;
+   }
+
+   public boolean getCallOutHangup ()
+   {
+      return false;
+   }
+}
@@ -0,0 +1,205 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.container.OneWireContainer28;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Benchmarks of {@link NetAdapter NetAdapter} commands against a host on
+ * the loopback interface.  The host wraps a
+ * {@link SimulatedAdapter SimulatedAdapter} with a few DS18B20s, so the
+ * numbers are the cost of encoding, sending, serving and decoding each
+ * command rather than 1-Wire time.
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   java -jar benchmarks/target/benchmarks.jar NetAdapterBenchmark
+ * </CODE> </PRE>
+ *
+ * @see NetAdapter
+ * @see NetAdapterHost
+ * @see NetAdapterSelectorHost
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetAdapterBenchmark
+{
+   /** Host serving the client: thread per connection or selector */
+   @Param({ "thread", "selector" })
+   public String host;
+
+   /** Number of thermometers on the simulated network */
+   @Param({ "16" })
+   public int devices;
+
+   private NetAdapterHost netHost;
+
+   private NetAdapter adapter;
+
+   private OneWireContainer28 container;
+
+   private final byte[] block = new byte [10];
+
+   @Setup
+   public void setup ()
+      throws IOException, OneWireException
+   {
+      SimulatedAdapter simulated = new SimulatedAdapter();
+
+      for (int i = 0; i < devices; i++)
+      {
+         SimulatedThermometer thermometer = new SimulatedThermometer(
+            SimulatedDevice.createAddress(0x28, 0x0000037E1A00L + i));
+
+         thermometer.setTemperature(20 + i * 0.25);
+         simulated.addDevice(thermometer);
+      }
+
+      int port;
+
+      if (host.equals("selector"))
+      {
+         // find a free port for the selector host to listen on
+         ServerSocket probe = new ServerSocket(0);
+
+         port = probe.getLocalPort();
+
+         probe.close();
+
+         netHost = new NetAdapterSelectorHost(simulated, port, 1);
+      }
+      else
+      {
+         ServerSocket serverSocket = new ServerSocket(0);
+
+         port    = serverSocket.getLocalPort();
+         netHost = new NetAdapterHost(simulated, serverSocket, true);
+      }
+
+      // measure the current protocol, not the compatible default
+      netHost.setProtocolVersion(NetAdapterConstants.versionUID);
+
+      Thread t = new Thread(netHost, "NetAdapterBenchmark host");
+
+      t.setDaemon(true);
+      t.start();
+
+      adapter = new NetAdapter();
+
+      if (!adapter.selectPort("localhost:" + port))
+         throw new OneWireException("Could not connect to the host");
+
+      // first device found
+      adapter.setSearchAllDevices();
+      adapter.targetAllFamilies();
+
+      if (!adapter.findFirstDevice())
+         throw new OneWireException("No devices on the host");
+
+      byte[] address = new byte [8];
+
+      adapter.getAddress(address);
+
+      container = new OneWireContainer28(adapter, address);
+   }
+
+   @TearDown
+   public void tearDown ()
+      throws OneWireException
+   {
+      adapter.freePort();
+      netHost.stopHost();
+   }
+
+   /**
+    * A bare command, reset and its result.
+    */
+   @Benchmark
+   public int reset ()
+      throws OneWireException
+   {
+      return adapter.reset();
+   }
+
+   /**
+    * A data block of a typical scratchpad length.
+    */
+   @Benchmark
+   public byte[] dataBlock ()
+      throws OneWireException
+   {
+      for (int i = 0; i < block.length; i++)
+         block [i] = ( byte ) 0xFF;
+
+      adapter.dataBlock(block, 0, block.length);
+
+      return block;
+   }
+
+   /**
+    * A container read, select then read scratchpad.
+    */
+   @Benchmark
+   public byte[] readDevice ()
+      throws OneWireException
+   {
+      return container.readDevice();
+   }
+
+   /**
+    * A full search of the simulated network, one command per device.
+    */
+   @Benchmark
+   public int search ()
+      throws OneWireException
+   {
+      int count = 0;
+
+      for (boolean found = adapter.findFirstDevice(); found;
+              found = adapter.findNextDevice())
+         count++;
+
+      return count;
+   }
+}
@@ -0,0 +1,166 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Benchmarks of a {@link SerialService SerialService} transaction, a
+ * write followed by <code>readWithTimeout</code>, against a
+ * {@link LoopbackSerialPort LoopbackSerialPort} that answers after a
+ * fixed delay.  This compares the read modes that
+ * <code>onewire.serial.bytebangread</code> and
+ * <code>onewire.serial.eventread</code> select.
+ *
+ * <P> The score is the wakeup latency of a transaction.  The
+ * <code>cpuNanos</code> and <code>transactions</code> counters give the
+ * CPU time the reading thread spent, so
+ * <code>cpuNanos / transactions</code> is the CPU cost of one
+ * transaction; a polling read burns a core for the whole delay. </P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   java -jar benchmarks/target/benchmarks.jar SerialServiceBenchmark
+ * </CODE> </PRE>
+ *
+ * @see SerialService
+ * @see LoopbackSerialPort
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerialServiceBenchmark
+{
+   /** Read mode of the service: poll, bytebang or event */
+   @Param({ "poll", "bytebang", "event" })
+   public String mode;
+
+   /** Delay of the loopback port answer, in microseconds */
+   @Param({ "100", "1000" })
+   public int delay;
+
+   /** Bytes in each transaction */
+   @Param({ "16" })
+   public int length;
+
+   private LoopbackSerialPort port;
+
+   private SerialService service;
+
+   private byte[] request;
+
+   private byte[] response;
+
+   /**
+    * CPU time of the reading thread, reported with each iteration.
+    */
+   @State(Scope.Thread)
+   @AuxCounters(AuxCounters.Type.EVENTS)
+   public static class CpuCounters
+   {
+      public long cpuNanos;
+
+      public long transactions;
+
+      @Setup(Level.Iteration)
+      public void clear ()
+      {
+         cpuNanos     = 0;
+         transactions = 0;
+      }
+   }
+
+   private static final ThreadMXBean threads =
+      ManagementFactory.getThreadMXBean();
+
+   @Setup
+   public void setup ()
+      throws IOException, InterruptedException
+   {
+      // the read mode is fixed when the service is constructed
+      System.setProperty("onewire.serial.bytebangread",
+                         String.valueOf(mode.equals("bytebang")));
+      System.setProperty("onewire.serial.eventread",
+                         String.valueOf(mode.equals("event")));
+
+      port    = new LoopbackSerialPort(delay * 1000L);
+      service = new SerialService("LOOPBACK_" + mode + "_" + delay);
+
+      service.openPort(port, null);
+
+      // drain the byte written by openPort
+      Thread.sleep(10 + delay / 1000);
+      service.flush();
+
+      request  = new byte [length];
+      response = new byte [length];
+
+      for (int i = 0; i < length; i++)
+         request [i] = ( byte ) i;
+   }
+
+   @TearDown
+   public void tearDown ()
+      throws IOException
+   {
+      service.closePort();
+   }
+
+   @Benchmark
+   public byte[] transaction (CpuCounters counters)
+      throws IOException
+   {
+      long start = threads.getCurrentThreadCpuTime();
+
+      service.write(request, 0, length);
+
+      int count = service.readWithTimeout(response, 0, length);
+
+      counters.cpuNanos += threads.getCurrentThreadCpuTime() - start;
+      counters.transactions++;
+
+      if (count != length)
+         throw new IOException("Loopback returned " + count + " bytes");
+
+      return response;
+   }
+}
@@ -0,0 +1,168 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Benchmarks of DS2480 packet assembly in {@link UPacketBuilder
+ * UPacketBuilder}, the work <code>USerialAdapter</code> does for every
+ * <code>dataBlock</code> and search before the packets go out on the
+ * serial port.  Each benchmark restarts the builder, appends the
+ * operations and interprets a canned response, so the numbers cover
+ * everything but the serial I/O.
+ *
+ * <P> Run with the GC profiler to get the allocation per operation,
+ * which should stay at zero once the packet pool has grown: </P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   java -jar benchmarks/target/benchmarks.jar UPacketBuilderBenchmark -prof gc
+ * </CODE> </PRE>
+ *
+ * @see UPacketBuilder
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UPacketBuilderBenchmark
+{
+   /** Number of data bytes in each dataBlock */
+   @Param({ "8", "32", "64" })
+   public int length;
+
+   private OneWireState owState;
+
+   private UPacketBuilder builder;
+
+   private byte[] block;
+
+   private byte[] result;
+
+   /** Response the DS2480 would send, echo of the data bytes */
+   private byte[] response;
+
+   /** Search response that finds a DS18B20 with no discrepancies */
+   private byte[] searchResponse;
+
+   @Setup
+   public void setup ()
+   {
+      owState = new OneWireState();
+      builder = new UPacketBuilder(new UAdapterState(owState));
+      block   = new byte [length];
+      result  = new byte [length];
+
+      for (int i = 0; i < block.length; i++)
+         block [i] = ( byte ) (0xFF - i);
+
+      // one reset result byte, then the data
+      response = new byte [length + 1];
+      response [0] = ( byte ) 0xCD;
+
+      System.arraycopy(block, 0, response, 1, length);
+
+      byte[] address = { ( byte ) 0x28, ( byte ) 0x5C, ( byte ) 0x1A,
+                         ( byte ) 0x7E, ( byte ) 0x03, ( byte ) 0x00,
+                         ( byte ) 0x00, ( byte ) 0x9D };
+
+      // each ROM bit is sent as a discrepancy bit and the chosen bit
+      searchResponse = new byte [16];
+
+      for (int i = 0; i < 64; i++)
+         builder.bitWrite(searchResponse, i * 2 + 1,
+                          builder.bitRead(address, i));
+   }
+
+   /**
+    * Reset followed by a data block, as in <code>select</code> plus
+    * <code>dataBlock</code>.
+    */
+   @Benchmark
+   public byte[] resetAndDataBlock ()
+   {
+      builder.restart();
+
+      int reset_offset = builder.oneWireReset();
+      int data_offset  = builder.dataBytes(block, 0, block.length);
+
+      builder.interpretOneWireReset(response [reset_offset]);
+      builder.interpretDataBytes(response, data_offset, result, 0,
+                                 result.length);
+
+      return result;
+   }
+
+   /**
+    * Data block alone.
+    */
+   @Benchmark
+   public byte[] dataBlock ()
+   {
+      builder.restart();
+
+      int data_offset = builder.dataBytes(block, 0, block.length);
+
+      builder.interpretDataBytes(response, data_offset + 1, result, 0,
+                                 result.length);
+
+      return result;
+   }
+
+   /**
+    * One search step, including the reset and search command.
+    */
+   @Benchmark
+   public boolean search ()
+   {
+      builder.restart();
+
+      owState.searchLastDiscrepancy = 0x22;
+
+      int reset_offset = builder.oneWireReset();
+
+      builder.dataByte(( char ) 0xF0);
+
+      builder.search(owState);
+
+      builder.interpretOneWireReset(response [reset_offset]);
+
+      return builder.interpretSearch(owState, searchResponse, 0);
+   }
+}
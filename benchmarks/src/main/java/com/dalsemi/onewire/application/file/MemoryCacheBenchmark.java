@@ -0,0 +1,147 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.application.file;
+
+// imports
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.adapter.SimulatedAdapter;
+import com.dalsemi.onewire.adapter.SimulatedDevice;
+import com.dalsemi.onewire.adapter.SimulatedMemory;
+import com.dalsemi.onewire.container.OneWireContainer;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Benchmarks of {@link MemoryCache MemoryCache} page reads on a DS1996
+ * holding a 1-Wire file, simulated by a
+ * {@link SimulatedAdapter SimulatedAdapter}.  The cold benchmark builds
+ * a new cache and reads every page of the file from the device, the
+ * cached one reads the same pages from a cache that already holds them.
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   java -jar benchmarks/target/benchmarks.jar MemoryCacheBenchmark
+ * </CODE> </PRE>
+ *
+ * @see MemoryCache
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryCacheBenchmark
+{
+   /** Size of the file, in bytes */
+   @Param({ "1024", "4096" })
+   public int fileSize;
+
+   private OneWireContainer container;
+
+   private int[] pages;
+
+   private MemoryCache cache;
+
+   private final byte[] packet = new byte [32];
+
+   @Setup
+   public void setup ()
+      throws IOException, OneWireException
+   {
+      SimulatedMemory memory = new SimulatedMemory(
+         SimulatedDevice.createAddress(0x0C, 0x00000012D687L));
+
+      SimulatedAdapter adapter = new SimulatedAdapter();
+
+      adapter.addDevice(memory);
+
+      container = adapter.getDeviceContainer(memory.getAddress());
+
+      // format the device and write one file across many pages
+      OWFile file = new OWFile(container, "DATA");
+
+      file.format();
+
+      byte[] data = new byte [fileSize];
+
+      for (int i = 0; i < data.length; i++)
+         data [i] = ( byte ) i;
+
+      OWFileOutputStream out = new OWFileOutputStream(container, "DATA");
+
+      out.write(data);
+      out.close();
+
+      pages = file.getPageList();
+
+      file.close();
+
+      cache = new MemoryCache(container);
+
+      readPages(cache);
+   }
+
+   private int readPages (MemoryCache memoryCache)
+      throws OneWireException
+   {
+      int count = 0;
+
+      for (int i = 0; i < pages.length; i++)
+         count += memoryCache.readPagePacket(pages [i], packet, 0);
+
+      return count;
+   }
+
+   /**
+    * Every page read from the device.
+    */
+   @Benchmark
+   public int readPagesCold ()
+      throws OneWireException
+   {
+      return readPages(new MemoryCache(container));
+   }
+
+   /**
+    * Every page read from the cache.
+    */
+   @Benchmark
+   public int readPagesCached ()
+      throws OneWireException
+   {
+      return readPages(cache);
+   }
+}
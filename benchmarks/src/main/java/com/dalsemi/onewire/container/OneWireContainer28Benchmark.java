@@ -0,0 +1,135 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+// imports
+import java.util.concurrent.TimeUnit;
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.adapter.SimulatedAdapter;
+import com.dalsemi.onewire.adapter.SimulatedDevice;
+import com.dalsemi.onewire.adapter.SimulatedThermometer;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Benchmarks of {@link OneWireContainer28 OneWireContainer28} scratchpad
+ * handling: decoding the temperature, alarms and resolution from the
+ * state of <code>readDevice</code>, and <code>readDevice</code> itself
+ * against a {@link SimulatedAdapter SimulatedAdapter}, which covers the
+ * select, read scratchpad and CRC check the container does for every
+ * reading.
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   java -jar benchmarks/target/benchmarks.jar OneWireContainer28Benchmark
+ * </CODE> </PRE>
+ *
+ * @see OneWireContainer28
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OneWireContainer28Benchmark
+{
+   /** Resolution of the simulated DS18B20, in degrees */
+   @Param({ "0.5", "0.0625" })
+   public double resolution;
+
+   private SimulatedAdapter adapter;
+
+   private OneWireContainer28 container;
+
+   private byte[] state;
+
+   @Setup
+   public void setup ()
+      throws OneWireException
+   {
+      SimulatedThermometer thermometer = new SimulatedThermometer(
+         SimulatedDevice.createAddress(0x28, 0x0000037E1A5CL));
+
+      thermometer.setTemperature(21.4375);
+
+      adapter = new SimulatedAdapter();
+
+      adapter.addDevice(thermometer);
+
+      container = new OneWireContainer28(adapter,
+                                         thermometer.getAddress());
+
+      // set the resolution, then convert so the scratchpad holds a reading
+      state = container.readDevice();
+
+      container.setTemperatureResolution(resolution, state);
+      container.writeDevice(state);
+
+      adapter.reset();
+      adapter.select(thermometer.getAddress());
+      adapter.putByte(OneWireContainer28.CONVERT_TEMPERATURE_COMMAND);
+
+      state = container.readDevice();
+   }
+
+   @Benchmark
+   public double getTemperature ()
+      throws OneWireException
+   {
+      return container.getTemperature(state);
+   }
+
+   @Benchmark
+   public double getTemperatureAlarm ()
+   {
+      return container.getTemperatureAlarm(TemperatureContainer.ALARM_HIGH,
+                                           state);
+   }
+
+   @Benchmark
+   public double getTemperatureResolution ()
+   {
+      return container.getTemperatureResolution(state);
+   }
+
+   /**
+    * Select and read the scratchpad over the simulated bus.
+    */
+   @Benchmark
+   public byte[] readDevice ()
+      throws OneWireException
+   {
+      return container.readDevice();
+   }
+}
@@ -0,0 +1,112 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.utils;
+
+// imports
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Benchmarks of the {@link CRC8 CRC8} and {@link CRC16 CRC16} block
+ * computations, over the data lengths found on a 1-Wire network: an
+ * 8 byte ROM ID, a 32 byte page and a 256 byte memory bank.
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   java -jar benchmarks/target/benchmarks.jar ChecksumBenchmark
+ * </CODE> </PRE>
+ *
+ * @see CRC8
+ * @see CRC16
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark
+{
+   @Param({ "8", "32", "256" })
+   public int length;
+
+   private byte[] data;
+
+   @Setup
+   public void setup ()
+   {
+      data = new byte [length];
+
+      new Random(length).nextBytes(data);
+   }
+
+   @Benchmark
+   public int crc8 ()
+   {
+      return CRC8.compute(data, 0, data.length);
+   }
+
+   @Benchmark
+   public int crc8Seeded ()
+   {
+      return CRC8.compute(data, 0, data.length, 0x55);
+   }
+
+   @Benchmark
+   public int crc16 ()
+   {
+      return CRC16.compute(data, 0, data.length);
+   }
+
+   @Benchmark
+   public int crc16Seeded ()
+   {
+      return CRC16.compute(data, 0, data.length, 0x1234);
+   }
+
+   /**
+    * Byte at a time, the way the containers fold in command bytes.
+    */
+   @Benchmark
+   public int crc16PerByte ()
+   {
+      int crc = 0;
+
+      for (int i = 0; i < data.length; i++)
+         crc = CRC16.compute(data [i], crc);
+
+      return crc;
+   }
+}
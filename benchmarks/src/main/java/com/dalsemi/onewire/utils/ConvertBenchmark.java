@@ -0,0 +1,144 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.utils;
+
+// imports
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+/**
+ * Benchmarks of the {@link Convert Convert} and {@link Address Address}
+ * conversions used when reporting and looking up devices, such as
+ * turning a ROM ID into its string or <code>long</code> form and back.
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   java -jar benchmarks/target/benchmarks.jar ConvertBenchmark
+ * </CODE> </PRE>
+ *
+ * @see Convert
+ * @see Address
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark
+{
+   /** DS18B20 ROM ID, family first */
+   private final byte[] address = { ( byte ) 0x28, ( byte ) 0x5C,
+                                    ( byte ) 0x1A, ( byte ) 0x7E,
+                                    ( byte ) 0x03, ( byte ) 0x00,
+                                    ( byte ) 0x00, ( byte ) 0x9D };
+
+   private final byte[] page = new byte [32];
+
+   private final byte[] longBuffer = new byte [8];
+
+   private String addressString;
+
+   private long addressLong;
+
+   private String pageString;
+
+   @Setup
+   public void setup ()
+   {
+      for (int i = 0; i < page.length; i++)
+         page [i] = ( byte ) (i * 7);
+
+      addressString = Address.toString(address);
+      addressLong   = Address.toLong(address);
+      pageString    = Convert.toHexString(page);
+   }
+
+   @Benchmark
+   public String addressToString ()
+   {
+      return Address.toString(address);
+   }
+
+   @Benchmark
+   public long addressToLong ()
+   {
+      return Address.toLong(address);
+   }
+
+   @Benchmark
+   public long addressStringToLong ()
+   {
+      return Address.toLong(addressString);
+   }
+
+   @Benchmark
+   public byte[] addressLongToByteArray ()
+   {
+      return Address.toByteArray(addressLong);
+   }
+
+   @Benchmark
+   public String addressLongToString ()
+   {
+      return Address.toString(addressLong);
+   }
+
+   @Benchmark
+   public String pageToHexString ()
+   {
+      return Convert.toHexString(page);
+   }
+
+   @Benchmark
+   public byte[] hexStringToByteArray ()
+      throws Convert.ConvertException
+   {
+      return Convert.toByteArray(pageString);
+   }
+
+   @Benchmark
+   public long byteArrayToLong ()
+   {
+      return Convert.toLong(address, 0, 8);
+   }
+
+   @Benchmark
+   public byte[] longToByteArray ()
+   {
+      Convert.toByteArray(addressLong, longBuffer, 0, 8);
+
+      return longBuffer;
+   }
+}
@@ -0,0 +1,258 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+import java.util.Vector;
+
+/**
+ * An AdapterLock arbitrates the exclusive use of a 1-Wire adapter
+ * between the threads of a process.  The adapters use it for
+ * {@link DSPortAdapter#beginExclusive(boolean) beginExclusive} and
+ * {@link DSPortAdapter#endExclusive() endExclusive}.
+ *
+ * <P>The lock is fair.  Threads waiting for it get it in the order they
+ * asked for it.  Releasing the lock hands it directly to the first
+ * waiting thread and wakes that thread up, so a waiting thread gets the
+ * adapter as soon as it is free instead of polling for it.</P>
+ *
+ * <P>Ownership is kept by <code>Thread</code>, not by its hash code.
+ * A thread that owns the lock gets it again right away, and a single
+ * <code>unlock</code> releases it, just as one <code>endExclusive</code>
+ * always ended exclusive use.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   if (lock.tryLock(500))
+ *   {
+ *      try
+ *      {
+ *         // talk to the 1-Wire Network
+ *      }
+ *      finally
+ *      {
+ *         lock.unlock();
+ *      }
+ *   }
+ * </CODE> </PRE>
+ *
+ * @see DSPortAdapter#beginExclusive(boolean)
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class AdapterLock
+{
+
+   //--------
+   //-------- Finals
+   //--------
+
+   /** Timeout for <code>tryLock</code> to wait until the lock is free */
+   public static final long WAIT_FOREVER = -1;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** The thread that owns the lock, or null if it is free */
+   private Thread owner = null;
+
+   /** Threads waiting for the lock, in the order they asked for it */
+   private final Vector waiters = new Vector(4);
+
+   //--------
+   //-------- Constructor
+   //--------
+
+   /**
+    * Constructs a free lock.
+    */
+   public AdapterLock ()
+   {
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Gets the lock, waiting for it if <code>blocking</code> is
+    * <code>true</code>.  This matches <code>beginExclusive</code>.
+    *
+    * @param blocking <code>true</code> to wait until the lock is free
+    *
+    * @return <code>true</code> if the current thread now owns the lock
+    */
+   public boolean lock (boolean blocking)
+   {
+      return tryLock(blocking ? WAIT_FOREVER : 0);
+   }
+
+   /**
+    * Gets the lock, waiting up to <code>timeout</code> milliseconds for
+    * it.  If other threads are already waiting, the current thread
+    * waits behind them, even if the lock is free at that moment.
+    * Interrupting a waiting thread does not stop the wait, but the
+    * interrupt is kept for the thread to see later.
+    *
+    * @param timeout milliseconds to wait, 0 to not wait at all, or
+    *                <code>WAIT_FOREVER</code>
+    *
+    * @return <code>true</code> if the current thread now owns the lock,
+    *         <code>false</code> if the timeout passed first
+    */
+   public synchronized boolean tryLock (long timeout)
+   {
+      Thread current = Thread.currentThread();
+
+      if (owner == current)
+         return true;
+
+      if ((owner == null) && waiters.isEmpty())
+      {
+         owner = current;
+         return true;
+      }
+
+      if (timeout == 0)
+         return false;
+
+      waiters.addElement(current);
+
+      long deadline = System.currentTimeMillis() + timeout;
+      boolean interrupted = false;
+
+      while (owner != current)
+      {
+         try
+         {
+            if (timeout < 0)
+               wait();
+            else
+            {
+               long remaining = deadline - System.currentTimeMillis();
+
+               if (remaining <= 0)
+                  break;
+
+               wait(remaining);
+            }
+         }
+         catch (InterruptedException e)
+         {
+            interrupted = true;
+         }
+      }
+
+      if (interrupted)
+         current.interrupt();
+
+      if (owner != current)
+      {
+         // timed out, give up the place in line
+         waiters.removeElement(current);
+
+         return false;
+      }
+
+      return true;
+   }
+
+   /**
+    * Releases the lock, if the current thread owns it.  The next
+    * waiting thread, if any, gets the lock.
+    */
+   public synchronized void unlock ()
+   {
+      if (owner == Thread.currentThread())
+         handOff();
+   }
+
+   /**
+    * Releases the lock on behalf of a thread that can no longer do it
+    * itself, for example a thread that has died.
+    *
+    * @param thread thread that may own or be waiting for the lock
+    */
+   public synchronized void release (Thread thread)
+   {
+      if (owner == thread)
+         handOff();
+      else
+         waiters.removeElement(thread);
+   }
+
+   /**
+    * Checks if the current thread owns the lock.
+    *
+    * @return <code>true</code> if the current thread owns the lock
+    */
+   public synchronized boolean isHeldByCurrentThread ()
+   {
+      return (owner == Thread.currentThread());
+   }
+
+   /**
+    * Gets the thread that owns the lock.
+    *
+    * @return the owning thread, or <code>null</code> if the lock is free
+    */
+   public synchronized Thread getOwner ()
+   {
+      return owner;
+   }
+
+   /**
+    * Gets the number of threads waiting for the lock.
+    *
+    * @return number of waiting threads
+    */
+   public synchronized int getQueueLength ()
+   {
+      return waiters.size();
+   }
+
+   /**
+    * Gives the lock to the first waiting thread, or frees it if no
+    * thread is waiting.
+    */
+   private void handOff ()
+   {
+      if (waiters.isEmpty())
+         owner = null;
+      else
+      {
+         owner = ( Thread ) waiters.elementAt(0);
+
+         waiters.removeElementAt(0);
+         notifyAll();
+      }
+   }
+}
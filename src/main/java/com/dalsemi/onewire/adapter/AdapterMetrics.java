@@ -0,0 +1,124 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+
+/**
+ * Receives counts and timings of the work a {@link DSPortAdapter
+ * DSPortAdapter} does on the 1-Wire Network.  Set an implementation
+ * with {@link DSPortAdapter#setMetrics(AdapterMetrics) setMetrics} to
+ * see where the bus time goes.  With no metrics set the adapters do not
+ * read the clock at all, so the cost is one field check per operation.
+ *
+ * <P> Implementations are called from any thread using the adapter,
+ * often with the adapter locked, so they must be thread safe and must
+ * return quickly.  {@link AdapterStatistics AdapterStatistics} is a
+ * lock-free implementation that keeps counts and latency histograms. </P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   AdapterStatistics stats = new AdapterStatistics();
+ *
+ *   adapter.setMetrics(stats);
+ *
+ *   // ... use the adapter ...
+ *
+ *   System.out.println(stats);
+ * </CODE> </PRE>
+ *
+ * @see AdapterStatistics
+ * @see DSPortAdapter#setMetrics(AdapterMetrics)
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public interface AdapterMetrics
+{
+   //--------
+   //-------- Operations
+   //--------
+
+   /** 1-Wire reset */
+   public static final int RESET = 0;
+
+   /** One step of a search, finding the first or next device */
+   public static final int SEARCH = 1;
+
+   /** Device select, reset and Match ROM */
+   public static final int SELECT = 2;
+
+   /** Data block, the byte count is the length of the block */
+   public static final int DATA_BLOCK = 3;
+
+   /** Power delivery, from its start until the power is set normal */
+   public static final int POWER_DELIVERY = 4;
+
+   /** Wait for exclusive use of the adapter */
+   public static final int EXCLUSIVE_WAIT = 5;
+
+   /** Number of operations */
+   public static final int OPERATION_COUNT = 6;
+
+   //--------
+   //-------- Events
+   //--------
+
+   /** Data read from a device failed its CRC check */
+   public static final int CRC_FAILURE = 0;
+
+   /** An operation was tried again, or the adapter was reset to retry */
+   public static final int RETRY = 1;
+
+   /** Communication with the adapter failed */
+   public static final int IO_ERROR = 2;
+
+   /** Number of events */
+   public static final int EVENT_COUNT = 3;
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Records one completed operation.
+    *
+    * @param operation the operation, such as <code>RESET</code>
+    * @param nanos     time taken, in nanoseconds
+    * @param bytes     bytes sent and received, 0 if not counted
+    */
+   public void operation (int operation, long nanos, int bytes);
+
+   /**
+    * Records one event.
+    *
+    * @param event the event, such as <code>CRC_FAILURE</code>
+    */
+   public void event (int event);
+}
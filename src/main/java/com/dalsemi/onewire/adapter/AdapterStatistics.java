@@ -0,0 +1,387 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Lock-free {@link AdapterMetrics AdapterMetrics} that counts each
+ * operation, its bytes and its total and longest time, and keeps a
+ * latency histogram per operation.  Recording is a handful of atomic
+ * adds, with no locks and no allocation, so it can stay enabled in
+ * production.
+ *
+ * <P> Histogram bucket <code>b</code> counts the operations that took
+ * less than 2<sup>b</sup> microseconds, and at least
+ * 2<sup>b-1</sup>.  Bucket 0 counts the ones under one microsecond and
+ * the last bucket also counts everything longer. </P>
+ *
+ * <P> <code>toString</code> gives the statistics as plain text, one
+ * value per line, and <code>toJSON</code> as a JSON object.
+ * {@link AdapterStatisticsHost AdapterStatisticsHost} serves both over
+ * HTTP. </P>
+ *
+ * @see AdapterMetrics
+ * @see AdapterStatisticsHost
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class AdapterStatistics
+   implements AdapterMetrics
+{
+   //--------
+   //-------- Finals
+   //--------
+
+   /** Number of histogram buckets, the last is for 2^30 us and up */
+   public static final int BUCKET_COUNT = 32;
+
+   /** Names of the operations, indexed by operation */
+   private static final String[] OPERATION_NAMES = { "reset", "search",
+      "select", "dataBlock", "powerDelivery", "exclusiveWait" };
+
+   /** Names of the events, indexed by event */
+   private static final String[] EVENT_NAMES = { "crcFailure", "retry",
+      "ioError" };
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Count of each operation */
+   private final AtomicLongArray counts =
+      new AtomicLongArray(OPERATION_COUNT);
+
+   /** Total nanoseconds of each operation */
+   private final AtomicLongArray totalNanos =
+      new AtomicLongArray(OPERATION_COUNT);
+
+   /** Longest nanoseconds of each operation */
+   private final AtomicLongArray maxNanos =
+      new AtomicLongArray(OPERATION_COUNT);
+
+   /** Total bytes of each operation */
+   private final AtomicLongArray bytes =
+      new AtomicLongArray(OPERATION_COUNT);
+
+   /** Histograms of each operation, BUCKET_COUNT entries each */
+   private final AtomicLongArray histograms =
+      new AtomicLongArray(OPERATION_COUNT * BUCKET_COUNT);
+
+   /** Count of each event */
+   private final AtomicLongArray events = new AtomicLongArray(EVENT_COUNT);
+
+   //--------
+   //-------- Constructor
+   //--------
+
+   /**
+    * Constructs statistics with every count at zero.
+    */
+   public AdapterStatistics ()
+   {
+   }
+
+   //--------
+   //-------- AdapterMetrics Methods
+   //--------
+
+   public void operation (int operation, long nanos, int byteCount)
+   {
+      if (nanos < 0)
+         nanos = 0;
+
+      counts.incrementAndGet(operation);
+      totalNanos.addAndGet(operation, nanos);
+
+      if (byteCount != 0)
+         bytes.addAndGet(operation, byteCount);
+
+      long max = maxNanos.get(operation);
+
+      while ((nanos > max)
+                && !maxNanos.compareAndSet(operation, max, nanos))
+         max = maxNanos.get(operation);
+
+      histograms.incrementAndGet(operation * BUCKET_COUNT
+                                    + getBucket(nanos));
+   }
+
+   public void event (int event)
+   {
+      events.incrementAndGet(event);
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Gets the histogram bucket for a time.
+    *
+    * @param nanos time in nanoseconds
+    *
+    * @return histogram bucket
+    */
+   public static int getBucket (long nanos)
+   {
+      int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+
+      return (bucket < BUCKET_COUNT) ? bucket : (BUCKET_COUNT - 1);
+   }
+
+   /**
+    * Gets the name of an operation, as used in the text and JSON output.
+    *
+    * @param operation the operation, such as <code>RESET</code>
+    *
+    * @return the name, such as "reset"
+    */
+   public static String getOperationName (int operation)
+   {
+      return OPERATION_NAMES [operation];
+   }
+
+   /**
+    * Gets the name of an event, as used in the text and JSON output.
+    *
+    * @param event the event, such as <code>CRC_FAILURE</code>
+    *
+    * @return the name, such as "crcFailure"
+    */
+   public static String getEventName (int event)
+   {
+      return EVENT_NAMES [event];
+   }
+
+   /**
+    * Gets the number of times an operation was done.
+    */
+   public long getCount (int operation)
+   {
+      return counts.get(operation);
+   }
+
+   /**
+    * Gets the total time of an operation, in nanoseconds.
+    */
+   public long getTotalNanos (int operation)
+   {
+      return totalNanos.get(operation);
+   }
+
+   /**
+    * Gets the longest time of an operation, in nanoseconds.
+    */
+   public long getMaxNanos (int operation)
+   {
+      return maxNanos.get(operation);
+   }
+
+   /**
+    * Gets the mean time of an operation, in nanoseconds.
+    *
+    * @return the mean time, or 0 if the operation was never done
+    */
+   public long getMeanNanos (int operation)
+   {
+      long count = counts.get(operation);
+
+      return (count == 0) ? 0 : (totalNanos.get(operation) / count);
+   }
+
+   /**
+    * Gets the total bytes of an operation.
+    */
+   public long getBytes (int operation)
+   {
+      return bytes.get(operation);
+   }
+
+   /**
+    * Gets a copy of the latency histogram of an operation.
+    *
+    * @return <code>BUCKET_COUNT</code> counts
+    */
+   public long[] getHistogram (int operation)
+   {
+      long[] histogram = new long [BUCKET_COUNT];
+
+      for (int b = 0; b < BUCKET_COUNT; b++)
+         histogram [b] = histograms.get(operation * BUCKET_COUNT + b);
+
+      return histogram;
+   }
+
+   /**
+    * Gets the number of times an event happened.
+    */
+   public long getEventCount (int event)
+   {
+      return events.get(event);
+   }
+
+   /**
+    * Sets every count back to zero.  Operations recorded while this runs
+    * may be partly cleared.
+    */
+   public void clear ()
+   {
+      for (int op = 0; op < OPERATION_COUNT; op++)
+      {
+         counts.set(op, 0);
+         totalNanos.set(op, 0);
+         maxNanos.set(op, 0);
+         bytes.set(op, 0);
+      }
+
+      for (int i = 0; i < histograms.length(); i++)
+         histograms.set(i, 0);
+
+      for (int ev = 0; ev < EVENT_COUNT; ev++)
+         events.set(ev, 0);
+   }
+
+   /**
+    * Gets the statistics as plain text, one <code>name value</code>
+    * pair per line, for example <code>reset.count 12</code>.  Only
+    * histogram buckets with counts are listed.
+    *
+    * @return the statistics as text
+    */
+   public String toString ()
+   {
+      StringBuffer sb = new StringBuffer(1024);
+
+      appendText(sb, "");
+
+      return sb.toString();
+   }
+
+   /**
+    * Appends the statistics as plain text, with a prefix on every name.
+    *
+    * @param sb     buffer to append to
+    * @param prefix prefix for every name, for example "port1."
+    */
+   public void appendText (StringBuffer sb, String prefix)
+   {
+      for (int op = 0; op < OPERATION_COUNT; op++)
+      {
+         String name = prefix + OPERATION_NAMES [op];
+
+         sb.append(name).append(".count ").append(getCount(op)).append('\n');
+         sb.append(name).append(".totalNanos ").append(getTotalNanos(op))
+           .append('\n');
+         sb.append(name).append(".maxNanos ").append(getMaxNanos(op))
+           .append('\n');
+         sb.append(name).append(".bytes ").append(getBytes(op)).append('\n');
+
+         long[] histogram = getHistogram(op);
+
+         for (int b = 0; b < BUCKET_COUNT; b++)
+         {
+            if (histogram [b] != 0)
+               sb.append(name).append(".histogram.lt").append(1L << b)
+                 .append("us ").append(histogram [b]).append('\n');
+         }
+      }
+
+      for (int ev = 0; ev < EVENT_COUNT; ev++)
+         sb.append(prefix).append(EVENT_NAMES [ev]).append(' ')
+           .append(getEventCount(ev)).append('\n');
+   }
+
+   /**
+    * Gets the statistics as a JSON object.  Each operation has its
+    * count, totalNanos, maxNanos, bytes and the full histogram array,
+    * and each event its count.
+    *
+    * @return the statistics as JSON
+    */
+   public String toJSON ()
+   {
+      StringBuffer sb = new StringBuffer(2048);
+
+      appendJSON(sb);
+
+      return sb.toString();
+   }
+
+   /**
+    * Appends the statistics as a JSON object.
+    *
+    * @param sb buffer to append to
+    */
+   public void appendJSON (StringBuffer sb)
+   {
+      sb.append("{\"operations\":{");
+
+      for (int op = 0; op < OPERATION_COUNT; op++)
+      {
+         if (op > 0)
+            sb.append(',');
+
+         sb.append('"').append(OPERATION_NAMES [op]).append("\":{");
+         sb.append("\"count\":").append(getCount(op));
+         sb.append(",\"totalNanos\":").append(getTotalNanos(op));
+         sb.append(",\"maxNanos\":").append(getMaxNanos(op));
+         sb.append(",\"bytes\":").append(getBytes(op));
+         sb.append(",\"histogram\":[");
+
+         long[] histogram = getHistogram(op);
+
+         for (int b = 0; b < BUCKET_COUNT; b++)
+         {
+            if (b > 0)
+               sb.append(',');
+
+            sb.append(histogram [b]);
+         }
+
+         sb.append("]}");
+      }
+
+      sb.append("},\"events\":{");
+
+      for (int ev = 0; ev < EVENT_COUNT; ev++)
+      {
+         if (ev > 0)
+            sb.append(',');
+
+         sb.append('"').append(EVENT_NAMES [ev]).append("\":")
+           .append(getEventCount(ev));
+      }
+
+      sb.append("}}");
+   }
+}
@@ -0,0 +1,338 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Vector;
+
+
+/**
+ * Serves {@link AdapterStatistics AdapterStatistics} over HTTP, so a
+ * monitoring system can collect them.  A request for
+ * <code>/json</code> gets every registered set of statistics as one
+ * JSON object keyed by name, and any other path gets them as plain
+ * text, each name prefixed with the name of its set.
+ *
+ * <P> The host handles one short request at a time in the thread that
+ * runs it.  It is meant for an occasional scrape, not for heavy
+ * traffic. </P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   AdapterStatistics stats = new AdapterStatistics();
+ *   adapter.setMetrics(stats);
+ *
+ *   AdapterStatisticsHost host = new AdapterStatisticsHost(8161);
+ *   host.addStatistics("COM1", stats);
+ *   (new Thread(host)).start();
+ *
+ *   // curl http://localhost:8161/json
+ * </CODE> </PRE>
+ *
+ * @see AdapterStatistics
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class AdapterStatisticsHost
+   implements Runnable
+{
+   //--------
+   //-------- Finals
+   //--------
+
+   /** Milliseconds to wait for a client to send its request */
+   private static final int REQUEST_TIMEOUT = 5000;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** The server socket listening for requests */
+   protected ServerSocket serverSocket;
+
+   /** Names of the statistics, matching <code>statistics</code> */
+   private final Vector names = new Vector(4);
+
+   /** Statistics served */
+   private final Vector statistics = new Vector(4);
+
+   /** Flags for the run loop */
+   protected volatile boolean hostStopped = false, hostRunning = false;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a host listening on the given port.
+    *
+    * @param listenPort TCP/IP port to listen on
+    *
+    * @throws IOException if the listen socket cannot be created
+    */
+   public AdapterStatisticsHost (int listenPort)
+      throws IOException
+   {
+      this(new ServerSocket(listenPort));
+   }
+
+   /**
+    * Creates a host listening on the given server socket.
+    *
+    * @param serverSock the socket to accept requests on
+    */
+   public AdapterStatisticsHost (ServerSocket serverSock)
+   {
+      serverSocket = serverSock;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Adds statistics to serve, under a name such as the port name of
+    * the adapter.  Statistics already served under the name are
+    * replaced.
+    *
+    * @param name  name of the statistics
+    * @param stats the statistics
+    */
+   public synchronized void addStatistics (String name,
+                                           AdapterStatistics stats)
+   {
+      removeStatistics(name);
+
+      names.addElement(name);
+      statistics.addElement(stats);
+   }
+
+   /**
+    * Stops serving the statistics with the given name.
+    *
+    * @param name name of the statistics
+    */
+   public synchronized void removeStatistics (String name)
+   {
+      int i = names.indexOf(name);
+
+      if (i >= 0)
+      {
+         names.removeElementAt(i);
+         statistics.removeElementAt(i);
+      }
+   }
+
+   /**
+    * Gets the port the host is listening on.
+    *
+    * @return the local port of the server socket
+    */
+   public int getPort ()
+   {
+      return serverSocket.getLocalPort();
+   }
+
+   /**
+    * Gets every set of statistics as plain text.
+    *
+    * @return the statistics as text
+    */
+   public synchronized String getText ()
+   {
+      StringBuffer sb = new StringBuffer(2048);
+
+      for (int i = 0; i < names.size(); i++)
+         (( AdapterStatistics ) statistics.elementAt(i)).appendText(sb,
+            names.elementAt(i) + ".");
+
+      return sb.toString();
+   }
+
+   /**
+    * Gets every set of statistics as one JSON object keyed by name.
+    *
+    * @return the statistics as JSON
+    */
+   public synchronized String getJSON ()
+   {
+      StringBuffer sb = new StringBuffer(4096);
+
+      sb.append('{');
+
+      for (int i = 0; i < names.size(); i++)
+      {
+         if (i > 0)
+            sb.append(',');
+
+         sb.append('"');
+
+         String name = ( String ) names.elementAt(i);
+
+         for (int c = 0; c < name.length(); c++)
+         {
+            char ch = name.charAt(c);
+
+            if ((ch == '"') || (ch == '\\'))
+               sb.append('\\');
+
+            sb.append(ch);
+         }
+
+         sb.append("\":");
+
+         (( AdapterStatistics ) statistics.elementAt(i)).appendJSON(sb);
+      }
+
+      sb.append('}');
+
+      return sb.toString();
+   }
+
+   /**
+    * Run method for the threaded host.  Accepts and answers requests
+    * until <code>stopHost</code> is called.
+    */
+   public void run ()
+   {
+      hostRunning = true;
+
+      while (!hostStopped)
+      {
+         Socket sock = null;
+
+         try
+         {
+            sock = serverSocket.accept();
+
+            handleRequest(sock);
+         }
+         catch (IOException ioe)
+         {
+            // VOID
+         }
+         finally
+         {
+            try
+            {
+               if (sock != null)
+                  sock.close();
+            }
+            catch (IOException ioe)
+            {
+               // VOID
+            }
+         }
+      }
+
+      hostRunning = false;
+   }
+
+   /**
+    * Stops the host and closes the server socket.
+    */
+   public void stopHost ()
+   {
+      hostStopped = true;
+
+      try
+      {
+         serverSocket.close();
+      }
+      catch (IOException ioe)
+      {
+         // VOID
+      }
+   }
+
+   /**
+    * Reads one HTTP request and writes the statistics in answer.
+    */
+   private void handleRequest (Socket sock)
+      throws IOException
+   {
+      sock.setSoTimeout(REQUEST_TIMEOUT);
+
+      BufferedReader in = new BufferedReader(
+         new InputStreamReader(sock.getInputStream(), "ISO-8859-1"));
+
+      // request line, "GET /path HTTP/1.x"
+      String request = in.readLine();
+
+      if (request == null)
+         return;
+
+      // skip the headers
+      String line;
+
+      while (((line = in.readLine()) != null) && (line.length() > 0))
+      {
+         // VOID
+      }
+
+      String path = "/";
+      int    start = request.indexOf(' ');
+
+      if (start >= 0)
+      {
+         int end = request.indexOf(' ', start + 1);
+
+         path = (end > start) ? request.substring(start + 1, end)
+                              : request.substring(start + 1);
+      }
+
+      String body, type;
+
+      if (path.equals("/json") || path.endsWith(".json"))
+      {
+         body = getJSON();
+         type = "application/json";
+      }
+      else
+      {
+         body = getText();
+         type = "text/plain";
+      }
+
+      byte[] data = body.getBytes("ISO-8859-1");
+
+      OutputStream out = new BufferedOutputStream(sock.getOutputStream());
+
+      out.write(("HTTP/1.0 200 OK\r\nContent-Type: " + type
+                 + "\r\nContent-Length: " + data.length
+                 + "\r\nConnection: close\r\n\r\n").getBytes("ISO-8859-1"));
+      out.write(data);
+      out.flush();
+   }
+}
@@ -0,0 +1,66 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import com.dalsemi.onewire.OneWireException;
+
+
+/**
+ * A unit of work for the {@link BusScheduler BusScheduler}.  Long
+ * operations are split into steps, each a complete 1-Wire transaction.
+ * The scheduler runs one step at a time with exclusive use of the
+ * adapter, and can run more urgent operations between the steps.
+ *
+ * @see BusScheduler
+ * @see BusRequest
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public interface BusOperation
+{
+   /**
+    * Runs the next step of the operation.  The scheduler has exclusive
+    * use of the adapter while this is called.  A step must leave the
+    * 1-Wire Network so that any other transaction can follow it, for
+    * example it can not rely on a device staying selected until the
+    * next step.
+    *
+    * @param adapter the adapter to use
+    *
+    * @return <code>true</code> if the operation is complete,
+    *         <code>false</code> if it has more steps
+    *
+    * @throws OneWireException on a 1-Wire communication or setup error,
+    *         which ends the operation
+    */
+   public boolean runStep (DSPortAdapter adapter)
+      throws OneWireException;
+}
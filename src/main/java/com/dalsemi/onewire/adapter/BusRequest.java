@@ -0,0 +1,209 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import com.dalsemi.onewire.OneWireException;
+
+
+/**
+ * A {@link BusOperation BusOperation} submitted to a
+ * {@link BusScheduler BusScheduler}, with its priority.  The request is
+ * done when the operation completes, fails, or is cancelled.  Wait for
+ * it with <code>waitForCompletion</code>.
+ *
+ * @see BusScheduler
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class BusRequest
+{
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** The operation to run */
+   private final BusOperation operation;
+
+   /** Priority, one of the BusScheduler PRIORITY constants or between */
+   private final int priority;
+
+   /** Order of submission, to run requests of equal priority in order */
+   final long sequence;
+
+   /** Flag for the request being done */
+   private boolean done = false;
+
+   /** Flag for the request being cancelled */
+   private boolean cancelled = false;
+
+   /** Exception that ended the request, if any */
+   private OneWireException exception = null;
+
+   //--------
+   //-------- Constructor
+   //--------
+
+   /**
+    * Constructs a request, used by the scheduler.
+    */
+   BusRequest (BusOperation operation, int priority, long sequence)
+   {
+      this.operation = operation;
+      this.priority  = priority;
+      this.sequence  = sequence;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Gets the operation of this request.
+    *
+    * @return the operation
+    */
+   public BusOperation getOperation ()
+   {
+      return operation;
+   }
+
+   /**
+    * Gets the priority of this request.
+    *
+    * @return the priority
+    */
+   public int getPriority ()
+   {
+      return priority;
+   }
+
+   /**
+    * Checks if the request is done.
+    *
+    * @return <code>true</code> if the operation completed, failed, or was
+    *         cancelled
+    */
+   public synchronized boolean isDone ()
+   {
+      return done;
+   }
+
+   /**
+    * Gets the exception that ended the request.
+    *
+    * @return the exception, or <code>null</code> if the request is not
+    *         done or completed without error
+    */
+   public synchronized OneWireException getException ()
+   {
+      return exception;
+   }
+
+   /**
+    * Cancels the request.  A step that is running is finished, but no
+    * more steps are run, and the request is done with an exception.
+    */
+   public synchronized void cancel ()
+   {
+      cancelled = true;
+   }
+
+   /**
+    * Checks if the request was cancelled.
+    *
+    * @return <code>true</code> if <code>cancel</code> was called
+    */
+   public synchronized boolean isCancelled ()
+   {
+      return cancelled;
+   }
+
+   /**
+    * Waits for the request to be done.
+    *
+    * @param  timeout  milliseconds to wait, 0 to wait until done
+    *
+    * @return <code>true</code> if the request is done, <code>false</code>
+    *         if the timeout passed or the thread was interrupted first.
+    *         The interrupt status of the thread is kept.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException if the request failed or was cancelled
+    */
+   public synchronized boolean waitForCompletion (long timeout)
+      throws OneWireIOException, OneWireException
+   {
+      long end = System.currentTimeMillis() + timeout;
+
+      while (!done)
+      {
+         long wait = 0;
+
+         if (timeout > 0)
+         {
+            wait = end - System.currentTimeMillis();
+
+            if (wait <= 0)
+               return false;
+         }
+
+         try
+         {
+            wait(wait);
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+
+            return false;
+         }
+      }
+
+      if (exception instanceof OneWireIOException)
+         throw ( OneWireIOException ) exception;
+      else if (exception != null)
+         throw exception;
+
+      return true;
+   }
+
+   /**
+    * Marks the request as done, used by the scheduler.
+    */
+   synchronized void setDone (OneWireException e)
+   {
+      exception = e;
+      done      = true;
+
+      notifyAll();
+   }
+}
@@ -0,0 +1,395 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.util.Vector;
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.container.MemoryBank;
+
+
+/**
+ * Schedules 1-Wire work from many application threads by priority.
+ * Work is submitted as a {@link BusOperation BusOperation} with a
+ * priority, and a {@link BusRequest BusRequest} is returned right away.
+ * The scheduler thread runs one step of the most urgent request at a
+ * time, with exclusive use of the adapter, and releases the adapter
+ * between steps.
+ *
+ * <P>Because long operations are split into steps, an urgent request
+ * waits for at most one step of a less urgent one.  For example, a
+ * mission log read from a memory bank with <code>submitRead</code> is
+ * done in chunks of <code>getChunkSize()</code> bytes, so an alarm
+ * check submitted with <code>PRIORITY_CRITICAL</code> runs after the
+ * current chunk instead of after the whole log.  Requests of the same
+ * priority run in the order they were submitted.</P>
+ *
+ * <P>The scheduler is a <code>Runnable</code> and must be started in a
+ * thread of its own.  Threads that use the adapter directly still work;
+ * they take turns with the scheduler at each step.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   BusScheduler scheduler = new BusScheduler(adapter);
+ *   (new Thread(scheduler)).start();
+ *
+ *   // background download of a log
+ *   BusRequest download = scheduler.submitRead(logBank, 0, log, 0,
+ *                            log.length, BusScheduler.PRIORITY_BULK);
+ *
+ *   // alarm check, runs between the chunks of the download
+ *   BusRequest alarm = scheduler.submit(new BusOperation()
+ *      {
+ *         public boolean runStep (DSPortAdapter adapter)
+ *            throws OneWireException
+ *         {
+ *            alarming = adapter.isAlarming(address);
+ *            return true;
+ *         }
+ *      }, BusScheduler.PRIORITY_CRITICAL);
+ *
+ *   alarm.waitForCompletion(0);
+ *   download.waitForCompletion(0);
+ *
+ *   scheduler.killScheduler();
+ * </CODE> </PRE>
+ *
+ * @see BusOperation
+ * @see BusRequest
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class BusScheduler
+   implements Runnable
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Priority for bulk transfers, such as log downloads */
+   public static final int PRIORITY_BULK = 1;
+
+   /** Priority for normal device access */
+   public static final int PRIORITY_NORMAL = 5;
+
+   /** Priority for latency critical access, such as alarm checks */
+   public static final int PRIORITY_CRITICAL = 10;
+
+   /** Default number of bytes read in each step of <code>submitRead</code> */
+   public static final int DEFAULT_CHUNK_SIZE = 32;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** The adapter the requests run on */
+   private final DSPortAdapter adapter;
+
+   /** Requests waiting to run their next step */
+   private final Vector pending = new Vector();
+
+   /** Number of requests submitted, for ordering equal priorities */
+   private long submitted = 0;
+
+   /** Bytes read in each step of <code>submitRead</code> */
+   private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+   /** Flags for stopping the scheduler thread */
+   protected volatile boolean keepRunning = true, hasCompletelyStopped = false;
+
+   //--------
+   //-------- Constructor
+   //--------
+
+   /**
+    * Constructs a scheduler for an adapter.
+    *
+    * @param adapter the adapter to run the requests on
+    */
+   public BusScheduler (DSPortAdapter adapter)
+   {
+      this.adapter = adapter;
+   }
+
+   //--------
+   //-------- Submit methods
+   //--------
+
+   /**
+    * Submits an operation.
+    *
+    * @param  operation  operation to run
+    * @param  priority   priority, higher values run first
+    *
+    * @return the request, done when the operation is complete
+    */
+   public BusRequest submit (BusOperation operation, int priority)
+   {
+      BusRequest request;
+
+      synchronized (pending)
+      {
+         request = new BusRequest(operation, priority, submitted++);
+
+         if (keepRunning)
+         {
+            pending.addElement(request);
+            pending.notifyAll();
+
+            return request;
+         }
+      }
+
+      request.setDone(new OneWireException("BusScheduler-scheduler stopped"));
+
+      return request;
+   }
+
+   /**
+    * Submits a read from a memory bank, done in steps of
+    * <code>getChunkSize()</code> bytes.  Each step is a separate read,
+    * so the bank is not read with 'readContinue'.
+    *
+    * @param  bank       memory bank to read
+    * @param  startAddr  starting address in the bank
+    * @param  readBuf    buffer for the data read
+    * @param  offset     offset into readBuf to place the data
+    * @param  len        number of bytes to read
+    * @param  priority   priority, higher values run first
+    *
+    * @return the request, done when all of the data is read
+    */
+   public BusRequest submitRead (MemoryBank bank, int startAddr,
+                                 byte[] readBuf, int offset, int len,
+                                 int priority)
+   {
+      return submit(new ChunkedRead(bank, startAddr, readBuf, offset, len,
+                                    chunkSize), priority);
+   }
+
+   /**
+    * Sets the number of bytes read in each step of reads submitted with
+    * <code>submitRead</code> after this call.  Smaller chunks let urgent
+    * requests in sooner, larger chunks read faster.
+    *
+    * @param size bytes per step, at least 1
+    */
+   public void setChunkSize (int size)
+   {
+      if (size < 1)
+         throw new IllegalArgumentException(
+            "BusScheduler-chunk size must be at least 1");
+
+      chunkSize = size;
+   }
+
+   /**
+    * Gets the number of bytes read in each step of <code>submitRead</code>.
+    *
+    * @return bytes per step
+    */
+   public int getChunkSize ()
+   {
+      return chunkSize;
+   }
+
+   //--------
+   //-------- Scheduler thread methods
+   //--------
+
+   /**
+    * Stops the scheduler thread.  Requests that are still pending are
+    * done with an exception.
+    */
+   public void killScheduler ()
+   {
+      keepRunning = false;
+
+      synchronized (pending)
+      {
+         pending.notifyAll();
+      }
+
+      // wait for the scheduler thread to stop, with a timeout of 5 seconds
+      int i = 0;
+      while (!hasCompletelyStopped && i++ < 500)
+         try{Thread.sleep(10);}catch(Exception e){;}
+   }
+
+   /**
+    * Scheduler thread.  Runs one step of the most urgent pending
+    * request at a time.
+    */
+   public void run ()
+   {
+      hasCompletelyStopped = false;
+
+      while (keepRunning)
+      {
+         BusRequest next = null;
+
+         synchronized (pending)
+         {
+            // find the most urgent request, the oldest if there is a tie
+            for (int i = 0; i < pending.size(); i++)
+            {
+               BusRequest r = ( BusRequest ) pending.elementAt(i);
+
+               if ((next == null) || (r.getPriority() > next.getPriority())
+                       || ((r.getPriority() == next.getPriority())
+                           && (r.sequence < next.sequence)))
+                  next = r;
+            }
+
+            if (next == null)
+            {
+               try
+               {
+                  pending.wait();
+               }
+               catch (InterruptedException ie)
+               {
+                  ;
+               }
+
+               continue;
+            }
+
+            pending.removeElement(next);
+         }
+
+         process(next);
+      }
+
+      // fail anything left
+      synchronized (pending)
+      {
+         for (int i = 0; i < pending.size(); i++)
+            (( BusRequest ) pending.elementAt(i)).setDone(
+               new OneWireException("BusScheduler-scheduler stopped"));
+
+         pending.removeAllElements();
+      }
+
+      hasCompletelyStopped = true;
+   }
+
+   /**
+    * Runs the next step of a request with exclusive use of the adapter.
+    */
+   private void process (BusRequest request)
+   {
+      if (request.isCancelled())
+      {
+         request.setDone(new OneWireException("BusScheduler-request cancelled"));
+
+         return;
+      }
+
+      try
+      {
+         boolean complete;
+
+         adapter.beginExclusive(true);
+
+         try
+         {
+            complete = request.getOperation().runStep(adapter);
+         }
+         finally
+         {
+            adapter.endExclusive();
+         }
+
+         if (complete)
+            request.setDone(null);
+         else
+         {
+            // wait for the next turn, behind anything more urgent
+            synchronized (pending)
+            {
+               pending.addElement(request);
+            }
+         }
+      }
+      catch (OneWireException owe)
+      {
+         request.setDone(owe);
+      }
+      catch (RuntimeException re)
+      {
+         request.setDone(new OneWireException(re.toString()));
+      }
+   }
+
+   //--------
+   //-------- Inner classes
+   //--------
+
+   /**
+    * Reads a memory bank one chunk per step.
+    */
+   private static class ChunkedRead
+      implements BusOperation
+   {
+      private final MemoryBank bank;
+      private final byte[]     readBuf;
+      private final int        chunkSize;
+      private int              address, offset, remaining;
+
+      ChunkedRead (MemoryBank bank, int startAddr, byte[] readBuf,
+                   int offset, int len, int chunkSize)
+      {
+         this.bank      = bank;
+         this.readBuf   = readBuf;
+         this.chunkSize = chunkSize;
+         this.address   = startAddr;
+         this.offset    = offset;
+         this.remaining = len;
+      }
+
+      public boolean runStep (DSPortAdapter adapter)
+         throws OneWireException
+      {
+         int len = Math.min(chunkSize, remaining);
+
+         if (len > 0)
+            bank.read(address, false, readBuf, offset, len);
+
+         address   += len;
+         offset    += len;
+         remaining -= len;
+
+         return (remaining == 0);
+      }
+   }
+}
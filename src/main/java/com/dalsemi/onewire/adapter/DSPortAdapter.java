@@ -35,6 +35,7 @@ import com.dalsemi.onewire.utils.*;
 import com.dalsemi.onewire.OneWireException;
 import java.util.Vector;
 import java.util.Hashtable;
+import java.util.BitSet;
 
 
 /**
@@ -257,6 +258,18 @@ public abstract class DSPortAdapter
     */
    private byte[] exclude;
 
+   /**
+    * Receiver of operation counts and timings, or null if not measured
+    */
+   private volatile AdapterMetrics metrics = null;
+
+   /**
+    * Number of composite operations, such as select, in progress in each
+    * thread, as an int[1].  The steps of a composite operation are not
+    * measured on their own.
+    */
+   private final ThreadLocal compositeDepth = new ThreadLocal();
+
    //--------
    //-------- Methods
    //--------
@@ -815,6 +828,60 @@ public abstract class DSPortAdapter
       return isPresent(Address.toByteArray(address));
    }
 
+   /**
+    * Verifies which of many iButtons or 1-Wire devices are present on
+    * the 1-Wire Network, in one call.  This does not affect the 'current'
+    * device state information used in searches (findNextDevice...).<p>
+    *
+    * This implementation puts a reset and a Search ROM pass along each
+    * address into one {@link TransactionBatch TransactionBatch}, so
+    * adapters that execute a batch in a few round-trips verify the whole
+    * list that way.  Adapters may override it to do better still.
+    *
+    * @param  addresses  device addresses to verify are present
+    *
+    * @return  a <code>BitSet</code> with bit <code>i</code> set if the
+    *          device at <code>addresses[i]</code> is present
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    *
+    * @see   com.dalsemi.onewire.utils.Address
+    */
+   public BitSet isPresent (long[] addresses)
+      throws OneWireIOException, OneWireException
+   {
+      BitSet present = new BitSet(addresses.length);
+
+      if (addresses.length == 0)
+         return present;
+
+      TransactionBatch batch = new TransactionBatch(addresses.length * 2,
+                                  addresses.length * SearchPass.PASS_LENGTH);
+      byte[]           pass  = new byte [SearchPass.PASS_LENGTH];
+
+      for (int i = 0; i < addresses.length; i++)
+      {
+         SearchPass.build(addresses [i], pass, 0);
+         batch.addReset();
+         batch.addBlock(pass, 0, SearchPass.PASS_LENGTH);
+      }
+
+      executeBatch(batch);
+
+      byte[] data = batch.getData();
+
+      for (int i = 0; i < addresses.length; i++)
+      {
+         if ((batch.getResetResult(i * 2) != RESET_NOPRESENCE)
+                 && (SearchPass.check(addresses [i], -1L, data,
+                        batch.getStepOffset(i * 2 + 1)) == SearchPass.PRESENT))
+            present.set(i);
+      }
+
+      return present;
+   }
+
    /**
     * Verifies that the iButton or 1-Wire device specified is present
     * on the 1-Wire Network and in an alarm state. This does not
@@ -908,16 +975,40 @@ public abstract class DSPortAdapter
    public boolean select (byte[] address)
       throws OneWireIOException, OneWireException
    {
-      // send 1-Wire Reset
-      int rslt = reset();
+      AdapterMetrics m     = metrics;
+      long           start = (m == null) ? 0 : System.nanoTime();
 
-      // broadcast the MATCH ROM command and address
-      byte[] send_packet = new byte [9];
+      int    rslt;
+      int[]  depth = null;
+
+      // only the thread measuring this select leaves out its steps
+      if (m != null)
+      {
+         depth = getCompositeDepth();
+         depth [0]++;
+      }
+
+      try
+      {
+         // send 1-Wire Reset
+         rslt = reset();
 
-      send_packet [0] = 0x55;   // MATCH ROM command
+         // broadcast the MATCH ROM command and address
+         byte[] send_packet = new byte [9];
 
-      System.arraycopy(address, 0, send_packet, 1, 8);
-      dataBlock(send_packet, 0, 9);
+         send_packet [0] = 0x55;   // MATCH ROM command
+
+         System.arraycopy(address, 0, send_packet, 1, 8);
+         dataBlock(send_packet, 0, 9);
+      }
+      finally
+      {
+         if (depth != null)
+            depth [0]--;
+      }
+
+      if (m != null)
+         m.operation(AdapterMetrics.SELECT, System.nanoTime() - start, 9);
 
       // success if any device present on 1-Wire Network
       return ((rslt == RESET_PRESENCE) || (rslt == RESET_ALARM));
@@ -977,6 +1068,39 @@ public abstract class DSPortAdapter
       return select(Address.toByteArray(address));
    }
 
+   /**
+    * Selects the specified iButton or 1-Wire device and then sends and
+    * receives a block of data.  If the select finds no devices the data
+    * block is not sent.  Adapters that can do both in one operation,
+    * such as a <code>NetAdapter</code>, override this method.
+    *
+    * @param  address    address of iButton or 1-Wire device to select
+    * @param  dataBlock  array of data to transfer to and from the 1-Wire
+    *                    Network
+    * @param  off        offset into the array of data to start
+    * @param  len        length of data to send / receive starting at 'off'
+    *
+    * @return  <code>true</code> if the device was selected and the block
+    *          was sent, <code>false</code> otherwise
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    *
+    * @see #select(byte[])
+    * @see #dataBlock(byte[],int,int)
+    */
+   public boolean selectDataBlock (byte[] address, byte[] dataBlock, int off,
+                                   int len)
+      throws OneWireIOException, OneWireException
+   {
+      if (!select(address))
+         return false;
+
+      dataBlock(dataBlock, off, len);
+
+      return true;
+   }
+
    /**
     * Selects the specified iButton or 1-Wire device by broadcasting its
     * address.  This operation is refered to a 'MATCH ROM' operation
@@ -1222,6 +1346,49 @@ public abstract class DSPortAdapter
    public abstract boolean beginExclusive (boolean blocking)
       throws OneWireException;
 
+   /**
+    * Gets exclusive use of the 1-Wire to communicate with an iButton or
+    * 1-Wire Device, waiting at most <code>timeout</code> milliseconds for
+    * another thread to relinquish it.  Adapters that arbitrate with an
+    * {@link AdapterLock} wait in line for the adapter.  This default
+    * implementation retries <code>beginExclusive(false)</code> until the
+    * timeout passes.
+    *
+    * @param timeout milliseconds to wait, 0 to not wait at all, or
+    *                <code>AdapterLock.WAIT_FOREVER</code>
+    * @return <code>true</code> if an exclusive session with the adapter
+    *         was aquired
+    *
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean beginExclusive (long timeout)
+      throws OneWireException
+   {
+      if (timeout < 0)
+         return beginExclusive(true);
+
+      long deadline = System.currentTimeMillis() + timeout;
+
+      while (!beginExclusive(false))
+      {
+         long remaining = deadline - System.currentTimeMillis();
+
+         if (remaining <= 0)
+            return false;
+
+         try
+         {
+            Thread.sleep(Math.min(remaining, 10));
+         }
+         catch (InterruptedException e)
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
    /**
     * Relinquishes exclusive control of the 1-Wire Network.
     * This command dynamically marks the end of a critical section and
@@ -1356,6 +1523,50 @@ public abstract class DSPortAdapter
    public abstract int reset ()
       throws OneWireIOException, OneWireException;
 
+   /**
+    * Executes all of the steps of a transaction batch (resets, selects
+    * and data blocks) and leaves the results in the batch.  Adapters
+    * that can combine several 1-Wire operations into one communication
+    * with the hardware or host override this method to pack the batch
+    * into as few round-trips as possible.  This default implementation
+    * performs the steps one at a time with <code>reset()</code> and
+    * <code>dataBlock()</code>.
+    *
+    * <P>A select step does not fail if no device is present, the reset
+    * result is recorded in the batch and can be checked with
+    * <code>TransactionBatch.isSelected(int)</code>.</P>
+    *
+    * @param  batch  the batch of steps to execute
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    *
+    * @see TransactionBatch
+    */
+   public void executeBatch (TransactionBatch batch)
+      throws OneWireIOException, OneWireException
+   {
+      byte[] data = batch.getData();
+
+      for (int i = 0; i < batch.getStepCount(); i++)
+      {
+         switch (batch.getStepType(i))
+         {
+
+            case TransactionBatch.STEP_RESET :
+               batch.setResetResult(i, reset());
+               break;
+            case TransactionBatch.STEP_SELECT :
+               batch.setResetResult(i, reset());
+               dataBlock(data, batch.getStepOffset(i), batch.getStepLength(i));
+               break;
+            case TransactionBatch.STEP_BLOCK :
+               dataBlock(data, batch.getStepOffset(i), batch.getStepLength(i));
+               break;
+         }
+      }
+   }
+
    //--------
    //-------- 1-Wire Network power methods
    //--------
@@ -1568,6 +1779,89 @@ public abstract class DSPortAdapter
       return SPEED_REGULAR;
    }
 
+   //--------
+   //-------- Metrics
+   //--------
+
+   /**
+    * Sets the receiver of the counts and timings of the operations
+    * this adapter does, such as an <code>AdapterStatistics</code>.
+    * With no metrics set, which is the default, nothing is measured.
+    *
+    * @param  newMetrics  receiver of the metrics, or <code>null</code>
+    *                     to stop measuring
+    *
+    * @see AdapterStatistics
+    */
+   public void setMetrics (AdapterMetrics newMetrics)
+   {
+      metrics = newMetrics;
+   }
+
+   /**
+    * Gets the receiver of the counts and timings of the operations this
+    * adapter does.
+    *
+    * @return the receiver of the metrics, or <code>null</code> if not
+    *         measured
+    */
+   public AdapterMetrics getMetrics ()
+   {
+      return metrics;
+   }
+
+   /**
+    * Gets the receiver of the metrics for a single operation.  Returns
+    * <code>null</code> while the calling thread is inside a composite
+    * operation such as select, so that its reset and data block are
+    * counted only as part of it.
+    *
+    * @return the receiver of the metrics, or <code>null</code> if this
+    *         operation is not measured
+    */
+   protected AdapterMetrics getOperationMetrics ()
+   {
+      AdapterMetrics m = metrics;
+
+      if (m == null)
+         return null;
+
+      int[] depth = ( int[] ) compositeDepth.get();
+
+      return ((depth == null) || (depth [0] == 0)) ? m : null;
+   }
+
+   /**
+    * Gets the composite operation depth of the calling thread.
+    */
+   private int[] getCompositeDepth ()
+   {
+      int[] depth = ( int[] ) compositeDepth.get();
+
+      if (depth == null)
+      {
+         depth = new int [1];
+
+         compositeDepth.set(depth);
+      }
+
+      return depth;
+   }
+
+   /**
+    * Reports an event, such as a CRC failure found by a container, to
+    * the metrics of this adapter.  Does nothing if no metrics are set.
+    *
+    * @param  event  the event, such as <code>AdapterMetrics.CRC_FAILURE</code>
+    */
+   public void reportEvent (int event)
+   {
+      AdapterMetrics m = metrics;
+
+      if (m != null)
+         m.event(event);
+   }
+
    //--------
    //-------- Misc
    //--------
@@ -69,6 +69,11 @@ public class DumbAdapter extends DSPortAdapter
 
    private Vector containers = new Vector();
 
+   /**
+    * Lock for exclusive use of this adapter
+    */
+   private final AdapterLock exclusiveLock = new AdapterLock();
+
    /**
     * Adds a <code>OneWireContainer</code> to the list of containers that
     * this adapter object will find.
@@ -783,25 +788,41 @@ public class DumbAdapter extends DSPortAdapter
    //--------
 
    /**
-    * This method does nothing in <code>DumbAdapter</code>.
+    * Gets exclusive use of the <code>DumbAdapter</code>.  The other
+    * methods of <code>DumbAdapter</code> do not check it, but threads
+    * sharing the adapter can use it to take turns.
     *
     * @param blocking <code>true</code> if want to block waiting
     *                 for an excluse access to the adapter
-    * @return <code>true</code>
+    * @return <code>true</code> if an exclusive session with the adapter
+    *         was aquired
     */
    public boolean beginExclusive (boolean blocking)
    {
-        //DEBUG!!! RIGHT NOW THIS IS NOT IMPLEMENTED!!!
-        return true;
+        return exclusiveLock.lock(blocking);
    }
 
    /**
-    * This method does nothing in <code>DumbAdapter</code>.
+    * Gets exclusive use of the <code>DumbAdapter</code>, waiting at
+    * most <code>timeout</code> milliseconds for it.
+    *
+    * @param timeout milliseconds to wait, 0 to not wait at all, or
+    *                <code>AdapterLock.WAIT_FOREVER</code>
+    * @return <code>true</code> if an exclusive session with the adapter
+    *         was aquired
+    */
+   public boolean beginExclusive (long timeout)
+   {
+        return exclusiveLock.tryLock(timeout);
+   }
+
+   /**
+    * Relinquishes exclusive use of the <code>DumbAdapter</code>.
     *
     */
    public void endExclusive ()
    {
-        //DEBUG!!! RIGHT NOW THIS IS NOT IMPLEMENTED!!!
+        exclusiveLock.unlock();
    }
 
    //--------
@@ -0,0 +1,366 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.util.Vector;
+import com.dalsemi.onewire.OneWireException;
+
+
+/**
+ * Searches a 1-Wire Network again and again, cheaply, by remembering the
+ * devices found the last time.  Instead of a full search, each cycle
+ * does one Search ROM pass along the known address of every device, all
+ * in a single {@link TransactionBatch TransactionBatch}, which most
+ * adapters send in a few round-trips.  A device is still present if its
+ * pass reads back its whole address.
+ *
+ * <P>Each pass also shows the conflict bits along its path.  A new
+ * device has a longest common prefix with some known device, and the
+ * pass of that device sees a conflict (or only the other bit value) at
+ * the first bit where they differ, where no known device branches off.
+ * Only then is a full search done, to find the new devices.  On a
+ * network that does not change, no full search is done at all.</P>
+ *
+ * <P>Like <code>findFirstDevice</code>, the search should be done with
+ * exclusive use of the adapter.  It finds all devices, at the current
+ * speed, and a full search resets the adapter to search all devices of
+ * all families.  Searches that only find alarming devices or some
+ * families can not be verified this way.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   IncrementalSearch search = new IncrementalSearch(adapter);
+ *   Vector arrivals = new Vector(), departures = new Vector();
+ *
+ *   adapter.beginExclusive(true);
+ *   try
+ *   {
+ *      search.search(arrivals, departures);
+ *   }
+ *   finally
+ *   {
+ *      adapter.endExclusive();
+ *   }
+ * </CODE> </PRE>
+ *
+ * @see DSPortAdapter#findFirstDevice()
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class IncrementalSearch
+{
+
+   //--------
+   //-------- Finals
+   //--------
+
+   /** Passes sent in one batch */
+   private static final int PASSES_PER_BATCH = 16;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** The adapter to search */
+   private final DSPortAdapter adapter;
+
+   /** Addresses found by the last search */
+   private long[] known = new long [0];
+
+   /**
+    * For each known device, a bit for each address bit where another
+    * known device branches off its path
+    */
+   private long[] branches = new long [0];
+
+   /** False until the first search, or after <code>reset</code> */
+   private boolean valid = false;
+
+   /** Batch reused by every cycle */
+   private final TransactionBatch batch =
+      new TransactionBatch(PASSES_PER_BATCH * 2,
+                           PASSES_PER_BATCH * SearchPass.PASS_LENGTH);
+
+   /** Packet for one pass, reused */
+   private final byte[] pass = new byte [SearchPass.PASS_LENGTH];
+
+   /** Statistics, number of searches and of full searches */
+   private int searchCount = 0, fullSearchCount = 0;
+
+   //--------
+   //-------- Constructor
+   //--------
+
+   /**
+    * Constructs an incremental search of an adapter.
+    *
+    * @param adapter the adapter to search
+    */
+   public IncrementalSearch (DSPortAdapter adapter)
+   {
+      this.adapter = adapter;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Searches the 1-Wire Network, reporting the changes since the last
+    * search.  The first search is a full search, and every device is an
+    * arrival.
+    *
+    * @param  arrivals    gets a <code>Long</code> address for each new
+    *                     device, can be <code>null</code>
+    * @param  departures  gets a <code>Long</code> address for each device
+    *                     that is gone, can be <code>null</code>
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void search (Vector arrivals, Vector departures)
+      throws OneWireIOException, OneWireException
+   {
+      searchCount++;
+
+      if (!valid)
+      {
+         fullSearch(arrivals, departures);
+
+         return;
+      }
+
+      if (known.length == 0)
+      {
+         // nothing to verify, just look for presence pulses
+         if (adapter.reset() != DSPortAdapter.RESET_NOPRESENCE)
+            fullSearch(arrivals, departures);
+
+         return;
+      }
+
+      boolean[] present = new boolean [known.length];
+
+      for (int first = 0; first < known.length; first += PASSES_PER_BATCH)
+      {
+         int count = Math.min(PASSES_PER_BATCH, known.length - first);
+
+         batch.clear();
+
+         for (int i = 0; i < count; i++)
+         {
+            SearchPass.build(known [first + i], pass, 0);
+            batch.addReset();
+            batch.addBlock(pass, 0, SearchPass.PASS_LENGTH);
+         }
+
+         adapter.executeBatch(batch);
+
+         byte[] data = batch.getData();
+
+         for (int i = 0; i < count; i++)
+         {
+            int d = first + i;
+
+            if (batch.getResetResult(i * 2) == DSPortAdapter.RESET_NOPRESENCE)
+               continue;
+
+            int result = SearchPass.check(known [d], branches [d], data,
+                                          batch.getStepOffset(i * 2 + 1));
+
+            if (result == SearchPass.UNKNOWN_BRANCH)
+            {
+               // a device that is not known, find it
+               fullSearch(arrivals, departures);
+
+               return;
+            }
+
+            present [d] = (result == SearchPass.PRESENT);
+         }
+      }
+
+      // only departures, drop them from the known devices
+      int count = 0;
+
+      for (int d = 0; d < known.length; d++)
+      {
+         if (present [d])
+            count++;
+         else if (departures != null)
+            departures.addElement(new Long(known [d]));
+      }
+
+      if (count < known.length)
+      {
+         long[] temp = new long [count];
+
+         count = 0;
+
+         for (int d = 0; d < known.length; d++)
+            if (present [d])
+               temp [count++] = known [d];
+
+         setKnown(temp);
+      }
+   }
+
+   /**
+    * Forgets the known devices, so the next search is a full search.
+    */
+   public void reset ()
+   {
+      valid = false;
+   }
+
+   /**
+    * Gets the addresses of the devices found by the last search.
+    *
+    * @return the addresses
+    */
+   public long[] getDeviceAddresses ()
+   {
+      long[] addresses = new long [known.length];
+
+      System.arraycopy(known, 0, addresses, 0, known.length);
+
+      return addresses;
+   }
+
+   /**
+    * Gets the number of searches done.
+    *
+    * @return number of searches
+    */
+   public int getSearchCount ()
+   {
+      return searchCount;
+   }
+
+   /**
+    * Gets the number of searches that had to be full searches.
+    *
+    * @return number of full searches
+    */
+   public int getFullSearchCount ()
+   {
+      return fullSearchCount;
+   }
+
+   //--------
+   //-------- Support methods
+   //--------
+
+   /**
+    * Does a full search, and reports the differences to the known
+    * devices.
+    */
+   private void fullSearch (Vector arrivals, Vector departures)
+      throws OneWireIOException, OneWireException
+   {
+      fullSearchCount++;
+
+      adapter.setSearchAllDevices();
+      adapter.targetAllFamilies();
+
+      long[] found = new long [Math.max(known.length + 4, 16)];
+      int    count = 0;
+
+      for (boolean more = adapter.findFirstDevice(); more;
+              more = adapter.findNextDevice())
+      {
+         if (count == found.length)
+         {
+            long[] temp = new long [count * 2];
+
+            System.arraycopy(found, 0, temp, 0, count);
+
+            found = temp;
+         }
+
+         found [count++] = adapter.getAddressAsLong();
+      }
+
+      long[] temp = new long [count];
+
+      System.arraycopy(found, 0, temp, 0, count);
+
+      // compare with the known devices
+      if (arrivals != null)
+         for (int i = 0; i < count; i++)
+            if (!valid || (indexOf(known, known.length, temp [i]) < 0))
+               arrivals.addElement(new Long(temp [i]));
+
+      if ((departures != null) && valid)
+         for (int d = 0; d < known.length; d++)
+            if (indexOf(temp, count, known [d]) < 0)
+               departures.addElement(new Long(known [d]));
+
+      setKnown(temp);
+
+      valid = true;
+   }
+
+   /**
+    * Sets the known devices, and finds the bits where their paths
+    * branch off from each other.
+    */
+   private void setKnown (long[] addresses)
+   {
+      known    = addresses;
+      branches = new long [addresses.length];
+
+      for (int i = 0; i < addresses.length; i++)
+         for (int j = i + 1; j < addresses.length; j++)
+         {
+            // the first bit where they differ, in search order
+            long diff = addresses [i] ^ addresses [j];
+
+            diff &= -diff;
+
+            branches [i] |= diff;
+            branches [j] |= diff;
+         }
+   }
+
+   /**
+    * Finds an address in the first <code>count</code> entries of an array.
+    */
+   private static int indexOf (long[] addresses, int count, long address)
+   {
+      for (int i = 0; i < count; i++)
+         if (addresses [i] == address)
+            return i;
+
+      return -1;
+   }
+}
@@ -665,6 +665,28 @@ public class LSerialAdapter
       return serial.beginExclusive(blocking);
    }
 
+   /**
+    * Gets exclusive use of the 1-Wire to communicate with an iButton or
+    * 1-Wire Device, waiting at most <code>timeout</code> milliseconds for
+    * another thread to relinquish it.  Threads waiting for the port get
+    * it in the order they asked for it.
+    *
+    * @param timeout milliseconds to wait, 0 to not wait at all, or
+    *                <code>AdapterLock.WAIT_FOREVER</code>
+    * @return <code>true</code> if an exclusive session with the adapter
+    *         was aquired
+    *
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean beginExclusive (long timeout)
+      throws OneWireException
+   {
+      if (serial == null)
+         throw new OneWireException("DS9097EAdapter: port not selected ");
+
+      return serial.beginExclusive(timeout);
+   }
+
    /**
     *  Relinquishes exclusive control of the 1-Wire Network.
     *  This command dynamically marks the end of a critical section and
@@ -695,16 +717,12 @@ public class LSerialAdapter
          return;
       else
       {
-         while(!haveLocalUse)
+         // wait in line for the port, instead of polling for it
+         serial.beginExclusive(true);
+
+         synchronized (syncObject)
          {
-            synchronized (syncObject)
-            {
-               haveLocalUse = serial.beginExclusive(false);
-            }
-            if(!haveLocalUse)
-            {
-               try{Thread.sleep(50);}catch (Exception e){}
-            }
+            haveLocalUse = true;
          }
       }
    }
@@ -165,14 +165,19 @@ public class NetAdapter
    /** Error message when I/O failure occurs */
    protected static final String COMM_FAILED = "IO Error: ";
 
-   /** constant for no exclusive lock */
-   protected static final Integer NOT_OWNED = new Integer(0);
-   /** Keeps hash of current thread for exclusive lock */
-   protected Integer currentThreadHash = NOT_OWNED;
+   /** Lock for exclusive use of this adapter, owned by a thread */
+   protected final AdapterLock exclusiveLock = new AdapterLock();
 
    /** instance for current connection, defaults to EMPTY*/
    protected Connection conn = EMPTY_CONNECTION;
 
+   /**
+    * Lock for the use of the connection.  The connection itself is
+    * replaced when the port is selected again, by a reconnect as well,
+    * so threads waiting for it can't lock the connection object.
+    */
+   protected final Object connLock = new Object();
+
    /** portName For Reconnecting to Host */
    protected String portNameForReconnect = null;
 
@@ -182,6 +187,43 @@ public class NetAdapter
    /** if true, the user used a custom secret */
    protected boolean useCustomSecret = false;
 
+   /** if true, commands without a return value are pipelined */
+   protected boolean pipelined = true;
+
+   /** max number of pipelined commands waiting for their result */
+   protected static final int MAX_PENDING = 64;
+
+   /** first delay before asking the host again for exclusive use, in ms */
+   protected static final int EXCLUSIVE_MIN_DELAY = 1;
+
+   /** longest delay before asking the host again for exclusive use, in ms */
+   protected static final int EXCLUSIVE_MAX_DELAY = 100;
+
+   /** time power delivery started, 0 if not measured */
+   protected long powerDeliveryStart = 0;
+
+   //-------
+   //------- Reconnect variables
+   //-------
+
+   /** if true, a broken connection is re-established in the background */
+   protected boolean autoReconnect = true;
+
+   /** socket read timeout in milliseconds, 0 for none */
+   protected int timeoutMillis = 0;
+
+   /** socket read timeout during the handshake in milliseconds, 0 for none */
+   protected int handshakeTimeoutMillis = 0;
+
+   /** thread re-establishing a broken connection, null if none */
+   protected volatile Thread reconnectThread = null;
+
+   /** first delay between reconnect attempts, in milliseconds */
+   protected static final int RECONNECT_MIN_DELAY = 250;
+
+   /** longest delay between reconnect attempts, in milliseconds */
+   protected static final int RECONNECT_MAX_DELAY = 30000;
+
    //-------
    //------- Multicast variables
    //-------
@@ -209,6 +251,23 @@ public class NetAdapter
       {
          setSecret(DEFAULT_SECRET);
       }
+
+      try
+      {
+         String pipeline = OneWireAccessProvider.getProperty("NetAdapter.Pipeline");
+         if(pipeline!=null)
+            pipelined = !pipeline.equalsIgnoreCase("false");
+
+         String reconnect = OneWireAccessProvider.getProperty("NetAdapter.Reconnect");
+         if(reconnect!=null)
+            autoReconnect = !reconnect.equalsIgnoreCase("false");
+
+         String timeout = OneWireAccessProvider.getProperty("NetAdapter.Timeout");
+         if(timeout!=null)
+            timeoutMillis = Integer.parseInt(timeout.trim());
+      }
+      catch(Throwable t)
+      {;}
    }
 
    /**
@@ -247,11 +306,132 @@ public class NetAdapter
     * string representing the error message.  If it is neither, it
     * wraps an error message indicating that an unspecified error
     * occurred and attemps a reconnect.
+    *
+    * For version 2 connections, the results of all pipelined commands
+    * are read first.  If one of them failed, its error is thrown, and
+    * the result of the last command is skipped.  Version 3 results are
+    * read as whole frames, and <code>conn.input</code> reads the frame.
     */
    private void checkReturnValue(Connection conn)
       throws IOException, OneWireException, OneWireIOException
    {
-      byte retVal = conn.input.readByte();
+      if(conn.version<2)
+      {
+         checkReturnValue(conn, conn.input.readByte());
+         return;
+      }
+
+      OneWireIOException pipelineError = null;
+      while(conn.pending>0)
+      {
+         byte retVal;
+         int id, len;
+         if(conn.version>=3)
+         {
+            id = conn.socketInput.readInt();
+            len = readFrame(conn, conn.socketInput.readInt());
+            retVal = conn.input.readByte();
+         }
+         else
+         {
+            retVal = conn.input.readByte();
+            id = conn.input.readInt();
+            len = conn.input.readInt();
+         }
+         int expectedID = conn.requestID - (--conn.pending);
+
+         if(id!=expectedID)
+         {
+            // lost track of the results, better to reconnect
+            freePort();
+            selectPort(portNameForReconnect);
+
+            throw new OneWireIOException("Request ID mismatch, expected "
+                                         + expectedID + ", received " + id);
+         }
+
+         if(conn.pending>0 || pipelineError!=null)
+         {
+            // result of a pipelined command, or of a command that is
+            // skipped because a pipelined command failed
+            try
+            {
+               checkReturnValue(conn, retVal);
+               if(conn.version<3)
+                  conn.input.readFully(new byte[len]);
+            }
+            catch(OneWireIOException owioe)
+            {
+               if(pipelineError==null)
+                  pipelineError = owioe;
+            }
+         }
+         else
+            checkReturnValue(conn, retVal);
+      }
+
+      if(pipelineError!=null)
+         throw pipelineError;
+   }
+
+   /**
+    * Reads a version 3 result frame into the frame buffer, inflating it
+    * if the host compressed it.
+    *
+    * @param conn the connection
+    * @param length the frame length, as sent by the host
+    *
+    * @return the length of the result
+    */
+   private int readFrame(Connection conn, int length)
+      throws IOException
+   {
+      boolean compressed = (length & FRAME_COMPRESSED)!=0;
+      length &= ~FRAME_COMPRESSED;
+      if(length<=0 || length>MAX_FRAME_LENGTH)
+         throw new IOException("Bad frame length: " + length);
+
+      if(!compressed)
+      {
+         conn.socketInput.readFully(conn.frameInput.getBuffer(length), 0, length);
+         conn.frameInput.setFrame(length);
+         return length;
+      }
+
+      // the length of the result, then the deflated result
+      int resultLength = conn.socketInput.readInt();
+      if(resultLength<=0 || resultLength>MAX_FRAME_LENGTH)
+         throw new IOException("Bad frame length: " + resultLength);
+      length -= 4;
+      if(conn.compressBuffer==null || conn.compressBuffer.length<length)
+         conn.compressBuffer = new byte[Math.max(length, 1024)];
+      conn.socketInput.readFully(conn.compressBuffer, 0, length);
+
+      if(conn.inflater==null)
+         conn.inflater = new java.util.zip.Inflater();
+      conn.inflater.reset();
+      conn.inflater.setInput(conn.compressBuffer, 0, length);
+      try
+      {
+         byte[] result = conn.frameInput.getBuffer(resultLength);
+         if(conn.inflater.inflate(result, 0, resultLength)!=resultLength
+            || !conn.inflater.finished())
+            throw new IOException("Bad compressed frame");
+      }
+      catch(java.util.zip.DataFormatException dfe)
+      {
+         throw new IOException("Bad compressed frame: " + dfe.getMessage());
+      }
+      conn.frameInput.setFrame(resultLength);
+      return resultLength;
+   }
+
+   /**
+    * Checks a return value read from the input stream.
+    */
+   private void checkReturnValue(Connection conn, byte retVal)
+      throws IOException, OneWireException, OneWireIOException
+   {
       if(retVal!=RET_SUCCESS)
       {
          // an error occurred
@@ -276,6 +456,128 @@ public class NetAdapter
       }
    }
 
+   /**
+    * Flushes a command that has no return value other than success or
+    * failure.  On a version 2 connection with pipelining enabled the
+    * result is not read here, but with the next command that has a
+    * return value, so a failure of this command is thrown by a later
+    * command.  Call <code>pingHost()</code> to check the results of all
+    * pipelined commands.
+    */
+   private void deferReturnValue(Connection conn)
+      throws IOException, OneWireException, OneWireIOException
+   {
+      conn.output.flush();
+
+      if(conn.version<2 || !pipelined || conn.pending>=MAX_PENDING)
+         checkReturnValue(conn);
+   }
+
+   /**
+    * Writes a command byte to the output stream, followed by the request
+    * ID for version 2 connections.
+    */
+   private void sendCommand(Connection conn, byte cmd)
+      throws IOException
+   {
+      conn.output.writeByte(cmd);
+
+      if(conn.version>=2)
+      {
+         conn.output.writeInt(++conn.requestID);
+         conn.pending++;
+      }
+   }
+
+   /**
+    * Handles an I/O error on the connection.  The connection is closed,
+    * so later commands fail right away instead of waiting on it, and
+    * unless auto reconnect is turned off, a thread is started to
+    * re-establish it.
+    *
+    * @param ioe the I/O error
+    *
+    * @return the exception to throw
+    */
+   protected OneWireException connectionFailed(IOException ioe)
+   {
+      reportEvent(AdapterMetrics.IO_ERROR);
+
+      synchronized(this)
+      {
+         if(autoReconnect && reconnectThread==null
+            && conn!=EMPTY_CONNECTION && portNameForReconnect!=null)
+         {
+            try
+            {
+               conn.sock.close();
+            }
+            catch(Exception e)
+            {;}
+
+            reconnectThread = new Thread(new Reconnector(), "NetAdapter-reconnect");
+            reconnectThread.setDaemon(true);
+            reconnectThread.start();
+         }
+      }
+
+      return new OneWireException(COMM_FAILED + ioe.getMessage());
+   }
+
+   /**
+    * Re-establishes the connection to the host.  If a thread has
+    * exclusive use of this adapter, exclusive use of the host's adapter
+    * is requested again on the new connection.  If another client got
+    * the host's adapter in the meantime, the thread loses exclusive use.
+    *
+    * @return <code>true</code> if the connection was re-established
+    */
+   private boolean reconnect()
+      throws IOException, OneWireException
+   {
+      if(!selectPort(portNameForReconnect))
+         return false;
+
+      // don't hold the lock's monitor while waiting on the network
+      Thread owner = exclusiveLock.getOwner();
+      if(owner!=null)
+      {
+         boolean bGotServerBlock;
+         synchronized(connLock)
+         {
+            // send beginExclusive command, not blocking
+            sendCommand(conn, CMD_BEGINEXCLUSIVE);
+            conn.output.writeBoolean(false);
+            conn.output.flush();
+
+            // check return value for success
+            checkReturnValue(conn);
+
+            // next parameter should be the return from beginExclusive
+            bGotServerBlock = conn.input.readBoolean();
+         }
+
+         if(!bGotServerBlock)
+         {
+            // another client has the adapter now
+            exclusiveLock.release(owner);
+
+            //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
+            if(DEBUG)
+               System.out.println("DEBUG: exclusive use lost by "
+                                  + owner.getName());
+            //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
+         }
+      }
+
+      //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
+      if(DEBUG)
+         System.out.println("DEBUG: reconnected to " + portNameForReconnect);
+      //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
+
+      return true;
+   }
+
    /**
     * Sends a ping to the host, just to keep the connection alive.  Although
     * it currently is not implemented on the standard NetAdapterHost, this
@@ -287,10 +589,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send beginExclusive command
-            conn.output.writeByte(CMD_PINGCONNECTION);
+            sendCommand(conn, CMD_PINGCONNECTION);
             conn.output.flush();
 
             checkReturnValue(conn);
@@ -298,7 +600,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -318,7 +620,7 @@ public class NetAdapter
    public boolean adapterDetected ()
       throws OneWireIOException, OneWireException
    {
-      synchronized(conn)
+      synchronized(connLock)
       {
          return conn!=EMPTY_CONNECTION && conn.sock!=null;
       }
@@ -446,7 +748,7 @@ public class NetAdapter
             socket.joinGroup(group);
 
             // convert the versionUID to a byte[]
-            byte[] versionBytes = Convert.toByteArray(versionUID);
+            byte[] versionBytes = Convert.toByteArray(MIN_VERSION_UID);
 
             // send a packet with the versionUID
             DatagramPacket outPacket
@@ -535,8 +837,10 @@ public class NetAdapter
    public boolean selectPort (String portName)
       throws OneWireIOException, OneWireException
    {
-      synchronized(conn)
+      synchronized(connLock)
       {
+         // keep the whole name, with any custom secret, for reconnecting
+         String fullName = portName;
          Socket s = null;
          try
          {
@@ -576,7 +880,19 @@ public class NetAdapter
             throw new OneWireIOException("Can't reach server: "+ioe.getMessage());
          }
 
-         return selectPort(s);
+         if(!selectPort(s))
+         {
+            try
+            {
+               s.close();
+            }
+            catch(IOException ioe)
+            {;}
+            return false;
+         }
+
+         portNameForReconnect = fullName;
+         return true;
       }
    }
 
@@ -595,13 +911,15 @@ public class NetAdapter
       throws OneWireIOException, OneWireException
    {
       boolean bSuccess = false;
-      synchronized(conn)
+      synchronized(connLock)
       {
          Connection tmpConn = new Connection();
          tmpConn.sock = sock;
 
          try
          {
+            sock.setSoTimeout(handshakeTimeoutMillis>0 ? handshakeTimeoutMillis
+                                                       : timeoutMillis);
             tmpConn.input = new DataInputStream(sock.getInputStream());
             if(BUFFERED_OUTPUT)
             {
@@ -615,10 +933,10 @@ public class NetAdapter
                   = new DataOutputStream(sock.getOutputStream());
             }
 
-            // check host version
+            // check host version, any supported version will do
             int hostVersionUID = tmpConn.input.readInt();
 
-            if(hostVersionUID==versionUID)
+            if(hostVersionUID>=MIN_VERSION_UID && hostVersionUID<=versionUID)
             {
                // tell the server that the versionUID matched
                tmpConn.output.writeByte(RET_SUCCESS);
@@ -639,6 +957,22 @@ public class NetAdapter
                // check to see if it matched
                checkReturnValue(tmpConn);
 
+               // from here on, use the host's protocol version
+               tmpConn.version = hostVersionUID;
+               sock.setSoTimeout(timeoutMillis);
+
+               // version 3 sends commands as frames, and reads results
+               // as frames that the rest of this class parses from memory
+               if(hostVersionUID>=3)
+               {
+                  tmpConn.socketInput = new DataInputStream(
+                     new BufferedInputStream(sock.getInputStream()));
+                  tmpConn.frameInput = new FrameInputStream();
+                  tmpConn.input = new DataInputStream(tmpConn.frameInput);
+                  tmpConn.output = new DataOutputStream(
+                     new FrameOutputStream(tmpConn.output));
+               }
+
                bSuccess = true;
             }
             else
@@ -677,13 +1011,18 @@ public class NetAdapter
    public void freePort ()
       throws OneWireException
    {
+      // stop any reconnect in progress
+      reconnectThread = null;
+
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
-            conn.output.writeByte(CMD_CLOSECONNECTION);
+            sendCommand(conn, CMD_CLOSECONNECTION);
             conn.output.flush();
             conn.sock.close();
+            if(conn.inflater!=null)
+               conn.inflater.end();
             conn = EMPTY_CONNECTION;
          }
       }
@@ -703,7 +1042,7 @@ public class NetAdapter
    public String getPortName ()
       throws OneWireException
    {
-      synchronized(conn)
+      synchronized(connLock)
       {
          if(!adapterDetected())
             return "Not Connected";
@@ -732,10 +1071,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send beginExclusive command
-            conn.output.writeByte(CMD_CANOVERDRIVE);
+            sendCommand(conn, CMD_CANOVERDRIVE);
             conn.output.flush();
 
             // check return value for success
@@ -747,7 +1086,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -766,10 +1105,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send beginExclusive command
-            conn.output.writeByte(CMD_CANHYPERDRIVE);
+            sendCommand(conn, CMD_CANHYPERDRIVE);
             conn.output.flush();
 
             // check return value for success
@@ -781,7 +1120,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -800,10 +1139,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send beginExclusive command
-            conn.output.writeByte(CMD_CANFLEX);
+            sendCommand(conn, CMD_CANFLEX);
             conn.output.flush();
 
             // check return value for success
@@ -815,7 +1154,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -834,10 +1173,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send beginExclusive command
-            conn.output.writeByte(CMD_CANPROGRAM);
+            sendCommand(conn, CMD_CANPROGRAM);
             conn.output.flush();
 
             // check return value for success
@@ -849,7 +1188,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -869,10 +1208,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send beginExclusive command
-            conn.output.writeByte(CMD_CANDELIVERPOWER);
+            sendCommand(conn, CMD_CANDELIVERPOWER);
             conn.output.flush();
 
             // check return value for success
@@ -884,7 +1223,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -906,10 +1245,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send beginExclusive command
-            conn.output.writeByte(CMD_CANDELIVERSMARTPOWER);
+            sendCommand(conn, CMD_CANDELIVERSMARTPOWER);
             conn.output.flush();
 
             // check return value for success
@@ -921,7 +1260,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -940,10 +1279,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send beginExclusive command
-            conn.output.writeByte(CMD_CANBREAK);
+            sendCommand(conn, CMD_CANBREAK);
             conn.output.flush();
 
             // check return value for success
@@ -955,7 +1294,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -976,12 +1315,15 @@ public class NetAdapter
    public boolean findFirstDevice ()
       throws OneWireIOException, OneWireException
    {
+      AdapterMetrics m = getMetrics();
+      long start = (m==null) ? 0 : System.nanoTime();
+
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send findFirstDevice command
-            conn.output.writeByte(CMD_FINDFIRSTDEVICE);
+            sendCommand(conn, CMD_FINDFIRSTDEVICE);
             conn.output.flush();
 
             // check return value for success
@@ -993,7 +1335,12 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
+      }
+      finally
+      {
+         if(m!=null)
+            m.operation(AdapterMetrics.SEARCH, System.nanoTime() - start, 0);
       }
    }
 
@@ -1011,12 +1358,15 @@ public class NetAdapter
    public boolean findNextDevice ()
       throws OneWireIOException, OneWireException
    {
+      AdapterMetrics m = getMetrics();
+      long start = (m==null) ? 0 : System.nanoTime();
+
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send findNextDevice command
-            conn.output.writeByte(CMD_FINDNEXTDEVICE);
+            sendCommand(conn, CMD_FINDNEXTDEVICE);
             conn.output.flush();
 
             // check return value for success
@@ -1028,7 +1378,12 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
+      }
+      finally
+      {
+         if(m!=null)
+            m.operation(AdapterMetrics.SEARCH, System.nanoTime() - start, 0);
       }
    }
 
@@ -1048,10 +1403,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send getAddress command
-            conn.output.writeByte(CMD_GETADDRESS);
+            sendCommand(conn, CMD_GETADDRESS);
             conn.output.flush();
 
             // check return value for success
@@ -1065,6 +1420,112 @@ public class NetAdapter
       { /* drain */ }
    }
 
+   /**
+    * Returns an enumeration of <code>OneWireContainer</code> objects
+    * corresponding to all of the iButtons or 1-Wire devices found on the
+    * 1-Wire Network.  On a version 2 host the whole search is done by the
+    * host, with the current search settings (target and exclude
+    * families, alarming devices only), and all of the addresses are
+    * returned in one reply, instead of a round-trip for every
+    * findNextDevice and getAddress.
+    *
+    * @return  an enumeration of <code>OneWireContainer</code> objects
+    *          found on the 1-Wire Network
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public Enumeration getAllDeviceContainers ()
+      throws OneWireIOException, OneWireException
+   {
+      Vector ibutton_vector = new Vector();
+      try
+      {
+         synchronized(connLock)
+         {
+            if(conn.version<2)
+               return super.getAllDeviceContainers();
+
+            // send searchAll command
+            sendCommand(conn, CMD_SEARCHALL);
+            conn.output.flush();
+
+            // check return value for success
+            checkReturnValue(conn);
+
+            // next is the number of devices, followed by the addresses
+            int count = conn.input.readInt();
+            for(int i=0; i<count; i++)
+            {
+               byte[] address = new byte[8];
+               conn.input.readFully(address, 0, 8);
+               ibutton_vector.addElement(getDeviceContainer(address));
+            }
+         }
+      }
+      catch(IOException ioe)
+      {
+         throw connectionFailed(ioe);
+      }
+
+      return ibutton_vector.elements();
+   }
+
+   /**
+    * Verifies which of many iButtons or 1-Wire devices are present on
+    * the 1-Wire Network, in one call.  On a version 2 host the addresses
+    * are sent in one command, the host's adapter verifies all of them,
+    * and the result comes back as one bitmap.
+    *
+    * @param  addresses  device addresses to verify are present
+    *
+    * @return  a <code>BitSet</code> with bit <code>i</code> set if the
+    *          device at <code>addresses[i]</code> is present
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public BitSet isPresent (long[] addresses)
+      throws OneWireIOException, OneWireException
+   {
+      BitSet present = new BitSet(addresses.length);
+      try
+      {
+         synchronized(connLock)
+         {
+            if(conn.version<2)
+               return super.isPresent(addresses);
+
+            // send isPresentAll command
+            sendCommand(conn, CMD_ISPRESENTALL);
+            // followed by the number of addresses, then the addresses
+            conn.output.writeInt(addresses.length);
+            for(int i=0; i<addresses.length; i++)
+               conn.output.writeLong(addresses[i]);
+            conn.output.flush();
+
+            // check return value for success
+            checkReturnValue(conn);
+
+            // next is the number of addresses, followed by one bit each
+            int count = conn.input.readInt();
+            byte[] bits = new byte[(count + 7)/8];
+            conn.input.readFully(bits, 0, bits.length);
+            for(int i=0; i<count; i++)
+            {
+               if((bits[i>>>3] & (1 << (i & 7)))!=0)
+                  present.set(i);
+            }
+         }
+      }
+      catch(IOException ioe)
+      {
+         throw connectionFailed(ioe);
+      }
+
+      return present;
+   }
+
    /**
     * Sets the 1-Wire Network search to find only iButtons and 1-Wire
     * devices that are in an 'Alarm' state that signals a need for
@@ -1079,14 +1540,12 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send setSearchOnlyAlarmingDevices command
-            conn.output.writeByte(CMD_SETSEARCHONLYALARMINGDEVICES);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            sendCommand(conn, CMD_SETSEARCHONLYALARMINGDEVICES);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(Exception e)
@@ -1105,14 +1564,12 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send setNoResetSearch command
-            conn.output.writeByte(CMD_SETNORESETSEARCH);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            sendCommand(conn, CMD_SETNORESETSEARCH);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(Exception e)
@@ -1132,14 +1589,12 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send setSearchAllDevices command
-            conn.output.writeByte(CMD_SETSEARCHALLDEVICES);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            sendCommand(conn, CMD_SETSEARCHALLDEVICES);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(Exception e)
@@ -1161,14 +1616,12 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send targetAllFamilies command
-            conn.output.writeByte(CMD_TARGETALLFAMILIES);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            sendCommand(conn, CMD_TARGETALLFAMILIES);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(Exception e)
@@ -1189,16 +1642,14 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send targetFamily command
-            conn.output.writeByte(CMD_TARGETFAMILY);
+            sendCommand(conn, CMD_TARGETFAMILY);
             conn.output.writeInt(1);
             conn.output.writeByte((byte)family);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(Exception e)
@@ -1218,16 +1669,14 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send targetFamily command
-            conn.output.writeByte(CMD_TARGETFAMILY);
+            sendCommand(conn, CMD_TARGETFAMILY);
             conn.output.writeInt(family.length);
             conn.output.write(family, 0, family.length);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(Exception e)
@@ -1249,16 +1698,14 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send excludeFamily command
-            conn.output.writeByte(CMD_EXCLUDEFAMILY);
+            sendCommand(conn, CMD_EXCLUDEFAMILY);
             conn.output.writeInt(1);
             conn.output.writeByte((byte)family);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(Exception e)
@@ -1279,16 +1726,14 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send excludeFamily command
-            conn.output.writeByte(CMD_EXCLUDEFAMILY);
+            sendCommand(conn, CMD_EXCLUDEFAMILY);
             conn.output.writeInt(family.length);
             conn.output.write(family, 0, family.length);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(Exception e)
@@ -1325,98 +1770,145 @@ public class NetAdapter
    public boolean beginExclusive (boolean blocking)
       throws OneWireException
    {
-      boolean bGotLocalBlock = false, bGotServerBlock = false;
-      if (blocking)
+      AdapterMetrics m = getMetrics();
+      long start = (m==null) ? 0 : System.nanoTime();
+      boolean bOwnedBefore = exclusiveLock.isHeldByCurrentThread();
+
+      try
       {
-         while (!beginExclusive())
-         {
-             try{Thread.sleep(50);}catch(Exception e){}
-         }
+         // wait in line behind the other threads of this process
+         if(!exclusiveLock.lock(blocking))
+            return false;
 
-         bGotLocalBlock = true;
+         return beginServerExclusive(blocking, bOwnedBefore);
       }
-      else
-         bGotLocalBlock = beginExclusive();
+      finally
+      {
+         if(m!=null)
+            m.operation(AdapterMetrics.EXCLUSIVE_WAIT,
+                        System.nanoTime() - start, 0);
+      }
+   }
+
+   /**
+    * Gets exclusive use of the 1-Wire to communicate with an iButton or
+    * 1-Wire Device, waiting at most <code>timeout</code> milliseconds for
+    * it.  Threads of this process waiting for the adapter get it in the
+    * order they asked for it.  If another client of the host has the
+    * adapter, the host is asked again, at growing intervals, until the
+    * timeout passes.  If the thread is interrupted while waiting for the
+    * host, <code>false</code> is returned and the interrupt status of
+    * the thread is kept.
+    *
+    * @param timeout milliseconds to wait, 0 to not wait at all, or
+    *                <code>AdapterLock.WAIT_FOREVER</code>
+    * @return <code>true</code> if an exclusive session with the adapter
+    *         was aquired
+    *
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean beginExclusive (long timeout)
+      throws OneWireException
+   {
+      if(timeout<0)
+         return beginExclusive(true);
+
+      AdapterMetrics m = getMetrics();
+      long start = (m==null) ? 0 : System.nanoTime();
+      long deadline = System.currentTimeMillis() + timeout;
+      boolean bOwnedBefore = exclusiveLock.isHeldByCurrentThread();
+      boolean bGotServerBlock = false;
 
       try
       {
-         synchronized(conn)
+         if(!exclusiveLock.tryLock(timeout))
+            return false;
+
+         // ask the host without blocking it, backing off so a long wait
+         // doesn't flood the host with requests
+         int delay = EXCLUSIVE_MIN_DELAY;
+         while(!(bGotServerBlock = beginServerExclusive(false, true)))
          {
-            // send beginExclusive command
-            conn.output.writeByte(CMD_BEGINEXCLUSIVE);
-            conn.output.writeBoolean(blocking);
-            conn.output.flush();
+            long remaining = deadline - System.currentTimeMillis();
+            if(remaining<=0)
+               return false;
 
-            // check return value for success
-            checkReturnValue(conn);
+            try
+            {
+               Thread.sleep(Math.min(remaining, delay));
+            }
+            catch(InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               return false;
+            }
 
-            // next parameter should be the return from beginExclusive
-            bGotServerBlock = conn.input.readBoolean();
+            delay = Math.min(delay*2, EXCLUSIVE_MAX_DELAY);
          }
+
+         return true;
       }
-      catch(IOException ioe)
+      finally
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
-      }
+         // give up the local lock, unless it was owned before
+         if(!bGotServerBlock && !bOwnedBefore)
+            exclusiveLock.unlock();
 
-      // if blocking, I shouldn't get here unless both are true
-      return bGotLocalBlock && bGotServerBlock;
+         if(m!=null)
+            m.operation(AdapterMetrics.EXCLUSIVE_WAIT,
+                        System.nanoTime() - start, 0);
+      }
    }
 
    /**
-    * Gets exclusive use of the 1-Wire to communicate with an iButton or
-    * 1-Wire Device.
-    * This method should be used for critical sections of code where a
-    * sequence of commands must not be interrupted by communication of
-    * threads with other iButtons, and it is permissible to sustain
-    * a delay in the special case that another thread has already been
-    * granted exclusive access and this access has not yet been
-    * relinquished. This is private and non blocking<p>
+    * Asks the host for exclusive use of the adapter, after the local
+    * lock is owned.  The local lock is released again if the host says
+    * no, unless the current thread owned it before.
     *
-    * @return <code>true</code> a exclusive session with the adapter was
-    *         aquired
+    * @param blocking <code>true</code> to wait for the host
+    * @param bOwnedBefore <code>true</code> if the current thread owned
+    *        the local lock before this request
     *
-    * @throws OneWireException
+    * @return <code>true</code> if the host granted exclusive use
     */
-   private boolean beginExclusive ()
+   private boolean beginServerExclusive (boolean blocking, boolean bOwnedBefore)
       throws OneWireException
    {
-      synchronized(currentThreadHash)
+      boolean bGotServerBlock = false;
+      try
       {
-         if (currentThreadHash == NOT_OWNED)
+         synchronized(connLock)
          {
-            // not owned so take
-            currentThreadHash =
-               new Integer(Thread.currentThread().hashCode());
+            // send beginExclusive command
+            sendCommand(conn, CMD_BEGINEXCLUSIVE);
+            conn.output.writeBoolean(blocking);
+            conn.output.flush();
 
-            // provided debug on standard out
-            if (DEBUG)
-            {
-               System.out.println("beginExclusive, now owned by: "
-                                  + Thread.currentThread().getName());
-            }
+            // check return value for success
+            checkReturnValue(conn);
 
-            return true;
+            // next parameter should be the return from beginExclusive
+            bGotServerBlock = conn.input.readBoolean();
          }
-         else if (currentThreadHash.intValue()
-                  == Thread.currentThread().hashCode())
-         {
-            // provided debug on standard out
-            if (DEBUG)
-            {
-               System.out.println("beginExclusive, already owned by: "
-                                  + Thread.currentThread().getName());
-            }
+      }
+      catch(IOException ioe)
+      {
+         throw connectionFailed(ioe);
+      }
+      finally
+      {
+         if(!bGotServerBlock && !bOwnedBefore)
+            exclusiveLock.unlock();
+      }
 
-            // already own
-            return true;
-         }
-         else
-         {
-            // want port but don't own
-            return false;
-         }
+      if (DEBUG)
+      {
+         System.out.println("beginExclusive, "
+                            + (bGotServerBlock ? "now owned by: " : "refused to: ")
+                            + Thread.currentThread().getName());
       }
+
+      return bGotServerBlock;
    }
 
    /**
@@ -1426,11 +1918,10 @@ public class NetAdapter
     */
    public void endExclusive ()
    {
-      synchronized(currentThreadHash)
+      synchronized(exclusiveLock)
       {
          // if own then release
-         if (currentThreadHash!=NOT_OWNED &&
-             currentThreadHash.intValue() == Thread.currentThread().hashCode())
+         if (exclusiveLock.isHeldByCurrentThread())
          {
             if (DEBUG)
             {
@@ -1438,17 +1929,15 @@ public class NetAdapter
                                   + Thread.currentThread().getName());
             }
 
-            currentThreadHash = NOT_OWNED;
+            exclusiveLock.unlock();
             try
             {
-               synchronized(conn)
+               synchronized(connLock)
                {
                   // send endExclusive command
-                  conn.output.writeByte(CMD_ENDEXCLUSIVE);
-                  conn.output.flush();
-
-                  // check return value for success
-                  checkReturnValue(conn);
+                  sendCommand(conn, CMD_ENDEXCLUSIVE);
+                  // check return value now, or with a later command if pipelined
+                  deferReturnValue(conn);
                }
             }
             catch(Exception e)
@@ -1484,12 +1973,15 @@ public class NetAdapter
    public int reset()
       throws OneWireIOException, OneWireException
    {
+      AdapterMetrics m = getOperationMetrics();
+      long start = (m==null) ? 0 : System.nanoTime();
+
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send reset command
-            conn.output.writeByte(CMD_RESET);
+            sendCommand(conn, CMD_RESET);
             conn.output.flush();
 
             // check return value for success
@@ -1501,7 +1993,197 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
+      }
+      finally
+      {
+         if(m!=null)
+            m.operation(AdapterMetrics.RESET, System.nanoTime() - start, 0);
+      }
+   }
+
+   /**
+    * Selects the specified iButton or 1-Wire device by broadcasting its
+    * address.  On a version 2 host this is a single command, instead of
+    * a reset followed by a data block.
+    *
+    * @param  address    address of iButton or 1-Wire device to select
+    *
+    * @return  <code>true</code> if device address was sent,<code>false</code>
+    * otherwise.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean select (byte[] address)
+      throws OneWireIOException, OneWireException
+   {
+      AdapterMetrics m = getMetrics();
+      long start = (m==null) ? 0 : System.nanoTime();
+
+      try
+      {
+         synchronized(connLock)
+         {
+            if(conn.version<2)
+            {
+               // timed by DSPortAdapter.select
+               m = null;
+               return super.select(address);
+            }
+
+            // send select command
+            sendCommand(conn, CMD_SELECT);
+            // followed by the address
+            conn.output.write(address, 0, 8);
+            conn.output.flush();
+
+            // check return value for success
+            checkReturnValue(conn);
+
+            // next parameter should be the return from select
+            return conn.input.readBoolean();
+         }
+      }
+      catch(IOException ioe)
+      {
+         throw connectionFailed(ioe);
+      }
+      finally
+      {
+         if(m!=null)
+            m.operation(AdapterMetrics.SELECT, System.nanoTime() - start, 9);
+      }
+   }
+
+   /**
+    * Selects the specified iButton or 1-Wire device and then sends and
+    * receives a block of data.  On a version 2 host this is a single
+    * command and costs one network round-trip.
+    *
+    * @param  address    address of iButton or 1-Wire device to select
+    * @param  dataBlock  array of data to transfer to and from the 1-Wire
+    *                    Network
+    * @param  off        offset into the array of data to start
+    * @param  len        length of data to send / receive starting at 'off'
+    *
+    * @return  <code>true</code> if the device was selected and the block
+    *          was sent, <code>false</code> otherwise
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean selectDataBlock (byte[] address, byte[] dataBlock, int off,
+                                   int len)
+      throws OneWireIOException, OneWireException
+   {
+      try
+      {
+         synchronized(connLock)
+         {
+            if(conn.version<2)
+               return super.selectDataBlock(address, dataBlock, off, len);
+
+            // send selectDataBlock command
+            sendCommand(conn, CMD_SELECTDATABLOCK);
+            // followed by the address
+            conn.output.write(address, 0, 8);
+            // followed by the length of the block
+            conn.output.writeInt(len);
+            // followed by the bytes
+            conn.output.write(dataBlock, off, len);
+            conn.output.flush();
+
+            // check return value for success
+            checkReturnValue(conn);
+
+            // next should be the return from select
+            boolean selected = conn.input.readBoolean();
+
+            // followed by the bytes returned, if selected
+            if(selected)
+               conn.input.readFully(dataBlock, off, len);
+
+            return selected;
+         }
+      }
+      catch(IOException ioe)
+      {
+         throw connectionFailed(ioe);
+      }
+   }
+
+   /**
+    * Executes all of the steps of a transaction batch (resets, selects
+    * and data blocks) and leaves the results in the batch.  The batch is
+    * sent to the host as a single command and executed there by the
+    * host's adapter, so the whole batch costs one network round-trip.
+    *
+    * <P>Note: a version 1 host doesn't support the batch command, so
+    * there the steps are sent one at a time.</P>
+    *
+    * @param  batch  the batch of steps to execute
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    *
+    * @see TransactionBatch
+    */
+   public void executeBatch (TransactionBatch batch)
+      throws OneWireIOException, OneWireException
+   {
+      int step_count = batch.getStepCount();
+      if(DEBUG)
+      {
+         System.out.println("executeBatch called for " + step_count + " steps");
+      }
+      try
+      {
+         synchronized(connLock)
+         {
+            // a version 1 host doesn't know the command, run the steps
+            // one at a time
+            if(conn.version<2)
+            {
+               super.executeBatch(batch);
+               return;
+            }
+
+            // send executeBatch command
+            sendCommand(conn, CMD_EXECUTEBATCH);
+            // followed by the number of steps
+            conn.output.writeInt(step_count);
+            // followed by the type and length of each step
+            for (int i = 0; i < step_count; i++)
+            {
+               conn.output.writeByte(batch.getStepType(i));
+               conn.output.writeInt(batch.getStepLength(i));
+            }
+            // followed by the bytes of all steps
+            conn.output.write(batch.getData(), 0, batch.getDataLength());
+            conn.output.flush();
+
+            // check return value for success
+            checkReturnValue(conn);
+
+            // next should be the reset results
+            for (int i = 0; i < step_count; i++)
+            {
+               if (batch.getStepType(i) != TransactionBatch.STEP_BLOCK)
+                  batch.setResetResult(i, conn.input.readInt());
+            }
+
+            // followed by the bytes returned
+            conn.input.readFully(batch.getData(), 0, batch.getDataLength());
+         }
+      }
+      catch(IOException ioe)
+      {
+         throw connectionFailed(ioe);
+      }
+      if(DEBUG)
+      {
+         System.out.println("   Done executeBatch");
       }
    }
 
@@ -1518,21 +2200,19 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send putBit command
-            conn.output.writeByte(CMD_PUTBIT);
+            sendCommand(conn, CMD_PUTBIT);
             // followed by the bit
             conn.output.writeBoolean(bitValue);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1549,10 +2229,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send getBit command
-            conn.output.writeByte(CMD_GETBIT);
+            sendCommand(conn, CMD_GETBIT);
             conn.output.flush();
 
             // check return value for success
@@ -1564,7 +2244,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1581,21 +2261,19 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send putByte command
-            conn.output.writeByte(CMD_PUTBYTE);
+            sendCommand(conn, CMD_PUTBYTE);
             // followed by the byte
             conn.output.writeByte(byteValue);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1612,10 +2290,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send getByte command
-            conn.output.writeByte(CMD_GETBYTE);
+            sendCommand(conn, CMD_GETBYTE);
             conn.output.flush();
 
             // check return value for success
@@ -1627,7 +2305,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1681,10 +2359,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send getBlock command
-            conn.output.writeByte(CMD_GETBLOCK);
+            sendCommand(conn, CMD_GETBLOCK);
             // followed by the number of bytes to get
             conn.output.writeInt(len);
             conn.output.flush();
@@ -1698,7 +2376,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1722,12 +2400,15 @@ public class NetAdapter
       {
          System.out.println("DataBlock called for " + len + " bytes");
       }
+      AdapterMetrics m = getOperationMetrics();
+      long start = (m==null) ? 0 : System.nanoTime();
+
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send dataBlock command
-            conn.output.writeByte(CMD_DATABLOCK);
+            sendCommand(conn, CMD_DATABLOCK);
             // followed by the number of bytes to block
             conn.output.writeInt(len);
             // followed by the bytes
@@ -1743,7 +2424,12 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
+      }
+      finally
+      {
+         if(m!=null)
+            m.operation(AdapterMetrics.DATA_BLOCK, System.nanoTime() - start, len);
       }
       if(DEBUG)
       {
@@ -1784,21 +2470,19 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send setPowerDuration command
-            conn.output.writeByte(CMD_SETPOWERDURATION);
+            sendCommand(conn, CMD_SETPOWERDURATION);
             // followed by the timeFactor
             conn.output.writeInt(timeFactor);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1832,10 +2516,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send startPowerDelivery command
-            conn.output.writeByte(CMD_STARTPOWERDELIVERY);
+            sendCommand(conn, CMD_STARTPOWERDELIVERY);
             // followed by the changeCondition
             conn.output.writeInt(changeCondition);
             conn.output.flush();
@@ -1844,12 +2528,16 @@ public class NetAdapter
             checkReturnValue(conn);
 
             // and get the return value from startPowerDelivery
-            return conn.input.readBoolean();
+            boolean started = conn.input.readBoolean();
+            if(started)
+               powerDeliveryStart
+                  = (getMetrics()==null) ? 0 : System.nanoTime();
+            return started;
          }
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1878,21 +2566,19 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send setProgramPulseDuration command
-            conn.output.writeByte(CMD_SETPROGRAMPULSEDURATION);
+            sendCommand(conn, CMD_SETPROGRAMPULSEDURATION);
             // followed by the timeFactor
             conn.output.writeInt(timeFactor);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1927,10 +2613,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send startProgramPulse command
-            conn.output.writeByte(CMD_STARTPROGRAMPULSE);
+            sendCommand(conn, CMD_STARTPROGRAMPULSE);
             // followed by the changeCondition
             conn.output.writeInt(changeCondition);
             conn.output.flush();
@@ -1944,7 +2630,7 @@ public class NetAdapter
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1962,19 +2648,17 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send startBreak command
-            conn.output.writeByte(CMD_STARTBREAK);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            sendCommand(conn, CMD_STARTBREAK);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED);
+         throw connectionFailed(ioe);
       }
    }
 
@@ -1994,19 +2678,23 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send startBreak command
-            conn.output.writeByte(CMD_SETPOWERNORMAL);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            sendCommand(conn, CMD_SETPOWERNORMAL);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
+
+            AdapterMetrics m = getMetrics();
+            if(m!=null && powerDeliveryStart!=0)
+               m.operation(AdapterMetrics.POWER_DELIVERY,
+                           System.nanoTime() - powerDeliveryStart, 0);
+            powerDeliveryStart = 0;
          }
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -2039,21 +2727,19 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send startBreak command
-            conn.output.writeByte(CMD_SETSPEED);
+            sendCommand(conn, CMD_SETSPEED);
             // followed by the speed
             conn.output.writeInt(speed);
-            conn.output.flush();
-
-            // check return value for success
-            checkReturnValue(conn);
+            // check return value now, or with a later command if pipelined
+            deferReturnValue(conn);
          }
       }
       catch(IOException ioe)
       {
-         throw new OneWireException(COMM_FAILED + ioe.getMessage());
+         throw connectionFailed(ioe);
       }
    }
 
@@ -2076,10 +2762,10 @@ public class NetAdapter
    {
       try
       {
-         synchronized(conn)
+         synchronized(connLock)
          {
             // send startBreak command
-            conn.output.writeByte(CMD_GETSPEED);
+            sendCommand(conn, CMD_GETSPEED);
             conn.output.flush();
 
             // check return value for success
@@ -2096,4 +2782,54 @@ public class NetAdapter
 
       return -1;
    }
-}
\ No newline at end of file
+
+   /**
+    * Re-establishes a broken connection, waiting longer after each
+    * failed attempt.
+    */
+   private class Reconnector implements Runnable
+   {
+      public void run()
+      {
+         int delay = RECONNECT_MIN_DELAY;
+         try
+         {
+            while(reconnectThread==Thread.currentThread())
+            {
+               try
+               {
+                  Thread.sleep(delay);
+               }
+               catch(InterruptedException ie)
+               {;}
+
+               if(reconnectThread!=Thread.currentThread())
+                  break;
+
+               reportEvent(AdapterMetrics.RETRY);
+
+               try
+               {
+                  if(reconnect())
+                     break;
+               }
+               catch(Exception e)
+               {
+                  if(DEBUG)
+                     System.out.println("DEBUG: reconnect failed: " + e);
+               }
+
+               delay = Math.min(delay*2, RECONNECT_MAX_DELAY);
+            }
+         }
+         finally
+         {
+            synchronized(NetAdapter.this)
+            {
+               if(reconnectThread==Thread.currentThread())
+                  reconnectThread = null;
+            }
+         }
+      }
+   }
+}
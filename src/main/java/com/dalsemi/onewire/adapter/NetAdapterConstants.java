@@ -40,7 +40,19 @@ public interface NetAdapterConstants
    static final boolean DEBUG = false;
 
    /** version UID, used to detect incompatible host */
-   static int versionUID = 1;
+   static int versionUID = 3;
+
+   /**
+    * Oldest version UID still supported.  Version 1 hosts and clients
+    * wait for the result of every command.  Version 2 adds a request ID
+    * and result length to every command, so a client can send commands
+    * without waiting for the result of the ones before.  Version 3
+    * sends every request as a length-prefixed frame, and lets the host
+    * deflate large results (see <code>COMPRESS_THRESHOLD</code>).  Multicast
+    * discovery packets always carry this version, so that hosts and
+    * clients of all versions find each other.
+    */
+   static final int MIN_VERSION_UID = 1;
 
    /** Indicates whether or not to buffer the output (probably always true!) */
    static final boolean BUFFERED_OUTPUT = true;
@@ -57,6 +69,18 @@ public interface NetAdapterConstants
    /** Default port for NetAdapter Datagram packets */
    static final int DEFAULT_MULTICAST_PORT = 6163;
 
+   /**
+    * Results larger than this many bytes are deflated by a version 3 host
+    * before they are sent, if that makes them smaller.
+    */
+   static final int COMPRESS_THRESHOLD = 256;
+
+   /** Flag in the length of a version 3 result frame for deflated data */
+   static final int FRAME_COMPRESSED = 0x80000000;
+
+   /** Largest frame accepted by a version 3 client or host */
+   static final int MAX_FRAME_LENGTH = 0x100000;
+
    /*------------------------------------------------------------*/
    /*----- Method Return codes ----------------------------------*/
    /*------------------------------------------------------------*/
@@ -115,6 +139,15 @@ public interface NetAdapterConstants
    static final byte CMD_CANOVERDRIVE                 = 0x2F;
    static final byte CMD_CANPROGRAM                   = 0x30;
    /*------------------------------------------------------------*/
+   /* Batch methods ---------------------------------------------*/
+   static final byte CMD_EXECUTEBATCH                 = 0x31;
+   /*------------------------------------------------------------*/
+   /* Compound methods ------------------------------------------*/
+   static final byte CMD_SELECT                       = 0x32;
+   static final byte CMD_SELECTDATABLOCK              = 0x33;
+   static final byte CMD_SEARCHALL                    = 0x34;
+   static final byte CMD_ISPRESENTALL                 = 0x35;
+   /*------------------------------------------------------------*/
 
    /**
     * An inner utility class for coupling Socket with I/O streams
@@ -127,6 +160,102 @@ public interface NetAdapterConstants
       public java.io.DataInputStream input = null;
       /** output stream from socket */
       public java.io.DataOutputStream output = null;
+      /** protocol version used on this connection */
+      public int version = MIN_VERSION_UID;
+      /** ID of the last request sent, version 2 and up */
+      public int requestID = 0;
+      /** number of requests sent without reading the result */
+      public int pending = 0;
+      /** buffer for the result of a request, used by the host */
+      public FrameOutputStream resultBuffer = null;
+      /** output stream to resultBuffer, used by the host */
+      public java.io.DataOutputStream resultOutput = null;
+      /** input stream from socket, when input reads from frameInput */
+      public java.io.DataInputStream socketInput = null;
+      /** buffer for the frame being read, version 3 and up */
+      public FrameInputStream frameInput = null;
+      /** data stream reading frameInput, version 3 and up */
+      public java.io.DataInputStream frameData = null;
+      /** compresses results, used by the host */
+      public java.util.zip.Deflater deflater = null;
+      /** expands compressed results, used by the client */
+      public java.util.zip.Inflater inflater = null;
+      /** scratch buffer for compressed data */
+      public byte[] compressBuffer = null;
+   }
+
+   /**
+    * Input stream over a reusable buffer, which holds one frame at a time.
+    */
+   static final class FrameInputStream extends java.io.ByteArrayInputStream
+   {
+      public FrameInputStream()
+      {
+         super(new byte[256], 0, 0);
+      }
+
+      /**
+       * Returns the buffer, grown to hold at least <code>size</code> bytes.
+       * Any data in the buffer is lost.
+       */
+      public byte[] getBuffer(int size)
+      {
+         if(buf.length<size)
+            buf = new byte[Math.max(size, buf.length*2)];
+         return buf;
+      }
+
+      /**
+       * Starts reading a new frame of <code>length</code> bytes from
+       * the start of the buffer.
+       */
+      public void setFrame(int length)
+      {
+         pos = 0;
+         mark = 0;
+         count = length;
+      }
+   }
+
+   /**
+    * Output stream to a reusable buffer.  If it has a target, every
+    * flush sends the buffered data as one length-prefixed frame.
+    */
+   static final class FrameOutputStream extends java.io.ByteArrayOutputStream
+   {
+      private java.io.OutputStream target;
+
+      public FrameOutputStream(java.io.OutputStream target)
+      {
+         super(256);
+         this.target = target;
+      }
+
+      /**
+       * Returns the buffer, without copying.  Only the first
+       * <code>size()</code> bytes are valid.
+       */
+      public byte[] getBuffer()
+      {
+         return buf;
+      }
+
+      public void flush()
+         throws java.io.IOException
+      {
+         if(target==null)
+            return;
+         if(count>0)
+         {
+            target.write(count>>>24);
+            target.write(count>>>16);
+            target.write(count>>>8);
+            target.write(count);
+            target.write(buf, 0, count);
+            count = 0;
+         }
+         target.flush();
+      }
    }
 
    /** instance for an empty connection, basically it's a NULL object
@@ -101,6 +101,15 @@ public class NetAdapterHost
    /** timeout for socket receive, in seconds */
    protected int timeoutInSeconds = 30;
 
+   /**
+    * protocol version offered to clients.  Version 1 clients only accept
+    * version 1, so newer versions must be turned on explicitly.
+    */
+   protected int protocolVersion = MIN_VERSION_UID;
+
+   /** if true, large results are deflated for version 3 clients */
+   protected boolean compressResults = true;
+
    /**
     * <P>Creates an instance of a NetAdapterHost which wraps the provided
     * adapter.  The host listens on the default port as specified by
@@ -211,6 +220,16 @@ public class NetAdapterHost
          netAdapterSecret = secret.getBytes();
       else
          netAdapterSecret = DEFAULT_SECRET.getBytes();
+
+      // get the protocol version, if older clients must connect
+      String version = OneWireAccessProvider.getProperty("NetAdapter.ProtocolVersion");
+      if(version!=null)
+         setProtocolVersion(Integer.parseInt(version.trim()));
+
+      // get the compression setting, for hosts with little CPU to spare
+      String compress = OneWireAccessProvider.getProperty("NetAdapter.Compression");
+      if(compress!=null)
+         compressResults = !compress.trim().equalsIgnoreCase("false");
    }
 
    /**
@@ -278,6 +297,16 @@ public class NetAdapterHost
          netAdapterSecret = secret.getBytes();
       else
          netAdapterSecret = DEFAULT_SECRET.getBytes();
+
+      // get the protocol version, if older clients must connect
+      String version = OneWireAccessProvider.getProperty("NetAdapter.ProtocolVersion");
+      if(version!=null)
+         setProtocolVersion(Integer.parseInt(version.trim()));
+
+      // get the compression setting, for hosts with little CPU to spare
+      String compress = OneWireAccessProvider.getProperty("NetAdapter.Compression");
+      if(compress!=null)
+         compressResults = !compress.trim().equalsIgnoreCase("false");
    }
 
    /**
@@ -291,6 +320,38 @@ public class NetAdapterHost
       netAdapterSecret = secret.getBytes();
    }
 
+   /**
+    * Sets the protocol version offered to new client connections.  Clients
+    * accept any version up to their own, but version 1 clients only accept
+    * version 1.  The host offers version 1 unless told otherwise, so that
+    * existing clients keep connecting; once all clients are upgraded, set
+    * this to <code>versionUID</code> to use the newer protocol.  It can
+    * also be set in the onewire.properties file as
+    * "NetAdapter.ProtocolVersion=3".
+    *
+    * @param version protocol version, from MIN_VERSION_UID to versionUID
+    */
+   public void setProtocolVersion(int version)
+   {
+      if(version<MIN_VERSION_UID || version>versionUID)
+         throw new IllegalArgumentException("Unsupported protocol version: "
+                                            + version);
+      protocolVersion = version;
+   }
+
+   /**
+    * Sets whether results larger than <code>COMPRESS_THRESHOLD</code>
+    * bytes are deflated for version 3 clients.  Compression is on by
+    * default, and can be turned off in the onewire.properties file with
+    * "NetAdapter.Compression=false".
+    *
+    * @param compress true to deflate large results
+    */
+   public void setCompression(boolean compress)
+   {
+      compressResults = compress;
+   }
+
    /**
     * Creates a Multicast Listener to allow NetAdapter clients to discover
     * this NetAdapterHost automatically.  Uses defaults for Multicast group
@@ -330,8 +391,8 @@ public class NetAdapterHost
    {
       if(multicastListener==null)
       {
-         // 4 bytes for integer versionUID
-         byte[] versionBytes = Convert.toByteArray(versionUID);
+         // 4 bytes for integer versionUID, the oldest one for discovery
+         byte[] versionBytes = Convert.toByteArray(MIN_VERSION_UID);
 
          // this byte array is 5 because length is used to determine different
          // packet types by client
@@ -450,7 +511,7 @@ public class NetAdapterHost
       throws IOException
    {
       // write server version
-      conn.output.writeInt(versionUID);
+      conn.output.writeInt(protocolVersion);
       conn.output.flush();
 
       byte retVal = conn.input.readByte();
@@ -464,7 +525,7 @@ public class NetAdapterHost
     * @param conn The connection to send/receive data.
     *
     */
-   private void processRequests(Connection conn)
+   protected void processRequests(Connection conn)
       throws IOException
    {
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
@@ -472,14 +533,51 @@ public class NetAdapterHost
          System.out.println("\n------------------------------------------");
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
 
+      // version 3 commands arrive as a length-prefixed frame, which is
+      // read at once and then parsed from memory
+      DataInputStream socketInput = conn.input;
+      if(conn.version>=3)
+      {
+         int length = conn.input.readInt();
+         if(length<=0 || length>MAX_FRAME_LENGTH)
+            throw new IOException("Bad frame length: " + length);
+
+         if(conn.frameInput==null)
+         {
+            conn.frameInput = new FrameInputStream();
+            conn.frameData = new DataInputStream(conn.frameInput);
+         }
+         conn.input.readFully(conn.frameInput.getBuffer(length), 0, length);
+         conn.frameInput.setFrame(length);
+         conn.input = conn.frameData;
+      }
+
       // get the next command
       byte cmd = 0x00;
 
       cmd = conn.input.readByte();
 
+      // version 2 commands are followed by a request ID, and the result is
+      // collected so it can be sent with the ID and its length
+      int requestID = 0;
+      DataOutputStream socketOutput = conn.output;
+      if(conn.version>=2)
+      {
+         requestID = conn.input.readInt();
+
+         if(conn.resultBuffer==null)
+         {
+            conn.resultBuffer = new FrameOutputStream(null);
+            conn.resultOutput = new DataOutputStream(conn.resultBuffer);
+         }
+         conn.resultBuffer.reset();
+         conn.output = conn.resultOutput;
+      }
+
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
       if(DEBUG)
-         System.out.println("CMD received: " + Integer.toHexString(cmd));
+         System.out.println("CMD received: " + Integer.toHexString(cmd)
+                            + ", request ID: " + requestID);
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
 
       try
@@ -601,17 +699,125 @@ public class NetAdapterHost
             case CMD_CANPROGRAM:
                adapterCanProgram(conn);
                break;
+            /* batch methods */
+            case CMD_EXECUTEBATCH:
+               adapterExecuteBatch(conn);
+               break;
+            /* compound methods */
+            case CMD_SELECT:
+               adapterSelect(conn);
+               break;
+            case CMD_SELECTDATABLOCK:
+               adapterSelectDataBlock(conn);
+               break;
+            case CMD_SEARCHALL:
+               adapterSearchAll(conn);
+               break;
+            case CMD_ISPRESENTALL:
+               adapterIsPresentAll(conn);
+               break;
             default:
                //System.out.println("Unkown command: " + cmd);
+               if(conn.version>=2)
+                  throw new OneWireException("Unknown command: " + cmd);
                break;
          }
       }
       catch(OneWireException owe)
       {
+         if(conn.version>=2)
+            conn.resultBuffer.reset();
          conn.output.writeByte(RET_FAILURE);
          conn.output.writeUTF(owe.toString());
          conn.output.flush();
       }
+
+      // send the result of a version 2 command, unless the connection closed
+      if(conn.version>=2 && conn.sock!=null)
+      {
+         conn.input = socketInput;
+         conn.output = socketOutput;
+         if(conn.version>=3)
+            sendFrame(conn, requestID);
+         else
+            sendResult(conn, requestID);
+      }
+   }
+
+   /**
+    * Sends the result of a version 2 command: the return value, request
+    * ID, length of the rest of the result, and the rest of the result.
+    * The output is only flushed if no more commands have arrived, so the
+    * results of pipelined commands go out together.
+    *
+    * @param conn The connection to send/receive data.
+    * @param requestID The request ID of the command.
+    */
+   private void sendResult(Connection conn, int requestID)
+      throws IOException
+   {
+      byte[] result = conn.resultBuffer.getBuffer();
+      int length = conn.resultBuffer.size();
+
+      conn.output.writeByte(result[0]);
+      conn.output.writeInt(requestID);
+      conn.output.writeInt(length - 1);
+      conn.output.write(result, 1, length - 1);
+
+      if(conn.input.available()==0)
+         conn.output.flush();
+   }
+
+   /**
+    * Sends the result of a version 3 command as a frame: the request ID,
+    * the frame length, and the whole result.  Results larger than
+    * <code>COMPRESS_THRESHOLD</code> are deflated if that makes them
+    * smaller; the frame length is then marked with
+    * <code>FRAME_COMPRESSED</code>, and the frame holds the length of
+    * the result followed by the deflated data.
+    *
+    * @param conn The connection to send/receive data.
+    * @param requestID The request ID of the command.
+    */
+   private void sendFrame(Connection conn, int requestID)
+      throws IOException
+   {
+      byte[] result = conn.resultBuffer.getBuffer();
+      int length = conn.resultBuffer.size();
+
+      int compressed = 0;
+      if(compressResults && length>COMPRESS_THRESHOLD)
+      {
+         if(conn.deflater==null)
+            conn.deflater = new java.util.zip.Deflater(
+                                 java.util.zip.Deflater.BEST_SPEED);
+         if(conn.compressBuffer==null || conn.compressBuffer.length<length)
+            conn.compressBuffer = new byte[length];
+
+         // give up if the deflated data won't fit in less than the result
+         conn.deflater.reset();
+         conn.deflater.setInput(result, 0, length);
+         conn.deflater.finish();
+         compressed = conn.deflater.deflate(conn.compressBuffer, 0, length - 4);
+         if(!conn.deflater.finished())
+            compressed = 0;
+      }
+
+      conn.output.writeInt(requestID);
+      if(compressed>0)
+      {
+         conn.output.writeInt((compressed + 4) | FRAME_COMPRESSED);
+         conn.output.writeInt(length);
+         conn.output.write(conn.compressBuffer, 0, compressed);
+      }
+      else
+      {
+         conn.output.writeInt(length);
+         conn.output.write(result, 0, length);
+      }
+
+      if(conn.input.available()==0)
+         conn.output.flush();
    }
 
    /**
@@ -635,6 +841,13 @@ public class NetAdapterHost
       conn.input = null;
       conn.output = null;
 
+      // free the native memory held by the compressor
+      if(conn.deflater!=null)
+      {
+         conn.deflater.end();
+         conn.deflater = null;
+      }
+
       // ensure that there is no exclusive use of the adapter
       adapter.endExclusive();
    }
@@ -691,6 +904,66 @@ public class NetAdapterHost
       conn.output.flush();
    }
 
+   private void adapterSearchAll (Connection conn)
+      throws IOException, OneWireException
+   {
+      // search with the current settings, collecting the addresses
+      Vector addresses = new Vector();
+      boolean b = adapter.findFirstDevice();
+      while(b)
+      {
+         byte[] address = new byte[8];
+         adapter.getAddress(address);
+         addresses.addElement(address);
+         b = adapter.findNextDevice();
+      }
+
+      if(DEBUG)
+      {
+         System.out.println("   searchAll called, speed=" + adapter.getSpeed());
+         System.out.println("      found " + addresses.size() + " devices");
+      }
+
+      conn.output.writeByte(RET_SUCCESS);
+      conn.output.writeInt(addresses.size());
+      for(int i=0; i<addresses.size(); i++)
+         conn.output.write((byte[])addresses.elementAt(i), 0, 8);
+      conn.output.flush();
+   }
+
+   private void adapterIsPresentAll (Connection conn)
+      throws IOException, OneWireException
+   {
+      // get the number of addresses, then the addresses
+      int count = conn.input.readInt();
+      if(count<0 || count>MAX_FRAME_LENGTH/8)
+         throw new OneWireException("Invalid address count " + count);
+      long[] addresses = new long[count];
+      for(int i=0; i<count; i++)
+         addresses[i] = conn.input.readLong();
+
+      if(DEBUG)
+      {
+         System.out.println("   isPresentAll called, speed=" + adapter.getSpeed());
+         System.out.println("      " + count + " addresses");
+      }
+
+      BitSet present = adapter.isPresent(addresses);
+
+      // one bit for each address, lowest bit first
+      byte[] bits = new byte[(count + 7)/8];
+      for(int i=0; i<count; i++)
+      {
+         if(present.get(i))
+            bits[i>>>3] |= (byte)(1 << (i & 7));
+      }
+
+      conn.output.writeByte(RET_SUCCESS);
+      conn.output.writeInt(count);
+      conn.output.write(bits, 0, bits.length);
+      conn.output.flush();
+   }
+
    private void adapterSetSearchOnlyAlarmingDevices (Connection conn)
       throws IOException
    {
@@ -975,6 +1248,123 @@ public class NetAdapterHost
       conn.output.flush();
    }
 
+   private void adapterExecuteBatch(Connection conn)
+      throws IOException, OneWireException
+   {
+      // get the number of steps
+      int step_count = conn.input.readInt();
+      if(step_count<0 || step_count>MAX_FRAME_LENGTH/5)
+         throw new OneWireException("Invalid batch step count " + step_count);
+      // get the type and length of each step
+      int[] types = new int[step_count];
+      int[] lengths = new int[step_count];
+      int data_length = 0;
+      for(int i=0; i<step_count; i++)
+      {
+         types[i] = conn.input.readByte();
+         lengths[i] = conn.input.readInt();
+         if(lengths[i]<0 || lengths[i]>MAX_FRAME_LENGTH - data_length)
+            throw new OneWireException("Invalid batch data length");
+         data_length += lengths[i];
+      }
+      // get the bytes of all steps
+      byte[] data = new byte[data_length];
+      conn.input.readFully(data, 0, data_length);
+
+      if(DEBUG)
+      {
+         System.out.println("   executeBatch called, speed=" + adapter.getSpeed());
+         System.out.println("      " + step_count + " steps, " + data_length + " bytes");
+      }
+
+      // rebuild the batch
+      TransactionBatch batch = new TransactionBatch(step_count, data_length);
+      int off = 0;
+      for(int i=0; i<step_count; i++)
+      {
+         if(types[i]!=TransactionBatch.STEP_RESET
+            && types[i]!=TransactionBatch.STEP_SELECT
+            && types[i]!=TransactionBatch.STEP_BLOCK)
+            throw new OneWireException("Invalid batch step type " + types[i]);
+         batch.addStep(types[i], data, off, lengths[i]);
+         off += lengths[i];
+      }
+
+      // do the batch
+      adapter.executeBatch(batch);
+
+      conn.output.writeByte(RET_SUCCESS);
+      for(int i=0; i<step_count; i++)
+      {
+         if(types[i]!=TransactionBatch.STEP_BLOCK)
+            conn.output.writeInt(batch.getResetResult(i));
+      }
+      conn.output.write(batch.getData(), 0, data_length);
+      conn.output.flush();
+   }
+
+   //--------
+   //-------- Compound methods
+   //--------
+
+   private void adapterSelect(Connection conn)
+      throws IOException, OneWireException
+   {
+      // get the address
+      byte[] address = new byte[8];
+      conn.input.readFully(address, 0, 8);
+
+      boolean b = adapter.select(address);
+
+      if(DEBUG)
+      {
+         System.out.println("   select called, speed=" + adapter.getSpeed());
+         System.out.println("      address=" + Address.toString(address)
+                            + ", returned " + b);
+      }
+
+      conn.output.writeByte(RET_SUCCESS);
+      conn.output.writeBoolean(b);
+      conn.output.flush();
+   }
+
+   private void adapterSelectDataBlock(Connection conn)
+      throws IOException, OneWireException
+   {
+      // get the address
+      byte[] address = new byte[8];
+      conn.input.readFully(address, 0, 8);
+      // get the number to block
+      int len = conn.input.readInt();
+      if(len<0 || len>MAX_FRAME_LENGTH)
+         throw new OneWireException("Invalid block length " + len);
+      // get the bytes to block
+      byte[] b = new byte[len];
+      conn.input.readFully(b, 0, len);
+
+      if(DEBUG)
+      {
+         System.out.println("   selectDataBlock called, speed=" + adapter.getSpeed());
+         System.out.println("      address=" + Address.toString(address));
+         System.out.println("      Send: " + Convert.toHexString(b));
+      }
+
+      // do the select and block
+      boolean selected = adapter.selectDataBlock(address, b, 0, len);
+
+      if(DEBUG)
+      {
+         System.out.println("      selected=" + selected);
+         System.out.println("      Recv: " + Convert.toHexString(b));
+      }
+
+      conn.output.writeByte(RET_SUCCESS);
+      conn.output.writeBoolean(selected);
+      if(selected)
+         conn.output.write(b, 0, len);
+      conn.output.flush();
+   }
+
    //--------
    //-------- 1-Wire Network power methods
    //--------
@@ -1310,6 +1700,9 @@ public class NetAdapterHost
             conn.output.writeByte(RET_SUCCESS);
             conn.output.flush();
          }
+
+         // from here on, use the offered protocol version
+         conn.version = protocolVersion;
       }
 
       /**
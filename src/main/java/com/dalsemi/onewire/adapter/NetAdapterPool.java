@@ -0,0 +1,280 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+import java.util.Vector;
+
+import com.dalsemi.onewire.OneWireException;
+
+/**
+ * A pool of authenticated <code>NetAdapter</code> connections to the same
+ * NetAdapterHost.  Threads that read independent devices can each take a
+ * connection from the pool, so one thread waiting for a reply does not
+ * hold up the others.  Each connection re-establishes itself in the
+ * background after a network error, see <code>NetAdapter</code>.
+ *
+ * <P>Connections are opened as they are needed, up to the maximum given.
+ * A host that serves one connection at a time (a single-threaded
+ * NetAdapterHost) does not answer a second connection, so if a new
+ * connection is not answered within the handshake timeout, the pool stops
+ * growing and threads wait for a connection to be returned instead.</P>
+ *
+ * <P>Exclusive use works as with a single NetAdapter: a thread that calls
+ * <code>beginExclusive</code> on its connection holds the host's adapter
+ * until it calls <code>endExclusive</code>, and commands from the other
+ * connections wait on the host.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   NetAdapterPool pool = new NetAdapterPool("myhost:6161", 4);
+ *
+ *   // in each collector thread
+ *   NetAdapter adapter = pool.getAdapter();
+ *   try
+ *   {
+ *      OneWireContainer owc = adapter.getDeviceContainer(address);
+ *      ...
+ *   }
+ *   finally
+ *   {
+ *      pool.releaseAdapter(adapter);
+ *   }
+ *
+ *   pool.close();
+ * </CODE> </PRE>
+ *
+ * @see NetAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class NetAdapterPool
+{
+   /** Default time to wait for a new connection's handshake, in milliseconds */
+   public static final int DEFAULT_HANDSHAKE_TIMEOUT = 5000;
+
+   /** Port name of the host, as for <code>NetAdapter.selectPort</code> */
+   private final String portName;
+
+   /** Most connections to open */
+   private int maxConnections;
+
+   /** All connections opened */
+   private final Vector connections = new Vector();
+
+   /** Connections not in use */
+   private final Vector free = new Vector();
+
+   /** Number of connections being opened */
+   private int opening = 0;
+
+   /** true once the pool is closed */
+   private boolean closed = false;
+
+   /**
+    * Creates a pool of connections to a NetAdapterHost, and opens the
+    * first connection.
+    *
+    * @param portName the host, as for <code>NetAdapter.selectPort(String)</code>
+    * @param maxConnections most connections to open
+    *
+    * @throws OneWireException if the first connection can not be opened
+    */
+   public NetAdapterPool (String portName, int maxConnections)
+      throws OneWireException
+   {
+      this.portName       = portName;
+      this.maxConnections = Math.max(1, maxConnections);
+
+      NetAdapter adapter = openConnection();
+      if(adapter==null)
+         throw new OneWireException("NetAdapterPool-Can't connect to " + portName);
+
+      connections.addElement(adapter);
+      free.addElement(adapter);
+   }
+
+   /**
+    * Takes a connection from the pool, opening a new one or waiting for
+    * one to be returned if all are in use.
+    *
+    * @return a connected NetAdapter, to be returned with
+    *         <code>releaseAdapter</code>
+    *
+    * @throws OneWireException if the pool is closed, or no connection
+    *         is open and a new one can not be opened
+    */
+   public NetAdapter getAdapter ()
+      throws OneWireException
+   {
+      boolean failed = false;
+
+      while(true)
+      {
+         synchronized(free)
+         {
+            while(true)
+            {
+               if(closed)
+                  throw new OneWireException("NetAdapterPool-Pool is closed");
+
+               if(free.size()>0)
+               {
+                  NetAdapter adapter = (NetAdapter)free.lastElement();
+                  free.removeElementAt(free.size() - 1);
+                  return adapter;
+               }
+
+               if(failed && connections.size()+opening==0)
+                  throw new OneWireException(
+                     "NetAdapterPool-Can't connect to " + portName);
+
+               // after a failed open, wait for a connection to come back
+               if(!failed && connections.size()+opening<maxConnections)
+               {
+                  // reserve a slot, the connection is opened unlocked
+                  opening++;
+                  break;
+               }
+
+               try
+               {
+                  free.wait();
+               }
+               catch(InterruptedException ie)
+               {;}
+            }
+         }
+
+         NetAdapter adapter = openConnection();
+
+         synchronized(free)
+         {
+            opening--;
+            free.notifyAll();
+
+            if(adapter!=null)
+            {
+               if(!closed)
+               {
+                  connections.addElement(adapter);
+                  return adapter;
+               }
+
+               try
+               {
+                  adapter.freePort();
+               }
+               catch(OneWireException owe)
+               {;}
+            }
+         }
+
+         // give the slot back, and don't retry until a connection is returned
+         failed = true;
+      }
+   }
+
+   /**
+    * Returns a connection to the pool.
+    *
+    * @param adapter a NetAdapter from <code>getAdapter</code>
+    */
+   public void releaseAdapter (NetAdapter adapter)
+   {
+      synchronized(free)
+      {
+         if(closed || !connections.contains(adapter))
+            return;
+
+         free.addElement(adapter);
+         free.notifyAll();
+      }
+   }
+
+   /**
+    * Gets the number of connections opened.
+    *
+    * @return the number of connections
+    */
+   public int getConnectionCount ()
+   {
+      synchronized(free)
+      {
+         return connections.size();
+      }
+   }
+
+   /**
+    * Closes all of the connections.  Connections still in use are
+    * closed as well.
+    */
+   public void close ()
+   {
+      synchronized(free)
+      {
+         closed = true;
+         for(int i=0; i<connections.size(); i++)
+         {
+            try
+            {
+               ((NetAdapter)connections.elementAt(i)).freePort();
+            }
+            catch(OneWireException owe)
+            {;}
+         }
+         connections.removeAllElements();
+         free.removeAllElements();
+         free.notifyAll();
+      }
+   }
+
+   /**
+    * Opens a new connection.
+    *
+    * @return the connection, or null if the host did not answer
+    */
+   private NetAdapter openConnection ()
+   {
+      NetAdapter adapter = new NetAdapter();
+      adapter.handshakeTimeoutMillis = DEFAULT_HANDSHAKE_TIMEOUT;
+      try
+      {
+         if(!adapter.selectPort(portName))
+            return null;
+      }
+      catch(OneWireException owe)
+      {
+         return null;
+      }
+
+      return adapter;
+   }
+}
@@ -0,0 +1,986 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import com.dalsemi.onewire.*;
+import com.dalsemi.onewire.utils.*;
+
+/**
+ * <P>NetAdapterSelectorHost is a NetAdapterHost that serves all of its
+ * client connections with a small, fixed number of threads, instead of
+ * a thread per connection.  It uses <code>java.nio</code> selectors, so
+ * it can serve hundreds of NetAdapter clients, such as many dashboards
+ * polling the same 1-Wire Network.</P>
+ *
+ * <P>The selector threads do all of the network I/O.  They read the bytes
+ * of each connection until a complete command has arrived, and then queue
+ * the connection for the adapter.  The thread running the host executes
+ * the queued commands on the adapter, one command per connection in turn,
+ * so a busy connection can not starve the others.  While a connection
+ * holds exclusive use of the adapter, only its commands are executed, and
+ * the other connections are queued in the order they arrived.  A blocking
+ * <code>beginExclusive</code> waits in that queue, a non-blocking one
+ * returns <code>false</code> right away.</P>
+ *
+ * <P>Clients connect, authenticate and send commands exactly as they do
+ * with a NetAdapterHost, in all versions of the protocol.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   NetAdapterSelectorHost host = new NetAdapterSelectorHost(adapter);
+ *   host.createMulticastListener();
+ *   (new Thread(host)).start();
+ * </CODE> </PRE>
+ *
+ * @see NetAdapterHost
+ * @see NetAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class NetAdapterSelectorHost
+   extends NetAdapterHost
+{
+   /** Connection state, waiting for the client to accept the version */
+   protected static final int STATE_VERSION = 0;
+
+   /** Connection state, waiting for the answer to the challenge */
+   protected static final int STATE_AUTHENTICATE = 1;
+
+   /** Connection state, authenticated and sending commands */
+   protected static final int STATE_COMMANDS = 2;
+
+   /** Largest command accepted from a client, in bytes */
+   protected static final int MAX_COMMAND_LENGTH = 1 << 20;
+
+   /** Size of the direct buffer each selector thread reads into */
+   protected static final int READ_BUFFER_SIZE = 8192;
+
+   /** Default number of selector threads */
+   protected static final int DEFAULT_SELECTOR_COUNT = 2;
+
+   /** The selector threads */
+   protected SelectorLoop[] loops;
+
+   /** Next selector thread to give a new connection */
+   private int nextLoop = 0;
+
+   /** Clients with a complete command (or closed), in order of arrival */
+   private final Vector runQueue = new Vector();
+
+   /** Client with exclusive use of the adapter, null if none */
+   private Client exclusiveOwner = null;
+
+   /** Buffer for the result of a command */
+   private final ByteArrayOutputStream resultBytes = new ByteArrayOutputStream();
+
+   /**
+    * Creates an instance of a NetAdapterSelectorHost which wraps the
+    * provided adapter.  The host listens on the default port as specified
+    * by NetAdapterConstants.
+    *
+    * @param adapter DSPortAdapter that this host will proxy commands to.
+    *
+    * @throws IOException if a network error occurs or the listen socket
+    * cannot be created on the specified port.
+    */
+   public NetAdapterSelectorHost(DSPortAdapter adapter)
+      throws IOException
+   {
+      this(adapter, DEFAULT_PORT, DEFAULT_SELECTOR_COUNT);
+   }
+
+   /**
+    * Creates an instance of a NetAdapterSelectorHost which wraps the
+    * provided adapter.  The host listens on the port specified by the
+    * listenPort parameter.
+    *
+    * @param adapter DSPortAdapter that this host will proxy commands to.
+    * @param listenPort the TCP/IP port to listen on for incoming connections
+    * @param selectorCount the number of selector threads for network I/O
+    *
+    * @throws IOException if a network error occurs or the listen socket
+    * cannot be created on the specified port.
+    */
+   public NetAdapterSelectorHost(DSPortAdapter adapter, int listenPort,
+                                 int selectorCount)
+      throws IOException
+   {
+      super(adapter, openServerSocket(listenPort), false);
+
+      loops = new SelectorLoop[Math.max(1, selectorCount)];
+      for(int i=0; i<loops.length; i++)
+         loops[i] = new SelectorLoop();
+   }
+
+   /**
+    * Opens a non-blocking server socket on the given port.
+    */
+   private static ServerSocket openServerSocket(int listenPort)
+      throws IOException
+   {
+      ServerSocketChannel server = ServerSocketChannel.open();
+      server.socket().bind(new InetSocketAddress(listenPort));
+      server.configureBlocking(false);
+      return server.socket();
+   }
+
+   /**
+    * Run method for the host.  Starts the selector threads and then
+    * executes the commands of all connections on the adapter, until
+    * <code>stopHost()</code> is called.
+    */
+   public void run()
+   {
+      hostRunning = true;
+      try
+      {
+         // the first selector thread accepts the new connections
+         loops[0].register(serverSocket.getChannel(), SelectionKey.OP_ACCEPT,
+                           null);
+         for(int i=0; i<loops.length; i++)
+         {
+            Thread t = new Thread(loops[i], "NetAdapterSelectorHost-" + i);
+            t.setDaemon(true);
+            t.start();
+         }
+
+         while(!hostStopped)
+         {
+            Client client = nextClient();
+            if(client!=null)
+               execute(client);
+         }
+      }
+      finally
+      {
+         for(int i=0; i<loops.length; i++)
+            loops[i].close();
+         hostRunning = false;
+      }
+   }
+
+   /**
+    * Stops the selector threads, closes all connections and kills the
+    * server socket.
+    */
+   public void stopHost()
+   {
+      hostStopped = true;
+      synchronized(runQueue)
+      {
+         runQueue.notifyAll();
+      }
+      super.stopHost();
+   }
+
+   /**
+    * Connections are served by the selector threads, so this is not
+    * supported.
+    */
+   public void handleConnection(Socket sock)
+      throws IOException
+   {
+      throw new IOException("NetAdapterSelectorHost accepts its own connections");
+   }
+
+   //--------
+   //-------- Adapter thread methods
+   //--------
+
+   /**
+    * Gets the next client that can use the adapter, waiting if there are
+    * none.  The first client in the queue is taken, unless another client
+    * has exclusive use of the adapter.  Then the first client that does
+    * not need the adapter for its next command is taken, or the owner.
+    *
+    * @return the client, or null if the host is stopping
+    */
+   private Client nextClient()
+   {
+      synchronized(runQueue)
+      {
+         while(!hostStopped)
+         {
+            for(int i=0; i<runQueue.size(); i++)
+            {
+               Client c = (Client)runQueue.elementAt(i);
+               if(exclusiveOwner==null || c==exclusiveOwner || !c.needsAdapter())
+               {
+                  runQueue.removeElementAt(i);
+                  return c;
+               }
+            }
+
+            try
+            {
+               runQueue.wait();
+            }
+            catch(InterruptedException ie)
+            {;}
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Executes the next command of a client, or cleans up after a closed
+    * client, and puts the client back in the queue if it has another
+    * complete command.
+    */
+   private void execute(Client client)
+   {
+      byte[] cmd = client.takeCommand();
+
+      if(cmd==null)
+      {
+         // client is closed, give up the adapter if it had it
+         if(client.closed && exclusiveOwner==client)
+         {
+            exclusiveOwner = null;
+            adapter.endExclusive();
+         }
+         return;
+      }
+
+      try
+      {
+         // version 3 commands start with the frame length
+         int start = (client.conn.version>=3) ? 4 : 0;
+         byte code = cmd[start];
+         int requestID = (client.conn.version>=2) ? getInt(cmd, start + 1) : 0;
+         boolean owner = (exclusiveOwner==client);
+
+         if(code==CMD_CLOSECONNECTION)
+         {
+            client.close();
+            if(owner)
+            {
+               exclusiveOwner = null;
+               adapter.endExclusive();
+            }
+            return;
+         }
+         else if(exclusiveOwner!=null && !owner)
+         {
+            // another client owns the adapter, answer without it
+            if(code==CMD_BEGINEXCLUSIVE)
+               sendReply(client, requestID, new byte[] { RET_SUCCESS, 0 });
+            else
+               sendReply(client, requestID, new byte[] { RET_SUCCESS });
+         }
+         else
+         {
+            // run the command on the adapter
+            resultBytes.reset();
+            client.conn.input = new DataInputStream(new ByteArrayInputStream(cmd));
+            client.conn.output = new DataOutputStream(resultBytes);
+            processRequests(client.conn);
+
+            byte[] result = resultBytes.toByteArray();
+
+            // version 3 results start with the request ID and length
+            int ret = (client.conn.version>=3) ? 8 : 0;
+            if(code==CMD_BEGINEXCLUSIVE && result[ret]==RET_SUCCESS
+               && result[result.length-1]!=0)
+               exclusiveOwner = client;
+            else if(code==CMD_ENDEXCLUSIVE && owner)
+               exclusiveOwner = null;
+
+            client.send(result);
+         }
+      }
+      catch(IOException ioe)
+      {
+         if(DEBUG)
+            ioe.printStackTrace();
+         client.close();
+      }
+
+      client.requeue();
+   }
+
+   /**
+    * Sends a reply that was not made by <code>processRequests</code>,
+    * adding the request ID and length for version 2 connections, or
+    * sending it as a frame for version 3 connections.
+    */
+   private void sendReply(Client client, int requestID, byte[] reply)
+   {
+      if(client.conn.version<2)
+      {
+         client.send(reply);
+         return;
+      }
+
+      byte[] result;
+      if(client.conn.version>=3)
+      {
+         result = new byte[reply.length + 8];
+         putInt(requestID, result, 0);
+         putInt(reply.length, result, 4);
+         System.arraycopy(reply, 0, result, 8, reply.length);
+         client.send(result);
+         return;
+      }
+
+      result = new byte[reply.length + 8];
+      result[0] = reply[0];
+      putInt(requestID, result, 1);
+      putInt(reply.length - 1, result, 5);
+      System.arraycopy(reply, 1, result, 9, reply.length - 1);
+      client.send(result);
+   }
+
+   /**
+    * Adds a client to the end of the run queue.
+    */
+   private void queue(Client client)
+   {
+      synchronized(runQueue)
+      {
+         runQueue.addElement(client);
+         runQueue.notifyAll();
+      }
+   }
+
+   /**
+    * Gets the length of the command at the start of the buffer.
+    *
+    * @param buf buffer holding the bytes received
+    * @param len number of bytes received
+    * @param version protocol version of the connection
+    *
+    * @return length of the command, or -1 if it is not complete
+    *
+    * @throws IOException if the command is too long
+    */
+   protected static int getCommandLength(byte[] buf, int len, int version)
+      throws IOException
+   {
+      // version 3 commands are a length-prefixed frame
+      if(version>=3)
+      {
+         if(len<4)
+            return -1;
+         int frame = checkLength(getInt(buf, 0));
+         if(frame==0)
+            throw new IOException("Invalid command length 0");
+         return (len<4 + frame) ? -1 : 4 + frame;
+      }
+
+      int header = (version>=2) ? 5 : 1;
+      if(len<header)
+         return -1;
+
+      int args = 0;
+      switch(buf[0])
+      {
+         case CMD_PUTBIT:
+         case CMD_PUTBYTE:
+         case CMD_BEGINEXCLUSIVE:
+            args = 1;
+            break;
+         case CMD_GETBLOCK:
+         case CMD_SETPOWERDURATION:
+         case CMD_STARTPOWERDELIVERY:
+         case CMD_SETPROGRAMPULSEDURATION:
+         case CMD_STARTPROGRAMPULSE:
+         case CMD_SETSPEED:
+            args = 4;
+            break;
+         case CMD_SELECT:
+            args = 8;
+            break;
+         case CMD_DATABLOCK:
+         case CMD_TARGETFAMILY:
+         case CMD_EXCLUDEFAMILY:
+            // block length, then the block
+            if(len<header + 4)
+               return -1;
+            args = 4 + checkLength(getInt(buf, header));
+            break;
+         case CMD_ISPRESENTALL:
+            // address count, then the addresses
+            if(len<header + 4)
+               return -1;
+            args = 4 + checkLength(checkLength(getInt(buf, header)) * 8);
+            break;
+         case CMD_SELECTDATABLOCK:
+            // address, block length, then the block
+            if(len<header + 12)
+               return -1;
+            args = 12 + checkLength(getInt(buf, header + 8));
+            break;
+         case CMD_EXECUTEBATCH:
+            // step count, type and length of each step, then the data
+            if(len<header + 4)
+               return -1;
+            int steps = checkLength(getInt(buf, header));
+            args = 4 + checkLength(steps * 5);
+            if(len<header + args)
+               return -1;
+            for(int i=0; i<steps; i++)
+               args += checkLength(getInt(buf, header + 4 + i*5 + 1));
+            checkLength(args);
+            break;
+         default:
+            break;
+      }
+
+      return (len<header + args) ? -1 : header + args;
+   }
+
+   /**
+    * Gets an int from a byte array, most significant byte first as
+    * written by a DataOutputStream.
+    */
+   private static int getInt(byte[] buf, int off)
+   {
+      return ((buf[off] & 0x0FF) << 24) | ((buf[off+1] & 0x0FF) << 16)
+             | ((buf[off+2] & 0x0FF) << 8) | (buf[off+3] & 0x0FF);
+   }
+
+   /**
+    * Puts an int in a byte array, most significant byte first as
+    * read by a DataInputStream.
+    */
+   private static void putInt(int val, byte[] buf, int off)
+   {
+      buf[off]   = (byte)(val >>> 24);
+      buf[off+1] = (byte)(val >>> 16);
+      buf[off+2] = (byte)(val >>> 8);
+      buf[off+3] = (byte)val;
+   }
+
+   /**
+    * Checks a length sent by a client.
+    */
+   private static int checkLength(int len)
+      throws IOException
+   {
+      if(len<0 || len>MAX_COMMAND_LENGTH)
+         throw new IOException("Invalid command length " + len);
+      return len;
+   }
+
+   //--------
+   //-------- Inner classes
+   //--------
+
+   /**
+    * The state of one client connection.
+    */
+   protected class Client
+   {
+      /** the client's channel */
+      SocketChannel channel;
+      /** the selector thread serving this client */
+      SelectorLoop loop;
+      /** the channel's key in the selector */
+      SelectionKey key;
+      /** connection state, one of the STATE_ constants */
+      int state = STATE_VERSION;
+      /** challenge sent for authentication */
+      byte[] challenge;
+      /** connection used to run commands with processRequests */
+      Connection conn = new Connection();
+      /** bytes received but not yet executed */
+      byte[] inBuffer = new byte[256];
+      /** number of bytes in inBuffer */
+      int inLength = 0;
+      /** results waiting to be written */
+      Vector outQueue = new Vector();
+      /** true if the client is in the run queue */
+      boolean queued = false;
+      /** true if the connection is closed */
+      boolean closed = false;
+      /** true if the connection should close once the output is written */
+      boolean closeAfterWrite = false;
+
+      Client(SocketChannel channel, SelectorLoop loop)
+      {
+         this.channel = channel;
+         this.loop = loop;
+         conn.sock = channel.socket();
+      }
+
+      /**
+       * Reads the bytes available on the channel.  Called by the
+       * selector thread, with the direct buffer it reads into.
+       * The handshake states fall through on purpose, since the
+       * client may send its answer together with the next command.
+       */
+      @SuppressWarnings("fallthrough")
+      void read(ByteBuffer readBuffer)
+         throws IOException
+      {
+         synchronized(this)
+         {
+            readBuffer.clear();
+            int n = channel.read(readBuffer);
+            if(n<0)
+               throw new EOFException("Connection closed");
+
+            if(inLength + n>inBuffer.length)
+            {
+               byte[] temp = new byte[Math.max(inBuffer.length*2, inLength + n)];
+               System.arraycopy(inBuffer, 0, temp, 0, inLength);
+               inBuffer = temp;
+            }
+            readBuffer.flip();
+            readBuffer.get(inBuffer, inLength, n);
+            inLength += n;
+         }
+
+         switch(state)
+         {
+            case STATE_VERSION:
+               if(inLength<1)
+                  return;
+               if(consume(1)[0]!=RET_SUCCESS)
+                  throw new IOException("send version failed");
+
+               // authenticate the client
+               challenge = new byte[8];
+               rand.nextBytes(challenge);
+               state = STATE_AUTHENTICATE;
+               send(challenge);
+               // fall through, in case the answer has arrived
+            case STATE_AUTHENTICATE:
+               if(inLength<4)
+                  return;
+
+               // compute the crc of the secret and the challenge
+               int crc = CRC16.compute(netAdapterSecret, 0);
+               crc = CRC16.compute(challenge, crc);
+               if(getInt(consume(4), 0)!=crc)
+               {
+                  ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                  DataOutputStream dos = new DataOutputStream(baos);
+                  dos.writeByte(RET_FAILURE);
+                  dos.writeUTF("Client Authentication Failed");
+                  closeAfterWrite = true;
+                  send(baos.toByteArray());
+                  return;
+               }
+
+               // from here on, use the offered protocol version
+               conn.version = protocolVersion;
+               state = STATE_COMMANDS;
+               send(new byte[] { RET_SUCCESS });
+               // fall through, in case a command has arrived
+            case STATE_COMMANDS:
+               requeue();
+               break;
+         }
+      }
+
+      /**
+       * Removes bytes from the start of the input buffer.
+       */
+      synchronized byte[] consume(int len)
+      {
+         byte[] b = new byte[len];
+         System.arraycopy(inBuffer, 0, b, 0, len);
+         System.arraycopy(inBuffer, len, inBuffer, 0, inLength - len);
+         inLength -= len;
+         return b;
+      }
+
+      /**
+       * Takes the next complete command from the input buffer.  Called by
+       * the adapter thread.
+       *
+       * @return the command, or null if the client is closed
+       */
+      byte[] takeCommand()
+      {
+         synchronized(this)
+         {
+            queued = false;
+            if(closed)
+               return null;
+
+            try
+            {
+               int len = getCommandLength(inBuffer, inLength, conn.version);
+               return (len<0) ? null : consume(len);
+            }
+            catch(IOException ioe)
+            {;}
+         }
+
+         // invalid command
+         close();
+         return null;
+      }
+
+      /**
+       * Checks if the next command needs the adapter when another client
+       * has exclusive use of it.
+       */
+      synchronized boolean needsAdapter()
+      {
+         int start = (conn.version>=3) ? 4 : 0;
+         if(closed || inLength<start + 1)
+            return false;
+
+         switch(inBuffer[start])
+         {
+            case CMD_BEGINEXCLUSIVE:
+               // a blocking beginExclusive waits for the adapter
+               int header = start + ((conn.version>=2) ? 5 : 1);
+               return (inLength>header && inBuffer[header]!=0);
+            case CMD_ENDEXCLUSIVE:
+            case CMD_PINGCONNECTION:
+            case CMD_CLOSECONNECTION:
+               return false;
+            default:
+               return true;
+         }
+      }
+
+      /**
+       * Puts the client in the run queue if it is closed or has a complete
+       * command, and is not in the queue already.
+       */
+      void requeue()
+      {
+         synchronized(this)
+         {
+            if(queued)
+               return;
+            try
+            {
+               if(!closed && getCommandLength(inBuffer, inLength, conn.version)<0)
+                  return;
+            }
+            catch(IOException ioe)
+            {
+               closed = true;
+            }
+            queued = true;
+         }
+         queue(this);
+      }
+
+      /**
+       * Queues bytes to be written to the client.
+       */
+      void send(byte[] data)
+      {
+         synchronized(this)
+         {
+            if(closed)
+               return;
+            outQueue.addElement(ByteBuffer.wrap(data));
+         }
+         loop.requestWrite(this);
+      }
+
+      /**
+       * Writes the queued output to the channel.  Called by the selector
+       * thread.
+       *
+       * @return true if all of the output was written
+       */
+      boolean write()
+         throws IOException
+      {
+         synchronized(this)
+         {
+            while(outQueue.size()>0)
+            {
+               ByteBuffer buf = (ByteBuffer)outQueue.elementAt(0);
+               channel.write(buf);
+               if(buf.hasRemaining())
+                  return false;
+               outQueue.removeElementAt(0);
+            }
+         }
+
+         if(closeAfterWrite)
+            close();
+         return true;
+      }
+
+      /**
+       * Closes the connection.  The client is queued once more, so the
+       * adapter thread can release exclusive use of the adapter.
+       */
+      void close()
+      {
+         synchronized(this)
+         {
+            if(closed)
+               return;
+            closed = true;
+            outQueue.removeAllElements();
+            try
+            {
+               if(key!=null)
+                  key.cancel();
+               channel.close();
+            }
+            catch(IOException ioe)
+            {;}
+         }
+         requeue();
+      }
+   }
+
+   /**
+    * A selector thread, doing the network I/O for its clients.
+    */
+   protected class SelectorLoop implements Runnable
+   {
+      /** the selector of this thread */
+      Selector selector;
+      /** channels waiting to be registered, with ops and attachment */
+      Vector registrations = new Vector();
+      /** clients with output waiting to be written */
+      Vector writeRequests = new Vector();
+      /** buffer for reading, reused for every read of this thread */
+      ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+      SelectorLoop()
+         throws IOException
+      {
+         selector = Selector.open();
+      }
+
+      /**
+       * Registers a channel with this selector thread.
+       */
+      void register(SelectableChannel channel, int ops, Client client)
+      {
+         synchronized(registrations)
+         {
+            registrations.addElement(new Object[] { channel, new Integer(ops), client });
+         }
+         selector.wakeup();
+      }
+
+      /**
+       * Asks this selector thread to write a client's output.
+       */
+      void requestWrite(Client client)
+      {
+         synchronized(writeRequests)
+         {
+            writeRequests.addElement(client);
+         }
+         selector.wakeup();
+      }
+
+      /**
+       * Closes the selector and all of its channels.
+       */
+      void close()
+      {
+         try
+         {
+            Iterator i = selector.keys().iterator();
+            while(i.hasNext())
+            {
+               Object o = ((SelectionKey)i.next()).attachment();
+               if(o instanceof Client)
+                  ((Client)o).close();
+            }
+         }
+         catch(Exception e)
+         {;}
+         selector.wakeup();
+      }
+
+      /**
+       * Run method for the selector thread.
+       */
+      public void run()
+      {
+         try
+         {
+            while(!hostStopped)
+            {
+               selector.select();
+
+               updateKeys();
+
+               Iterator i = selector.selectedKeys().iterator();
+               while(i.hasNext())
+               {
+                  SelectionKey key = (SelectionKey)i.next();
+                  i.remove();
+
+                  if(!key.isValid())
+                     continue;
+
+                  if(key.isAcceptable())
+                     accept();
+                  else
+                     service(key);
+               }
+            }
+         }
+         catch(IOException ioe)
+         {
+            if(DEBUG)
+               ioe.printStackTrace();
+         }
+         finally
+         {
+            try
+            {
+               selector.close();
+            }
+            catch(IOException ioe)
+            {;}
+         }
+      }
+
+      /**
+       * Registers new channels and adds write interest for clients with
+       * output waiting.
+       */
+      private void updateKeys()
+         throws IOException
+      {
+         synchronized(registrations)
+         {
+            for(int i=0; i<registrations.size(); i++)
+            {
+               Object[] r = (Object[])registrations.elementAt(i);
+               Client client = (Client)r[2];
+               SelectionKey key = ((SelectableChannel)r[0]).register(selector,
+                                     ((Integer)r[1]).intValue(), client);
+               if(client!=null)
+               {
+                  client.key = key;
+                  requestWrite(client);
+               }
+            }
+            registrations.removeAllElements();
+         }
+
+         synchronized(writeRequests)
+         {
+            for(int i=0; i<writeRequests.size(); i++)
+            {
+               Client client = (Client)writeRequests.elementAt(i);
+               if(client.key!=null && client.key.isValid())
+                  client.key.interestOps(SelectionKey.OP_READ
+                                         | SelectionKey.OP_WRITE);
+            }
+            writeRequests.removeAllElements();
+         }
+      }
+
+      /**
+       * Accepts a new connection, sends the version and gives it to the
+       * next selector thread.
+       */
+      private void accept()
+         throws IOException
+      {
+         SocketChannel channel = serverSocket.getChannel().accept();
+         if(channel==null)
+            return;
+
+         channel.configureBlocking(false);
+         channel.socket().setTcpNoDelay(true);
+
+         SelectorLoop loop = loops[nextLoop];
+         nextLoop = (nextLoop + 1) % loops.length;
+
+         // first thing transmitted should be version info
+         Client client = new Client(channel, loop);
+         byte[] version = new byte[4];
+         putInt(protocolVersion, version, 0);
+         client.outQueue.addElement(ByteBuffer.wrap(version));
+         loop.register(channel, SelectionKey.OP_READ, client);
+      }
+
+      /**
+       * Reads and writes a client's channel.
+       */
+      private void service(SelectionKey key)
+      {
+         Client client = (Client)key.attachment();
+         try
+         {
+            if(key.isReadable())
+               client.read(readBuffer);
+            if(key.isValid() && key.isWritable() && client.write()
+               && key.isValid())
+               key.interestOps(SelectionKey.OP_READ);
+         }
+         catch(IOException ioe)
+         {
+            if(DEBUG)
+               ioe.printStackTrace();
+            client.close();
+         }
+         catch(CancelledKeyException cke)
+         {
+            client.close();
+         }
+      }
+   }
+
+   //--------
+   //-------- Default Main Method, for launching server with defaults
+   //--------
+   /**
+    * A Default Main Method, for launching NetAdapterSelectorHost getting the
+    * default adapter with the OneWireAccessProvider and listening on
+    * the default port specified by DEFAULT_PORT.
+    */
+   public static void main(String[] args)
+      throws Exception
+   {
+      DSPortAdapter adapter
+         = com.dalsemi.onewire.OneWireAccessProvider.getDefaultAdapter();
+
+      NetAdapterSelectorHost host = new NetAdapterSelectorHost(adapter);
+
+      System.out.println("Starting Multicast Listener");
+      host.createMulticastListener();
+
+      System.out.println("Starting NetAdapter Selector Host");
+      (new Thread(host)).start();
+   }
+}
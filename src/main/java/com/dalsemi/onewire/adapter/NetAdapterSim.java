@@ -401,7 +401,7 @@ public class NetAdapterSim
       if(multicastListener==null)
       {
          // 4 bytes for integer versionUID
-         byte[] versionBytes = Convert.toByteArray(versionUID);
+         byte[] versionBytes = Convert.toByteArray(MIN_VERSION_UID);
 
          // this byte array is 5 because length is used to determine different
          // packet types by client
@@ -522,8 +522,8 @@ public class NetAdapterSim
    private boolean sendVersionUID(Connection conn)
       throws IOException
    {
-      // write server version
-      conn.output.writeInt(versionUID);
+      // write server version, the simulator speaks the version 1 protocol
+      conn.output.writeInt(MIN_VERSION_UID);
       conn.output.flush();
 
       byte retVal = conn.input.readByte();
@@ -28,7 +28,7 @@
 
 package com.dalsemi.onewire.adapter;
 
-/** Raw Send Packet that contains a StingBuffer of bytes to send and
+/** Raw Send Packet that contains a reusable buffer of bytes to send and
  *  an expected return length.
  *
  *  @version    0.00, 28 Aug 2000
@@ -42,9 +42,14 @@ class RawSendPacket
    //--------
 
    /**
-    * StringBuffer of bytes to send
+    * Buffer of bytes to send, only the first 'length' bytes are valid
     */
-   public StringBuffer buffer;
+   public byte[] buffer;
+
+   /**
+    * Number of valid bytes in buffer
+    */
+   public int length;
 
    /**
     * Expected length of return packet
@@ -60,7 +65,40 @@ class RawSendPacket
     */
    public RawSendPacket ()
    {
-      buffer       = new StringBuffer();
+      buffer       = new byte [128];
+      length       = 0;
+      returnLength = 0;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Empty the packet so it can be reused
+    */
+   public void reset ()
+   {
+      length       = 0;
       returnLength = 0;
    }
+
+   /**
+    * Append a byte to the packet, growing the buffer if needed
+    *
+    * @param  value  byte to append (lower 8 bits are used)
+    */
+   public void append (int value)
+   {
+      if (length == buffer.length)
+      {
+         byte[] temp = new byte [buffer.length * 2];
+
+         System.arraycopy(buffer, 0, temp, 0, length);
+
+         buffer = temp;
+      }
+
+      buffer [length++] = ( byte ) value;
+   }
 }
@@ -0,0 +1,1062 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.io.IOException;
+import java.util.Enumeration;
+import com.dalsemi.onewire.OneWireException;
+
+
+/**
+ * A RecordingAdapter wraps another <code>DSPortAdapter</code> and
+ * records every 1-Wire primitive it passes on (reset, bit and byte I/O,
+ * blocks, searches, speed and power changes) in a
+ * {@link TrafficLog TrafficLog} file, with nanosecond timestamps.  The
+ * recording can be played back without hardware by a
+ * {@link ReplayAdapter ReplayAdapter}, to profile or regression-test an
+ * application offline.
+ *
+ * <P>Compound methods such as <code>select</code>,
+ * <code>isPresent</code> and <code>executeBatch</code> are not passed on
+ * as such.  They run the <code>DSPortAdapter</code> versions built from
+ * the primitives, so that everything on the bus is recorded.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   DSPortAdapter adapter = new RecordingAdapter(
+ *      OneWireAccessProvider.getDefaultAdapter(), "bus.owtr");
+ *
+ *   // use the adapter as usual, then
+ *   adapter.freePort();
+ * </CODE> </PRE>
+ *
+ * @see ReplayAdapter
+ * @see TrafficLog
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class RecordingAdapter
+   extends DSPortAdapter
+{
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Adapter being recorded */
+   private DSPortAdapter adapter;
+
+   /** Log the traffic is written to */
+   private TrafficLog log;
+
+   /** Copy of the bytes sent by dataBlock */
+   private byte[] sent = new byte [64];
+
+   /** Search result and address of a findFirst/findNext */
+   private byte[] found = new byte [9];
+
+   /** Address found by a findFirst/findNext */
+   private byte[] address = new byte [8];
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates an adapter that records the traffic of another adapter to
+    * a new file.
+    *
+    * @param  adapter   adapter to record, with its port already selected
+    * @param  fileName  file to record to, replaced if it exists
+    *
+    * @throws OneWireException if the file cannot be written
+    */
+   public RecordingAdapter (DSPortAdapter adapter, String fileName)
+      throws OneWireException
+   {
+      this.adapter = adapter;
+
+      try
+      {
+         log = new TrafficLog(fileName, adapter.getAdapterName(),
+                              adapter.getPortName(), getFeatures(adapter));
+      }
+      catch (IOException ioe)
+      {
+         throw new OneWireException("RecordingAdapter: " + ioe.toString());
+      }
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Gets the adapter being recorded.
+    *
+    * @return the wrapped adapter
+    */
+   public DSPortAdapter getAdapter ()
+   {
+      return adapter;
+   }
+
+   /**
+    * Gets the log the traffic is written to.
+    *
+    * @return traffic log
+    */
+   public TrafficLog getTrafficLog ()
+   {
+      return log;
+   }
+
+   /**
+    * Gets the feature flags of an adapter, as stored in a traffic log.
+    *
+    * @param  adapter  adapter to check
+    *
+    * @return <code>TrafficLog.FEATURE_</code> flags
+    */
+   static int getFeatures (DSPortAdapter adapter)
+   {
+      int features = 0;
+
+      try
+      {
+         if (adapter.canOverdrive())
+            features |= TrafficLog.FEATURE_OVERDRIVE;
+         if (adapter.canHyperdrive())
+            features |= TrafficLog.FEATURE_HYPERDRIVE;
+         if (adapter.canFlex())
+            features |= TrafficLog.FEATURE_FLEX;
+         if (adapter.canProgram())
+            features |= TrafficLog.FEATURE_PROGRAM;
+         if (adapter.canDeliverPower())
+            features |= TrafficLog.FEATURE_POWER;
+         if (adapter.canDeliverSmartPower())
+            features |= TrafficLog.FEATURE_SMART_POWER;
+         if (adapter.canBreak())
+            features |= TrafficLog.FEATURE_BREAK;
+      }
+      catch (OneWireException e)
+      {
+         // VOID, record the features found so far
+      }
+
+      return features;
+   }
+
+   //--------
+   //-------- Adapter and port methods
+   //--------
+
+   /**
+    * Gets the name of the wrapped adapter, so containers treat this
+    * adapter the same way.
+    *
+    * @return  name of the wrapped adapter
+    */
+   public String getAdapterName ()
+   {
+      return adapter.getAdapterName();
+   }
+
+   /**
+    * Gets the port type description of the wrapped adapter.
+    *
+    * @return  port type description
+    */
+   public String getPortTypeDescription ()
+   {
+      return adapter.getPortTypeDescription();
+   }
+
+   /**
+    * Gets the class version.
+    *
+    * @return  version string
+    */
+   public String getClassVersion ()
+   {
+      return "0.00";
+   }
+
+   /**
+    * Gets the port names of the wrapped adapter.
+    *
+    * @return  <code>Enumeration</code> of type <code>String</code>
+    */
+   public Enumeration getPortNames ()
+   {
+      return adapter.getPortNames();
+   }
+
+   /**
+    * Selects a port on the wrapped adapter.
+    *
+    * @param  portName  name of the target port
+    *
+    * @return <code>true</code> if the port was aquired
+    *
+    * @throws OneWireIOException If port does not exist
+    * @throws OneWireException If port does not exist
+    */
+   public boolean selectPort (String portName)
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.selectPort(portName);
+   }
+
+   /**
+    * Frees the port of the wrapped adapter and closes the traffic log.
+    *
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void freePort ()
+      throws OneWireException
+   {
+      try
+      {
+         log.close();
+      }
+      catch (IOException ioe)
+      {
+         throw new OneWireException("RecordingAdapter: " + ioe.toString());
+      }
+      finally
+      {
+         adapter.freePort();
+      }
+   }
+
+   /**
+    * Gets the port name of the wrapped adapter.
+    *
+    * @return  name of the selected port
+    *
+    * @throws OneWireException if valid port not yet selected
+    */
+   public String getPortName ()
+      throws OneWireException
+   {
+      return adapter.getPortName();
+   }
+
+   /**
+    * Detects the wrapped adapter.
+    *
+    * @return  <code>true</code> if the adapter is confirmed to be connected
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean adapterDetected ()
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.adapterDetected();
+   }
+
+   //--------
+   //-------- Adapter features
+   //--------
+
+   /**
+    * Returns whether the wrapped adapter can communicate at overdrive.
+    *
+    * @return  <code>true</code> if the adapter supports overdrive
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean canOverdrive ()
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.canOverdrive();
+   }
+
+   /**
+    * Returns whether the wrapped adapter can communicate at hyperdrive.
+    *
+    * @return  <code>true</code> if the adapter supports hyperdrive
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean canHyperdrive ()
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.canHyperdrive();
+   }
+
+   /**
+    * Returns whether the wrapped adapter can communicate at flex speed.
+    *
+    * @return  <code>true</code> if the adapter supports flex speed
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean canFlex ()
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.canFlex();
+   }
+
+   /**
+    * Returns whether the wrapped adapter can provide a program voltage.
+    *
+    * @return  <code>true</code> if the adapter can program EPROM
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean canProgram ()
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.canProgram();
+   }
+
+   /**
+    * Returns whether the wrapped adapter can deliver power.
+    *
+    * @return  <code>true</code> if the adapter can deliver power
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean canDeliverPower ()
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.canDeliverPower();
+   }
+
+   /**
+    * Returns whether the wrapped adapter can deliver smart power.
+    *
+    * @return  <code>true</code> if the adapter can deliver smart power
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean canDeliverSmartPower ()
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.canDeliverSmartPower();
+   }
+
+   /**
+    * Returns whether the wrapped adapter can create a break.
+    *
+    * @return  <code>true</code> if the adapter can create a break
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean canBreak ()
+      throws OneWireIOException, OneWireException
+   {
+      return adapter.canBreak();
+   }
+
+   //--------
+   //-------- Searching
+   //--------
+
+   /**
+    * Finds the first device with the wrapped adapter, and records the
+    * result and address.
+    *
+    * @return  <code>true</code> if an iButton or 1-Wire device is found
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean findFirstDevice ()
+      throws OneWireIOException, OneWireException
+   {
+      return recordSearch(TrafficLog.TYPE_FIND_FIRST);
+   }
+
+   /**
+    * Finds the next device with the wrapped adapter, and records the
+    * result and address.
+    *
+    * @return  <code>true</code> if an iButton or 1-Wire device is found
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean findNextDevice ()
+      throws OneWireIOException, OneWireException
+   {
+      return recordSearch(TrafficLog.TYPE_FIND_NEXT);
+   }
+
+   /**
+    * Copies the address found by the last search.
+    *
+    * @param  address  array to receive the 8 byte address
+    */
+   public void getAddress (byte[] address)
+   {
+      adapter.getAddress(address);
+   }
+
+   /**
+    * Sets the wrapped adapter to find only alarming devices.
+    */
+   public void setSearchOnlyAlarmingDevices ()
+   {
+      adapter.setSearchOnlyAlarmingDevices();
+   }
+
+   /**
+    * Sets the wrapped adapter to not reset before a search.
+    */
+   public void setNoResetSearch ()
+   {
+      adapter.setNoResetSearch();
+   }
+
+   /**
+    * Sets the wrapped adapter to find all devices.
+    */
+   public void setSearchAllDevices ()
+   {
+      adapter.setSearchAllDevices();
+   }
+
+   /**
+    * Sets the wrapped adapter to find all families.
+    */
+   public void targetAllFamilies ()
+   {
+      adapter.targetAllFamilies();
+   }
+
+   /**
+    * Sets the wrapped adapter to find only this family.
+    *
+    * @param  family  the code of the family type to target for searches
+    */
+   public void targetFamily (int family)
+   {
+      adapter.targetFamily(family);
+   }
+
+   /**
+    * Sets the wrapped adapter to find only these families.
+    *
+    * @param  family  array of the codes of the families to target
+    */
+   public void targetFamily (byte family [])
+   {
+      adapter.targetFamily(family);
+   }
+
+   /**
+    * Sets the wrapped adapter to skip this family.
+    *
+    * @param  family  the code of the family type NOT to target in searches
+    */
+   public void excludeFamily (int family)
+   {
+      adapter.excludeFamily(family);
+   }
+
+   /**
+    * Sets the wrapped adapter to skip these families.
+    *
+    * @param  family  array of the codes of the families NOT to target
+    */
+   public void excludeFamily (byte family [])
+   {
+      adapter.excludeFamily(family);
+   }
+
+   //--------
+   //-------- Exclusive use
+   //--------
+
+   /**
+    * Gets exclusive use of the wrapped adapter.
+    *
+    * @param blocking <code>true</code> if want to block waiting
+    *                 for an excluse access to the adapter
+    * @return <code>true</code> if an exclusive session was aquired
+    *
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean beginExclusive (boolean blocking)
+      throws OneWireException
+   {
+      return adapter.beginExclusive(blocking);
+   }
+
+   /**
+    * Gets exclusive use of the wrapped adapter, waiting at most
+    * <code>timeout</code> milliseconds.
+    *
+    * @param timeout milliseconds to wait, 0 to not wait at all, or
+    *                <code>AdapterLock.WAIT_FOREVER</code>
+    * @return <code>true</code> if an exclusive session was aquired
+    *
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean beginExclusive (long timeout)
+      throws OneWireException
+   {
+      return adapter.beginExclusive(timeout);
+   }
+
+   /**
+    * Relinquishes exclusive use of the wrapped adapter.
+    */
+   public void endExclusive ()
+   {
+      adapter.endExclusive();
+   }
+
+   //--------
+   //-------- Primitive 1-Wire Network data methods
+   //--------
+
+   /**
+    * Sends a bit to the 1-Wire Network, and records it.
+    *
+    * @param  bitValue  the bit value to send to the 1-Wire Network.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void putBit (boolean bitValue)
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+
+      try
+      {
+         adapter.putBit(bitValue);
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_PUT_BIT, start, e);
+      }
+
+      record(TrafficLog.TYPE_PUT_BIT, start, bitValue ? 1 : 0, -1);
+   }
+
+   /**
+    * Gets a bit from the 1-Wire Network, and records it.
+    *
+    * @return  the bit value recieved from the the 1-Wire Network.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean getBit ()
+      throws OneWireIOException, OneWireException
+   {
+      long    start = System.nanoTime();
+      boolean bit;
+
+      try
+      {
+         bit = adapter.getBit();
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_GET_BIT, start, e);
+      }
+
+      record(TrafficLog.TYPE_GET_BIT, start, -1, bit ? 1 : 0);
+
+      return bit;
+   }
+
+   /**
+    * Sends a byte to the 1-Wire Network, and records it.
+    *
+    * @param  byteValue  the byte value to send to the 1-Wire Network.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void putByte (int byteValue)
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+
+      try
+      {
+         adapter.putByte(byteValue);
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_PUT_BYTE, start, e);
+      }
+
+      record(TrafficLog.TYPE_PUT_BYTE, start, byteValue & 0x0FF, -1);
+   }
+
+   /**
+    * Gets a byte from the 1-Wire Network, and records it.
+    *
+    * @return  the byte value received from the the 1-Wire Network.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public int getByte ()
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+      int  value;
+
+      try
+      {
+         value = adapter.getByte();
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_GET_BYTE, start, e);
+      }
+
+      record(TrafficLog.TYPE_GET_BYTE, start, -1, value & 0x0FF);
+
+      return value;
+   }
+
+   /**
+    * Gets a block of data from the 1-Wire Network, and records it.
+    *
+    * @param  len  length of data bytes to receive
+    *
+    * @return  the data received from the 1-Wire Network.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public byte[] getBlock (int len)
+      throws OneWireIOException, OneWireException
+   {
+      byte[] arr = new byte [len];
+
+      getBlock(arr, 0, len);
+
+      return arr;
+   }
+
+   /**
+    * Gets a block of data from the 1-Wire Network, and records it.
+    *
+    * @param  arr     array in which to write the received bytes
+    * @param  len     length of data bytes to receive
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void getBlock (byte[] arr, int len)
+      throws OneWireIOException, OneWireException
+   {
+      getBlock(arr, 0, len);
+   }
+
+   /**
+    * Gets a block of data from the 1-Wire Network, and records it.
+    *
+    * @param  arr     array in which to write the received bytes
+    * @param  off     offset into the array to start
+    * @param  len     length of data bytes to receive
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void getBlock (byte[] arr, int off, int len)
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+
+      try
+      {
+         adapter.getBlock(arr, off, len);
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_GET_BLOCK, start, e);
+      }
+
+      record(TrafficLog.TYPE_GET_BLOCK, start, null, 0, 0, arr, off, len);
+   }
+
+   /**
+    * Sends a block of data and returns the data received in the same
+    * array, and records both.
+    *
+    * @param  dataBlock  array of data to transfer to and from the 1-Wire Network.
+    * @param  off        offset into the array of data to start
+    * @param  len        length of data to send / receive starting at 'off'
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void dataBlock (byte dataBlock [], int off, int len)
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+
+      synchronized (this)
+      {
+         if (sent.length < len)
+            sent = new byte [Math.max(len, sent.length * 2)];
+
+         System.arraycopy(dataBlock, off, sent, 0, len);
+
+         try
+         {
+            adapter.dataBlock(dataBlock, off, len);
+         }
+         catch (OneWireIOException e)
+         {
+            throw recordError(TrafficLog.TYPE_DATA_BLOCK, start, e);
+         }
+
+         record(TrafficLog.TYPE_DATA_BLOCK, start, sent, 0, len, dataBlock,
+                off, len);
+      }
+   }
+
+   /**
+    * Sends a Reset to the 1-Wire Network, and records the result.
+    *
+    * @return  the result of the reset
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public int reset ()
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+      int  result;
+
+      try
+      {
+         result = adapter.reset();
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_RESET, start, e);
+      }
+
+      record(TrafficLog.TYPE_RESET, start, -1, result);
+
+      return result;
+   }
+
+   //--------
+   //-------- 1-Wire Network power methods
+   //--------
+
+   /**
+    * Sets the power duration of the wrapped adapter.
+    *
+    * @param timeFactor power delivery time factor
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void setPowerDuration (int timeFactor)
+      throws OneWireIOException, OneWireException
+   {
+      adapter.setPowerDuration(timeFactor);
+   }
+
+   /**
+    * Starts power delivery on the wrapped adapter, and records it.
+    *
+    * @param changeCondition when to change the voltage
+    *
+    * @return <code>true</code> if the voltage change was successful
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean startPowerDelivery (int changeCondition)
+      throws OneWireIOException, OneWireException
+   {
+      long    start = System.nanoTime();
+      boolean result;
+
+      try
+      {
+         result = adapter.startPowerDelivery(changeCondition);
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_START_POWER_DELIVERY, start, e);
+      }
+
+      record(TrafficLog.TYPE_START_POWER_DELIVERY, start, changeCondition,
+             result ? 1 : 0);
+
+      return result;
+   }
+
+   /**
+    * Sets the program pulse duration of the wrapped adapter.
+    *
+    * @param timeFactor program pulse time factor
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void setProgramPulseDuration (int timeFactor)
+      throws OneWireIOException, OneWireException
+   {
+      adapter.setProgramPulseDuration(timeFactor);
+   }
+
+   /**
+    * Starts a program pulse on the wrapped adapter, and records it.
+    *
+    * @param changeCondition when to start the pulse
+    *
+    * @return <code>true</code> if the voltage change was successful
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean startProgramPulse (int changeCondition)
+      throws OneWireIOException, OneWireException
+   {
+      long    start = System.nanoTime();
+      boolean result;
+
+      try
+      {
+         result = adapter.startProgramPulse(changeCondition);
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_START_PROGRAM_PULSE, start, e);
+      }
+
+      record(TrafficLog.TYPE_START_PROGRAM_PULSE, start, changeCondition,
+             result ? 1 : 0);
+
+      return result;
+   }
+
+   /**
+    * Starts a break on the wrapped adapter, and records it.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void startBreak ()
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+
+      try
+      {
+         adapter.startBreak();
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_START_BREAK, start, e);
+      }
+
+      record(TrafficLog.TYPE_START_BREAK, start, -1, -1);
+   }
+
+   /**
+    * Sets the wrapped adapter back to normal power, and records it.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void setPowerNormal ()
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+
+      try
+      {
+         adapter.setPowerNormal();
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_SET_POWER_NORMAL, start, e);
+      }
+
+      record(TrafficLog.TYPE_SET_POWER_NORMAL, start, -1, -1);
+   }
+
+   //--------
+   //-------- 1-Wire Network speed methods
+   //--------
+
+   /**
+    * Sets the speed of the wrapped adapter, and records it.
+    *
+    * @param speed new speed
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void setSpeed (int speed)
+      throws OneWireIOException, OneWireException
+   {
+      long start = System.nanoTime();
+
+      try
+      {
+         adapter.setSpeed(speed);
+      }
+      catch (OneWireIOException e)
+      {
+         throw recordError(TrafficLog.TYPE_SET_SPEED, start, e);
+      }
+
+      record(TrafficLog.TYPE_SET_SPEED, start, speed, -1);
+   }
+
+   /**
+    * Gets the speed of the wrapped adapter.
+    *
+    * @return current speed
+    */
+   public int getSpeed ()
+   {
+      return adapter.getSpeed();
+   }
+
+   //--------
+   //-------- Private Methods
+   //--------
+
+   /**
+    * Searches with the wrapped adapter and records the result.
+    */
+   private boolean recordSearch (int type)
+      throws OneWireIOException, OneWireException
+   {
+      long    start = System.nanoTime();
+      boolean result;
+
+      synchronized (this)
+      {
+         try
+         {
+            if (type == TrafficLog.TYPE_FIND_FIRST)
+               result = adapter.findFirstDevice();
+            else
+               result = adapter.findNextDevice();
+         }
+         catch (OneWireIOException e)
+         {
+            throw recordError(type, start, e);
+         }
+
+         for (int i = 0; i < found.length; i++)
+            found [i] = 0;
+
+         if (result)
+         {
+            found [0] = 1;
+
+            adapter.getAddress(address);
+            System.arraycopy(address, 0, found, 1, 8);
+         }
+
+         record(type, start, null, 0, 0, found, 0, found.length);
+      }
+
+      return result;
+   }
+
+   /**
+    * Records a primitive that sends and returns at most one byte.
+    */
+   private void record (int type, long start, int in, int out)
+      throws OneWireException
+   {
+      try
+      {
+         log.record(type, start, System.nanoTime(), in, out);
+      }
+      catch (IOException ioe)
+      {
+         throw new OneWireException("RecordingAdapter: " + ioe.toString());
+      }
+   }
+
+   /**
+    * Records a primitive with blocks of data.
+    */
+   private void record (int type, long start, byte[] in, int inOff,
+                        int inLen, byte[] out, int outOff, int outLen)
+      throws OneWireException
+   {
+      try
+      {
+         log.record(type, start, System.nanoTime(), in, inOff, inLen, out,
+                    outOff, outLen);
+      }
+      catch (IOException ioe)
+      {
+         throw new OneWireException("RecordingAdapter: " + ioe.toString());
+      }
+   }
+
+   /**
+    * Records a primitive that failed, and returns the exception to throw.
+    */
+   private OneWireIOException recordError (int type, long start,
+                                           OneWireIOException e)
+      throws OneWireException
+   {
+      try
+      {
+         log.recordError(type, start, System.nanoTime(), e.getMessage());
+      }
+      catch (IOException ioe)
+      {
+         throw new OneWireException("RecordingAdapter: " + ioe.toString());
+      }
+
+      return e;
+   }
+}
@@ -0,0 +1,1042 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import java.util.Vector;
+import com.dalsemi.onewire.OneWireException;
+
+
+/**
+ * A ReplayAdapter plays back 1-Wire traffic recorded by a
+ * {@link RecordingAdapter RecordingAdapter}, without any hardware.  Each
+ * primitive called on it is matched with the next record of the
+ * {@link TrafficLog TrafficLog} file, and returns the recorded result.
+ * Recorded exceptions are thrown again at the same point.
+ *
+ * <P>By default each primitive returns at the time it returned in the
+ * recording, measured from the first call, so an application runs at
+ * the speed it ran on the real bus.  <code>setSpeedFactor</code>
+ * plays back faster (or slower), and a factor of 0 plays back as fast
+ * as possible.</P>
+ *
+ * <P>If the application calls a different primitive than the one
+ * recorded, a <code>OneWireIOException</code> is thrown.  When
+ * <code>setStrict</code> is on (the default) the data sent must also
+ * match the recording, so a replay doubles as a regression test.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   ReplayAdapter adapter = new ReplayAdapter("bus.owtr");
+ *   adapter.setSpeedFactor(10.0);
+ *
+ *   // run the same application code against the adapter
+ * </CODE> </PRE>
+ *
+ * @see RecordingAdapter
+ * @see TrafficLog
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class ReplayAdapter
+   extends DSPortAdapter
+{
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Name of the file played back */
+   private String fileName;
+
+   /** The whole traffic log */
+   private MappedByteBuffer log;
+
+   /** Position of the first record */
+   private int firstRecord;
+
+   /** Name of the recorded adapter */
+   private String adapterName;
+
+   /** Name of the recorded port */
+   private String portName;
+
+   /** Wall clock time the recording started */
+   private long recordTime;
+
+   /** Feature flags of the recorded adapter */
+   private int features;
+
+   /** Playback speed, 0 for no waits */
+   private double speedFactor = 1.0;
+
+   /** Whether the data sent must match the recording */
+   private boolean strict = true;
+
+   /** System.nanoTime() matching the start of the recording, or -1 */
+   private long replayStart = -1;
+
+   /** Number of records played back */
+   private int recordsReplayed = 0;
+
+   /** Type of the current record */
+   private int recordType;
+
+   /** Position of the bytes sent in the current record */
+   private int inPos;
+
+   /** Number of bytes sent in the current record */
+   private int inLen;
+
+   /** Position of the bytes returned in the current record */
+   private int outPos;
+
+   /** Number of bytes returned in the current record */
+   private int outLen;
+
+   /** Recorded bytes sent, for comparing in strict mode */
+   private byte[] sent = new byte [64];
+
+   /** Address found by the last search */
+   private byte[] address = new byte [8];
+
+   /** Current speed */
+   private int speed = SPEED_REGULAR;
+
+   /** Lock for exclusive use of this adapter */
+   private final AdapterLock exclusiveLock = new AdapterLock();
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates an adapter that plays back a traffic log.
+    *
+    * @param  fileName  file written by a <code>RecordingAdapter</code>
+    *
+    * @throws OneWireException if the file cannot be read or is not a
+    *         traffic log
+    */
+   public ReplayAdapter (String fileName)
+      throws OneWireException
+   {
+      this.fileName = fileName;
+
+      try
+      {
+         RandomAccessFile file = new RandomAccessFile(fileName, "r");
+
+         try
+         {
+            FileChannel channel = file.getChannel();
+
+            if (channel.size() > Integer.MAX_VALUE)
+               throw new OneWireException(
+                  "ReplayAdapter: traffic log too large");
+
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                              channel.size());
+         }
+         finally
+         {
+            file.close();
+         }
+
+         if ((log.remaining() < 20) || (log.getInt() != TrafficLog.MAGIC))
+            throw new OneWireException(
+               "ReplayAdapter: not a traffic log, " + fileName);
+
+         int version = log.getInt();
+
+         if (version != TrafficLog.VERSION)
+            throw new OneWireException(
+               "ReplayAdapter: unsupported traffic log version " + version);
+
+         recordTime  = log.getLong();
+         features    = log.getInt();
+         adapterName = getString();
+         portName    = getString();
+         firstRecord = log.position();
+      }
+      catch (IOException ioe)
+      {
+         throw new OneWireException("ReplayAdapter: " + ioe.toString());
+      }
+      catch (RuntimeException re)
+      {
+         throw new OneWireException(
+            "ReplayAdapter: invalid traffic log, " + re.toString());
+      }
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Sets the playback speed.  1.0 plays back at the recorded timing,
+    * 2.0 twice as fast, and 0 as fast as possible.
+    *
+    * @param  factor  playback speed
+    */
+   public synchronized void setSpeedFactor (double factor)
+   {
+      speedFactor = factor;
+      replayStart = -1;
+   }
+
+   /**
+    * Gets the playback speed.
+    *
+    * @return playback speed, 0 for as fast as possible
+    */
+   public synchronized double getSpeedFactor ()
+   {
+      return speedFactor;
+   }
+
+   /**
+    * Sets whether the data sent must match the recording.
+    *
+    * @param  strict  <code>true</code> to throw a
+    *                 <code>OneWireIOException</code> on different data
+    */
+   public synchronized void setStrict (boolean strict)
+   {
+      this.strict = strict;
+   }
+
+   /**
+    * Gets whether the data sent must match the recording.
+    *
+    * @return <code>true</code> if different data is an error
+    */
+   public synchronized boolean getStrict ()
+   {
+      return strict;
+   }
+
+   /**
+    * Starts the playback over from the first record.
+    */
+   public synchronized void rewind ()
+   {
+      log.position(firstRecord);
+
+      replayStart     = -1;
+      recordsReplayed = 0;
+      speed           = SPEED_REGULAR;
+   }
+
+   /**
+    * Checks if there are records left to play back.
+    *
+    * @return <code>true</code> if there is another record
+    */
+   public synchronized boolean hasMoreRecords ()
+   {
+      return (log.remaining() > 0)
+             && ((log.get(log.position()) & 0x0FF) != TrafficLog.TYPE_END);
+   }
+
+   /**
+    * Gets the number of records played back since the start or the last
+    * rewind.
+    *
+    * @return number of records
+    */
+   public synchronized int getRecordsReplayed ()
+   {
+      return recordsReplayed;
+   }
+
+   /**
+    * Gets the wall clock time the recording started.
+    *
+    * @return milliseconds since January 1, 1970 UTC
+    */
+   public long getRecordTime ()
+   {
+      return recordTime;
+   }
+
+   //--------
+   //-------- Adapter and port methods
+   //--------
+
+   /**
+    * Gets the name of the recorded adapter, so containers treat this
+    * adapter the same way.
+    *
+    * @return  name of the recorded adapter
+    */
+   public String getAdapterName ()
+   {
+      return adapterName;
+   }
+
+   /**
+    * Gets the port type description.
+    *
+    * @return  port type description
+    */
+   public String getPortTypeDescription ()
+   {
+      return "Replay of recorded 1-Wire traffic";
+   }
+
+   /**
+    * Gets the class version.
+    *
+    * @return  version string
+    */
+   public String getClassVersion ()
+   {
+      return "0.00";
+   }
+
+   /**
+    * Gets the port names, which is only the name of the traffic log.
+    *
+    * @return  <code>Enumeration</code> of type <code>String</code>
+    */
+   public Enumeration getPortNames ()
+   {
+      Vector portNames = new Vector(1);
+
+      portNames.addElement(fileName);
+
+      return portNames.elements();
+   }
+
+   /**
+    * This method does nothing in <code>ReplayAdapter</code>, the traffic
+    * log is already open.
+    *
+    * @param  portName  name of the target port
+    *
+    * @return always returns <code>true</code>
+    */
+   public boolean selectPort (String portName)
+   {
+      return true;
+   }
+
+   /**
+    * This method does nothing in <code>ReplayAdapter</code>.
+    */
+   public void freePort ()
+   {
+      //this will not be implemented
+   }
+
+   /**
+    * Gets the name of the recorded port.
+    *
+    * @return  name of the recorded port
+    */
+   public String getPortName ()
+   {
+      return portName;
+   }
+
+   /**
+    * Always finds the adapter.
+    *
+    * @return  <code>true</code>
+    */
+   public boolean adapterDetected ()
+   {
+      return true;
+   }
+
+   //--------
+   //-------- Adapter features
+   //--------
+
+   /**
+    * Returns whether the recorded adapter could communicate at overdrive.
+    *
+    * @return  <code>true</code> if the adapter supports overdrive
+    */
+   public boolean canOverdrive ()
+   {
+      return (features & TrafficLog.FEATURE_OVERDRIVE) != 0;
+   }
+
+   /**
+    * Returns whether the recorded adapter could communicate at hyperdrive.
+    *
+    * @return  <code>true</code> if the adapter supports hyperdrive
+    */
+   public boolean canHyperdrive ()
+   {
+      return (features & TrafficLog.FEATURE_HYPERDRIVE) != 0;
+   }
+
+   /**
+    * Returns whether the recorded adapter could communicate at flex speed.
+    *
+    * @return  <code>true</code> if the adapter supports flex speed
+    */
+   public boolean canFlex ()
+   {
+      return (features & TrafficLog.FEATURE_FLEX) != 0;
+   }
+
+   /**
+    * Returns whether the recorded adapter could provide a program voltage.
+    *
+    * @return  <code>true</code> if the adapter can program EPROM
+    */
+   public boolean canProgram ()
+   {
+      return (features & TrafficLog.FEATURE_PROGRAM) != 0;
+   }
+
+   /**
+    * Returns whether the recorded adapter could deliver power.
+    *
+    * @return  <code>true</code> if the adapter can deliver power
+    */
+   public boolean canDeliverPower ()
+   {
+      return (features & TrafficLog.FEATURE_POWER) != 0;
+   }
+
+   /**
+    * Returns whether the recorded adapter could deliver smart power.
+    *
+    * @return  <code>true</code> if the adapter can deliver smart power
+    */
+   public boolean canDeliverSmartPower ()
+   {
+      return (features & TrafficLog.FEATURE_SMART_POWER) != 0;
+   }
+
+   /**
+    * Returns whether the recorded adapter could create a break.
+    *
+    * @return  <code>true</code> if the adapter can create a break
+    */
+   public boolean canBreak ()
+   {
+      return (features & TrafficLog.FEATURE_BREAK) != 0;
+   }
+
+   //--------
+   //-------- Searching
+   //--------
+
+   /**
+    * Plays back the result of a findFirstDevice.
+    *
+    * @return  <code>true</code> if an iButton or 1-Wire device was found
+    *
+    * @throws OneWireIOException if the next record is not a
+    *         findFirstDevice, or one was recorded
+    */
+   public synchronized boolean findFirstDevice ()
+      throws OneWireIOException
+   {
+      return replaySearch(TrafficLog.TYPE_FIND_FIRST);
+   }
+
+   /**
+    * Plays back the result of a findNextDevice.
+    *
+    * @return  <code>true</code> if an iButton or 1-Wire device was found
+    *
+    * @throws OneWireIOException if the next record is not a
+    *         findNextDevice, or one was recorded
+    */
+   public synchronized boolean findNextDevice ()
+      throws OneWireIOException
+   {
+      return replaySearch(TrafficLog.TYPE_FIND_NEXT);
+   }
+
+   /**
+    * Copies the address found by the last search.
+    *
+    * @param  address  array to receive the 8 byte address
+    */
+   public synchronized void getAddress (byte[] address)
+   {
+      System.arraycopy(this.address, 0, address, 0, 8);
+   }
+
+   /**
+    * This method does nothing in <code>ReplayAdapter</code>, the
+    * recorded search results are played back.
+    */
+   public void setSearchOnlyAlarmingDevices ()
+   {
+      //this will not be implemented
+   }
+
+   /**
+    * This method does nothing in <code>ReplayAdapter</code>, the
+    * recorded search results are played back.
+    */
+   public void setNoResetSearch ()
+   {
+      //this will not be implemented
+   }
+
+   /**
+    * This method does nothing in <code>ReplayAdapter</code>, the
+    * recorded search results are played back.
+    */
+   public void setSearchAllDevices ()
+   {
+      //this will not be implemented
+   }
+
+   //--------
+   //-------- Exclusive use
+   //--------
+
+   /**
+    * Gets exclusive use of this adapter.
+    *
+    * @param blocking <code>true</code> if want to block waiting
+    *                 for an excluse access to the adapter
+    * @return <code>true</code> if an exclusive session was aquired
+    */
+   public boolean beginExclusive (boolean blocking)
+   {
+      return exclusiveLock.lock(blocking);
+   }
+
+   /**
+    * Gets exclusive use of this adapter, waiting at most
+    * <code>timeout</code> milliseconds.
+    *
+    * @param timeout milliseconds to wait, 0 to not wait at all, or
+    *                <code>AdapterLock.WAIT_FOREVER</code>
+    * @return <code>true</code> if an exclusive session was aquired
+    */
+   public boolean beginExclusive (long timeout)
+   {
+      return exclusiveLock.tryLock(timeout);
+   }
+
+   /**
+    * Relinquishes exclusive use of this adapter.
+    */
+   public void endExclusive ()
+   {
+      exclusiveLock.unlock();
+   }
+
+   //--------
+   //-------- Primitive 1-Wire Network data methods
+   //--------
+
+   /**
+    * Plays back sending a bit.
+    *
+    * @param  bitValue  the bit value to send to the 1-Wire Network.
+    *
+    * @throws OneWireIOException if the next record is not a putBit, the
+    *         bit differs in strict mode, or an error was recorded
+    */
+   public synchronized void putBit (boolean bitValue)
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_PUT_BIT);
+      checkSent(bitValue ? 1 : 0);
+   }
+
+   /**
+    * Plays back getting a bit.
+    *
+    * @return  the recorded bit
+    *
+    * @throws OneWireIOException if the next record is not a getBit, or
+    *         an error was recorded
+    */
+   public synchronized boolean getBit ()
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_GET_BIT);
+
+      return getResult() != 0;
+   }
+
+   /**
+    * Plays back sending a byte.
+    *
+    * @param  byteValue  the byte value to send to the 1-Wire Network.
+    *
+    * @throws OneWireIOException if the next record is not a putByte, the
+    *         byte differs in strict mode, or an error was recorded
+    */
+   public synchronized void putByte (int byteValue)
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_PUT_BYTE);
+      checkSent(byteValue & 0x0FF);
+   }
+
+   /**
+    * Plays back getting a byte.
+    *
+    * @return  the recorded byte
+    *
+    * @throws OneWireIOException if the next record is not a getByte, or
+    *         an error was recorded
+    */
+   public synchronized int getByte ()
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_GET_BYTE);
+
+      return getResult();
+   }
+
+   /**
+    * Plays back getting a block of data.
+    *
+    * @param  len  length of data bytes to receive
+    *
+    * @return  the recorded data
+    *
+    * @throws OneWireIOException if the next record is not a getBlock,
+    *         the length differs in strict mode, or an error was recorded
+    */
+   public byte[] getBlock (int len)
+      throws OneWireIOException
+   {
+      byte[] arr = new byte [len];
+
+      getBlock(arr, 0, len);
+
+      return arr;
+   }
+
+   /**
+    * Plays back getting a block of data.
+    *
+    * @param  arr     array in which to write the received bytes
+    * @param  len     length of data bytes to receive
+    *
+    * @throws OneWireIOException if the next record is not a getBlock,
+    *         the length differs in strict mode, or an error was recorded
+    */
+   public void getBlock (byte[] arr, int len)
+      throws OneWireIOException
+   {
+      getBlock(arr, 0, len);
+   }
+
+   /**
+    * Plays back getting a block of data.
+    *
+    * @param  arr     array in which to write the received bytes
+    * @param  off     offset into the array to start
+    * @param  len     length of data bytes to receive
+    *
+    * @throws OneWireIOException if the next record is not a getBlock,
+    *         the length differs in strict mode, or an error was recorded
+    */
+   public synchronized void getBlock (byte[] arr, int off, int len)
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_GET_BLOCK);
+
+      if (strict && (len != outLen))
+         throw mismatch(TrafficLog.TYPE_GET_BLOCK);
+
+      copyResult(arr, off, len);
+   }
+
+   /**
+    * Plays back sending a block of data and returns the recorded data in
+    * the same array.
+    *
+    * @param  dataBlock  array of data to transfer to and from the 1-Wire Network.
+    * @param  off        offset into the array of data to start
+    * @param  len        length of data to send / receive starting at 'off'
+    *
+    * @throws OneWireIOException if the next record is not a dataBlock,
+    *         the data differs in strict mode, or an error was recorded
+    */
+   public synchronized void dataBlock (byte dataBlock [], int off, int len)
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_DATA_BLOCK);
+
+      if (strict)
+      {
+         if (len != inLen)
+            throw mismatch(TrafficLog.TYPE_DATA_BLOCK);
+
+         if (sent.length < len)
+            sent = new byte [Math.max(len, sent.length * 2)];
+
+         copyBytes(inPos, sent, 0, len);
+
+         for (int i = 0; i < len; i++)
+            if (dataBlock [off + i] != sent [i])
+               throw mismatch(TrafficLog.TYPE_DATA_BLOCK);
+      }
+
+      copyResult(dataBlock, off, len);
+   }
+
+   /**
+    * Plays back a reset.
+    *
+    * @return  the recorded result of the reset
+    *
+    * @throws OneWireIOException if the next record is not a reset, or an
+    *         error was recorded
+    */
+   public synchronized int reset ()
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_RESET);
+
+      return getResult();
+   }
+
+   //--------
+   //-------- 1-Wire Network power methods
+   //--------
+
+   /**
+    * This method does nothing in <code>ReplayAdapter</code>.
+    *
+    * @param timeFactor power delivery time factor
+    */
+   public void setPowerDuration (int timeFactor)
+   {
+      //this will not be implemented
+   }
+
+   /**
+    * Plays back starting power delivery.
+    *
+    * @param changeCondition when to change the voltage
+    *
+    * @return the recorded result
+    *
+    * @throws OneWireIOException if the next record is not a
+    *         startPowerDelivery, or an error was recorded
+    */
+   public synchronized boolean startPowerDelivery (int changeCondition)
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_START_POWER_DELIVERY);
+      checkSent(changeCondition);
+
+      return getResult() != 0;
+   }
+
+   /**
+    * This method does nothing in <code>ReplayAdapter</code>.
+    *
+    * @param timeFactor program pulse time factor
+    */
+   public void setProgramPulseDuration (int timeFactor)
+   {
+      //this will not be implemented
+   }
+
+   /**
+    * Plays back starting a program pulse.
+    *
+    * @param changeCondition when to start the pulse
+    *
+    * @return the recorded result
+    *
+    * @throws OneWireIOException if the next record is not a
+    *         startProgramPulse, or an error was recorded
+    */
+   public synchronized boolean startProgramPulse (int changeCondition)
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_START_PROGRAM_PULSE);
+      checkSent(changeCondition);
+
+      return getResult() != 0;
+   }
+
+   /**
+    * Plays back starting a break.
+    *
+    * @throws OneWireIOException if the next record is not a startBreak,
+    *         or an error was recorded
+    */
+   public synchronized void startBreak ()
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_START_BREAK);
+   }
+
+   /**
+    * Plays back setting normal power.
+    *
+    * @throws OneWireIOException if the next record is not a
+    *         setPowerNormal, or an error was recorded
+    */
+   public synchronized void setPowerNormal ()
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_SET_POWER_NORMAL);
+   }
+
+   //--------
+   //-------- 1-Wire Network speed methods
+   //--------
+
+   /**
+    * Plays back setting the speed.
+    *
+    * @param speed new speed
+    *
+    * @throws OneWireIOException if the next record is not a setSpeed,
+    *         the speed differs in strict mode, or an error was recorded
+    */
+   public synchronized void setSpeed (int speed)
+      throws OneWireIOException
+   {
+      next(TrafficLog.TYPE_SET_SPEED);
+      checkSent(speed);
+
+      this.speed = speed;
+   }
+
+   /**
+    * Gets the speed last set.
+    *
+    * @return current speed
+    */
+   public synchronized int getSpeed ()
+   {
+      return speed;
+   }
+
+   //--------
+   //-------- Private Methods
+   //--------
+
+   /**
+    * Moves to the next record, which must be of the given type, waits
+    * until the time it returned in the recording, and throws a recorded
+    * exception.
+    */
+   private void next (int type)
+      throws OneWireIOException
+   {
+      if (!hasMoreRecords())
+         throw new OneWireIOException("ReplayAdapter: "
+                                      + TrafficLog.getTypeName(type)
+                                      + " called after the end of the recording");
+
+      int  recorded = log.get() & 0x0FF;
+      long start    = log.getLong();
+      long duration = log.getLong();
+
+      inLen  = log.getInt();
+      inPos  = log.position();
+      log.position(inPos + inLen);
+
+      outLen = log.getInt();
+      outPos = log.position();
+      log.position(outPos + outLen);
+
+      recordsReplayed++;
+      recordType = recorded & ~TrafficLog.FLAG_ERROR;
+
+      if ((recorded & ~TrafficLog.FLAG_ERROR) != type)
+         throw new OneWireIOException("ReplayAdapter: "
+                                      + TrafficLog.getTypeName(type)
+                                      + " called, recorded "
+                                      + TrafficLog.getTypeName(recorded)
+                                      + " at record " + recordsReplayed);
+
+      waitUntil(start, start + duration);
+
+      if ((recorded & TrafficLog.FLAG_ERROR) != 0)
+      {
+         byte[] text = new byte [outLen];
+
+         copyBytes(outPos, text, 0, outLen);
+
+         throw new OneWireIOException(decode(text));
+      }
+   }
+
+   /**
+    * Waits until the recorded end time of a primitive, scaled by the
+    * speed factor.  The first call sets the time base, so there is no
+    * wait for the time before the first primitive.  Waits shorter than a
+    * millisecond yield instead of sleeping, since a sleep can take much
+    * longer than a fast primitive.
+    */
+   private void waitUntil (long start, long end)
+   {
+      if (speedFactor <= 0)
+         return;
+
+      if (replayStart < 0)
+         replayStart = System.nanoTime() - ( long ) (start / speedFactor);
+
+      long target = replayStart + ( long ) (end / speedFactor);
+      long delay;
+
+      while ((delay = target - System.nanoTime()) > 0)
+      {
+         if (delay < 1000000)
+            Thread.yield();
+         else
+         {
+            try
+            {
+               Thread.sleep(delay / 1000000);
+            }
+            catch (InterruptedException e)
+            {
+               return;
+            }
+         }
+      }
+   }
+
+   /**
+    * Plays back a search record.
+    */
+   private boolean replaySearch (int type)
+      throws OneWireIOException
+   {
+      next(type);
+
+      if (outLen < 9)
+         throw new OneWireIOException("ReplayAdapter: invalid "
+                                      + TrafficLog.getTypeName(type)
+                                      + " at record " + recordsReplayed);
+
+      for (int i = 0; i < 8; i++)
+         address [i] = log.get(outPos + 1 + i);
+
+      return log.get(outPos) != 0;
+   }
+
+   /**
+    * Checks a byte sent matches the recording in strict mode.
+    */
+   private void checkSent (int value)
+      throws OneWireIOException
+   {
+      if (strict && ((inLen != 1) || ((log.get(inPos) & 0x0FF) != value)))
+         throw mismatch(recordType);
+   }
+
+   /**
+    * Gets the single byte returned in the recording.
+    */
+   private int getResult ()
+      throws OneWireIOException
+   {
+      if (outLen < 1)
+         throw new OneWireIOException("ReplayAdapter: no result recorded"
+                                      + " at record " + recordsReplayed);
+
+      return log.get(outPos) & 0x0FF;
+   }
+
+   /**
+    * Copies the bytes returned in the recording.
+    */
+   private void copyResult (byte[] arr, int off, int len)
+   {
+      copyBytes(outPos, arr, off, Math.min(len, outLen));
+   }
+
+   /**
+    * Copies bytes from the traffic log, leaving its position as it was.
+    */
+   private void copyBytes (int pos, byte[] arr, int off, int len)
+   {
+      int next = log.position();
+
+      log.position(pos);
+      log.get(arr, off, len);
+      log.position(next);
+   }
+
+   /**
+    * Creates the exception for data that differs from the recording.
+    */
+   private OneWireIOException mismatch (int type)
+   {
+      return new OneWireIOException("ReplayAdapter: "
+                                    + TrafficLog.getTypeName(type)
+                                    + " sent different data than recorded"
+                                    + " at record " + recordsReplayed);
+   }
+
+   /**
+    * Reads a string written as a short length and UTF-8 bytes.
+    */
+   private String getString ()
+   {
+      byte[] text = new byte [log.getShort()];
+
+      log.get(text);
+
+      return decode(text);
+   }
+
+   /**
+    * Gets the string of UTF-8 bytes.
+    */
+   private static String decode (byte[] text)
+   {
+      try
+      {
+         return new String(text, "UTF-8");
+      }
+      catch (java.io.UnsupportedEncodingException e)
+      {
+         return new String(text);
+      }
+   }
+}
@@ -0,0 +1,146 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+
+/**
+ * Builds and checks a Search ROM pass that follows the path of one
+ * address, as a raw block of bits that can be put in a
+ * {@link TransactionBatch TransactionBatch}.  Each of the 64 triplets
+ * reads an address bit and its complement and then writes the bit of
+ * the address, so only the device with that address (and devices that
+ * share a prefix with it, up to where they differ) stay in the search.
+ *
+ * @see IncrementalSearch
+ * @see DSPortAdapter#isPresent(long[])
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+final class SearchPass
+{
+
+   //--------
+   //-------- Finals
+   //--------
+
+   /** Search ROM command */
+   static final byte SEARCH_ROM = ( byte ) 0xF0;
+
+   /** Bytes of a pass, the command and 64 triplets of 3 bits */
+   static final int PASS_LENGTH = 25;
+
+   /** Result of <code>check</code>, the device is present */
+   static final int PRESENT = 1;
+
+   /** Result of <code>check</code>, the device is gone */
+   static final int GONE = 0;
+
+   /** Result of <code>check</code>, an unexpected device is on the path */
+   static final int UNKNOWN_BRANCH = -1;
+
+   //--------
+   //-------- Methods
+   //--------
+
+   private SearchPass ()
+   {
+   }
+
+   /**
+    * Builds the pass that follows the path of an address.
+    *
+    * @param address device address
+    * @param pass    buffer for the pass
+    * @param off     offset of the pass in the buffer
+    */
+   static void build (long address, byte[] pass, int off)
+   {
+      pass [off] = SEARCH_ROM;
+
+      for (int i = 1; i < PASS_LENGTH; i++)
+         pass [off + i] = ( byte ) 0xFF;
+
+      for (int i = 0; i < 64; i++)
+      {
+         if (((address >>> i) & 1) == 0)
+         {
+            int index = i * 3 + 2;
+
+            pass [off + 1 + (index >>> 3)] &= ~(1 << (index & 7));
+         }
+      }
+   }
+
+   /**
+    * Checks the result of a pass.  A device with the other bit value at
+    * an address bit is expected only where <code>branchBits</code> has
+    * that bit set; pass -1 to allow them everywhere.
+    *
+    * @param address    device address the pass followed
+    * @param branchBits address bits where other devices may branch off
+    * @param data       buffer holding the result of the pass
+    * @param off        offset of the pass in the buffer
+    *
+    * @return <code>PRESENT</code>, <code>GONE</code> or
+    *         <code>UNKNOWN_BRANCH</code>
+    */
+   static int check (long address, long branchBits, byte[] data, int off)
+   {
+      // skip the command byte
+      off++;
+
+      for (int i = 0; i < 64; i++)
+      {
+         int index = i * 3;
+         int id    = (data [off + (index >>> 3)] >>> (index & 7)) & 1;
+
+         index++;
+
+         int cmp = (data [off + (index >>> 3)] >>> (index & 7)) & 1;
+
+         // no devices left on the path
+         if ((id == 1) && (cmp == 1))
+            return GONE;
+
+         // a device with the other bit value, but none is expected there
+         boolean bit   = ((address >>> i) & 1) == 1;
+         boolean other = bit ? (id == 0) : (cmp == 0);
+
+         if (other && ((branchBits & (1L << i)) == 0))
+            return UNKNOWN_BRANCH;
+
+         // the device itself is gone
+         if (bit ? (cmp != 0) : (id != 0))
+            return GONE;
+      }
+
+      return PRESENT;
+   }
+}
@@ -51,12 +51,14 @@ public class SerialService
    private InputStream serialInputStream = null;
    /** The output stream, for writing data to the serial port */
    private OutputStream serialOutputStream = null;
-   /** The hash code of the thread that currently owns this serial port */
-   private int currentThreadHash = 0;
+   /** Lock for exclusive use of this serial port, owned by a thread */
+   private final AdapterLock exclusiveLock = new AdapterLock();
    /** temporary array, used for converting characters to bytes */
    private byte[] tempArray = new byte[128];
    /** used to end the Object.wait loop in readWithTimeout method */
    private transient boolean dataAvailable = false;
+   /** lock used to signal dataAvailable from the serialEvent callback */
+   private final Object readLock = new Object();
 
    /** Vector of thread hash codes that have done an open but no close */
    private final Vector users = new Vector(4);
@@ -64,6 +66,13 @@ public class SerialService
    /** Flag to indicate byte banging on read */
    private final boolean byteBang;
 
+   /** Flag to indicate reads should wait on DATA_AVAILABLE events */
+   private final boolean eventRead;
+
+   /** Longest single wait (in ms) for a DATA_AVAILABLE event before
+    *  the input stream is checked again, in case an event is missed */
+   private static final long EVENT_READ_POLL = 10;
+
    /** Vector of serial port ID strings (i.e. "COM1", "COM2", etc) */
    private static final Vector vPortIDs = new Vector(2);
    /** static list of threadIDs to the services they are using */
@@ -92,14 +101,8 @@ public class SerialService
          if (temp==null)
            return;
 
-         synchronized(temp)
-         {
-            if (t.hashCode() == temp.currentThreadHash)
-            {
-                //then we need to release the lock...
-                temp.currentThreadHash = 0;
-            }
-         }
+         // release the lock if the thread owns it
+         temp.exclusiveLock.release(t);
 
          temp.closePortByThreadID(t);
          knownServices.remove(t);
@@ -121,6 +124,7 @@ public class SerialService
    {
       this.comPortName = null;
       this.byteBang = false;
+      this.eventRead = false;
    }
 
    /**
@@ -146,6 +150,21 @@ public class SerialService
       {
          byteBang = false;
       }
+
+      // check to see if reads should block on serial events
+      prop = com.dalsemi.onewire.OneWireAccessProvider.getProperty(
+                "onewire.serial.eventread");
+      if (prop != null)
+      {
+         if (prop.indexOf("true") != -1)
+            eventRead = true;
+         else
+            eventRead = false;
+      }
+      else
+      {
+         eventRead = false;
+      }
    }
 
    public static SerialService getSerialService(String strComPort)
@@ -175,12 +194,19 @@ public class SerialService
 
    /**
     * SerialPortEventListener method.  This just calls the notify
-    * method on this object, so that all blocking methods are kicked
-    * awake whenever a serialEvent occurs.
+    * method on the read lock, so that a blocking readWithTimeout is
+    * kicked awake whenever data arrives at the serial port.
     */
    public void serialEvent(SerialPortEvent spe)
    {
-      dataAvailable = true;
+      if (spe.getEventType() == SerialPortEvent.DATA_AVAILABLE)
+      {
+         synchronized(readLock)
+         {
+            dataAvailable = true;
+            readLock.notifyAll();
+         }
+      }
       if(DEBUG)
       {
          switch(spe.getEventType())
@@ -219,14 +245,6 @@ public class SerialService
          System.out.println("SerialService.SerialEvent: oldValue=" + spe.getOldValue());
          System.out.println("SerialService.SerialEvent: newValue=" + spe.getNewValue());
       }
-      //try
-      //{
-      //   serialInputStream.notifyAll();
-      //}
-      //catch(Exception e)
-      //{
-      //   e.printStackTrace();
-      //}
    }
 
 
@@ -295,33 +313,7 @@ public class SerialService
          }
          //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
 
-         if(spel!=null)
-            serialPort.addEventListener(spel);
-         else
-            serialPort.addEventListener(this);
-         serialPort.notifyOnOutputEmpty(true);
-         serialPort.notifyOnDataAvailable(true);
-
-         // flow i/o
-         serialPort.setFlowControlMode(SerialPort.FLOWCONTROL_NONE);
-
-         serialInputStream  = serialPort.getInputStream();
-         serialOutputStream = serialPort.getOutputStream();
-         // bug workaround
-         serialOutputStream.write(0);
-
-         // settings
-         serialPort.disableReceiveFraming();
-         serialPort.disableReceiveThreshold();
-         serialPort.enableReceiveTimeout(1);
-
-         // set baud rate
-         serialPort.setSerialPortParams(9600, SerialPort.DATABITS_8,
-                                        SerialPort.STOPBITS_1,
-                                        SerialPort.PARITY_NONE);
-
-         serialPort.setDTR(true);
-         serialPort.setRTS(true);
+         configurePort(spel);
 
          //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
          if(DEBUG)
@@ -342,6 +334,78 @@ public class SerialService
       }
    }
 
+   /**
+    * Opens this service on a port that was acquired somewhere else, such
+    * as a stand-in port used to benchmark the read modes.  The port is
+    * set up the same way <code>openPort</code> sets up a real one.
+    *
+    * @param port the acquired serial port
+    * @param spel listener for serial events, or <code>null</code> to
+    *        use this service
+    *
+    * @throws IOException if the port cannot be set up
+    */
+   synchronized void openPort(SerialPort port, SerialPortEventListener spel)
+      throws IOException
+   {
+      // record this thread as an owner
+      if (users.indexOf(Thread.currentThread()) == -1)
+         users.addElement(Thread.currentThread());
+
+      if(isPortOpen())
+         return;
+
+      try
+      {
+         serialPort = port;
+         configurePort(spel);
+      }
+      catch(Exception e)
+      {
+         serialPort.close();
+         serialPort = null;
+
+         throw new IOException(
+            "Could not open port (" + comPortName + ") :" + e);
+      }
+   }
+
+   /**
+    * Sets up the streams, events and line settings of a newly opened port.
+    */
+   private void configurePort(SerialPortEventListener spel)
+      throws IOException, TooManyListenersException,
+             UnsupportedCommOperationException
+   {
+      if(spel!=null)
+         serialPort.addEventListener(spel);
+      else
+         serialPort.addEventListener(this);
+      serialPort.notifyOnOutputEmpty(true);
+      serialPort.notifyOnDataAvailable(true);
+
+      // flow i/o
+      serialPort.setFlowControlMode(SerialPort.FLOWCONTROL_NONE);
+
+      serialInputStream  = serialPort.getInputStream();
+      serialOutputStream = serialPort.getOutputStream();
+      // bug workaround
+      serialOutputStream.write(0);
+
+      // settings
+      serialPort.disableReceiveFraming();
+      serialPort.disableReceiveThreshold();
+      serialPort.enableReceiveTimeout(1);
+
+      // set baud rate
+      serialPort.setSerialPortParams(9600, SerialPort.DATABITS_8,
+                                     SerialPort.STOPBITS_1,
+                                     SerialPort.PARITY_NONE);
+
+      serialPort.setDTR(true);
+      serialPort.setRTS(true);
+   }
+
    public synchronized void setNotifyOnDataAvailable(boolean notify)
    {
       serialPort.notifyOnDataAvailable(notify);
@@ -491,89 +555,69 @@ public class SerialService
       if(DEBUG)
          System.out.println("SerialService.beginExclusive(bool)");
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
-      if (blocking)
+      if (exclusiveLock.lock(blocking))
       {
-         while (!beginExclusive())
-         {
-             try{Thread.sleep(50);}catch(Exception e){}
-         }
+         knownServices.put(Thread.currentThread(), this);
 
          return true;
       }
       else
-         return beginExclusive();
+         return false;
    }
 
    /**
-    * Relinquishes exclusive control of the 1-Wire Network.
-    * This command dynamically marks the end of a critical section and
-    * should be used when exclusive control is no longer needed.
+    * Gets exclusive use of the 1-Wire to communicate with an iButton or
+    * 1-Wire Device, waiting at most <code>timeout</code> milliseconds
+    * for another thread to relinquish it.  Threads waiting for the port
+    * get it in the order they asked for it.
+    *
+    * @param timeout milliseconds to wait, or
+    *                <code>AdapterLock.WAIT_FOREVER</code>
+    * @return <code>true</code> if an exclusive session with the adapter
+    *         was aquired
     */
-   public synchronized void endExclusive ()
+   public boolean beginExclusive (long timeout)
    {
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
       if(DEBUG)
-         System.out.println("SerialService.endExclusive");
+         System.out.println("SerialService.beginExclusive(long)");
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
-      // if own then release
-      if (currentThreadHash == Thread.currentThread().hashCode())
+      if (exclusiveLock.tryLock(timeout))
       {
-            currentThreadHash = 0;
+         knownServices.put(Thread.currentThread(), this);
+
+         return true;
       }
-      knownServices.remove(Thread.currentThread());
+      else
+         return false;
    }
 
    /**
-    * Check if this thread has exclusive control of the port.
+    * Relinquishes exclusive control of the 1-Wire Network.
+    * This command dynamically marks the end of a critical section and
+    * should be used when exclusive control is no longer needed.
     */
-   public synchronized boolean haveExclusive ()
+   public void endExclusive ()
    {
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
       if(DEBUG)
-         System.out.println("SerialService.haveExclusive");
+         System.out.println("SerialService.endExclusive");
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
-      return (currentThreadHash == Thread.currentThread().hashCode());
+      // if own then release
+      exclusiveLock.unlock();
+      knownServices.remove(Thread.currentThread());
    }
 
    /**
-    * Gets exclusive use of the 1-Wire to communicate with an iButton or
-    * 1-Wire Device.
-    * This method should be used for critical sections of code where a
-    * sequence of commands must not be interrupted by communication of
-    * threads with other iButtons, and it is permissible to sustain
-    * a delay in the special case that another thread has already been
-    * granted exclusive access and this access has not yet been
-    * relinquished. This is private and non blocking<p>
-    *
-    * @return <code>true</code> a exclusive session with the adapter was
-    *         aquired
-    *
-    * @throws IOException
+    * Check if this thread has exclusive control of the port.
     */
-   private synchronized boolean beginExclusive ()
+   public boolean haveExclusive ()
    {
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
       if(DEBUG)
-         System.out.println("SerialService.beginExclusive()");
+         System.out.println("SerialService.haveExclusive");
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
-      if (currentThreadHash == 0)
-      {
-         // not owned so take
-         currentThreadHash = Thread.currentThread().hashCode();
-         knownServices.put(Thread.currentThread(), this);
-
-         return true;
-      }
-      else if (currentThreadHash == Thread.currentThread().hashCode())
-      {
-         // already own
-         return true;
-      }
-      else
-      {
-         // want port but don't own
-         return false;
-      }
+      return exclusiveLock.isHeldByCurrentThread();
    }
 
    /**
@@ -709,6 +753,65 @@ public class SerialService
          }
          while (length > count);
       }
+      else if (eventRead)
+      {
+         //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
+         if(DEBUG)
+            System.out.println("SerialService.readWithTimeout(): event driven read");
+         //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
+
+         long deadline = System.nanoTime() + (length*20 + 800)*1000000L;
+         do
+         {
+            // clear the flag before checking, so an event that arrives
+            // between available() and wait() is not lost
+            synchronized(readLock)
+            {
+               dataAvailable = false;
+            }
+
+            int get_num = serialInputStream.available();
+            if (get_num > 0)
+            {
+               // check for block bigger then buffer
+               if ((get_num + count) > length)
+                  get_num = length - count;
+
+               // read the block
+               count += serialInputStream.read(buffer, count+offset, get_num);
+            }
+            else
+            {
+               // check for timeout
+               long remaining = deadline - System.nanoTime();
+               if (remaining <= 0)
+                  break;
+
+               // wait for the serialEvent callback (or poll interval)
+               long wait_ms = remaining / 1000000L;
+               int wait_ns = (int)(remaining % 1000000L);
+               if (wait_ms >= EVENT_READ_POLL)
+               {
+                  wait_ms = EVENT_READ_POLL;
+                  wait_ns = 0;
+               }
+               synchronized(readLock)
+               {
+                  try
+                  {
+                     if (!dataAvailable)
+                        readLock.wait(wait_ms, wait_ns);
+                  }
+                  catch(InterruptedException ie)
+                  {
+                     Thread.currentThread().interrupt();
+                     break;
+                  }
+               }
+            }
+         }
+         while (length > count);
+      }
       else
       {
          do
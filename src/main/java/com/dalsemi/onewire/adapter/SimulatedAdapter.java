@@ -0,0 +1,910 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.util.Enumeration;
+import java.util.Vector;
+import com.dalsemi.onewire.OneWireException;
+
+
+/**
+ * A SimulatedAdapter is a 1-Wire bus in memory, with
+ * {@link SimulatedDevice SimulatedDevice} models on it in place of real
+ * devices.  Unlike the {@link DumbAdapter DumbAdapter}, which hands out
+ * containers, every primitive is run one time slot at a time against
+ * the devices on the bus: the value of each time slot is the wired-AND
+ * of the master and every device, and the search is the real Search ROM
+ * triplet.  The containers in this API therefore talk to the
+ * simulated devices exactly as they talk to hardware.
+ *
+ * <P>Models are included for the most common families: thermometers
+ * ({@link SimulatedThermometer SimulatedThermometer}), the DS2438 battery
+ * monitor ({@link SimulatedBatteryMonitor SimulatedBatteryMonitor}), the
+ * DS2408 switch ({@link SimulatedSwitch SimulatedSwitch}), the DS2409
+ * coupler ({@link SimulatedCoupler SimulatedCoupler}), memory iButtons
+ * ({@link SimulatedMemory SimulatedMemory}) and the DS1922 logger
+ * ({@link SimulatedLogger SimulatedLogger}).</P>
+ *
+ * <P>Each reset and time slot adds its duration to the bus time, which
+ * is by default the standard 1-Wire timing.  <code>getBusTime</code>
+ * therefore tells how long a run would have taken on a real bus, while
+ * the run itself goes as fast as possible.  With
+ * <code>setRealTime</code> on, every primitive also waits until its
+ * bus time has passed.  Device operations such as conversions and
+ * copies complete at once.</P>
+ *
+ * <P>Only the devices still taking part in the current transaction are
+ * visited in each time slot, so a bus of thousands of devices can be
+ * searched and selected in reasonable time, which makes this adapter
+ * useful for load testing collectors.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   SimulatedAdapter adapter = new SimulatedAdapter();
+ *
+ *   for (int i = 0; i &lt; 1000; i++)
+ *   {
+ *      SimulatedThermometer t = new SimulatedThermometer(
+ *         SimulatedDevice.createAddress(0x28, i));
+ *
+ *      t.setTemperature(20.0 + i / 100.0);
+ *      adapter.addDevice(t);
+ *   }
+ *
+ *   // run the application code against the adapter
+ *
+ *   System.out.println("bus time " + adapter.getBusTime() / 1000000 + " ms");
+ * </CODE> </PRE>
+ *
+ * @see SimulatedDevice
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class SimulatedAdapter
+   extends DSPortAdapter
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Standard duration of a regular speed reset, in nanoseconds */
+   public static final long REGULAR_RESET_TIME = 960000;
+
+   /** Standard duration of a regular speed time slot, in nanoseconds */
+   public static final long REGULAR_SLOT_TIME = 70000;
+
+   /** Standard duration of an overdrive reset, in nanoseconds */
+   public static final long OVERDRIVE_RESET_TIME = 99000;
+
+   /** Standard duration of an overdrive time slot, in nanoseconds */
+   public static final long OVERDRIVE_SLOT_TIME = 10000;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Name of the single port */
+   private String portName = "SIM0";
+
+   /** All devices on the bus */
+   private SimulatedDevice[] devices = new SimulatedDevice [16];
+
+   /** Number of devices on the bus */
+   private int deviceCount = 0;
+
+   /** Devices taking part in the current transaction */
+   private SimulatedDevice[] active = new SimulatedDevice [16];
+
+   /** Number of devices taking part in the current transaction */
+   private int activeCount = 0;
+
+   /** Devices reset by a coupler in the current time slot */
+   private Vector joining = new Vector();
+
+   /** Reset duration, indexed by regular / overdrive */
+   private long[] resetTime = new long [] { REGULAR_RESET_TIME,
+                                            OVERDRIVE_RESET_TIME };
+
+   /** Time slot duration, indexed by regular / overdrive */
+   private long[] slotTime = new long [] { REGULAR_SLOT_TIME,
+                                           OVERDRIVE_SLOT_TIME };
+
+   /** Bus time used so far, in nanoseconds */
+   private long busTime = 0;
+
+   /** Whether primitives wait for their bus time */
+   private boolean realTime = false;
+
+   /** System.nanoTime() matching bus time 0, when in real time */
+   private long realStart;
+
+   /** Current speed */
+   private int speed = SPEED_REGULAR;
+
+   /** Search state, last discrepancy */
+   private int lastDiscrepancy = 0;
+
+   /** Search state, last device found */
+   private boolean lastDevice = false;
+
+   /** Address found by the last search */
+   private byte[] address = new byte [8];
+
+   /** Whether to search for alarming devices only */
+   private boolean searchOnlyAlarmingDevices = false;
+
+   /** Whether to search without a reset */
+   private boolean noResetSearch = false;
+
+   /** Lock for exclusive use of this adapter */
+   private final AdapterLock exclusiveLock = new AdapterLock();
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates an adapter with an empty bus.
+    */
+   public SimulatedAdapter ()
+   {
+      // VOID
+   }
+
+   //--------
+   //-------- Bus methods
+   //--------
+
+   /**
+    * Puts a device on the bus.  The device is seen from the next reset on.
+    *
+    * @param  device  device to add
+    *
+    * @throws IllegalArgumentException if the device is on another adapter
+    */
+   public synchronized void addDevice (SimulatedDevice device)
+   {
+      if (device.adapter == this)
+         return;
+
+      if (device.adapter != null)
+         throw new IllegalArgumentException(
+            "SimulatedAdapter: device is on another adapter");
+
+      if (deviceCount == devices.length)
+      {
+         SimulatedDevice[] grown = new SimulatedDevice [devices.length * 2];
+
+         System.arraycopy(devices, 0, grown, 0, deviceCount);
+
+         devices = grown;
+      }
+
+      devices [deviceCount++] = device;
+      device.adapter          = this;
+   }
+
+   /**
+    * Takes a device off the bus.
+    *
+    * @param  device  device to remove
+    */
+   public synchronized void removeDevice (SimulatedDevice device)
+   {
+      for (int i = 0; i < deviceCount; i++)
+      {
+         if (devices [i] == device)
+         {
+            System.arraycopy(devices, i + 1, devices, i, deviceCount - i - 1);
+
+            devices [--deviceCount] = null;
+            device.adapter          = null;
+
+            removeActive(device);
+
+            return;
+         }
+      }
+   }
+
+   /**
+    * Takes every device off the bus.
+    */
+   public synchronized void clearDevices ()
+   {
+      for (int i = 0; i < deviceCount; i++)
+      {
+         devices [i].adapter = null;
+         devices [i]         = null;
+      }
+
+      for (int i = 0; i < activeCount; i++)
+         active [i] = null;
+
+      deviceCount = 0;
+      activeCount = 0;
+   }
+
+   /**
+    * Gets the devices on the bus, connected or not.
+    *
+    * @return <code>Enumeration</code> of <code>SimulatedDevice</code>
+    */
+   public synchronized Enumeration getDevices ()
+   {
+      Vector v = new Vector(deviceCount);
+
+      for (int i = 0; i < deviceCount; i++)
+         v.addElement(devices [i]);
+
+      return v.elements();
+   }
+
+   /**
+    * Gets the number of devices on the bus, connected or not.
+    *
+    * @return number of devices
+    */
+   public synchronized int getDeviceCount ()
+   {
+      return deviceCount;
+   }
+
+   /**
+    * Checks whether any device is on a branch of a coupler.  Used by
+    * <code>SimulatedCoupler</code> for the presence result of its
+    * smart-on commands.
+    *
+    * @param  coupler  coupler
+    * @param  channel  branch of the coupler
+    *
+    * @return <code>true</code> if a device is on the branch
+    */
+   synchronized boolean hasDevicesOn (SimulatedCoupler coupler, int channel)
+   {
+      for (int i = 0; i < deviceCount; i++)
+         if ((devices [i].coupler == coupler)
+                 && (devices [i].channel == channel))
+            return true;
+
+      return false;
+   }
+
+   /**
+    * Resets the devices on a branch of a coupler, as the smart-on commands
+    * do.  The devices join the current transaction after the time slot in
+    * progress.
+    *
+    * @param  coupler  coupler
+    * @param  channel  branch of the coupler
+    */
+   synchronized void resetBranch (SimulatedCoupler coupler, int channel)
+   {
+      boolean overdrive = (speed == SPEED_OVERDRIVE);
+
+      for (int i = 0; i < deviceCount; i++)
+      {
+         SimulatedDevice device = devices [i];
+
+         for (SimulatedDevice d = device; d.coupler != null; d = d.coupler)
+         {
+            if ((d.coupler == coupler) && (d.channel == channel))
+            {
+               if (device.isConnected() && device.reset(overdrive))
+                  joining.addElement(device);
+
+               break;
+            }
+         }
+      }
+   }
+
+   //--------
+   //-------- Timing methods
+   //--------
+
+   /**
+    * Sets the duration of resets and time slots at a speed.  Flex speed
+    * uses the regular speed timing.
+    *
+    * @param  speed      <code>SPEED_REGULAR</code> or
+    *                    <code>SPEED_OVERDRIVE</code>
+    * @param  resetNanos duration of a reset, in nanoseconds
+    * @param  slotNanos  duration of a time slot, in nanoseconds
+    */
+   public synchronized void setTiming (int speed, long resetNanos,
+                                       long slotNanos)
+   {
+      int i = (speed == SPEED_OVERDRIVE) ? 1
+                                         : 0;
+
+      resetTime [i] = resetNanos;
+      slotTime [i]  = slotNanos;
+   }
+
+   /**
+    * Gets the duration of a reset at a speed.
+    *
+    * @param  speed  <code>SPEED_REGULAR</code> or
+    *                <code>SPEED_OVERDRIVE</code>
+    *
+    * @return duration in nanoseconds
+    */
+   public synchronized long getResetTime (int speed)
+   {
+      return resetTime [(speed == SPEED_OVERDRIVE) ? 1
+                                                   : 0];
+   }
+
+   /**
+    * Gets the duration of a time slot at a speed.
+    *
+    * @param  speed  <code>SPEED_REGULAR</code> or
+    *                <code>SPEED_OVERDRIVE</code>
+    *
+    * @return duration in nanoseconds
+    */
+   public synchronized long getSlotTime (int speed)
+   {
+      return slotTime [(speed == SPEED_OVERDRIVE) ? 1
+                                                  : 0];
+   }
+
+   /**
+    * Sets whether every primitive waits until its bus time has passed,
+    * so that the application runs at the speed of a real bus.
+    *
+    * @param  realTime  <code>true</code> to wait
+    */
+   public synchronized void setRealTime (boolean realTime)
+   {
+      this.realTime = realTime;
+      realStart     = System.nanoTime() - busTime;
+   }
+
+   /**
+    * Gets whether every primitive waits until its bus time has passed.
+    *
+    * @return <code>true</code> if waiting
+    */
+   public synchronized boolean getRealTime ()
+   {
+      return realTime;
+   }
+
+   /**
+    * Gets the bus time used since the adapter was created or
+    * <code>clearBusTime</code> was called.
+    *
+    * @return bus time in nanoseconds
+    */
+   public synchronized long getBusTime ()
+   {
+      return busTime;
+   }
+
+   /**
+    * Sets the bus time back to 0.
+    */
+   public synchronized void clearBusTime ()
+   {
+      busTime   = 0;
+      realStart = System.nanoTime();
+   }
+
+   //--------
+   //-------- Adapter and port methods
+   //--------
+
+   public String getAdapterName ()
+   {
+      return "SimulatedAdapter";
+   }
+
+   public String getPortTypeDescription ()
+   {
+      return "Simulated 1-Wire bus in memory";
+   }
+
+   public String getClassVersion ()
+   {
+      return "0.00";
+   }
+
+   public Enumeration getPortNames ()
+   {
+      Vector portNames = new Vector(1);
+
+      portNames.addElement(portName);
+
+      return portNames.elements();
+   }
+
+   public boolean selectPort (String portName)
+   {
+      this.portName = portName;
+
+      return true;
+   }
+
+   public void freePort ()
+   {
+      //this will not be implemented
+   }
+
+   public String getPortName ()
+   {
+      return portName;
+   }
+
+   public boolean adapterDetected ()
+   {
+      return true;
+   }
+
+   //--------
+   //-------- Adapter features
+   //--------
+
+   public boolean canOverdrive ()
+   {
+      return true;
+   }
+
+   public boolean canFlex ()
+   {
+      return true;
+   }
+
+   public boolean canDeliverPower ()
+   {
+      return true;
+   }
+
+   public boolean canDeliverSmartPower ()
+   {
+      return true;
+   }
+
+   public boolean canBreak ()
+   {
+      return true;
+   }
+
+   //--------
+   //-------- Searching
+   //--------
+
+   public synchronized boolean findFirstDevice ()
+      throws OneWireIOException
+   {
+      lastDiscrepancy = 0;
+      lastDevice      = false;
+
+      return findNextDevice();
+   }
+
+   public synchronized boolean findNextDevice ()
+      throws OneWireIOException
+   {
+      while (search())
+      {
+         if (isValidFamily(address))
+            return true;
+      }
+
+      return false;
+   }
+
+   public synchronized void getAddress (byte[] address)
+   {
+      System.arraycopy(this.address, 0, address, 0, 8);
+   }
+
+   public synchronized void setSearchOnlyAlarmingDevices ()
+   {
+      searchOnlyAlarmingDevices = true;
+   }
+
+   public synchronized void setNoResetSearch ()
+   {
+      noResetSearch = true;
+   }
+
+   public synchronized void setSearchAllDevices ()
+   {
+      searchOnlyAlarmingDevices = false;
+      noResetSearch             = false;
+   }
+
+   //--------
+   //-------- Exclusive use
+   //--------
+
+   public boolean beginExclusive (boolean blocking)
+   {
+      return exclusiveLock.lock(blocking);
+   }
+
+   public boolean beginExclusive (long timeout)
+   {
+      return exclusiveLock.tryLock(timeout);
+   }
+
+   public void endExclusive ()
+   {
+      exclusiveLock.unlock();
+   }
+
+   //--------
+   //-------- Primitive 1-Wire Network data methods
+   //--------
+
+   public synchronized void putBit (boolean bitValue)
+   {
+      touchBit(bitValue);
+   }
+
+   public synchronized boolean getBit ()
+   {
+      return touchBit(true);
+   }
+
+   public synchronized void putByte (int byteValue)
+   {
+      touchByte(byteValue);
+   }
+
+   public synchronized int getByte ()
+   {
+      return touchByte(0x0FF);
+   }
+
+   public byte[] getBlock (int len)
+   {
+      byte[] arr = new byte [len];
+
+      getBlock(arr, 0, len);
+
+      return arr;
+   }
+
+   public void getBlock (byte[] arr, int len)
+   {
+      getBlock(arr, 0, len);
+   }
+
+   public synchronized void getBlock (byte[] arr, int off, int len)
+   {
+      for (int i = 0; i < len; i++)
+         arr [off + i] = ( byte ) touchByte(0x0FF);
+   }
+
+   public synchronized void dataBlock (byte dataBlock [], int off, int len)
+   {
+      for (int i = 0; i < len; i++)
+         dataBlock [off + i] = ( byte ) touchByte(dataBlock [off + i]);
+   }
+
+   public synchronized int reset ()
+   {
+      boolean overdrive = (speed == SPEED_OVERDRIVE);
+
+      elapse(resetTime [overdrive ? 1
+                                  : 0]);
+
+      for (int i = 0; i < activeCount; i++)
+         active [i] = null;
+
+      activeCount = 0;
+
+      for (int i = 0; i < deviceCount; i++)
+      {
+         SimulatedDevice device = devices [i];
+
+         if (device.isConnected() && device.reset(overdrive))
+            addActive(device);
+      }
+
+      return (activeCount > 0) ? RESET_PRESENCE
+                               : RESET_NOPRESENCE;
+   }
+
+   //--------
+   //-------- 1-Wire Network power methods
+   //--------
+
+   public void setPowerDuration (int timeFactor)
+   {
+      //this will not be implemented
+   }
+
+   public boolean startPowerDelivery (int changeCondition)
+   {
+      return true;
+   }
+
+   public void setPowerNormal ()
+   {
+      //this will not be implemented
+   }
+
+   public synchronized void startBreak ()
+   {
+      elapse(resetTime [0]);
+
+      for (int i = 0; i < activeCount; i++)
+         active [i] = null;
+
+      activeCount = 0;
+   }
+
+   //--------
+   //-------- 1-Wire Network speed methods
+   //--------
+
+   public synchronized void setSpeed (int speed)
+      throws OneWireException
+   {
+      if ((speed != SPEED_REGULAR) && (speed != SPEED_FLEX)
+              && (speed != SPEED_OVERDRIVE))
+         throw new OneWireException(
+            "SimulatedAdapter: speed not supported, " + speed);
+
+      this.speed = speed;
+   }
+
+   public synchronized int getSpeed ()
+   {
+      return speed;
+   }
+
+   //--------
+   //-------- Private methods
+   //--------
+
+   /**
+    * Runs one time slot.  The master drives <code>bit</code>, every active
+    * device drives its own bit, and every active device then sees the
+    * wired-AND of them.
+    */
+   private boolean touchBit (boolean bit)
+   {
+      elapse(slotTime [(speed == SPEED_OVERDRIVE) ? 1
+                                                  : 0]);
+
+      boolean result = bit;
+
+      for (int i = 0; result && (i < activeCount); i++)
+         result = active [i].drive();
+
+      int count = 0;
+
+      for (int i = 0; i < activeCount; i++)
+      {
+         SimulatedDevice device = active [i];
+
+         device.sample(result);
+
+         if (device.isActive())
+            active [count++] = device;
+      }
+
+      for (int i = count; i < activeCount; i++)
+         active [i] = null;
+
+      activeCount = count;
+
+      if (!joining.isEmpty())
+      {
+         for (int i = 0; i < joining.size(); i++)
+         {
+            SimulatedDevice device = ( SimulatedDevice ) joining.elementAt(i);
+
+            if (!isActive(device))
+               addActive(device);
+         }
+
+         joining.removeAllElements();
+      }
+
+      return result;
+   }
+
+   /**
+    * Runs eight time slots, LSB first.
+    */
+   private int touchByte (int byteValue)
+   {
+      int result = 0;
+
+      for (int i = 0; i < 8; i++)
+         if (touchBit(((byteValue >>> i) & 0x01) != 0))
+            result |= 1 << i;
+
+      return result;
+   }
+
+   /**
+    * Runs one pass of the search algorithm, leaving the address found in
+    * <code>address</code>.
+    */
+   private boolean search ()
+   {
+      if (lastDevice)
+      {
+         lastDiscrepancy = 0;
+         lastDevice      = false;
+
+         return false;
+      }
+
+      if (noResetSearch)
+      {
+         elapse(resetTime [(speed == SPEED_OVERDRIVE) ? 1
+                                                      : 0]);
+      }
+      else if (reset() != RESET_PRESENCE)
+      {
+         lastDiscrepancy = 0;
+
+         return false;
+      }
+
+      touchByte(searchOnlyAlarmingDevices ? SimulatedDevice.ALARM_SEARCH
+                                          : SimulatedDevice.SEARCH_ROM);
+
+      int lastZero = 0;
+
+      for (int i = 1; i <= 64; i++)
+      {
+         int     bit      = i - 1;
+         boolean idBit    = touchBit(true);
+         boolean cmpIdBit = touchBit(true);
+
+         if (idBit && cmpIdBit)
+         {
+            // no device left
+            lastDiscrepancy = 0;
+
+            return false;
+         }
+
+         boolean direction;
+
+         if (idBit != cmpIdBit)
+            direction = idBit;
+         else
+         {
+            if (i < lastDiscrepancy)
+               direction = ((address [bit >>> 3] >>> (bit & 7)) & 0x01) != 0;
+            else
+               direction = (i == lastDiscrepancy);
+
+            if (!direction)
+               lastZero = i;
+         }
+
+         if (direction)
+            address [bit >>> 3] |= ( byte ) (1 << (bit & 7));
+         else
+            address [bit >>> 3] &= ( byte ) ~(1 << (bit & 7));
+
+         touchBit(direction);
+      }
+
+      lastDiscrepancy = lastZero;
+      lastDevice      = (lastZero == 0);
+
+      return true;
+   }
+
+   /**
+    * Adds a device to the active list.
+    */
+   private void addActive (SimulatedDevice device)
+   {
+      if (activeCount == active.length)
+      {
+         SimulatedDevice[] grown = new SimulatedDevice [active.length * 2];
+
+         System.arraycopy(active, 0, grown, 0, activeCount);
+
+         active = grown;
+      }
+
+      active [activeCount++] = device;
+   }
+
+   /**
+    * Checks whether a device is in the active list.
+    */
+   private boolean isActive (SimulatedDevice device)
+   {
+      for (int i = 0; i < activeCount; i++)
+         if (active [i] == device)
+            return true;
+
+      return false;
+   }
+
+   /**
+    * Removes a device from the active list.
+    */
+   private void removeActive (SimulatedDevice device)
+   {
+      for (int i = 0; i < activeCount; i++)
+      {
+         if (active [i] == device)
+         {
+            System.arraycopy(active, i + 1, active, i, activeCount - i - 1);
+
+            active [--activeCount] = null;
+
+            return;
+         }
+      }
+   }
+
+   /**
+    * Adds to the bus time, waiting for it to pass when in real time.
+    * Waits under a millisecond yield instead of sleeping.
+    */
+   private void elapse (long nanos)
+   {
+      busTime += nanos;
+
+      if (!realTime)
+         return;
+
+      long target = realStart + busTime;
+      long delay;
+
+      while ((delay = target - System.nanoTime()) > 0)
+      {
+         if (delay < 1000000)
+            Thread.yield();
+         else
+         {
+            try
+            {
+               Thread.sleep(delay / 1000000);
+            }
+            catch (InterruptedException e)
+            {
+               return;
+            }
+         }
+      }
+   }
+}
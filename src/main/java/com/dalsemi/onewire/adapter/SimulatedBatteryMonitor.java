@@ -0,0 +1,291 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import com.dalsemi.onewire.utils.CRC8;
+
+
+/**
+ * A {@link SimulatedDevice SimulatedDevice} model of the DS2438 smart
+ * battery monitor (family 0x26).  Temperature and voltage conversions take
+ * no time and read back the values last set with
+ * <code>setTemperature</code> and <code>setVoltage</code>.  The current
+ * register follows <code>setSenseVoltage</code> while current
+ * measurement (the IAD flag) is enabled.
+ *
+ * <P>Supported function commands are Write Scratchpad, Read Scratchpad,
+ * Copy Scratchpad, Recall Memory, Convert T and Convert V, on all 8
+ * pages.</P>
+ *
+ * @see SimulatedAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class SimulatedBatteryMonitor
+   extends SimulatedDevice
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Function command, Write Scratchpad */
+   public static final int WRITE_SCRATCHPAD = 0x4E;
+
+   /** Function command, Read Scratchpad */
+   public static final int READ_SCRATCHPAD = 0xBE;
+
+   /** Function command, Copy Scratchpad */
+   public static final int COPY_SCRATCHPAD = 0x48;
+
+   /** Function command, Recall Memory */
+   public static final int RECALL_MEMORY = 0xB8;
+
+   /** Function command, Convert T */
+   public static final int CONVERT_T = 0x44;
+
+   /** Function command, Convert V */
+   public static final int CONVERT_V = 0xB4;
+
+   /** Voltage channel, VDD */
+   public static final int CHANNEL_VDD = 0;
+
+   /** Voltage channel, VAD */
+   public static final int CHANNEL_VAD = 1;
+
+   /** Status flag, current A/D enabled */
+   private static final int IAD_FLAG = 0x01;
+
+   /** Status flag, Convert V measures VDD */
+   private static final int AD_FLAG = 0x08;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Memory, 8 pages of 8 bytes */
+   private byte[] memory = new byte [64];
+
+   /** Scratchpad, 8 pages of 8 bytes */
+   private byte[] scratchpad = new byte [64];
+
+   /** Current temperature */
+   private double temperature = 25.0;
+
+   /** Current voltages, indexed by channel */
+   private double[] voltage = new double [] { 5.0, 0.0 };
+
+   /** Current voltage across the sense resistor */
+   private double senseVoltage = 0.0;
+
+   /** Function command in progress */
+   private int command;
+
+   /** Page of the command in progress, -1 until received */
+   private int page;
+
+   /** Bytes transferred since the page */
+   private int count;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a battery monitor.
+    *
+    * @param  address  1-Wire network address, family 0x26
+    *
+    * @throws IllegalArgumentException on another family or an invalid
+    *         address
+    */
+   public SimulatedBatteryMonitor (byte[] address)
+   {
+      super(address);
+
+      if (address [0] != 0x26)
+         throw new IllegalArgumentException(
+            "SimulatedBatteryMonitor: not family 0x26");
+
+      // power on status, IAD, CA and EE set
+      memory [0] = ( byte ) 0x07;
+
+      System.arraycopy(memory, 0, scratchpad, 0, 64);
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Sets the temperature the next Convert T reads.
+    *
+    * @param  temperature  temperature in degrees Celsius
+    */
+   public synchronized void setTemperature (double temperature)
+   {
+      this.temperature = temperature;
+   }
+
+   /**
+    * Sets the voltage the next Convert V reads on a channel.
+    *
+    * @param  channel  <code>CHANNEL_VDD</code> or <code>CHANNEL_VAD</code>
+    * @param  volts    voltage, 0 to 10.23
+    */
+   public synchronized void setVoltage (int channel, double volts)
+   {
+      voltage [channel] = volts;
+   }
+
+   /**
+    * Sets the voltage across the current sense resistor.
+    *
+    * @param  volts  voltage, -0.25 to 0.25
+    */
+   public synchronized void setSenseVoltage (double volts)
+   {
+      senseVoltage = volts;
+   }
+
+   /**
+    * Gets a page of memory, without going over the bus.
+    *
+    * @param  page  page number, 0 to 7
+    *
+    * @return 8 bytes of the page
+    */
+   public synchronized byte[] getPage (int page)
+   {
+      byte[] copy = new byte [8];
+
+      System.arraycopy(memory, page * 8, copy, 0, 8);
+
+      return copy;
+   }
+
+   protected synchronized void busReset ()
+   {
+      command = 0;
+   }
+
+   protected synchronized int beginCommand (int command)
+   {
+      this.command = command;
+      page         = -1;
+      count        = 0;
+
+      switch (command)
+      {
+
+         case CONVERT_T :
+            int t = (( int ) Math.floor(temperature / 0.03125)) << 3;
+
+            memory [1] = ( byte ) t;
+            memory [2] = ( byte ) (t >> 8);
+            break;
+         case CONVERT_V :
+            int v = ( int ) Math.round(
+               voltage [((memory [0] & AD_FLAG) != 0) ? CHANNEL_VDD
+                                                      : CHANNEL_VAD] * 100);
+
+            v          = Math.max(0, Math.min(0x3FF, v));
+            memory [3] = ( byte ) v;
+            memory [4] = ( byte ) (v >> 8);
+            break;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+
+   protected synchronized int nextByte (int data)
+   {
+      if (page < 0)
+      {
+         page = data & 0x07;
+
+         switch (command)
+         {
+
+            case RECALL_MEMORY :
+               if ((page == 0) && ((memory [0] & IAD_FLAG) != 0))
+               {
+                  int i = ( int ) Math.round(senseVoltage * 4096);
+
+                  memory [5] = ( byte ) i;
+                  memory [6] = ( byte ) (i >> 8);
+               }
+
+               System.arraycopy(memory, page * 8, scratchpad, page * 8, 8);
+               break;
+            case COPY_SCRATCHPAD :
+               if (page == 0)
+               {
+                  // only the configuration bits and threshold are writable
+                  memory [0] = ( byte ) ((memory [0] & 0xF0)
+                                         | (scratchpad [0] & 0x0F));
+                  memory [7] = scratchpad [7];
+               }
+               else
+                  System.arraycopy(scratchpad, page * 8, memory, page * 8, 8);
+               break;
+            case READ_SCRATCHPAD :
+               return scratchpad [page * 8 + count++];
+            default :
+               break;
+         }
+
+         return 0xFF;
+      }
+
+      switch (command)
+      {
+
+         case READ_SCRATCHPAD :
+            if (count < 8)
+               return scratchpad [page * 8 + count++];
+
+            if (count++ == 8)
+               return CRC8.compute(scratchpad, page * 8, 8);
+            break;
+         case WRITE_SCRATCHPAD :
+            if (count < 8)
+               scratchpad [page * 8 + count++] = ( byte ) data;
+            break;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+}
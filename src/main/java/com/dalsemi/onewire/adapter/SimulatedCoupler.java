@@ -0,0 +1,259 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+
+/**
+ * A {@link SimulatedDevice SimulatedDevice} model of the DS2409 MicroLAN
+ * coupler (family 0x1F).  Devices are put behind it with
+ * <code>SimulatedDevice.setBranch</code>, and are only seen on the bus
+ * while their branch is switched on.  The smart-on commands reset the
+ * devices on the branch and report whether there are any, so a search
+ * without a reset can follow them, as on a real coupler.
+ *
+ * <P>Supported function commands are Read/Write Status, All Lines Off,
+ * Discharge Lines, Direct-on Main, Smart-on Main and Smart-on
+ * Auxiliary.</P>
+ *
+ * @see SimulatedAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class SimulatedCoupler
+   extends SimulatedDevice
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Branch, main */
+   public static final int CHANNEL_MAIN = 0;
+
+   /** Branch, auxiliary */
+   public static final int CHANNEL_AUX = 1;
+
+   /** Function command, Read/Write Status */
+   public static final int READ_WRITE_STATUS = 0x5A;
+
+   /** Function command, All Lines Off */
+   public static final int ALL_LINES_OFF = 0x66;
+
+   /** Function command, Discharge Lines */
+   public static final int DISCHARGE = 0x99;
+
+   /** Function command, Direct-on Main */
+   public static final int DIRECT_ON_MAIN = 0xA5;
+
+   /** Function command, Smart-on Main */
+   public static final int SMART_ON_MAIN = 0xCC;
+
+   /** Function command, Smart-on Auxiliary */
+   public static final int SMART_ON_AUX = 0x33;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Status byte */
+   private int status;
+
+   /** Function command in progress */
+   private int command;
+
+   /** Bytes transferred since the command */
+   private int count;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a coupler, with both branches off.
+    *
+    * @param  address  1-Wire network address, family 0x1F
+    *
+    * @throws IllegalArgumentException on another family or an invalid
+    *         address
+    */
+   public SimulatedCoupler (byte[] address)
+   {
+      super(address);
+
+      if (address [0] != 0x1F)
+         throw new IllegalArgumentException(
+            "SimulatedCoupler: not family 0x1F");
+
+      setBranches(false, false);
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   public int getMaxSpeed ()
+   {
+      return DSPortAdapter.SPEED_OVERDRIVE;
+   }
+
+   /**
+    * Checks whether a branch is switched on.
+    *
+    * @param  channel  <code>CHANNEL_MAIN</code> or <code>CHANNEL_AUX</code>
+    *
+    * @return <code>true</code> if on
+    */
+   public synchronized boolean isOn (int channel)
+   {
+      return (status & (1 << (channel * 2))) == 0;
+   }
+
+   /**
+    * Gets the status byte.
+    *
+    * @return status byte
+    */
+   public synchronized int getStatus ()
+   {
+      return status;
+   }
+
+   protected synchronized void busReset ()
+   {
+      command = 0;
+   }
+
+   protected synchronized int beginCommand (int command)
+   {
+      this.command = command;
+      count        = 0;
+
+      switch (command)
+      {
+
+         case ALL_LINES_OFF :
+            setBranches(false, false);
+
+            // clear the event flags
+            status &= ~0x30;
+
+            return command;
+         case DISCHARGE :
+            setBranches(false, false);
+
+            return command;
+         case DIRECT_ON_MAIN :
+            setBranches(true, false);
+
+            return command;
+         case SMART_ON_MAIN :
+            setBranches(true, false);
+            break;
+         case SMART_ON_AUX :
+            setBranches(false, true);
+            break;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+
+   protected synchronized int nextByte (int data)
+   {
+      switch (command)
+      {
+
+         case READ_WRITE_STATUS :
+            if ((count == 0) && (data != 0xFF))
+            {
+               // mode and control output bits
+               status = (status & 0x3F) | (((data & 0x20) != 0) ? 0x80
+                                                                : 0)
+                        | (((data & 0xC0) == 0xC0) ? 0x40
+                                                   : 0);
+            }
+
+            if (count++ < 2)
+               return status;
+            break;
+         case SMART_ON_MAIN :
+         case SMART_ON_AUX :
+            int channel = (command == SMART_ON_MAIN) ? CHANNEL_MAIN
+                                                     : CHANNEL_AUX;
+
+            switch (count++)
+            {
+
+               case 0 :
+                  // after the reset on the branch, its presence
+                  return ((adapter != null)
+                          && adapter.hasDevicesOn(this, channel)) ? 0x00
+                                                                  : 0xFF;
+               case 1 :
+                  return command;
+               case 2 :
+                  // the branch devices wait for a ROM command
+                  if (adapter != null)
+                     adapter.resetBranch(this, channel);
+                  break;
+               default :
+                  break;
+            }
+            break;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+
+   //--------
+   //-------- Private methods
+   //--------
+
+   /**
+    * Switches the branches, updating the latch and level bits.
+    */
+   private void setBranches (boolean main, boolean aux)
+   {
+      status &= 0xF0;
+
+      if (main)
+         status |= 0x02;
+      else
+         status |= 0x01;
+
+      if (aux)
+         status |= 0x08;
+      else
+         status |= 0x04;
+   }
+}
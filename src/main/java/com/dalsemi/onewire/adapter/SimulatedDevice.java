@@ -0,0 +1,571 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import com.dalsemi.onewire.utils.CRC8;
+import com.dalsemi.onewire.utils.Address;
+
+
+/**
+ * The base class for a 1-Wire device on the bus of a
+ * {@link SimulatedAdapter SimulatedAdapter}.  It implements the ROM layer of
+ * a 1-Wire slave one time slot at a time: Read ROM, Match ROM, Skip ROM,
+ * Resume, Search ROM and Conditional Search, and (if
+ * <code>getMaxSpeed</code> allows it) Overdrive Skip and Overdrive Match.
+ * Because the search is done bit by bit, with the result of each time slot
+ * being the wired-AND of every device on the bus, the simulated bus
+ * shows the same discrepancies as a real one.
+ *
+ * <P>Once a device is selected, the bits of the function layer are
+ * assembled into bytes, and a subclass only sees whole bytes.
+ * <code>beginCommand</code> is called with the first byte,
+ * <code>nextByte</code> with each byte after it, and both return the byte
+ * the device drives in the next byte time, 0xFF to leave the bus to the
+ * master.</P>
+ *
+ * <P>A device can be put on a branch of a
+ * {@link SimulatedCoupler SimulatedCoupler}, in which case it is only seen
+ * on the bus while that branch is switched on.</P>
+ *
+ * @see SimulatedAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public abstract class SimulatedDevice
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** ROM command, Read ROM */
+   public static final int READ_ROM = 0x33;
+
+   /** ROM command, Match ROM */
+   public static final int MATCH_ROM = 0x55;
+
+   /** ROM command, Skip ROM */
+   public static final int SKIP_ROM = 0xCC;
+
+   /** ROM command, Resume */
+   public static final int RESUME = 0xA5;
+
+   /** ROM command, Search ROM */
+   public static final int SEARCH_ROM = 0xF0;
+
+   /** ROM command, Conditional Search */
+   public static final int ALARM_SEARCH = 0xEC;
+
+   /** ROM command, Overdrive Skip ROM */
+   public static final int OVERDRIVE_SKIP_ROM = 0x3C;
+
+   /** ROM command, Overdrive Match ROM */
+   public static final int OVERDRIVE_MATCH_ROM = 0x69;
+
+   /** Waiting for a reset */
+   private static final int STATE_IDLE = 0;
+
+   /** Receiving the ROM command */
+   private static final int STATE_ROM_COMMAND = 1;
+
+   /** Sending the ROM for Read ROM */
+   private static final int STATE_READ_ROM = 2;
+
+   /** Receiving the ROM for Match ROM */
+   private static final int STATE_MATCH_ROM = 3;
+
+   /** Taking part in a search */
+   private static final int STATE_SEARCH_ROM = 4;
+
+   /** Selected, in the function layer */
+   private static final int STATE_FUNCTION = 5;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** 1-Wire network address of this device */
+   protected final byte[] address;
+
+   /** Adapter this device is on, or null */
+   SimulatedAdapter adapter = null;
+
+   /** Coupler this device is behind, or null if on the trunk */
+   SimulatedCoupler coupler = null;
+
+   /** Branch of the coupler this device is on */
+   int channel;
+
+   /** State of the ROM layer */
+   private int state = STATE_IDLE;
+
+   /** Whether this device is in overdrive */
+   private boolean overdrive = false;
+
+   /** Whether Resume selects this device */
+   private boolean resume = false;
+
+   /** Bit count in the current state */
+   private int bitCount;
+
+   /** Bits received in the current byte */
+   private int received;
+
+   /** Byte driven in the current byte time */
+   private int driven;
+
+   /** Whether the next byte of the function layer is the command */
+   private boolean firstByte;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a device with the given 1-Wire network address.
+    *
+    * @param  address  8 byte 1-Wire network address, with a valid CRC
+    *
+    * @throws IllegalArgumentException if the address is not valid
+    */
+   protected SimulatedDevice (byte[] address)
+   {
+      if (!Address.isValid(address))
+         throw new IllegalArgumentException(
+            "SimulatedDevice: invalid address "
+            + Address.toString(address));
+
+      this.address = new byte [8];
+
+      System.arraycopy(address, 0, this.address, 0, 8);
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Creates a 1-Wire network address from a family code and a serial
+    * number, with the CRC8 filled in.
+    *
+    * @param  family        family code
+    * @param  serialNumber  serial number, only the lower 48 bits are used
+    *
+    * @return 8 byte 1-Wire network address
+    */
+   public static byte[] createAddress (int family, long serialNumber)
+   {
+      byte[] address = new byte [8];
+
+      address [0] = ( byte ) family;
+
+      for (int i = 1; i < 7; i++)
+      {
+         address [i]  = ( byte ) serialNumber;
+         serialNumber >>>= 8;
+      }
+
+      address [7] = ( byte ) CRC8.compute(address, 0, 7);
+
+      return address;
+   }
+
+   /**
+    * Gets the 1-Wire network address of this device.
+    *
+    * @return 8 byte 1-Wire network address
+    */
+   public byte[] getAddress ()
+   {
+      byte[] copy = new byte [8];
+
+      System.arraycopy(address, 0, copy, 0, 8);
+
+      return copy;
+   }
+
+   /**
+    * Gets the 1-Wire network address of this device as a long.
+    *
+    * @return 1-Wire network address
+    */
+   public long getAddressAsLong ()
+   {
+      return Address.toLong(address);
+   }
+
+   /**
+    * Gets the 1-Wire network address of this device as a string.
+    *
+    * @return 1-Wire network address
+    */
+   public String getAddressAsString ()
+   {
+      return Address.toString(address);
+   }
+
+   /**
+    * Puts this device on a branch of a coupler.  Pass <code>null</code> to
+    * put it back on the trunk.
+    *
+    * @param  coupler  coupler, or <code>null</code>
+    * @param  channel  <code>SimulatedCoupler.CHANNEL_MAIN</code> or
+    *                  <code>SimulatedCoupler.CHANNEL_AUX</code>
+    */
+   public void setBranch (SimulatedCoupler coupler, int channel)
+   {
+      for (SimulatedDevice d = coupler; d != null; d = d.coupler)
+         if (d == this)
+            throw new IllegalArgumentException(
+               "SimulatedDevice: coupler loop");
+
+      this.coupler = coupler;
+      this.channel = channel;
+   }
+
+   /**
+    * Gets the coupler this device is behind.
+    *
+    * @return coupler, or <code>null</code> if on the trunk
+    */
+   public SimulatedCoupler getCoupler ()
+   {
+      return coupler;
+   }
+
+   /**
+    * Gets the coupler branch this device is on.
+    *
+    * @return branch of the coupler returned by <code>getCoupler</code>
+    */
+   public int getChannel ()
+   {
+      return channel;
+   }
+
+   /**
+    * Checks whether this device can currently be seen from the trunk, that
+    * is whether every coupler between it and the trunk has its branch on.
+    *
+    * @return <code>true</code> if this device is on the bus
+    */
+   public boolean isConnected ()
+   {
+      for (SimulatedDevice d = this; d.coupler != null; d = d.coupler)
+         if (!d.coupler.isOn(d.channel))
+            return false;
+
+      return true;
+   }
+
+   /**
+    * Gets the maximum speed this device can talk at.  Devices that can
+    * go to overdrive override this.
+    *
+    * @return <code>DSPortAdapter.SPEED_REGULAR</code> or
+    *         <code>DSPortAdapter.SPEED_OVERDRIVE</code>
+    */
+   public int getMaxSpeed ()
+   {
+      return DSPortAdapter.SPEED_REGULAR;
+   }
+
+   /**
+    * Checks whether this device is in overdrive.
+    *
+    * @return <code>true</code> if in overdrive
+    */
+   public boolean isOverdrive ()
+   {
+      return overdrive;
+   }
+
+   /**
+    * Checks whether this device takes part in a Conditional Search.
+    * Devices with alarms override this.
+    *
+    * @return <code>true</code> if alarming
+    */
+   public boolean isAlarming ()
+   {
+      return false;
+   }
+
+   /**
+    * Called at every reset this device sees, to drop any function command
+    * in progress.
+    */
+   protected void busReset ()
+   {
+      //nothing by default
+   }
+
+   /**
+    * Called with the function command byte, after this device is
+    * selected.
+    *
+    * @param  command  function command
+    *
+    * @return byte to drive in the next byte time, 0xFF to not drive
+    */
+   protected abstract int beginCommand (int command);
+
+   /**
+    * Called with every byte after the function command byte, until the
+    * next reset.  The value is the bus value, which is the byte driven
+    * by this device ANDed with what the master and any other selected
+    * device put on the bus.
+    *
+    * @param  data  byte on the bus
+    *
+    * @return byte to drive in the next byte time, 0xFF to not drive
+    */
+   protected abstract int nextByte (int data);
+
+   //--------
+   //-------- Time slot methods used by SimulatedAdapter
+   //--------
+
+   /**
+    * Resets this device.
+    *
+    * @param  overdriveReset  <code>true</code> for a reset at overdrive speed
+    *
+    * @return <code>true</code> if this device sends a presence pulse
+    */
+   boolean reset (boolean overdriveReset)
+   {
+      if (overdriveReset && !overdrive)
+      {
+         // too short for a regular speed device
+         state = STATE_IDLE;
+
+         return false;
+      }
+
+      if (!overdriveReset)
+         overdrive = false;
+
+      state    = STATE_ROM_COMMAND;
+      bitCount = 0;
+      received = 0;
+
+      busReset();
+
+      return true;
+   }
+
+   /**
+    * Checks whether this device still needs the time slots before the next
+    * reset.
+    *
+    * @return <code>false</code> if waiting for a reset
+    */
+   boolean isActive ()
+   {
+      return state != STATE_IDLE;
+   }
+
+   /**
+    * Gets the bit this device drives in the next time slot.
+    *
+    * @return <code>false</code> to pull the bus low
+    */
+   boolean drive ()
+   {
+      switch (state)
+      {
+
+         case STATE_READ_ROM :
+            return getAddressBit(bitCount);
+         case STATE_SEARCH_ROM :
+            switch (bitCount % 3)
+            {
+
+               case 0 :
+                  return getAddressBit(bitCount / 3);
+               case 1 :
+                  return !getAddressBit(bitCount / 3);
+               default :
+                  return true;
+            }
+         case STATE_FUNCTION :
+            return ((driven >>> (bitCount & 7)) & 0x01) != 0;
+         default :
+            return true;
+      }
+   }
+
+   /**
+    * Ends a time slot.
+    *
+    * @param  bit  value on the bus in this time slot
+    */
+   void sample (boolean bit)
+   {
+      switch (state)
+      {
+
+         case STATE_ROM_COMMAND :
+            if (bit)
+               received |= 1 << bitCount;
+
+            if (++bitCount == 8)
+               romCommand(received);
+            break;
+         case STATE_READ_ROM :
+            if (++bitCount == 64)
+               select(false);
+            break;
+         case STATE_MATCH_ROM :
+            if (bit != getAddressBit(bitCount))
+            {
+               state  = STATE_IDLE;
+               resume = false;
+            }
+            else if (++bitCount == 64)
+               select(true);
+            break;
+         case STATE_SEARCH_ROM :
+            if (((bitCount % 3) == 2) && (bit != getAddressBit(bitCount / 3)))
+            {
+               state  = STATE_IDLE;
+               resume = false;
+            }
+            else if (++bitCount == 192)
+               select(true);
+            break;
+         case STATE_FUNCTION :
+            if (bit)
+               received |= 1 << (bitCount & 7);
+
+            if ((++bitCount & 7) == 0)
+            {
+               int data = received;
+
+               received = 0;
+
+               if (firstByte)
+               {
+                  firstByte = false;
+                  driven    = beginCommand(data) & 0x0FF;
+               }
+               else
+                  driven = nextByte(data) & 0x0FF;
+            }
+            break;
+         default :
+            break;
+      }
+   }
+
+   //--------
+   //-------- Private methods
+   //--------
+
+   /**
+    * Acts on a received ROM command.
+    */
+   private void romCommand (int command)
+   {
+      bitCount = 0;
+
+      switch (command)
+      {
+
+         case READ_ROM :
+            state = STATE_READ_ROM;
+            break;
+         case MATCH_ROM :
+            state = STATE_MATCH_ROM;
+            break;
+         case OVERDRIVE_MATCH_ROM :
+            if (getMaxSpeed() == DSPortAdapter.SPEED_OVERDRIVE)
+            {
+               overdrive = true;
+               state     = STATE_MATCH_ROM;
+            }
+            else
+               state = STATE_IDLE;
+            break;
+         case SKIP_ROM :
+            select(false);
+            break;
+         case OVERDRIVE_SKIP_ROM :
+            if (getMaxSpeed() == DSPortAdapter.SPEED_OVERDRIVE)
+            {
+               overdrive = true;
+
+               select(false);
+            }
+            else
+               state = STATE_IDLE;
+            break;
+         case RESUME :
+            if (resume)
+               select(true);
+            else
+               state = STATE_IDLE;
+            break;
+         case ALARM_SEARCH :
+            state = isAlarming() ? STATE_SEARCH_ROM
+                                 : STATE_IDLE;
+            break;
+         case SEARCH_ROM :
+            state = STATE_SEARCH_ROM;
+            break;
+         default :
+            state = STATE_IDLE;
+            break;
+      }
+   }
+
+   /**
+    * Moves to the function layer.
+    */
+   private void select (boolean addressed)
+   {
+      resume    = addressed;
+      state     = STATE_FUNCTION;
+      bitCount  = 0;
+      received  = 0;
+      driven    = 0x0FF;
+      firstByte = true;
+   }
+
+   /**
+    * Gets a bit of the address, LSB of byte 0 first.
+    */
+   private boolean getAddressBit (int bit)
+   {
+      return ((address [bit >>> 3] >>> (bit & 7)) & 0x01) != 0;
+   }
+}
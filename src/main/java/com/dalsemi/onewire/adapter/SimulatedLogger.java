@@ -0,0 +1,698 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.util.Arrays;
+import com.dalsemi.onewire.utils.CRC16;
+
+
+/**
+ * A {@link SimulatedDevice SimulatedDevice} model of the DS1922L
+ * temperature logger iButton (family 0x41).  The memory map is the one of
+ * the real device: 512 bytes of user memory at 0x0000, the registers at
+ * 0x0200 and the 8 KB data log at 0x1000.  The simulated logger does not
+ * sample on its own; a test calls <code>addSample</code> for each sample
+ * of a running mission, with the temperature last passed to
+ * <code>setTemperature</code>.  The temperature alarms, the sample
+ * counters and rollover are kept as on the real device.
+ *
+ * <P>Supported function commands are Write Scratchpad, Read Scratchpad,
+ * Copy Scratchpad with Password, Read Memory with Password and CRC, Clear
+ * Memory, Start Mission, Stop Mission and Forced Conversion.  Passwords
+ * are checked once they are enabled in the password control
+ * register.</P>
+ *
+ * @see SimulatedAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class SimulatedLogger
+   extends SimulatedDevice
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Function command, Write Scratchpad */
+   public static final int WRITE_SCRATCHPAD = 0x0F;
+
+   /** Function command, Read Scratchpad */
+   public static final int READ_SCRATCHPAD = 0xAA;
+
+   /** Function command, Copy Scratchpad with Password */
+   public static final int COPY_SCRATCHPAD_PW = 0x99;
+
+   /** Function command, Read Memory with Password and CRC */
+   public static final int READ_MEMORY_CRC_PW = 0x69;
+
+   /** Function command, Clear Memory with Password */
+   public static final int CLEAR_MEMORY_PW = 0x96;
+
+   /** Function command, Start Mission with Password */
+   public static final int START_MISSION_PW = 0xCC;
+
+   /** Function command, Stop Mission with Password */
+   public static final int STOP_MISSION_PW = 0x33;
+
+   /** Function command, Forced Conversion */
+   public static final int FORCED_CONVERSION = 0x55;
+
+   /** Size of the memory map */
+   private static final int MEMORY_SIZE = 0x3000;
+
+   /** Start of the data log */
+   private static final int LOG_START = 0x1000;
+
+   /** Size of the data log */
+   private static final int LOG_SIZE = 8192;
+
+   /** Register, last temperature conversion LSB */
+   private static final int LAST_TEMPERATURE = 0x20C;
+
+   /** Register, temperature low alarm threshold */
+   private static final int TEMPERATURE_LOW_ALARM = 0x208;
+
+   /** Register, temperature high alarm threshold */
+   private static final int TEMPERATURE_HIGH_ALARM = 0x209;
+
+   /** Register, temperature control */
+   private static final int TEMPERATURE_CONTROL = 0x210;
+
+   /** Register, mission control */
+   private static final int MISSION_CONTROL = 0x213;
+
+   /** Register, alarm status */
+   private static final int ALARM_STATUS = 0x214;
+
+   /** Register, general status */
+   private static final int GENERAL_STATUS = 0x215;
+
+   /** Register, mission time stamp */
+   private static final int MISSION_TIMESTAMP = 0x219;
+
+   /** Register, mission sample count */
+   private static final int MISSION_SAMPLE_COUNT = 0x220;
+
+   /** Register, device sample count */
+   private static final int DEVICE_SAMPLE_COUNT = 0x223;
+
+   /** Register, device configuration */
+   private static final int DEVICE_CONFIGURATION = 0x226;
+
+   /** Register, password control */
+   private static final int PASSWORD_CONTROL = 0x227;
+
+   /** Register, read access password */
+   private static final int READ_PASSWORD = 0x228;
+
+   /** Register, full access password */
+   private static final int FULL_PASSWORD = 0x230;
+
+   /** General status, mission in progress */
+   private static final int MIP_FLAG = 0x02;
+
+   /** General status, memory cleared */
+   private static final int MEMCLR_FLAG = 0x08;
+
+   /** Lowest temperature of the DS1922L */
+   private static final double TEMPERATURE_RANGE_LOW = -40.0;
+
+   /** E/S flag, authorization accepted */
+   private static final int AA_FLAG = 0x80;
+
+   /** E/S flag, partial byte */
+   private static final int PF_FLAG = 0x20;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Memory map */
+   private byte[] memory = new byte [MEMORY_SIZE];
+
+   /** Scratchpad */
+   private byte[] scratchpad = new byte [32];
+
+   /** Target address of the last Write Scratchpad */
+   private int scratchAddress = 0;
+
+   /** Ending offset and status of the scratchpad */
+   private int endingStatus = 0;
+
+   /** Current temperature */
+   private double temperature = 25.0;
+
+   /** Function command in progress */
+   private int command;
+
+   /** Address or offset of the command in progress */
+   private int targetAddress;
+
+   /** Bytes transferred since the command */
+   private int count;
+
+   /** Running CRC16 of the command in progress */
+   private int crc;
+
+   /** Number of CRC16 bytes still to send at the end of a page */
+   private int crcPending;
+
+   /** Password received with the command in progress */
+   private byte[] password = new byte [8];
+
+   /** Whether the command in progress may go on */
+   private boolean authorized;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a logger with no mission, passwords disabled and the
+    * memory cleared.
+    *
+    * @param  address  1-Wire network address, family 0x41
+    *
+    * @throws IllegalArgumentException on another family or an invalid
+    *         address
+    */
+   public SimulatedLogger (byte[] address)
+   {
+      super(address);
+
+      if (address [0] != 0x41)
+         throw new IllegalArgumentException(
+            "SimulatedLogger: not family 0x41");
+
+      Arrays.fill(memory, 0x260, MEMORY_SIZE, ( byte ) 0xFF);
+      Arrays.fill(scratchpad, ( byte ) 0xFF);
+
+      memory [GENERAL_STATUS]       = MEMCLR_FLAG;
+      memory [DEVICE_CONFIGURATION] = 0x40;
+
+      // factory calibration: 25 and -10 degrees, read without error
+      memory [0x240] = ( byte ) 132;
+      memory [0x242] = ( byte ) 132;
+      memory [0x244] = ( byte ) 62;
+      memory [0x246] = ( byte ) 62;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   public int getMaxSpeed ()
+   {
+      return DSPortAdapter.SPEED_OVERDRIVE;
+   }
+
+   /**
+    * Sets the temperature of the next sample or forced conversion.
+    *
+    * @param  temperature  temperature in degrees Celsius
+    */
+   public synchronized void setTemperature (double temperature)
+   {
+      this.temperature = temperature;
+   }
+
+   /**
+    * Checks whether a mission is in progress.
+    *
+    * @return <code>true</code> if a mission is in progress
+    */
+   public synchronized boolean isMissionInProgress ()
+   {
+      return (memory [GENERAL_STATUS] & MIP_FLAG) != 0;
+   }
+
+   /**
+    * Takes a sample of the running mission, as the logger does at every
+    * sample time.  Does nothing if no mission is in progress.
+    */
+   public synchronized void addSample ()
+   {
+      if (!isMissionInProgress())
+         return;
+
+      int value = encodeTemperature(temperature);
+
+      memory [LAST_TEMPERATURE]     = ( byte ) value;
+      memory [LAST_TEMPERATURE + 1] = ( byte ) (value >>> 8);
+
+      checkAlarms(value >>> 8);
+
+      int mcr              = memory [MISSION_CONTROL];
+      int temperatureBytes = 0;
+      int dataBytes        = 0;
+
+      if ((mcr & 0x01) != 0)
+         temperatureBytes = ((mcr & 0x04) != 0) ? 2
+                                                : 1;
+
+      if ((mcr & 0x02) != 0)
+         dataBytes = ((mcr & 0x08) != 0) ? 2
+                                         : 1;
+
+      int sampleCount = getCounter(MISSION_SAMPLE_COUNT);
+
+      if (temperatureBytes + dataBytes > 0)
+      {
+         int maxSamples = LOG_SIZE / (temperatureBytes + dataBytes);
+
+         if (temperatureBytes + dataBytes == 3)
+            maxSamples = 2560;
+
+         if ((sampleCount >= maxSamples) && ((mcr & 0x10) == 0))
+         {
+            // log full and no rollover, the mission goes on without logging
+            setCounter(DEVICE_SAMPLE_COUNT,
+                       getCounter(DEVICE_SAMPLE_COUNT) + 1);
+
+            return;
+         }
+
+         int n = sampleCount % maxSamples;
+
+         if (temperatureBytes == 2)
+         {
+            memory [LOG_START + n * 2]     = ( byte ) (value >>> 8);
+            memory [LOG_START + n * 2 + 1] = ( byte ) value;
+         }
+         else if (temperatureBytes == 1)
+            memory [LOG_START + n] = ( byte ) (value >>> 8);
+
+         // no data channel on this part, log 0
+         for (int i = 0; i < dataBytes; i++)
+            memory [LOG_START + temperatureBytes * maxSamples
+                    + n * dataBytes + i] = 0;
+      }
+
+      setCounter(MISSION_SAMPLE_COUNT, sampleCount + 1);
+      setCounter(DEVICE_SAMPLE_COUNT, getCounter(DEVICE_SAMPLE_COUNT) + 1);
+   }
+
+   /**
+    * Reads the memory map without going over the bus.
+    *
+    * @param  start  first address
+    * @param  buf    array for the data
+    * @param  off    offset into <code>buf</code>
+    * @param  len    number of bytes
+    */
+   public synchronized void read (int start, byte[] buf, int off, int len)
+   {
+      System.arraycopy(memory, start, buf, off, len);
+   }
+
+   /**
+    * Writes the memory map without going over the bus, for example to
+    * load a mission log.
+    *
+    * @param  start  first address
+    * @param  buf    data
+    * @param  off    offset into <code>buf</code>
+    * @param  len    number of bytes
+    */
+   public synchronized void write (int start, byte[] buf, int off, int len)
+   {
+      System.arraycopy(buf, off, memory, start, len);
+   }
+
+   /**
+    * Checks whether a temperature alarm flag is set.
+    *
+    * @return <code>true</code> if alarming
+    */
+   public synchronized boolean isAlarming ()
+   {
+      return (memory [ALARM_STATUS] & 0x0F) != 0;
+   }
+
+   protected synchronized void busReset ()
+   {
+      command = 0;
+   }
+
+   protected synchronized int beginCommand (int command)
+   {
+      this.command  = command;
+      targetAddress = 0;
+      count         = 0;
+      authorized    = false;
+      crcPending    = 0;
+      crc           = CRC16.compute(command, 0);
+
+      if (command == READ_SCRATCHPAD)
+      {
+         crc = CRC16.compute(scratchAddress & 0x0FF, crc);
+
+         return scratchAddress;
+      }
+
+      return 0xFF;
+   }
+
+   protected synchronized int nextByte (int data)
+   {
+      int index = count++;
+
+      switch (command)
+      {
+
+         case WRITE_SCRATCHPAD :
+            if ((index < 2) || (targetAddress < 32))
+               crc = CRC16.compute(data, crc);
+
+            if (index < 2)
+            {
+               targetAddress |= data << (8 * index);
+
+               if (index == 1)
+               {
+                  scratchAddress = targetAddress;
+                  endingStatus   = PF_FLAG | (targetAddress & 0x1F);
+                  targetAddress  &= 0x1F;
+               }
+            }
+            else if (targetAddress < 32)
+            {
+               endingStatus                 = targetAddress;
+               scratchpad [targetAddress++] = ( byte ) data;
+
+               if (targetAddress == 32)
+                  return ~crc;
+            }
+            else if (targetAddress++ == 32)
+               return ~crc >>> 8;
+            break;
+         case READ_SCRATCHPAD :
+            int out;
+
+            if (index == 0)
+               out = (scratchAddress >>> 8) & 0x0FF;
+            else if (index == 1)
+            {
+               targetAddress = scratchAddress & 0x1F;
+               out           = endingStatus;
+            }
+            else if (targetAddress < 32)
+               out = scratchpad [targetAddress++] & 0x0FF;
+            else if (targetAddress++ == 32)
+               return ~crc;
+            else if (targetAddress == 34)
+               return ~crc >>> 8;
+            else
+               return 0xFF;
+
+            crc = CRC16.compute(out, crc);
+
+            return out;
+         case COPY_SCRATCHPAD_PW :
+            if (index < 2)
+               targetAddress |= data << (8 * index);
+            else if (index == 2)
+               authorized = (targetAddress == scratchAddress)
+                            && (data == (endingStatus & ~AA_FLAG))
+                            && ((endingStatus & PF_FLAG) == 0);
+            else if (index < 11)
+            {
+               password [index - 3] = ( byte ) data;
+
+               if (index == 10)
+               {
+                  authorized = authorized && checkPassword(true);
+
+                  if (authorized)
+                     copyScratchpad();
+               }
+            }
+
+            if (authorized && (index >= 10))
+               return 0xAA;
+            break;
+         case READ_MEMORY_CRC_PW :
+            if (index < 2)
+            {
+               targetAddress |= data << (8 * index);
+               crc           = CRC16.compute(data, crc);
+            }
+            else if (index < 10)
+            {
+               password [index - 2] = ( byte ) data;
+
+               if (index == 9)
+               {
+                  authorized = checkPassword(false);
+
+                  if (authorized)
+                     return readMemory();
+               }
+            }
+            else if (authorized)
+               return readMemory();
+            break;
+         case CLEAR_MEMORY_PW :
+         case START_MISSION_PW :
+         case STOP_MISSION_PW :
+            if (index < 8)
+            {
+               password [index] = ( byte ) data;
+
+               if ((index == 7) && checkPassword(true))
+                  control(command);
+            }
+            break;
+         case FORCED_CONVERSION :
+            if ((index == 0) && !isMissionInProgress())
+            {
+               int value = encodeTemperature(temperature);
+
+               memory [LAST_TEMPERATURE]     = ( byte ) value;
+               memory [LAST_TEMPERATURE + 1] = ( byte ) (value >>> 8);
+            }
+            break;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+
+   //--------
+   //-------- Private methods
+   //--------
+
+   /**
+    * Gets the next byte of a Read Memory, with an inverted CRC16 after the
+    * last byte of each page.  The CRC of the first page also covers the
+    * command and target address.
+    */
+   private int readMemory ()
+   {
+      if (crcPending == 2)
+      {
+         crcPending = 1;
+
+         return ~crc;
+      }
+
+      if (crcPending == 1)
+      {
+         int data = ~crc >>> 8;
+
+         crcPending = 0;
+         crc        = 0;
+
+         return data;
+      }
+
+      if (targetAddress >= MEMORY_SIZE)
+         return 0xFF;
+
+      int data = readByte(targetAddress++);
+
+      crc = CRC16.compute(data, crc);
+
+      if ((targetAddress & 0x1F) == 0)
+         crcPending = 2;
+
+      return data;
+   }
+
+   /**
+    * Gets a byte of the memory map as read over the bus.
+    */
+   private int readByte (int address)
+   {
+      if ((address >= READ_PASSWORD) && (address < FULL_PASSWORD + 8))
+         return 0xFF;
+
+      return memory [address] & 0x0FF;
+   }
+
+   /**
+    * Checks the password received with a command, if passwords are
+    * enabled.
+    */
+   private boolean checkPassword (boolean fullAccess)
+   {
+      if (memory [PASSWORD_CONTROL] != ( byte ) 0xAA)
+         return true;
+
+      if (matches(FULL_PASSWORD))
+         return true;
+
+      return !fullAccess && matches(READ_PASSWORD);
+   }
+
+   /**
+    * Compares the password received with the one at an address.
+    */
+   private boolean matches (int address)
+   {
+      for (int i = 0; i < 8; i++)
+         if (password [i] != memory [address + i])
+            return false;
+
+      return true;
+   }
+
+   /**
+    * Copies the scratchpad to memory, skipping read only addresses.
+    */
+   private void copyScratchpad ()
+   {
+      boolean mission = isMissionInProgress();
+      int     start   = scratchAddress & ~0x1F;
+
+      for (int i = scratchAddress & 0x1F; i <= (endingStatus & 0x1F); i++)
+      {
+         int address = start + i;
+
+         if ((address < 0x200)
+                 || (!mission && (address <= MISSION_CONTROL))
+                 || (!mission && (address >= PASSWORD_CONTROL)
+                     && (address < FULL_PASSWORD + 8)))
+            memory [address] = scratchpad [i];
+      }
+
+      endingStatus |= AA_FLAG;
+   }
+
+   /**
+    * Runs Clear Memory, Start Mission or Stop Mission.
+    */
+   private void control (int command)
+   {
+      int status = memory [GENERAL_STATUS];
+
+      switch (command)
+      {
+
+         case CLEAR_MEMORY_PW :
+            if ((status & MIP_FLAG) == 0)
+            {
+               memory [ALARM_STATUS]   = 0;
+               memory [GENERAL_STATUS] = MEMCLR_FLAG;
+
+               Arrays.fill(memory, LAST_TEMPERATURE, LAST_TEMPERATURE + 4,
+                           ( byte ) 0);
+               Arrays.fill(memory, MISSION_TIMESTAMP, DEVICE_SAMPLE_COUNT,
+                           ( byte ) 0);
+            }
+            break;
+         case START_MISSION_PW :
+            if (((status & MIP_FLAG) == 0) && ((status & MEMCLR_FLAG) != 0))
+            {
+               memory [GENERAL_STATUS] = MIP_FLAG;
+
+               // time stamp from the real time clock
+               System.arraycopy(memory, 0x200, memory, MISSION_TIMESTAMP, 6);
+            }
+            break;
+         case STOP_MISSION_PW :
+            memory [GENERAL_STATUS] = ( byte ) (status & ~MIP_FLAG);
+            break;
+         default :
+            break;
+      }
+   }
+
+   /**
+    * Sets the alarm flags for the upper byte of a temperature, if the
+    * alarms are enabled.
+    */
+   private void checkAlarms (int value)
+   {
+      int tcr = memory [TEMPERATURE_CONTROL];
+
+      if (((tcr & 0x01) != 0)
+              && (value < (memory [TEMPERATURE_LOW_ALARM] & 0x0FF)))
+         memory [ALARM_STATUS] |= 0x01;
+
+      if (((tcr & 0x02) != 0)
+              && (value > (memory [TEMPERATURE_HIGH_ALARM] & 0x0FF)))
+         memory [ALARM_STATUS] |= 0x02;
+   }
+
+   /**
+    * Encodes a temperature as the 16 bit register value, 11 bits
+    * significant.
+    */
+   private int encodeTemperature (double temperature)
+   {
+      int value = ( int ) Math.round(
+         (temperature - (TEMPERATURE_RANGE_LOW - 1)) * 512);
+
+      return Math.max(0, Math.min(0xFFE0, value)) & 0xFFE0;
+   }
+
+   /**
+    * Gets a 3 byte counter, LSB first.
+    */
+   private int getCounter (int address)
+   {
+      return (memory [address] & 0x0FF) | ((memory [address + 1] & 0x0FF) << 8)
+             | ((memory [address + 2] & 0x0FF) << 16);
+   }
+
+   /**
+    * Sets a 3 byte counter, LSB first.
+    */
+   private void setCounter (int address, int value)
+   {
+      memory [address]     = ( byte ) value;
+      memory [address + 1] = ( byte ) (value >>> 8);
+      memory [address + 2] = ( byte ) (value >>> 16);
+   }
+}
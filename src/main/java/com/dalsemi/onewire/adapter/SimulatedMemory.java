@@ -0,0 +1,283 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import java.util.Arrays;
+
+
+/**
+ * A {@link SimulatedDevice SimulatedDevice} model of the memory iButtons
+ * with a 32 byte scratchpad: the DS1992 (family 0x08), DS1993 (family
+ * 0x06), DS1995 (family 0x0A) and DS1996 (family 0x0C).  Copies take no
+ * time.
+ *
+ * <P>Supported function commands are Read Memory, Write Scratchpad, Read
+ * Scratchpad and Copy Scratchpad.</P>
+ *
+ * @see SimulatedAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class SimulatedMemory
+   extends SimulatedDevice
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Function command, Read Memory */
+   public static final int READ_MEMORY = 0xF0;
+
+   /** Function command, Write Scratchpad */
+   public static final int WRITE_SCRATCHPAD = 0x0F;
+
+   /** Function command, Read Scratchpad */
+   public static final int READ_SCRATCHPAD = 0xAA;
+
+   /** Function command, Copy Scratchpad */
+   public static final int COPY_SCRATCHPAD = 0x55;
+
+   /** E/S flag, authorization accepted */
+   private static final int AA_FLAG = 0x80;
+
+   /** E/S flag, partial byte */
+   private static final int PF_FLAG = 0x20;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Memory */
+   private byte[] memory;
+
+   /** Scratchpad */
+   private byte[] scratchpad = new byte [32];
+
+   /** Target address of the last Write Scratchpad */
+   private int scratchAddress = 0;
+
+   /** Ending offset and status of the scratchpad */
+   private int endingStatus = 0;
+
+   /** Function command in progress */
+   private int command;
+
+   /** Address or offset of the command in progress */
+   private int targetAddress;
+
+   /** Bytes transferred since the command */
+   private int count;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a memory iButton, with all memory 0xFF.
+    *
+    * @param  address  1-Wire network address, family 0x06, 0x08, 0x0A
+    *                  or 0x0C
+    *
+    * @throws IllegalArgumentException on another family or an invalid
+    *         address
+    */
+   public SimulatedMemory (byte[] address)
+   {
+      super(address);
+
+      switch (address [0])
+      {
+
+         case 0x06 :
+            memory = new byte [512];
+            break;
+         case 0x08 :
+            memory = new byte [128];
+            break;
+         case 0x0A :
+            memory = new byte [2048];
+            break;
+         case 0x0C :
+            memory = new byte [8192];
+            break;
+         default :
+            throw new IllegalArgumentException(
+               "SimulatedMemory: not a memory iButton family, "
+               + (address [0] & 0x0FF));
+      }
+
+      Arrays.fill(memory, ( byte ) 0xFF);
+      Arrays.fill(scratchpad, ( byte ) 0xFF);
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   public int getMaxSpeed ()
+   {
+      return DSPortAdapter.SPEED_OVERDRIVE;
+   }
+
+   /**
+    * Gets the size of the memory.
+    *
+    * @return size in bytes
+    */
+   public int getSize ()
+   {
+      return memory.length;
+   }
+
+   /**
+    * Reads memory without going over the bus.
+    *
+    * @param  start  first address
+    * @param  buf    array for the data
+    * @param  off    offset into <code>buf</code>
+    * @param  len    number of bytes
+    */
+   public synchronized void read (int start, byte[] buf, int off, int len)
+   {
+      System.arraycopy(memory, start, buf, off, len);
+   }
+
+   /**
+    * Writes memory without going over the bus, for example to load test
+    * data.
+    *
+    * @param  start  first address
+    * @param  buf    data
+    * @param  off    offset into <code>buf</code>
+    * @param  len    number of bytes
+    */
+   public synchronized void write (int start, byte[] buf, int off, int len)
+   {
+      System.arraycopy(buf, off, memory, start, len);
+   }
+
+   protected synchronized void busReset ()
+   {
+      command = 0;
+   }
+
+   protected synchronized int beginCommand (int command)
+   {
+      this.command  = command;
+      targetAddress = 0;
+      count         = 0;
+
+      if (command == READ_SCRATCHPAD)
+         return scratchAddress;
+
+      return 0xFF;
+   }
+
+   protected synchronized int nextByte (int data)
+   {
+      int index = count++;
+
+      switch (command)
+      {
+
+         case READ_MEMORY :
+            if (index < 2)
+               targetAddress |= data << (8 * index);
+
+            if ((index >= 1) && (targetAddress < memory.length))
+               return memory [targetAddress++];
+            break;
+         case WRITE_SCRATCHPAD :
+            if (index < 2)
+            {
+               targetAddress |= data << (8 * index);
+
+               if (index == 1)
+               {
+                  scratchAddress = targetAddress;
+                  endingStatus   = PF_FLAG | (targetAddress & 0x1F);
+                  targetAddress  &= 0x1F;
+               }
+            }
+            else if (targetAddress < 32)
+            {
+               endingStatus               = targetAddress;
+               scratchpad [targetAddress++] = ( byte ) data;
+            }
+            break;
+         case READ_SCRATCHPAD :
+            if (index == 0)
+               return scratchAddress >>> 8;
+
+            if (index == 1)
+            {
+               targetAddress = scratchAddress & 0x1F;
+
+               return endingStatus;
+            }
+
+            if (targetAddress <= (endingStatus & 0x1F))
+               return scratchpad [targetAddress++];
+            break;
+         case COPY_SCRATCHPAD :
+            if (index < 2)
+               targetAddress |= data << (8 * index);
+            else if (index == 2)
+            {
+               if ((targetAddress != scratchAddress)
+                       || (data != (endingStatus & ~AA_FLAG))
+                       || ((endingStatus & PF_FLAG) != 0))
+               {
+                  command = 0;
+
+                  break;
+               }
+
+               int start = scratchAddress & ~0x1F;
+
+               for (int i = scratchAddress & 0x1F; i <= (data & 0x1F); i++)
+                  if (start + i < memory.length)
+                     memory [start + i] = scratchpad [i];
+
+               endingStatus |= AA_FLAG;
+
+               // copy done
+               return 0x00;
+            }
+            break;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+}
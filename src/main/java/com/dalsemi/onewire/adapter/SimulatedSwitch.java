@@ -0,0 +1,395 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import com.dalsemi.onewire.utils.CRC16;
+
+
+/**
+ * A {@link SimulatedDevice SimulatedDevice} model of the DS2408 8 channel
+ * addressable switch (family 0x29).  The logic state of each PIO is its
+ * output latch ANDed with the level an external circuit puts on it, set
+ * with <code>setInputs</code>.  Changes of the logic state set the
+ * activity latches, and the conditional search registers decide when the
+ * device is found by a Conditional Search.
+ *
+ * <P>Supported function commands are Read PIO Registers, Channel Access
+ * Read, Channel Access Write, Write Conditional Search Register and Reset
+ * Activity Latches.</P>
+ *
+ * @see SimulatedAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class SimulatedSwitch
+   extends SimulatedDevice
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Function command, Read PIO Registers */
+   public static final int READ_PIO_REGISTERS = 0xF0;
+
+   /** Function command, Channel Access Read */
+   public static final int CHANNEL_ACCESS_READ = 0xF5;
+
+   /** Function command, Channel Access Write */
+   public static final int CHANNEL_ACCESS_WRITE = 0x5A;
+
+   /** Function command, Write Conditional Search Register */
+   public static final int WRITE_SEARCH_REGISTER = 0xCC;
+
+   /** Function command, Reset Activity Latches */
+   public static final int RESET_ACTIVITY_LATCHES = 0xC3;
+
+   /** Address of the first register */
+   private static final int REGISTER_START = 0x88;
+
+   /** Address of the last register */
+   private static final int REGISTER_END = 0x8F;
+
+   /** Register index, PIO logic state */
+   private static final int PIO_LOGIC_STATE = 0;
+
+   /** Register index, PIO output latch state */
+   private static final int OUTPUT_LATCH = 1;
+
+   /** Register index, PIO activity latch state */
+   private static final int ACTIVITY_LATCH = 2;
+
+   /** Register index, conditional search channel selection mask */
+   private static final int SEARCH_MASK = 3;
+
+   /** Register index, conditional search channel polarity selection */
+   private static final int SEARCH_POLARITY = 4;
+
+   /** Register index, control/status */
+   private static final int CONTROL_STATUS = 5;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Registers 0x88 to 0x8F */
+   private byte[] registers = new byte [8];
+
+   /** Levels put on the PIOs from outside */
+   private int inputs = 0xFF;
+
+   /** Function command in progress */
+   private int command;
+
+   /** Target address of the command in progress */
+   private int targetAddress;
+
+   /** Number of target address bytes received */
+   private int addressCount;
+
+   /** Bytes transferred since the command */
+   private int count;
+
+   /** Running CRC16 of the command in progress */
+   private int crc;
+
+   /** Data byte of a Channel Access Write */
+   private int writeData;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a switch, with all output latches off.
+    *
+    * @param  address  1-Wire network address, family 0x29
+    *
+    * @throws IllegalArgumentException on another family or an invalid
+    *         address
+    */
+   public SimulatedSwitch (byte[] address)
+   {
+      super(address);
+
+      if (address [0] != 0x29)
+         throw new IllegalArgumentException(
+            "SimulatedSwitch: not family 0x29");
+
+      registers [OUTPUT_LATCH]   = ( byte ) 0xFF;
+      registers [CONTROL_STATUS] = ( byte ) 0x88;
+      registers [6]              = ( byte ) 0xFF;
+      registers [7]              = ( byte ) 0xFF;
+
+      updateLogicState();
+
+      registers [ACTIVITY_LATCH] = 0;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   public int getMaxSpeed ()
+   {
+      return DSPortAdapter.SPEED_OVERDRIVE;
+   }
+
+   /**
+    * Sets the levels an external circuit puts on the PIOs.  A PIO reads
+    * low if either its output latch or its input is low.
+    *
+    * @param  inputs  one bit for each PIO, 1 for high
+    */
+   public synchronized void setInputs (int inputs)
+   {
+      this.inputs = inputs & 0x0FF;
+
+      updateLogicState();
+   }
+
+   /**
+    * Gets the output latch state.
+    *
+    * @return one bit for each PIO, 0 for an output transistor that is on
+    */
+   public synchronized int getOutputLatch ()
+   {
+      return registers [OUTPUT_LATCH] & 0x0FF;
+   }
+
+   /**
+    * Checks whether the conditional search registers match.
+    *
+    * @return <code>true</code> if alarming
+    */
+   public synchronized boolean isAlarming ()
+   {
+      int mask = registers [SEARCH_MASK] & 0x0FF;
+
+      if (mask == 0)
+         return false;
+
+      int source = ((registers [CONTROL_STATUS] & 0x01) != 0)
+                   ? registers [ACTIVITY_LATCH]
+                   : registers [PIO_LOGIC_STATE];
+      int match  = ~(source ^ registers [SEARCH_POLARITY]) & mask;
+
+      // CT bit selects AND instead of OR
+      if ((registers [CONTROL_STATUS] & 0x02) != 0)
+         return match == mask;
+      else
+         return match != 0;
+   }
+
+   protected synchronized void busReset ()
+   {
+      command = 0;
+   }
+
+   protected synchronized int beginCommand (int command)
+   {
+      this.command  = command;
+      targetAddress = 0;
+      addressCount  = 0;
+      count         = 0;
+      crc           = CRC16.compute(command, 0);
+
+      switch (command)
+      {
+
+         case CHANNEL_ACCESS_READ :
+            return channelRead();
+         case RESET_ACTIVITY_LATCHES :
+            registers [ACTIVITY_LATCH] = 0;
+
+            return 0xAA;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+
+   protected synchronized int nextByte (int data)
+   {
+      switch (command)
+      {
+
+         case READ_PIO_REGISTERS :
+            if (receiveAddress(data))
+               return (addressCount == 2) ? readRegister()
+                                          : 0xFF;
+
+            if (targetAddress <= REGISTER_END)
+               return readRegister();
+
+            // inverted CRC16 after the last register
+            if (count++ == 0)
+               return ~crc;
+
+            if (count == 2)
+               return ~crc >>> 8;
+            break;
+         case CHANNEL_ACCESS_READ :
+            return channelRead();
+         case CHANNEL_ACCESS_WRITE :
+            switch (count++ % 4)
+            {
+
+               case 0 :
+                  writeData = data;
+                  break;
+               case 1 :
+                  if ((writeData ^ data) == 0xFF)
+                  {
+                     registers [OUTPUT_LATCH] = ( byte ) writeData;
+
+                     updateLogicState();
+
+                     return 0xAA;
+                  }
+
+                  // wrong complement, wait for a reset
+                  command = 0;
+                  break;
+               case 2 :
+                  return registers [PIO_LOGIC_STATE];
+               default :
+                  break;
+            }
+            break;
+         case WRITE_SEARCH_REGISTER :
+            if (receiveAddress(data))
+               break;
+
+            if ((targetAddress >= REGISTER_START + SEARCH_MASK)
+                    && (targetAddress <= REGISTER_START + CONTROL_STATUS))
+            {
+               int i = targetAddress++ - REGISTER_START;
+
+               if (i == CONTROL_STATUS)
+               {
+                  // PORL is cleared by writing 0, VCCP is read only
+                  int porl = registers [i] & data & 0x08;
+
+                  registers [i] = ( byte ) ((registers [i] & 0x80) | porl
+                                            | (data & 0x07));
+               }
+               else
+                  registers [i] = ( byte ) data;
+            }
+            break;
+         case RESET_ACTIVITY_LATCHES :
+            return 0xAA;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+
+   //--------
+   //-------- Private methods
+   //--------
+
+   /**
+    * Receives the target address bytes, TA1 then TA2.
+    *
+    * @return <code>true</code> if the byte was part of the address
+    */
+   private boolean receiveAddress (int data)
+   {
+      if (addressCount == 2)
+         return false;
+
+      crc           =  CRC16.compute(data, crc);
+      targetAddress |= data << (8 * addressCount++);
+
+      return true;
+   }
+
+   /**
+    * Gets the register at the target address and moves to the next one.
+    */
+   private int readRegister ()
+   {
+      int data = 0xFF;
+
+      if (targetAddress >= REGISTER_START)
+         data = registers [targetAddress - REGISTER_START] & 0x0FF;
+
+      targetAddress++;
+      crc = CRC16.compute(data, crc);
+
+      return data;
+   }
+
+   /**
+    * Gets the next byte of a Channel Access Read, the PIO logic state
+    * with a CRC16 after every 32 bytes.
+    */
+   private int channelRead ()
+   {
+      int i = count++ % 34;
+
+      if (i < 32)
+      {
+         int data = registers [PIO_LOGIC_STATE] & 0x0FF;
+
+         crc = CRC16.compute(data, crc);
+
+         return data;
+      }
+
+      if (i == 32)
+         return ~crc;
+
+      int data = ~crc >>> 8;
+
+      crc = 0;
+
+      return data;
+   }
+
+   /**
+    * Recomputes the PIO logic state and sets the activity latches of the
+    * PIOs that changed.
+    */
+   private void updateLogicState ()
+   {
+      int state = registers [OUTPUT_LATCH] & inputs;
+
+      registers [ACTIVITY_LATCH]  |= ( byte ) (state
+                                               ^ registers [PIO_LOGIC_STATE]);
+      registers [PIO_LOGIC_STATE] = ( byte ) state;
+   }
+}
@@ -0,0 +1,313 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+// imports
+import com.dalsemi.onewire.utils.CRC8;
+
+
+/**
+ * A {@link SimulatedDevice SimulatedDevice} model of the DS18S20 (family
+ * 0x10), DS1822 (family 0x22) and DS18B20 (family 0x28) thermometers.
+ * Conversions take no time, and read back the temperature last passed
+ * to <code>setTemperature</code>.  The device is alarming, and so is found
+ * by a Conditional Search, while the last conversion is above TH or below
+ * TL.
+ *
+ * <P>Supported function commands are Convert T, Read Scratchpad, Write
+ * Scratchpad, Copy Scratchpad, Recall E<SUP>2</SUP> and Read Power
+ * Supply.</P>
+ *
+ * @see SimulatedAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class SimulatedThermometer
+   extends SimulatedDevice
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Function command, Convert T */
+   public static final int CONVERT_T = 0x44;
+
+   /** Function command, Read Scratchpad */
+   public static final int READ_SCRATCHPAD = 0xBE;
+
+   /** Function command, Write Scratchpad */
+   public static final int WRITE_SCRATCHPAD = 0x4E;
+
+   /** Function command, Copy Scratchpad */
+   public static final int COPY_SCRATCHPAD = 0x48;
+
+   /** Function command, Recall E2 */
+   public static final int RECALL_E2 = 0xB8;
+
+   /** Function command, Read Power Supply */
+   public static final int READ_POWER_SUPPLY = 0xB4;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Scratchpad, 8 bytes and CRC */
+   private byte[] scratchpad = new byte [9];
+
+   /** TH, TL and configuration in EEPROM */
+   private byte[] eeprom = new byte [3];
+
+   /** Current temperature */
+   private double temperature = 25.0;
+
+   /** Whether the device is powered from the data line */
+   private boolean parasite = false;
+
+   /** Function command in progress */
+   private int command;
+
+   /** Bytes transferred since the command */
+   private int count;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a thermometer.
+    *
+    * @param  address  1-Wire network address, family 0x10, 0x22 or 0x28
+    *
+    * @throws IllegalArgumentException on another family or an invalid
+    *         address
+    */
+   public SimulatedThermometer (byte[] address)
+   {
+      super(address);
+
+      int family = address [0] & 0x0FF;
+
+      if ((family != 0x10) && (family != 0x22) && (family != 0x28))
+         throw new IllegalArgumentException(
+            "SimulatedThermometer: not a thermometer family, " + family);
+
+      // power on value of 85 C, alarms at 125 / -55
+      eeprom [0] = ( byte ) 125;
+      eeprom [1] = ( byte ) -55;
+      eeprom [2] = ( byte ) 0x7F;
+
+      System.arraycopy(eeprom, 0, scratchpad, 2, 3);
+
+      if (isDS18S20())
+         scratchpad [4] = ( byte ) 0xFF;
+
+      scratchpad [5] = ( byte ) 0xFF;
+      scratchpad [6] = ( byte ) 0x0C;
+      scratchpad [7] = ( byte ) 0x10;
+
+      setScratchpadTemperature(85.0);
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Sets the temperature the next conversion reads.
+    *
+    * @param  temperature  temperature in degrees Celsius
+    */
+   public synchronized void setTemperature (double temperature)
+   {
+      this.temperature = temperature;
+   }
+
+   /**
+    * Gets the temperature the next conversion reads.
+    *
+    * @return temperature in degrees Celsius
+    */
+   public synchronized double getTemperature ()
+   {
+      return temperature;
+   }
+
+   /**
+    * Sets whether the device reports it is powered from the data line.
+    *
+    * @param  parasite  <code>true</code> for parasite power
+    */
+   public synchronized void setParasitePower (boolean parasite)
+   {
+      this.parasite = parasite;
+   }
+
+   /**
+    * Checks whether the last conversion is above TH or below TL.
+    *
+    * @return <code>true</code> if alarming
+    */
+   public synchronized boolean isAlarming ()
+   {
+      int t = ( short ) ((scratchpad [0] & 0x0FF) | (scratchpad [1] << 8));
+
+      t = isDS18S20() ? (t >> 1)
+                      : (t >> 4);
+
+      return (t >= scratchpad [2]) || (t <= scratchpad [3]);
+   }
+
+   protected synchronized void busReset ()
+   {
+      command = 0;
+   }
+
+   protected synchronized int beginCommand (int command)
+   {
+      this.command = command;
+      count        = 0;
+
+      switch (command)
+      {
+
+         case CONVERT_T :
+            setScratchpadTemperature(temperature);
+            break;
+         case READ_SCRATCHPAD :
+            return scratchpad [count++];
+         case COPY_SCRATCHPAD :
+            System.arraycopy(scratchpad, 2, eeprom, 0, 3);
+            break;
+         case RECALL_E2 :
+            System.arraycopy(eeprom, 0, scratchpad, 2, isDS18S20() ? 2
+                                                                   : 3);
+            updateCRC();
+            break;
+         case READ_POWER_SUPPLY :
+            return parasite ? 0x00
+                            : 0xFF;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+
+   protected synchronized int nextByte (int data)
+   {
+      switch (command)
+      {
+
+         case READ_SCRATCHPAD :
+            if (count < 9)
+               return scratchpad [count++];
+            break;
+         case WRITE_SCRATCHPAD :
+            if (count < (isDS18S20() ? 2
+                                     : 3))
+            {
+               scratchpad [2 + count++] = ( byte ) data;
+
+               if (!isDS18S20())
+                  scratchpad [4] |= ( byte ) 0x1F;
+
+               updateCRC();
+            }
+            break;
+         case READ_POWER_SUPPLY :
+            return parasite ? 0x00
+                            : 0xFF;
+         default :
+            break;
+      }
+
+      return 0xFF;
+   }
+
+   //--------
+   //-------- Private methods
+   //--------
+
+   /**
+    * Checks whether this is a DS18S20, which has a different scratchpad
+    * layout.
+    */
+   private boolean isDS18S20 ()
+   {
+      return address [0] == 0x10;
+   }
+
+   /**
+    * Puts a temperature in the scratchpad, at the resolution of the
+    * device.
+    */
+   private void setScratchpadTemperature (double temperature)
+   {
+      int raw;
+
+      if (isDS18S20())
+      {
+         // half degree reading, plus COUNT_REMAIN for the extended
+         // resolution, which starts from the whole degrees minus 0.25
+         int whole  = ( int ) Math.floor(temperature + 0.25);
+         int remain = 16 - ( int ) Math.round(
+            (temperature - whole + 0.25) * 16);
+
+         raw = whole * 2;
+
+         if (temperature - whole >= 0.5)
+            raw++;
+
+         scratchpad [6] = ( byte ) Math.max(0, Math.min(16, remain));
+      }
+      else
+      {
+         // 9 to 12 bits, undefined bits are 0
+         int bits = 9 + ((scratchpad [4] >>> 5) & 0x03);
+
+         raw = ( int ) Math.floor(temperature * 16);
+         raw &= ~((1 << (12 - bits)) - 1);
+      }
+
+      scratchpad [0] = ( byte ) raw;
+      scratchpad [1] = ( byte ) (raw >> 8);
+
+      updateCRC();
+   }
+
+   /**
+    * Sets the CRC8 at the end of the scratchpad.
+    */
+   private void updateCRC ()
+   {
+      scratchpad [8] = ( byte ) CRC8.compute(scratchpad, 0, 8);
+   }
+}
@@ -0,0 +1,445 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A TrafficLog writes the 1-Wire traffic seen by a
+ * {@link RecordingAdapter RecordingAdapter} to an append-only file, and
+ * defines the format that {@link ReplayAdapter ReplayAdapter} reads.
+ * The file is written through memory-mapped regions, so recording a
+ * primitive is a few stores into memory and does not slow the bus down.
+ *
+ * <P>The file starts with a header:</P>
+ * <UL>
+ * <LI> int <code>MAGIC</code> and int <code>VERSION</code>
+ * <LI> long wall clock time the recording started, in milliseconds
+ * <LI> int feature flags (<code>FEATURE_OVERDRIVE</code>, ...)
+ * <LI> adapter name and port name, each a short length and UTF-8 bytes
+ * </UL>
+ * <P>followed by one record per primitive:</P>
+ * <UL>
+ * <LI> byte type (<code>TYPE_RESET</code>, ...), with
+ *      <code>FLAG_ERROR</code> set if the primitive threw a
+ *      <code>OneWireIOException</code>
+ * <LI> long start time and long duration, in nanoseconds since the
+ *      recording started
+ * <LI> int length and bytes sent to the adapter
+ * <LI> int length and bytes returned by the adapter, or the UTF-8
+ *      message of the exception
+ * </UL>
+ * <P>A type of 0, or the end of the file, ends the records.  All numbers
+ * are most significant byte first.</P>
+ *
+ * @see RecordingAdapter
+ * @see ReplayAdapter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class TrafficLog
+{
+
+   //--------
+   //-------- Finals
+   //--------
+
+   /** First int of a traffic log, 'OWTR' */
+   public static final int MAGIC = 0x4F575452;
+
+   /** Version of the file format */
+   public static final int VERSION = 1;
+
+   /** Type that ends the records */
+   public static final int TYPE_END = 0;
+
+   /** reset(), returns the reset result */
+   public static final int TYPE_RESET = 1;
+
+   /** putBit(), sends the bit */
+   public static final int TYPE_PUT_BIT = 2;
+
+   /** getBit(), returns the bit */
+   public static final int TYPE_GET_BIT = 3;
+
+   /** putByte(), sends the byte */
+   public static final int TYPE_PUT_BYTE = 4;
+
+   /** getByte(), returns the byte */
+   public static final int TYPE_GET_BYTE = 5;
+
+   /** getBlock(), returns the block */
+   public static final int TYPE_GET_BLOCK = 6;
+
+   /** dataBlock(), sends and returns the block */
+   public static final int TYPE_DATA_BLOCK = 7;
+
+   /** findFirstDevice(), returns the result and the 8 byte address */
+   public static final int TYPE_FIND_FIRST = 8;
+
+   /** findNextDevice(), returns the result and the 8 byte address */
+   public static final int TYPE_FIND_NEXT = 9;
+
+   /** setSpeed(), sends the speed */
+   public static final int TYPE_SET_SPEED = 10;
+
+   /** startPowerDelivery(), sends the condition and returns the result */
+   public static final int TYPE_START_POWER_DELIVERY = 11;
+
+   /** setPowerNormal() */
+   public static final int TYPE_SET_POWER_NORMAL = 12;
+
+   /** startProgramPulse(), sends the condition and returns the result */
+   public static final int TYPE_START_PROGRAM_PULSE = 13;
+
+   /** startBreak() */
+   public static final int TYPE_START_BREAK = 14;
+
+   /** Flag in the type of a primitive that threw an exception */
+   public static final int FLAG_ERROR = 0x80;
+
+   /** Feature flag for canOverdrive() */
+   public static final int FEATURE_OVERDRIVE = 0x01;
+
+   /** Feature flag for canHyperdrive() */
+   public static final int FEATURE_HYPERDRIVE = 0x02;
+
+   /** Feature flag for canFlex() */
+   public static final int FEATURE_FLEX = 0x04;
+
+   /** Feature flag for canProgram() */
+   public static final int FEATURE_PROGRAM = 0x08;
+
+   /** Feature flag for canDeliverPower() */
+   public static final int FEATURE_POWER = 0x10;
+
+   /** Feature flag for canDeliverSmartPower() */
+   public static final int FEATURE_SMART_POWER = 0x20;
+
+   /** Feature flag for canBreak() */
+   public static final int FEATURE_BREAK = 0x40;
+
+   /** Size of each memory-mapped region of the file */
+   public static final int REGION_SIZE = 1 << 20;
+
+   /** Names of the record types, for messages */
+   private static final String[] TYPE_NAMES = { "end", "reset", "putBit",
+      "getBit", "putByte", "getByte", "getBlock", "dataBlock",
+      "findFirstDevice", "findNextDevice", "setSpeed", "startPowerDelivery",
+      "setPowerNormal", "startProgramPulse", "startBreak" };
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** File being written */
+   private RandomAccessFile file;
+
+   /** Channel of the file, used to map regions */
+   private FileChannel channel;
+
+   /** Region of the file being written */
+   private MappedByteBuffer region;
+
+   /** Position in the file of the start of the region */
+   private long regionStart;
+
+   /** System.nanoTime() when the recording started */
+   private long baseTime;
+
+   /** Number of records written */
+   private int recordCount;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a new traffic log, replacing any file with the same name,
+    * and writes the header.
+    *
+    * @param  fileName     name of the file to write
+    * @param  adapterName  name of the adapter being recorded
+    * @param  portName     name of the port being recorded
+    * @param  features     feature flags of the adapter
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public TrafficLog (String fileName, String adapterName, String portName,
+                      int features)
+      throws IOException
+   {
+      file = new RandomAccessFile(fileName, "rw");
+      file.setLength(0);
+      channel = file.getChannel();
+
+      regionStart = 0;
+      region      = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                REGION_SIZE);
+      baseTime    = System.nanoTime();
+
+      region.putInt(MAGIC);
+      region.putInt(VERSION);
+      region.putLong(System.currentTimeMillis());
+      region.putInt(features);
+      putString(adapterName);
+      putString(portName);
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Gets the name of a record type, for messages.
+    *
+    * @param  type  record type, with or without <code>FLAG_ERROR</code>
+    *
+    * @return name of the primitive
+    */
+   public static String getTypeName (int type)
+   {
+      type &= ~FLAG_ERROR;
+
+      if ((type < 0) || (type >= TYPE_NAMES.length))
+         return "type " + type;
+
+      return TYPE_NAMES [type];
+   }
+
+   /**
+    * Writes a record of a primitive.
+    *
+    * @param  type       record type
+    * @param  startTime  <code>System.nanoTime()</code> when the primitive
+    *                    started
+    * @param  endTime    <code>System.nanoTime()</code> when it ended
+    * @param  in         bytes sent, may be <code>null</code> if inLen is 0
+    * @param  inOff      offset of the bytes sent
+    * @param  inLen      number of bytes sent
+    * @param  out        bytes returned, may be <code>null</code> if outLen is 0
+    * @param  outOff     offset of the bytes returned
+    * @param  outLen     number of bytes returned
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public synchronized void record (int type, long startTime, long endTime,
+                                    byte[] in, int inOff, int inLen,
+                                    byte[] out, int outOff, int outLen)
+      throws IOException
+   {
+      startRecord(type, startTime, endTime, 8 + inLen + outLen);
+
+      region.putInt(inLen);
+
+      if (inLen > 0)
+         region.put(in, inOff, inLen);
+
+      region.putInt(outLen);
+
+      if (outLen > 0)
+         region.put(out, outOff, outLen);
+   }
+
+   /**
+    * Writes a record of a primitive that sends and returns at most one
+    * byte.
+    *
+    * @param  type       record type
+    * @param  startTime  <code>System.nanoTime()</code> when the primitive
+    *                    started
+    * @param  endTime    <code>System.nanoTime()</code> when it ended
+    * @param  in         byte sent, or -1 for none
+    * @param  out        byte returned, or -1 for none
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public synchronized void record (int type, long startTime, long endTime,
+                                    int in, int out)
+      throws IOException
+   {
+      startRecord(type, startTime, endTime, 10);
+
+      if (in < 0)
+         region.putInt(0);
+      else
+      {
+         region.putInt(1);
+         region.put(( byte ) in);
+      }
+
+      if (out < 0)
+         region.putInt(0);
+      else
+      {
+         region.putInt(1);
+         region.put(( byte ) out);
+      }
+   }
+
+   /**
+    * Writes a record of a primitive that threw a
+    * <code>OneWireIOException</code>.
+    *
+    * @param  type       record type, without <code>FLAG_ERROR</code>
+    * @param  startTime  <code>System.nanoTime()</code> when the primitive
+    *                    started
+    * @param  endTime    <code>System.nanoTime()</code> when it ended
+    * @param  message    message of the exception
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public void recordError (int type, long startTime, long endTime,
+                            String message)
+      throws IOException
+   {
+      byte[] text = toBytes(message);
+
+      record(type | FLAG_ERROR, startTime, endTime, null, 0, 0, text, 0,
+             text.length);
+   }
+
+   /**
+    * Gets the number of records written.
+    *
+    * @return number of records
+    */
+   public synchronized int getRecordCount ()
+   {
+      return recordCount;
+   }
+
+   /**
+    * Gets the number of bytes written to the file.
+    *
+    * @return length of the file
+    */
+   public synchronized long getLength ()
+   {
+      return (region == null) ? regionStart
+                              : regionStart + region.position();
+   }
+
+   /**
+    * Flushes the records to the file and closes it.  The file is cut
+    * to the length written where the platform allows it, otherwise the
+    * unused end of the last region reads as the end of the records.
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public synchronized void close ()
+      throws IOException
+   {
+      if (region == null)
+         return;
+
+      long length = getLength();
+
+      region.force();
+      region = null;
+      regionStart = length;
+
+      try
+      {
+         channel.truncate(length);
+      }
+      catch (IOException e)
+      {
+         // VOID, a mapped file cannot be cut on some platforms
+      }
+
+      file.close();
+   }
+
+   //--------
+   //-------- Private Methods
+   //--------
+
+   /**
+    * Makes room for a record and writes its type and times.
+    */
+   private void startRecord (int type, long startTime, long endTime,
+                             int length)
+      throws IOException
+   {
+      if (region == null)
+         throw new IOException("TrafficLog is closed");
+
+      // type, start, duration, the rest, and room for the end type
+      int needed = 1 + 8 + 8 + length + 1;
+
+      if (region.remaining() < needed)
+      {
+         regionStart += region.position();
+         region       = channel.map(FileChannel.MapMode.READ_WRITE,
+                                    regionStart,
+                                    Math.max(REGION_SIZE, needed));
+      }
+
+      region.put(( byte ) type);
+      region.putLong(startTime - baseTime);
+      region.putLong(endTime - startTime);
+
+      recordCount++;
+   }
+
+   /**
+    * Writes a string as a short length and UTF-8 bytes.
+    */
+   private void putString (String s)
+   {
+      byte[] text = toBytes(s);
+      int    len  = Math.min(text.length, 0x7FFF);
+
+      region.putShort(( short ) len);
+      region.put(text, 0, len);
+   }
+
+   /**
+    * Gets the UTF-8 bytes of a string.
+    */
+   static byte[] toBytes (String s)
+   {
+      if (s == null)
+         return new byte [0];
+
+      try
+      {
+         return s.getBytes("UTF-8");
+      }
+      catch (java.io.UnsupportedEncodingException e)
+      {
+         return s.getBytes();
+      }
+   }
+}
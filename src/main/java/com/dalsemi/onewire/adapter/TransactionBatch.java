@@ -0,0 +1,475 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.adapter;
+
+/**
+ * A TransactionBatch is a script of 1-Wire steps (reset, select and
+ * data blocks) that is handed to an adapter in one call with
+ * {@link DSPortAdapter#executeBatch(TransactionBatch) executeBatch}.
+ * This lets an adapter pack the steps for many devices into as few
+ * communication round-trips as it can, instead of one round-trip for
+ * each <code>select</code> and <code>dataBlock</code>.
+ *
+ * <P>Each <code>add</code> method returns the index of the step.  After
+ * the batch is executed the results are retrieved with that index.
+ * The data of a block step is sent and received in place, so the
+ * 'read' portions need to be pre-loaded with 0xFF's, the same as
+ * <code>dataBlock</code>.</P>
+ *
+ * <P>A batch can be cleared and reused.  A batch is not thread safe.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   TransactionBatch batch = new TransactionBatch();
+ *   int[] blocks = new int [addresses.length];
+ *
+ *   for (int i = 0; i < addresses.length; i++)
+ *   {
+ *      batch.addSelect(addresses [i]);
+ *      blocks [i] = batch.addBlock(read_scratchpad_cmd, 0, 10);
+ *   }
+ *
+ *   adapter.executeBatch(batch);
+ *
+ *   for (int i = 0; i < blocks.length; i++)
+ *      batch.getBlock(blocks [i], scratchpad, 0);
+ * </CODE> </PRE>
+ *
+ * @see DSPortAdapter#executeBatch(TransactionBatch)
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class TransactionBatch
+{
+
+   //--------
+   //-------- Finals
+   //--------
+
+   /** Step type, 1-Wire reset                                          */
+   public static final int STEP_RESET = 0;
+
+   /** Step type, 1-Wire reset followed by MATCH ROM and the address    */
+   public static final int STEP_SELECT = 1;
+
+   /** Step type, block of data bytes (read/write)                      */
+   public static final int STEP_BLOCK = 2;
+
+   /** MATCH ROM command                                                */
+   private static final byte MATCH_ROM = 0x55;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Number of steps in the batch */
+   private int stepCount;
+
+   /** Type of each step */
+   private int[] stepType;
+
+   /** Offset of each step's bytes into the data buffer */
+   private int[] stepOffset;
+
+   /** Number of bytes of each step in the data buffer */
+   private int[] stepLength;
+
+   /** Reset result of each reset or select step */
+   private int[] stepResult;
+
+   /** Data bytes of all the steps, in step order */
+   private byte[] data;
+
+   /** Number of valid bytes in the data buffer */
+   private int dataLength;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Constructs an empty batch.
+    */
+   public TransactionBatch ()
+   {
+      this(16, 256);
+   }
+
+   /**
+    * Constructs an empty batch sized for the expected number of steps
+    * and data bytes.  The batch grows as needed.
+    *
+    * @param  steps  expected number of steps
+    * @param  bytes  expected number of data bytes
+    */
+   public TransactionBatch (int steps, int bytes)
+   {
+      if (steps < 1)
+         steps = 1;
+      if (bytes < 9)
+         bytes = 9;
+
+      stepType   = new int [steps];
+      stepOffset = new int [steps];
+      stepLength = new int [steps];
+      stepResult = new int [steps];
+      data       = new byte [bytes];
+
+      clear();
+   }
+
+   //--------
+   //-------- Building methods
+   //--------
+
+   /**
+    * Removes all of the steps from this batch.
+    */
+   public void clear ()
+   {
+      stepCount  = 0;
+      dataLength = 0;
+   }
+
+   /**
+    * Adds a 1-Wire reset step.
+    *
+    * @return the index of this step
+    */
+   public int addReset ()
+   {
+      return addStep(STEP_RESET, null, 0, 0);
+   }
+
+   /**
+    * Adds a select step, a 1-Wire reset followed by a MATCH ROM command
+    * and the device address.
+    *
+    * @param  address  address of iButton or 1-Wire device to select
+    *
+    * @return the index of this step
+    *
+    * @see   com.dalsemi.onewire.utils.Address
+    */
+   public int addSelect (byte[] address)
+   {
+      int step = addStep(STEP_SELECT, null, 0, 9);
+      int off  = stepOffset [step];
+
+      data [off] = MATCH_ROM;
+
+      System.arraycopy(address, 0, data, off + 1, 8);
+
+      return step;
+   }
+
+   /**
+    * Adds a select step, a 1-Wire reset followed by a MATCH ROM command
+    * and the device address.
+    *
+    * @param  address  address of iButton or 1-Wire device to select
+    *
+    * @return the index of this step
+    *
+    * @see   com.dalsemi.onewire.utils.Address
+    */
+   public int addSelect (long address)
+   {
+      int step = addStep(STEP_SELECT, null, 0, 9);
+      int off  = stepOffset [step];
+
+      data [off] = MATCH_ROM;
+
+      for (int i = 1; i <= 8; i++)
+      {
+         data [off + i] = ( byte ) address;
+         address        >>>= 8;
+      }
+
+      return step;
+   }
+
+   /**
+    * Adds a block of data bytes (read/write).  The bytes are copied into
+    * the batch, the 'read' portions need to be pre-loaded with 0xFF's.
+    *
+    * @param  block  array of data to transfer to and from the 1-Wire Network
+    * @param  off    offset into the array of data to start
+    * @param  len    length of data to send / receive starting at 'off'
+    *
+    * @return the index of this step
+    */
+   public int addBlock (byte[] block, int off, int len)
+   {
+      return addStep(STEP_BLOCK, block, off, len);
+   }
+
+   /**
+    * Adds a step of any type with its raw bytes.  For a select step the
+    * bytes are the MATCH ROM command followed by the address.
+    *
+    * @param  type   step type, STEP_RESET, STEP_SELECT or STEP_BLOCK
+    * @param  block  array of the step bytes, may be null to reserve
+    *                'len' bytes
+    * @param  off    offset into the array to start
+    * @param  len    number of step bytes
+    *
+    * @return the index of this step
+    */
+   int addStep (int type, byte[] block, int off, int len)
+   {
+      // grow the step arrays if needed
+      if (stepCount == stepType.length)
+      {
+         int size = stepType.length * 2;
+
+         stepType   = grow(stepType, size);
+         stepOffset = grow(stepOffset, size);
+         stepLength = grow(stepLength, size);
+         stepResult = grow(stepResult, size);
+      }
+
+      // grow the data buffer if needed
+      if (dataLength + len > data.length)
+      {
+         int size = data.length * 2;
+
+         while (dataLength + len > size)
+            size *= 2;
+
+         byte[] temp = new byte [size];
+
+         System.arraycopy(data, 0, temp, 0, dataLength);
+
+         data = temp;
+      }
+
+      if (block != null)
+         System.arraycopy(block, off, data, dataLength, len);
+
+      stepType [stepCount]   = type;
+      stepOffset [stepCount] = dataLength;
+      stepLength [stepCount] = len;
+      stepResult [stepCount] = DSPortAdapter.RESET_NOPRESENCE;
+
+      dataLength += len;
+
+      return stepCount++;
+   }
+
+   //--------
+   //-------- Step information methods
+   //--------
+
+   /**
+    * Gets the number of steps in this batch.
+    *
+    * @return number of steps
+    */
+   public int getStepCount ()
+   {
+      return stepCount;
+   }
+
+   /**
+    * Gets the type of a step.
+    *
+    * @param  step  index of the step
+    *
+    * @return STEP_RESET, STEP_SELECT or STEP_BLOCK
+    */
+   public int getStepType (int step)
+   {
+      checkStep(step);
+
+      return stepType [step];
+   }
+
+   /**
+    * Gets the number of data bytes of a step.  This is 9 for a select
+    * step (MATCH ROM and the address) and 0 for a reset step.
+    *
+    * @param  step  index of the step
+    *
+    * @return number of bytes
+    */
+   public int getStepLength (int step)
+   {
+      checkStep(step);
+
+      return stepLength [step];
+   }
+
+   /**
+    * Gets the offset of a step's bytes into the array returned by
+    * <code>getData()</code>.
+    *
+    * @param  step  index of the step
+    *
+    * @return offset of the step bytes
+    */
+   public int getStepOffset (int step)
+   {
+      checkStep(step);
+
+      return stepOffset [step];
+   }
+
+   /**
+    * Gets the data buffer holding the bytes of every step, in step order.
+    * The buffer is owned by the batch and may be replaced when steps
+    * are added.
+    *
+    * @return data buffer
+    */
+   public byte[] getData ()
+   {
+      return data;
+   }
+
+   /**
+    * Gets the number of valid bytes in the data buffer.
+    *
+    * @return number of bytes
+    */
+   public int getDataLength ()
+   {
+      return dataLength;
+   }
+
+   //--------
+   //-------- Result methods
+   //--------
+
+   /**
+    * Gets the 1-Wire reset result of a reset or select step.
+    *
+    * @param  step  index of the step
+    *
+    * @return  the result of the reset, one of RESET_NOPRESENCE,
+    * RESET_PRESENCE, RESET_ALARM or RESET_SHORT
+    *
+    * @see DSPortAdapter#reset()
+    */
+   public int getResetResult (int step)
+   {
+      checkStep(step);
+
+      return stepResult [step];
+   }
+
+   /**
+    * Checks whether the reset of a select step found devices on the
+    * 1-Wire Network, the same as the return value of
+    * <code>DSPortAdapter.select</code>.
+    *
+    * @param  step  index of the step
+    *
+    * @return <code>true</code> if any device was present
+    */
+   public boolean isSelected (int step)
+   {
+      int rslt = getResetResult(step);
+
+      return ((rslt == DSPortAdapter.RESET_PRESENCE)
+              || (rslt == DSPortAdapter.RESET_ALARM));
+   }
+
+   /**
+    * Copies the received bytes of a block step into the provided array.
+    *
+    * @param  step  index of the step
+    * @param  arr   array in which to write the received bytes
+    * @param  off   offset into the array to start
+    */
+   public void getBlock (int step, byte[] arr, int off)
+   {
+      checkStep(step);
+
+      System.arraycopy(data, stepOffset [step], arr, off, stepLength [step]);
+   }
+
+   /**
+    * Gets the received bytes of a block step.
+    *
+    * @param  step  index of the step
+    *
+    * @return the received bytes
+    */
+   public byte[] getBlock (int step)
+   {
+      byte[] arr = new byte [getStepLength(step)];
+
+      getBlock(step, arr, 0);
+
+      return arr;
+   }
+
+   /**
+    * Sets the 1-Wire reset result of a reset or select step.  Used by
+    * the adapter executing the batch.
+    *
+    * @param  step    index of the step
+    * @param  result  the result of the reset
+    */
+   public void setResetResult (int step, int result)
+   {
+      checkStep(step);
+
+      stepResult [step] = result;
+   }
+
+   //--------
+   //-------- Misc
+   //--------
+
+   /**
+    * Verifies a step index.
+    */
+   private void checkStep (int step)
+   {
+      if ((step < 0) || (step >= stepCount))
+         throw new IllegalArgumentException("TransactionBatch: invalid step "
+                                            + step);
+   }
+
+   /**
+    * Grows an array of ints to the new size.
+    */
+   private static int[] grow (int[] arr, int size)
+   {
+      int[] temp = new int [size];
+
+      System.arraycopy(arr, 0, temp, 0, arr.length);
+
+      return temp;
+   }
+}
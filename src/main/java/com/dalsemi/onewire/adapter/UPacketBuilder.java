@@ -29,12 +29,11 @@
 package com.dalsemi.onewire.adapter;
 
 // imports
-import java.util.Vector;
-import java.util.Enumeration;
 import com.dalsemi.onewire.adapter.UAdapterState;
 import com.dalsemi.onewire.adapter.RawSendPacket;
 import com.dalsemi.onewire.adapter.DSPortAdapter;
 import com.dalsemi.onewire.utils.Address;
+import com.dalsemi.onewire.utils.CRC8;
 import com.dalsemi.onewire.OneWireAccessProvider;
 
 
@@ -136,6 +135,51 @@ class UPacketBuilder
    /** DS9097U read bit operation 0 */
    public static final char RESPONSE_BIT_ZERO = 0x00;
 
+   //-------- DS9097U search accelerator tables
+
+   /**
+    * Search sequence for each byte of a path, 16 bits with the bits of the
+    * byte at the odd positions.  Each ROM bit takes a pair of bits in the
+    * search accelerator sequence, the direction to take being the odd one.
+    */
+   private static final char[] SEARCH_INTERLEAVE = new char [256];
+
+   /**
+    * Result of each byte of a search response, which holds 4 ROM bits.
+    * The low nibble is the ROM bits, the high nibble has a bit set for
+    * each ROM bit with a discrepancy where the 0 direction was taken.
+    */
+   private static final byte[] SEARCH_DEINTERLEAVE = new byte [256];
+
+   static
+   {
+      for (int b = 0; b < 256; b++)
+      {
+         int sequence = 0, rom = 0, discrepancy = 0;
+
+         for (int i = 0; i < 8; i++)
+         {
+            if (((b >>> i) & 0x01) != 0)
+               sequence |= 1 << (i * 2 + 1);
+         }
+
+         for (int i = 0; i < 4; i++)
+         {
+            boolean flag      = ((b >>> (i * 2)) & 0x01) != 0;
+            boolean direction = ((b >>> (i * 2 + 1)) & 0x01) != 0;
+
+            if (direction)
+               rom |= 1 << i;
+
+            if (flag &&!direction)
+               discrepancy |= 1 << i;
+         }
+
+         SEARCH_INTERLEAVE [b]   = ( char ) sequence;
+         SEARCH_DEINTERLEAVE [b] = ( byte ) (rom | (discrepancy << 4));
+      }
+   }
+
    /** Enable/disable debug messages                   */
    public static boolean doDebugMessages = false;
 
@@ -155,14 +199,19 @@ class UPacketBuilder
    protected int totalReturnLength;
 
    /**
-    * Current raw send packet before it is added to the packetsVector
+    * Current raw send packet, always packets[packetCount]
     */
    protected RawSendPacket packet;
 
    /**
-    * Vector of raw send packets
+    * Pool of raw send packets, reused from one transaction to the next
+    */
+   protected RawSendPacket[] packets;
+
+   /**
+    * Number of completed packets in the pool
     */
-   protected Vector packetsVector;
+   protected int packetCount;
 
    /**
     * Flag to send only 'bit' commands to the DS2480
@@ -185,11 +234,11 @@ class UPacketBuilder
       // get a reference to the U state
       uState = startUState;
 
-      // create the buffer for the data
-      packet = new RawSendPacket();
+      // create the pool of packets
+      packets = new RawSendPacket [4];
 
-      // create the vector
-      packetsVector = new Vector();
+      for (int i = 0; i < packets.length; i++)
+         packets [i] = new RawSendPacket();
 
       // restart the packet to initialize
       restart();
@@ -218,46 +267,74 @@ class UPacketBuilder
    public void restart ()
    {
 
-      // clear the vector list of packets
-      packetsVector.removeAllElements();
+      // start over at the first packet in the pool
+      packetCount = 0;
+      packet      = packets [0];
 
       // truncate the packet to 0 length
-      packet.buffer.setLength(0);
-
-      packet.returnLength = 0;
+      packet.reset();
 
       // reset the return cound
       totalReturnLength = 0;
    }
 
    /**
-    * Take the current packet and place it into the vector.  This
-    * indicates a place where we need to wait for the results from
-    * DS9097U adapter.
+    * Complete the current packet and move on to the next one in the
+    * pool.  This indicates a place where we need to wait for the results
+    * from DS9097U adapter.
     */
    public void newPacket ()
    {
 
-      // add the packet
-      packetsVector.addElement(packet);
+      // count the packet
+      packetCount++;
+
+      // grow the pool if needed
+      if (packetCount == packets.length)
+      {
+         RawSendPacket[] temp = new RawSendPacket [packets.length * 2];
+
+         System.arraycopy(packets, 0, temp, 0, packets.length);
 
-      // get a new packet
-      packet = new RawSendPacket();
+         for (int i = packets.length; i < temp.length; i++)
+            temp [i] = new RawSendPacket();
+
+         packets = temp;
+      }
+
+      // get the next packet
+      packet = packets [packetCount];
+
+      packet.reset();
    }
 
    /**
-    * Retrieve enumeration of raw send packets
+    * Retrieve the number of completed raw send packets.  The packets
+    * are retrieved with <code>getPacket(int)</code>.
     *
-    * @return  the enumeration of packets
+    * @return  the number of packets
     */
-   public Enumeration getPackets ()
+   public int getPacketCount ()
    {
 
-      // put the last packet into the vector if it is non zero
-      if (packet.buffer.length() > 0)
+      // complete the last packet if it is non zero
+      if (packet.length > 0)
          newPacket();
 
-      return packetsVector.elements();
+      return packetCount;
+   }
+
+   /**
+    * Retrieve a raw send packet.  The packet is owned by this builder
+    * and is only valid until the next <code>restart()</code>.
+    *
+    * @param  index  index of the packet, less then getPacketCount()
+    *
+    * @return  the raw send packet
+    */
+   public RawSendPacket getPacket (int index)
+   {
+      return packets [index];
    }
 
    //--------
@@ -276,7 +353,7 @@ class UPacketBuilder
       setToCommandMode();
 
       // append the reset command at the current speed
-      packet.buffer.append(( char ) (FUNCTION_RESET | uState.uSpeedMode));
+      packet.append(FUNCTION_RESET | uState.uSpeedMode);
 
       // count this as a return
       totalReturnLength++;
@@ -298,15 +375,15 @@ class UPacketBuilder
    /**
     * Append data bytes (read/write) to the packet.
     *
-    * @param  dataBytesValue  character array of data bytes
+    * @param  dataBytesValue  byte array of data bytes
+    * @param  off   offset into the array of data to start
+    * @param  len   length of data to send / receive starting at 'off'
     *
     * @return the number offset in the return packet to get the
     *          result of this operation
     */
-   public int dataBytes (char dataBytesValue [])
+   public int dataBytes (byte[] dataBytesValue, int off, int len)
    {
-      char byte_value;
-      int i,j;
 
       // set to data mode
       if (!bitsOnly)
@@ -315,111 +392,103 @@ class UPacketBuilder
       // provide debug output
       if (doDebugMessages)
          System.out.println("DEBUG: UPacketbuilder-dataBytes[] length "
-                            + dataBytesValue.length);
+                            + len);
 
       // record the current count location
       int ret_value = totalReturnLength;
 
-      // check each byte to see if some need duplication
-      for (i = 0; i < dataBytesValue.length; i++)
-      {
-         // convert the rest to OneWireIOExceptions
-         if (bitsOnly)
-         {
-            // change byte to bits
-            byte_value = dataBytesValue [i];
-            for (j = 0; j < 8; j++)
-            {
-               dataBit(((byte_value & 0x01) == 0x01), false);
-               byte_value >>>= 1;
-            }
-         }
-         else
-         {
-            // append the data
-            packet.buffer.append(dataBytesValue [i]);
-
-            // provide debug output
-            if (doDebugMessages)
-               System.out.println(
-                  "DEBUG: UPacketbuilder-dataBytes[] byte["
-                  + Integer.toHexString(( int ) dataBytesValue [i] & 0x00FF)
-                  + "]");
-
-            // check for duplicates needed for special characters
-            if ((( char ) (dataBytesValue [i] & 0x00FF) == UAdapterState.MODE_COMMAND)
-                    || ((( char ) (dataBytesValue [i] & 0x00FF) == UAdapterState.MODE_SPECIAL)
-                        && (uState.revision == UAdapterState.CHIP_VERSION1)))
-            {
-               // duplicate this data byte
-               packet.buffer.append(dataBytesValue [i]);
-            }
-
-            // add to the return number of bytes
-            totalReturnLength++;
-            packet.returnLength++;
-
-            // provide debug output
-            if (doDebugMessages)
-               System.out.println(
-                  "DEBUG: UPacketbuilder-dataBytes[] returnlength "
-                  + packet.returnLength + " bufferLength "
-                  + packet.buffer.length());
-
-            // check for packet too large or not streaming bytes
-            if ((packet.buffer.length() > MAX_BYTES_STREAMED)
-                    ||!uState.streamBytes)
-               newPacket();
-         }
-      }
+      // append each byte
+      for (int i = 0; i < len; i++)
+         appendDataByte(dataBytesValue [off + i]);
 
       return ret_value;
    }
 
    /**
-    * Append data bytes (read/write) to the packet.
+    * Append a data byte (read/write) to the packet.
     *
-    * @param  dataBytesValue  byte array of data bytes
-    * @param  off   offset into the array of data to start
-    * @param  len   length of data to send / receive starting at 'off'
+    * @param  dataByteValue  data byte to append
     *
     * @return the number offset in the return packet to get the
     *          result of this operation
     */
-   public int dataBytes (byte[] dataBytesValue, int off, int len)
+   public int dataByte (char dataByteValue)
    {
-      char[] temp_ch = new char [len];
 
-      for (int i = 0; i < len; i++)
-         temp_ch [i] = ( char ) dataBytesValue [off + i];
+      // set to data mode
+      if (!bitsOnly)
+         setToDataMode();
 
-      return dataBytes(temp_ch);
+      // provide debug output
+      if (doDebugMessages)
+         System.out.println(
+            "DEBUG: UPacketbuilder-dataBytes ["
+            + Integer.toHexString(( int ) dataByteValue & 0x00FF) + "]");
+
+      // record the current count location
+      int ret_value = totalReturnLength;
+
+      appendDataByte(dataByteValue);
+
+      return ret_value;
    }
 
    /**
-    * Append a data byte (read/write) to the packet.
-    *
-    * @param  dataByteValue  data byte to append
+    * Append a single data byte to the packet, duplicating it or
+    * converting it to bits as needed.  The caller has already set
+    * the data mode.
     *
-    * @return the number offset in the return packet to get the
-    *          result of this operation
+    * @param  dataByteValue  data byte to append (lower 8 bits are used)
     */
-   public int dataByte (char dataByteValue)
+   private void appendDataByte (int dataByteValue)
    {
+      int byte_value = dataByteValue & 0x00FF;
 
-      // contruct a temporary array of characters of lenght 1
-      // to use the dataBytes method
-      char[] temp_char_array = new char [1];
+      // convert the rest to OneWireIOExceptions
+      if (bitsOnly)
+      {
+         // change byte to bits
+         for (int j = 0; j < 8; j++)
+         {
+            dataBit(((byte_value & 0x01) == 0x01), false);
+            byte_value >>>= 1;
+         }
+      }
+      else
+      {
+         // append the data
+         packet.append(byte_value);
 
-      temp_char_array [0] = dataByteValue;
+         // provide debug output
+         if (doDebugMessages)
+            System.out.println(
+               "DEBUG: UPacketbuilder-dataBytes[] byte["
+               + Integer.toHexString(byte_value) + "]");
+
+         // check for duplicates needed for special characters
+         if ((byte_value == UAdapterState.MODE_COMMAND)
+                 || ((byte_value == UAdapterState.MODE_SPECIAL)
+                     && (uState.revision == UAdapterState.CHIP_VERSION1)))
+         {
+            // duplicate this data byte
+            packet.append(byte_value);
+         }
 
-      // provide debug output
-      if (doDebugMessages)
-         System.out.println(
-            "DEBUG: UPacketbuilder-dataBytes ["
-            + Integer.toHexString(( int ) dataByteValue & 0x00FF) + "]");
+         // add to the return number of bytes
+         totalReturnLength++;
+         packet.returnLength++;
 
-      return dataBytes(temp_char_array);
+         // provide debug output
+         if (doDebugMessages)
+            System.out.println(
+               "DEBUG: UPacketbuilder-dataBytes[] returnlength "
+               + packet.returnLength + " bufferLength "
+               + packet.length);
+
+         // check for packet too large or not streaming bytes
+         if ((packet.length > MAX_BYTES_STREAMED) ||!uState.streamBytes)
+            newPacket();
+      }
    }
 
    /**
@@ -465,18 +534,18 @@ class UPacketBuilder
       setToCommandMode();
 
       // append the bit with polarity and strong5V options
-      packet.buffer.append(( char ) (FUNCTION_BIT | uState.uSpeedMode
-                                     | ((dataBit) ? BIT_ONE
-                                                  : BIT_ZERO) | ((strong5V)
-                                                                 ? PRIME5V_TRUE
-                                                                 : PRIME5V_FALSE)));
+      packet.append(FUNCTION_BIT | uState.uSpeedMode
+                    | ((dataBit) ? BIT_ONE
+                                 : BIT_ZERO) | ((strong5V)
+                                                ? PRIME5V_TRUE
+                                                : PRIME5V_FALSE));
 
       // add to the return number of bytes
       totalReturnLength++;
       packet.returnLength++;
 
       // check for packet too large or not streaming bits
-      if ((packet.buffer.length() > MAX_BYTES_STREAMED) ||!uState.streamBits)
+      if ((packet.length > MAX_BYTES_STREAMED) ||!uState.streamBits)
          newPacket();
 
       return (totalReturnLength - 1);
@@ -499,60 +568,44 @@ class UPacketBuilder
       setToCommandMode();
 
       // search mode on
-      packet.buffer.append(( char ) (FUNCTION_SEARCHON | uState.uSpeedMode));
+      packet.append(FUNCTION_SEARCHON | uState.uSpeedMode);
 
       // set to data mode
       setToDataMode();
 
-      // create the search sequence character array
-      char[] search_sequence = new char [16];
-
-      // get a copy of the current ID
-      char[] id = new char [8];
-
-      for (int i = 0; i < 8; i++)
-         id [i] = ( char ) (mState.ID [i] & 0xFF);
-
-      // clear the string
-      for (int i = 0; i < 16; i++)
-         search_sequence [i] = 0;
-
       // provide debug output
       if (doDebugMessages)
          System.out.println("DEBUG: UPacketbuilder-search ["
-                            + Integer.toHexString(( int ) id.length) + "]");
+                            + Integer.toHexString(mState.ID.length) + "]");
+
+      // the path to take, all zeros on the first search
+      long path = 0;
 
-      // only modify bits if not the first search
       if (mState.searchLastDiscrepancy != 0xFF)
       {
+         int last = mState.searchLastDiscrepancy - 1;
 
-         // set the bits in the added buffer
-         for (int i = 0; i < 64; i++)
-         {
-
-            // before last discrepancy (go direction based on ID)
-            if (i < (mState.searchLastDiscrepancy - 1))
-               bitWrite(search_sequence, (i * 2 + 1), bitRead(id, i));
+         // before last discrepancy (go direction based on ID)
+         if (last >= 64)
+            path = Address.toLong(mState.ID);
 
-               // at last discrepancy (go 1's direction)
-            else if (i == (mState.searchLastDiscrepancy - 1))
-               bitWrite(search_sequence, (i * 2 + 1), true);
-
-            // after last discrepancy so leave zeros
-         }
+         // at last discrepancy (go 1's direction), after it leave zeros
+         else if (last >= 0)
+            path = (Address.toLong(mState.ID) & ((1L << last) - 1))
+                   | (1L << last);
       }
 
       // remember this position
       int return_position = totalReturnLength;
 
       // add this sequence
-      packet.buffer.append(search_sequence);
+      appendSearchSequence(path);
 
       // set to command mode
       setToCommandMode();
 
       // search mode off
-      packet.buffer.append(( char ) (FUNCTION_SEARCHOFF | uState.uSpeedMode));
+      packet.append(FUNCTION_SEARCHOFF | uState.uSpeedMode);
 
       // add to the return number of bytes
       totalReturnLength   += 16;
@@ -561,6 +614,67 @@ class UPacketBuilder
       return return_position;
    }
 
+   /**
+    * Append a search that follows the path of one known address.  Assume
+    * that any reset and search command have already been appended.  The
+    * result is checked with <code>interpretSearchAddress</code>.
+    *
+    * @param  address 8 byte 1-Wire Network Address to follow
+    *
+    * @return the number offset in the return packet to get the
+    *          result of this operation
+    */
+   public int searchAddress (byte[] address)
+   {
+
+      // set to command mode
+      setToCommandMode();
+
+      // search mode on
+      packet.append(FUNCTION_SEARCHON | uState.uSpeedMode);
+
+      // set to data mode
+      setToDataMode();
+
+      // remember this position
+      int return_position = totalReturnLength;
+
+      // go the direction of the address at every bit
+      appendSearchSequence(Address.toLong(address));
+
+      // set to command mode
+      setToCommandMode();
+
+      // search mode off
+      packet.append(FUNCTION_SEARCHOFF | uState.uSpeedMode);
+
+      // add to the return number of bytes
+      totalReturnLength   += 16;
+      packet.returnLength += 16;
+
+      // check for packet too large
+      if (packet.length > MAX_BYTES_STREAMED)
+         newPacket();
+
+      return return_position;
+   }
+
+   /**
+    * Append the 16 byte search accelerator sequence that takes a path.
+    *
+    * @param  path  direction to take at each ROM bit, bit 0 first
+    */
+   private void appendSearchSequence (long path)
+   {
+      for (int i = 0; i < 8; i++)
+      {
+         char sequence = SEARCH_INTERLEAVE [( int ) (path >>> (i * 8)) & 0xFF];
+
+         packet.append(sequence & 0xFF);
+         packet.append(sequence >>> 8);
+      }
+   }
+
    /**
     * Append a search off to set the current speed.
     */
@@ -571,7 +685,7 @@ class UPacketBuilder
       setToCommandMode();
 
       // search mode off and change speed
-      packet.buffer.append(( char ) (FUNCTION_SEARCHOFF | uState.uSpeedMode));
+      packet.append(FUNCTION_SEARCHOFF | uState.uSpeedMode);
 
       // no return byte
    }
@@ -589,7 +703,7 @@ class UPacketBuilder
       {
 
          // append the command to switch
-         packet.buffer.append(UAdapterState.MODE_COMMAND);
+         packet.append(UAdapterState.MODE_COMMAND);
 
          // switch the state
          uState.inCommandMode = true;
@@ -605,7 +719,7 @@ class UPacketBuilder
       {
 
          // append the command to switch
-         packet.buffer.append(UAdapterState.MODE_DATA);
+         packet.append(UAdapterState.MODE_DATA);
 
          // switch the state
          uState.inCommandMode = false;
@@ -627,14 +741,14 @@ class UPacketBuilder
       setToCommandMode();
 
       // append paramter get
-      packet.buffer.append(( char ) (CONFIG_MASK | parameter >> 3));
+      packet.append(CONFIG_MASK | parameter >> 3);
 
       // add to the return number of bytes
       totalReturnLength++;
       packet.returnLength++;
 
       // check for packet too large
-      if (packet.buffer.length() > MAX_BYTES_STREAMED)
+      if (packet.length > MAX_BYTES_STREAMED)
          newPacket();
 
       return (totalReturnLength - 1);
@@ -656,15 +770,14 @@ class UPacketBuilder
       setToCommandMode();
 
       // append the paramter set with value
-      packet.buffer.append(( char ) ((CONFIG_MASK | parameter)
-                                     | parameterValue));
+      packet.append((CONFIG_MASK | parameter) | parameterValue);
 
       // add to the return number of bytes
       totalReturnLength++;
       packet.returnLength++;
 
       // check for packet too large
-      if (packet.buffer.length() > MAX_BYTES_STREAMED)
+      if (packet.length > MAX_BYTES_STREAMED)
          newPacket();
 
       return (totalReturnLength - 1);
@@ -687,7 +800,7 @@ class UPacketBuilder
       setToCommandMode();
 
       // append the paramter set with value
-      packet.buffer.append(command);
+      packet.append(command);
 
       // check for response
       if (expectResponse)
@@ -699,7 +812,7 @@ class UPacketBuilder
       }
 
       // check for packet too large
-      if (packet.buffer.length() > MAX_BYTES_STREAMED)
+      if (packet.length > MAX_BYTES_STREAMED)
          newPacket();
 
       return (totalReturnLength - 1);
@@ -718,7 +831,7 @@ class UPacketBuilder
     * @param offset
     * @param len
     */
-   public void interpretDataBytes (char[] dataByteResponse, int responseOffset,
+   public void interpretDataBytes (byte[] dataByteResponse, int responseOffset,
                                    byte[] result, int offset, int len)
    {
       char result_byte;
@@ -749,7 +862,7 @@ class UPacketBuilder
             result[offset + i] = (byte)(result_byte & 0xFF);
          }
          else
-            result[offset + i] = (byte)dataByteResponse[responseOffset + i];
+            result[offset + i] = dataByteResponse[responseOffset + i];
       }
    }
 
@@ -760,7 +873,7 @@ class UPacketBuilder
     *
     * @return the number representing the result of a 1-Wire reset
     */
-   public int interpretOneWireReset (char resetResponse)
+   public int interpretOneWireReset (byte resetResponse)
    {
 
       // make sure the response byte structure is correct
@@ -820,7 +933,7 @@ class UPacketBuilder
     *
     * @return boolean representing the result of a 1-Wire bit operation
     */
-   public boolean interpretOneWireBit (char bitResponse)
+   public boolean interpretOneWireBit (byte bitResponse)
    {
 
       // interpret the bit
@@ -843,46 +956,35 @@ class UPacketBuilder
     *                 interpreting the search results
     */
    public boolean interpretSearch (OneWireState mState,
-                                   char[] searchResponse, int responseOffset)
+                                   byte[] searchResponse, int responseOffset)
    {
-      char[] temp_id = new char [8];
+      long temp_id            = 0;
+      long temp_discrepancies = 0;
 
-      // change byte offset to bit offset
-      int bit_offset = responseOffset * 8;
-
-      // set the temp Last Descrep to none
-      int temp_last_descrepancy        = 0xFF;
-      int temp_last_family_descrepancy = 0;
-
-      // interpret the search response sequence
-      for (int i = 0; i < 64; i++)
+      // interpret the search response sequence, 4 ROM bits per byte
+      for (int i = 0; i < 16; i++)
       {
+         int result = SEARCH_DEINTERLEAVE [searchResponse [responseOffset + i]
+                                           & 0xFF];
 
-         // get the SerialNum bit
-         bitWrite(temp_id, i,
-                  bitRead(searchResponse, (i * 2) + 1 + bit_offset));
-
-         // check LastDiscrepancy
-         if (bitRead(searchResponse, i * 2 + bit_offset)
-                 &&!bitRead(searchResponse, i * 2 + 1 + bit_offset))
-         {
-            temp_last_descrepancy = i + 1;
-
-            // check LastFamilyDiscrepancy
-            if (i < 8)
-               temp_last_family_descrepancy = i + 1;
-         }
+         temp_id            |= ( long ) (result & 0x0F) << (i * 4);
+         temp_discrepancies |= ( long ) ((result >>> 4) & 0x0F) << (i * 4);
       }
 
-      // check
-      byte[] id = new byte [8];
+      // LastDiscrepancy is the highest discrepancy, if any
+      int temp_last_descrepancy = 0xFF;
 
-      for (int i = 0; i < 8; i++)
-         id [i] = ( byte ) temp_id [i];
+      if (temp_discrepancies != 0)
+         temp_last_descrepancy =
+            64 - Long.numberOfLeadingZeros(temp_discrepancies);
+
+      // LastFamilyDiscrepancy is the highest in the family code
+      int temp_last_family_descrepancy =
+         32 - Integer.numberOfLeadingZeros(( int ) temp_discrepancies & 0xFF);
 
       // check results
-      if ((!Address.isValid(id)) || (temp_last_descrepancy == 63)
-              || (temp_id [0] == 0))
+      if ((!isValidAddress(temp_id)) || (temp_last_descrepancy == 63)
+              || ((temp_id & 0xFF) == 0))
          return false;
 
          // successful search
@@ -896,7 +998,7 @@ class UPacketBuilder
 
          // copy the ID number to the buffer
          for (int i = 0; i < 8; i++)
-            mState.ID [i] = ( byte ) temp_id [i];
+            mState.ID [i] = ( byte ) (temp_id >>> (i * 8));
 
          // set the count
          mState.searchLastDiscrepancy       = temp_last_descrepancy;
@@ -906,6 +1008,37 @@ class UPacketBuilder
       }
    }
 
+   /**
+    * Interpret the response of a search appended with
+    * <code>searchAddress</code>.
+    *
+    * @param address 8 byte 1-Wire Network Address that was followed
+    * @param searchResponse
+    * @param responseOffset
+    *
+    * @return boolean return is true if the search found the device
+    *                 with that address
+    */
+   public boolean interpretSearchAddress (byte[] address,
+                                          byte[] searchResponse,
+                                          int responseOffset)
+   {
+
+      long path = Address.toLong(address);
+
+      // every bit of the path taken must match the address
+      for (int i = 0; i < 16; i++)
+      {
+         int result = SEARCH_DEINTERLEAVE [searchResponse [responseOffset + i]
+                                           & 0xFF];
+
+         if ((result & 0x0F) != (( int ) (path >>> (i * 4)) & 0x0F))
+            return false;
+      }
+
+      return true;
+   }
+
    /**
     * Interpret the data response byte from a primed byte operation
     *
@@ -914,7 +1047,7 @@ class UPacketBuilder
     *
     * @return the byte representing the result of a 1-Wire data byte
     */
-   public byte interpretPrimedByte (char[] primedDataResponse,
+   public byte interpretPrimedByte (byte[] primedDataResponse,
                                     int responseOffset)
    {
       char result_byte = 0;
@@ -966,34 +1099,67 @@ class UPacketBuilder
    }
 
    /**
-    * Bit utility to read a bit in the provided array of chars.
+    * Checks the CRC8 of a 1-Wire Network address held in a long, the
+    * same as <code>Address.isValid(byte[])</code> without an array.
+    *
+    * @param  address  address, family code in the least significant byte
+    *
+    * @return <code>true</code> if the family code is non-zero and the
+    *         CRC8 calculation is correct
+    */
+   private static boolean isValidAddress (long address)
+   {
+      int family = ( int ) address & 0xFF;
+      int crc    = 0;
+
+      for (int i = 0; i < 8; i++)
+         crc = CRC8.compute(( int ) (address >>> (i * 8)), crc);
+
+      if ((family != 0) && (crc == 0))
+         return true;
+      else if ((family & 0x7F) == 0x1C) // DS28E04
+      {
+         // the CRC8 of the DS28E04 assumes that the pin selectable bits
+         // of the ROM ID are always 1
+         crc = CRC8.compute(0x7F, CRC8.compute(family, 0));
+
+         for (int i = 2; i < 8; i++)
+            crc = CRC8.compute(( int ) (address >>> (i * 8)), crc);
+
+         return (crc == 0);
+      }
+      else
+         return false;
+   }
+
+   /**
+    * Bit utility to read a bit in the provided array of bytes.
     *
-    * @param  bitBuffer array of chars where the bit to read is located
+    * @param  bitBuffer array of bytes where the bit to read is located
     * @param  address   bit location to read (LSBit of first Byte in bitBuffer
     *                    is postion 0)
     *
     * @return the boolean value of the bit position
     */
-   public boolean bitRead (char[] bitBuffer, int address)
+   public boolean bitRead (byte[] bitBuffer, int address)
    {
       int byte_number, bit_number;
 
       byte_number = (address / 8);
       bit_number  = address - (byte_number * 8);
 
-      return ((( char ) ((bitBuffer [byte_number] >> bit_number) & 0x01))
-              == 0x01);
+      return (((bitBuffer [byte_number] >> bit_number) & 0x01) == 0x01);
    }
 
    /**
-    * Bit utility to write a bit in the provided array of chars.
+    * Bit utility to write a bit in the provided array of bytes.
     *
-    * @param  bitBuffer array of chars where the bit to write is located
+    * @param  bitBuffer array of bytes where the bit to write is located
     * @param  address   bit location to write (LSBit of first Byte in bitBuffer
     *                    is postion 0)
     * @param  newBitState new bit state
     */
-   public void bitWrite (char[] bitBuffer, int address, boolean newBitState)
+   public void bitWrite (byte[] bitBuffer, int address, boolean newBitState)
    {
       int byte_number, bit_number;
 
@@ -1001,8 +1167,8 @@ class UPacketBuilder
       bit_number  = address - (byte_number * 8);
 
       if (newBitState)
-         bitBuffer [byte_number] |= ( char ) (0x01 << bit_number);
+         bitBuffer [byte_number] |= ( byte ) (0x01 << bit_number);
       else
-         bitBuffer [byte_number] &= ( char ) (~(0x01 << bit_number));
+         bitBuffer [byte_number] &= ( byte ) (~(0x01 << bit_number));
    }
 }
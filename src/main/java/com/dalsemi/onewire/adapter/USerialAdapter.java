@@ -38,6 +38,7 @@ import com.dalsemi.onewire.adapter.OneWireIOException;
 import com.dalsemi.onewire.OneWireException;
 import com.dalsemi.onewire.utils.CRC8;
 import com.dalsemi.onewire.utils.Bit;
+import com.dalsemi.onewire.utils.Address;
 
 /**
  * The USerialAdapter class implememts the DSPortAdapter interface
@@ -151,6 +152,7 @@ import com.dalsemi.onewire.utils.Bit;
  *          <LI> {@link #setPowerNormal() setPowerNormal}
  *          <LI> {@link #setSpeed(int) setSpeed}
  *          <LI> {@link #getSpeed() getSpeed}
+ *          <LI> {@link #setBaudMode(int) setBaudMode}
  *         </UL>
  *     </UL>
  *   <LI> <B> Advanced </B>
@@ -186,6 +188,15 @@ public class USerialAdapter
    /** Conditional Search, only 'alarming' devices participate */
    private static final char ALARM_SEARCH_CMD = 0xEC;
 
+   /** Baud mode, change the baud rate to suit each operation */
+   public static final int BAUD_MODE_PER_OPERATION = 0;
+
+   /** Baud mode, stay at the highest baud rate that works */
+   public static final int BAUD_MODE_STICKY = 1;
+
+   /** Failed transactions in a row before a sticky baud rate is lowered */
+   private static final int STICKY_ERROR_LIMIT = 3;
+
    //--------
    //-------- Static Variables
    //--------
@@ -199,6 +210,9 @@ public class USerialAdapter
    /** Max baud rate supported by DS9097U              */
    private static int maxBaud;
 
+   /** Baud mode of new adapters, from the properties  */
+   private static int defaultBaudMode;
+
    //--------
    //-------- Variables
    //--------
@@ -221,13 +235,28 @@ public class USerialAdapter
    /** U Adapter state                                 */
    private UAdapterState uState;
 
-   /** Input buffer to hold received data              */
-   private StringBuffer inBuffer;
+   /** Input buffer to hold received data, reused by uTransaction  */
+   private byte[] inBuffer;
+
+   /** Baud mode, BAUD_MODE_PER_OPERATION or BAUD_MODE_STICKY */
+   private int baudMode;
+
+   /** Baud rate used in sticky mode, lowered when it fails */
+   private int stickyBaud;
+
+   /** Failed transactions in a row at a sticky baud rate above 9600 */
+   private int stickyErrors;
+
+   /** Statistics, number of baud rate changes and of sticky fall backs */
+   private int baudChangeCount, baudFallbackCount;
 
    /** Flag to indicate have a local begin/end Exclusive use of serial */
    private boolean haveLocalUse;
    private Object  syncObject;
 
+   /** Time power delivery started, 0 if not measured */
+   private long powerDeliveryStart;
+
    /** Enable/disable debug messages                   */
    private static boolean doDebugMessages = false;
 
@@ -245,10 +274,12 @@ public class USerialAdapter
       owState        = new OneWireState();
       uState         = new UAdapterState(owState);
       uBuild         = new UPacketBuilder(uState);
-      inBuffer       = new StringBuffer();
+      inBuffer       = new byte [128];
       adapterPresent = false;
       haveLocalUse   = false;
       syncObject     = new Object();
+      baudMode       = defaultBaudMode;
+      stickyBaud     = maxBaud;
    }
 
    //--------
@@ -844,6 +875,9 @@ public class USerialAdapter
    {
       boolean search_result;
 
+      AdapterMetrics m     = getMetrics();
+      long           start = (m == null) ? 0 : System.nanoTime();
+
       try
       {
 
@@ -960,6 +994,9 @@ public class USerialAdapter
 
          // release local exclusive use of port
          endLocalExclusive();
+
+         if (m != null)
+            m.operation(AdapterMetrics.SEARCH, System.nanoTime() - start, 0);
       }
    }
 
@@ -1301,7 +1338,51 @@ public class USerialAdapter
    public boolean beginExclusive (boolean blocking)
       throws OneWireException
    {
-      return serial.beginExclusive(blocking);
+      AdapterMetrics m = getMetrics();
+
+      if (m == null)
+         return serial.beginExclusive(blocking);
+
+      long    start = System.nanoTime();
+      boolean got   = serial.beginExclusive(blocking);
+
+      m.operation(AdapterMetrics.EXCLUSIVE_WAIT, System.nanoTime() - start,
+                  0);
+
+      return got;
+   }
+
+   /**
+    * Gets exclusive use of the 1-Wire to communicate with an iButton or
+    * 1-Wire Device, waiting at most <code>timeout</code> milliseconds for
+    * another thread to relinquish it.  Threads waiting for the port get
+    * it in the order they asked for it.
+    *
+    * @param timeout milliseconds to wait, 0 to not wait at all, or
+    *                <code>AdapterLock.WAIT_FOREVER</code>
+    * @return <code>true</code> if an exclusive session with the adapter
+    *         was aquired
+    *
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public boolean beginExclusive (long timeout)
+      throws OneWireException
+   {
+      if (serial == null)
+         throw new OneWireException("USerialAdapter: port not selected ");
+
+      AdapterMetrics m = getMetrics();
+
+      if (m == null)
+         return serial.beginExclusive(timeout);
+
+      long    start = System.nanoTime();
+      boolean got   = serial.beginExclusive(timeout);
+
+      m.operation(AdapterMetrics.EXCLUSIVE_WAIT, System.nanoTime() - start,
+                  0);
+
+      return got;
    }
 
    /**
@@ -1334,16 +1415,19 @@ public class USerialAdapter
          return;
       else
       {
-         while(!haveLocalUse)
+         AdapterMetrics m     = getMetrics();
+         long           start = (m == null) ? 0 : System.nanoTime();
+
+         // wait in line for the port, instead of polling for it
+         serial.beginExclusive(true);
+
+         if (m != null)
+            m.operation(AdapterMetrics.EXCLUSIVE_WAIT,
+                        System.nanoTime() - start, 0);
+
+         synchronized (syncObject)
          {
-            synchronized (syncObject)
-            {
-               haveLocalUse = serial.beginExclusive(false);
-            }
-            if(!haveLocalUse)
-            {
-               try{Thread.sleep(50);}catch (Exception e){}
-            }
+            haveLocalUse = true;
          }
       }
    }
@@ -1411,15 +1495,15 @@ public class USerialAdapter
                owState.levelChangeOnNextBit = false;
 
                // set new level state
-               owState.oneWireLevel = LEVEL_POWER_DELIVERY;
+               startedPowerDelivery();
             }
 
             // send and receive
-            char[] result_array = uTransaction(uBuild);
+            uTransaction(uBuild);
 
             // check for echo
             if (bitValue
-                    != uBuild.interpretOneWireBit(result_array [bit_offset]))
+                    != uBuild.interpretOneWireBit(inBuffer [bit_offset]))
                throw new OneWireIOException(
                   "1-Wire communication error, echo was incorrect");
          }
@@ -1480,15 +1564,15 @@ public class USerialAdapter
                owState.levelChangeOnNextBit = false;
 
                // set new level state
-               owState.oneWireLevel = LEVEL_POWER_DELIVERY;
+               startedPowerDelivery();
             }
 
             // send and receive
-            char[] result_array = uTransaction(uBuild);
+            int result_length = uTransaction(uBuild);
 
             // check the result
-            if (result_array.length == (bit_offset + 1))
-               return uBuild.interpretOneWireBit(result_array [bit_offset]);
+            if (result_length == (bit_offset + 1))
+               return uBuild.interpretOneWireBit(inBuffer [bit_offset]);
             else
                return false;
          }
@@ -1631,7 +1715,9 @@ public class USerialAdapter
       throws OneWireIOException, OneWireException
    {
       int    data_offset;
-      char[] ret_data;
+
+      AdapterMetrics m     = getOperationMetrics();
+      long           start = (m == null) ? 0 : System.nanoTime();
 
       try
       {
@@ -1664,13 +1750,13 @@ public class USerialAdapter
                owState.levelChangeOnNextByte = false;
 
                // send and receive
-               ret_data = uTransaction(uBuild);
+               uTransaction(uBuild);
 
                // set new level state
-               owState.oneWireLevel = LEVEL_POWER_DELIVERY;
+               startedPowerDelivery();
 
                // extract the result byte
-               dataBlock [off] = uBuild.interpretPrimedByte(ret_data,
+               dataBlock [off] = uBuild.interpretPrimedByte(inBuffer,
                        data_offset);
             }
             else
@@ -1678,10 +1764,10 @@ public class USerialAdapter
                data_offset = uBuild.dataBytes(dataBlock, off, len);
 
                // send and receive
-               ret_data = uTransaction(uBuild);
+               uTransaction(uBuild);
 
                // extract the result byte(s)
-               uBuild.interpretDataBytes(ret_data, data_offset, dataBlock, off, len);
+               uBuild.interpretDataBytes(inBuffer, data_offset, dataBlock, off, len);
             }
          }
          else
@@ -1696,6 +1782,10 @@ public class USerialAdapter
 
          // release local exclusive use of port
          endLocalExclusive();
+
+         if (m != null)
+            m.operation(AdapterMetrics.DATA_BLOCK, System.nanoTime() - start,
+                        len);
       }
    }
 
@@ -1722,6 +1812,9 @@ public class USerialAdapter
    public int reset ()
       throws OneWireIOException, OneWireException
    {
+      AdapterMetrics m     = getOperationMetrics();
+      long           start = (m == null) ? 0 : System.nanoTime();
+
       try
       {
 
@@ -1745,12 +1838,12 @@ public class USerialAdapter
             int reset_offset = uBuild.oneWireReset();
 
             // send and receive
-            char[] result_array = uTransaction(uBuild);
+            int result_length = uTransaction(uBuild);
 
             // check the result
-            if (result_array.length == (reset_offset + 1))
+            if (result_length == (reset_offset + 1))
                return uBuild.interpretOneWireReset(
-                  result_array [reset_offset]);
+                  inBuffer [reset_offset]);
             else
                throw new OneWireIOException(
                   "USerialAdapter-reset: no return byte form 1-Wire reset");
@@ -1763,6 +1856,214 @@ public class USerialAdapter
          throw new OneWireIOException(ioe.toString());
       }
       finally
+      {
+
+         // release local exclusive use of port
+         endLocalExclusive();
+
+         if (m != null)
+            m.operation(AdapterMetrics.RESET, System.nanoTime() - start, 0);
+      }
+   }
+
+   /**
+    * Executes all of the steps of a transaction batch (resets, selects
+    * and data blocks) and leaves the results in the batch.  The whole
+    * batch is built into DS2480 packets and sent in one transaction, so
+    * the only waits are for the adapter to return each full packet.
+    *
+    * @param  batch  the batch of steps to execute
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    *
+    * @see TransactionBatch
+    */
+   public void executeBatch (TransactionBatch batch)
+      throws OneWireIOException, OneWireException
+   {
+      int step_count = batch.getStepCount();
+
+      // primed power conditions apply to a single bit or byte, so let
+      // the individual operations handle them
+      if (owState.levelChangeOnNextBit || owState.levelChangeOnNextByte)
+      {
+         super.executeBatch(batch);
+
+         return;
+      }
+
+      try
+      {
+
+         // acquire exclusive use of the port
+         beginLocalExclusive();
+
+         // make sure adapter is present
+         if (uAdapterPresent())
+         {
+
+            // check for pending power conditions
+            if (owState.oneWireLevel != LEVEL_NORMAL)
+               setPowerNormal();
+
+            // set the correct baud rate to stream this operation
+            setStreamingSpeed(UPacketBuilder.OPERATION_BYTE);
+
+            // flush out the com buffer
+            serial.flush();
+
+            // build a message with every step of the batch
+            uBuild.restart();
+
+            byte[] data           = batch.getData();
+            int[]  reset_offsets  = new int [step_count];
+            int[]  data_offsets   = new int [step_count];
+
+            for (int i = 0; i < step_count; i++)
+            {
+               int type = batch.getStepType(i);
+
+               if (type != TransactionBatch.STEP_BLOCK)
+                  reset_offsets [i] = uBuild.oneWireReset();
+
+               if (type != TransactionBatch.STEP_RESET)
+                  data_offsets [i] = uBuild.dataBytes(data,
+                                                      batch.getStepOffset(i),
+                                                      batch.getStepLength(i));
+            }
+
+            // send and receive
+            int result_length = uTransaction(uBuild);
+
+            if (result_length < uBuild.totalReturnLength)
+               throw new OneWireIOException(
+                  "USerialAdapter-executeBatch: not all bytes returned");
+
+            // extract the results
+            for (int i = 0; i < step_count; i++)
+            {
+               int type = batch.getStepType(i);
+
+               if (type != TransactionBatch.STEP_BLOCK)
+                  batch.setResetResult(i,
+                     uBuild.interpretOneWireReset(inBuffer [reset_offsets [i]]));
+
+               if (type != TransactionBatch.STEP_RESET)
+                  uBuild.interpretDataBytes(inBuffer, data_offsets [i], data,
+                                            batch.getStepOffset(i),
+                                            batch.getStepLength(i));
+            }
+         }
+         else
+            throw new OneWireIOException("Error communicating with adapter");
+      }
+      catch(IOException ioe)
+      {
+         throw new OneWireIOException(ioe.toString());
+      }
+      finally
+      {
+
+         // release local exclusive use of port
+         endLocalExclusive();
+      }
+   }
+
+   /**
+    * Verifies which of many iButtons or 1-Wire devices are present on
+    * the 1-Wire Network, in one call.  This does not affect the 'current'
+    * device state information used in searches (findNextDevice...).<p>
+    *
+    * Each address gets a reset, a Search ROM command and a search that
+    * follows the address, using the DS2480 search accelerator.  All of
+    * them go to the adapter as full packets in one transaction.
+    *
+    * @param  addresses  device addresses to verify are present
+    *
+    * @return  a <code>BitSet</code> with bit <code>i</code> set if the
+    *          device at <code>addresses[i]</code> is present
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public BitSet isPresent (long[] addresses)
+      throws OneWireIOException, OneWireException
+   {
+      BitSet present = new BitSet(addresses.length);
+
+      if (addresses.length == 0)
+         return present;
+
+      // primed power conditions apply to a single bit or byte, so let
+      // the individual operations handle them
+      if (owState.levelChangeOnNextBit || owState.levelChangeOnNextByte)
+         return super.isPresent(addresses);
+
+      try
+      {
+
+         // acquire exclusive use of the port
+         beginLocalExclusive();
+
+         // make sure adapter is present
+         if (uAdapterPresent())
+         {
+
+            // check for pending power conditions
+            if (owState.oneWireLevel != LEVEL_NORMAL)
+               setPowerNormal();
+
+            // set the correct baud rate to stream this operation
+            setStreamingSpeed(UPacketBuilder.OPERATION_SEARCH);
+
+            // flush out the com buffer
+            serial.flush();
+
+            // build a message with a search for every address
+            uBuild.restart();
+
+            byte[][] ids            = new byte [addresses.length][];
+            int[]    reset_offsets  = new int [addresses.length];
+            int[]    search_offsets = new int [addresses.length];
+
+            for (int i = 0; i < addresses.length; i++)
+            {
+               ids [i]            = Address.toByteArray(addresses [i]);
+               reset_offsets [i]  = uBuild.oneWireReset();
+
+               uBuild.dataByte(NORMAL_SEARCH_CMD);
+
+               search_offsets [i] = uBuild.searchAddress(ids [i]);
+            }
+
+            // send and receive
+            int result_length = uTransaction(uBuild);
+
+            if (result_length < uBuild.totalReturnLength)
+               throw new OneWireIOException(
+                  "USerialAdapter-isPresent: not all bytes returned");
+
+            // extract the results
+            for (int i = 0; i < addresses.length; i++)
+            {
+               if ((uBuild.interpretOneWireReset(inBuffer [reset_offsets [i]])
+                       != RESET_NOPRESENCE)
+                       && uBuild.interpretSearchAddress(ids [i], inBuffer,
+                                                        search_offsets [i]))
+                  present.set(i);
+            }
+
+            return present;
+         }
+         else
+            throw new OneWireIOException("Error communicating with adapter");
+      }
+      catch(IOException ioe)
+      {
+         throw new OneWireIOException(ioe.toString());
+      }
+      finally
       {
 
          // release local exclusive use of port
@@ -1878,12 +2179,12 @@ public class USerialAdapter
                uBuild.sendCommand(UPacketBuilder.FUNCTION_5VPULSE_NOW, false);
 
                // send and receive
-               char[] result_array = uTransaction(uBuild);
+               int result_length = uTransaction(uBuild);
 
                // check the result
-               if (result_array.length == (set_SPUD_offset + 1))
+               if (result_length == (set_SPUD_offset + 1))
                {
-                  owState.oneWireLevel = LEVEL_POWER_DELIVERY;
+                  startedPowerDelivery();
 
                   return true;
                }
@@ -1995,7 +2296,7 @@ public class USerialAdapter
             uBuild.sendCommand(UPacketBuilder.FUNCTION_12VPULSE_NOW, true);
 
          // send the command
-         //char[] result_array =
+         //int result_length =
             uTransaction(uBuild);
 
          // check the result ??
@@ -2096,13 +2397,15 @@ public class USerialAdapter
                                      true);
 
                // send and receive
-               char[] result_array = uTransaction(uBuild);
+               int result_length = uTransaction(uBuild);
 
                // check the result
-               if (result_array.length == (pulse_response_offset + 1))
+               if (result_length == (pulse_response_offset + 1))
                {
                   owState.oneWireLevel = LEVEL_NORMAL;
 
+                  endedPowerDelivery();
+
                   //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//
                   // shughes - 8-28-2003
                   // This is a bad "fix", it was needed when we were causing
@@ -2230,6 +2533,76 @@ public class USerialAdapter
       return owState.oneWireSpeed;
    }
 
+   /**
+    * Sets how the baud rate to the DS2480 is chosen.  In
+    * <code>BAUD_MODE_PER_OPERATION</code> mode, the default, each
+    * operation uses the baud rate that suits it and the 1-Wire speed,
+    * so mixing searches and data blocks can change the baud rate over
+    * and over.  Each change costs a parameter write and a verify.  In
+    * <code>BAUD_MODE_STICKY</code> mode the adapter stays at the maximum
+    * baud rate for every operation.  If changing to that rate fails, or
+    * several transactions in a row fail at it, the rate is lowered one
+    * step for the rest of the session.  The mode of new adapters can be
+    * set in the onewire.properties file with
+    * "onewire.serial.baudmode=sticky".
+    *
+    * @param mode <code>BAUD_MODE_PER_OPERATION</code> or
+    *             <code>BAUD_MODE_STICKY</code>
+    */
+   public void setBaudMode (int mode)
+   {
+      if ((mode != BAUD_MODE_PER_OPERATION) && (mode != BAUD_MODE_STICKY))
+         throw new IllegalArgumentException("Invalid baud mode: " + mode);
+
+      baudMode     = mode;
+      stickyBaud   = maxBaud;
+      stickyErrors = 0;
+   }
+
+   /**
+    * Gets how the baud rate to the DS2480 is chosen.
+    *
+    * @return <code>BAUD_MODE_PER_OPERATION</code> or
+    *         <code>BAUD_MODE_STICKY</code>
+    */
+   public int getBaudMode ()
+   {
+      return baudMode;
+   }
+
+   /**
+    * Gets the baud rate used in <code>BAUD_MODE_STICKY</code> mode.  This
+    * starts at the maximum baud rate and is lowered when it fails.
+    *
+    * @return baud rate
+    */
+   public int getStickyBaud ()
+   {
+      return stickyBaud;
+   }
+
+   /**
+    * Gets the number of times the baud rate to the DS2480 was changed
+    * for an operation.
+    *
+    * @return number of baud rate changes
+    */
+   public int getBaudChangeCount ()
+   {
+      return baudChangeCount;
+   }
+
+   /**
+    * Gets the number of times the sticky baud rate was lowered because
+    * of errors.
+    *
+    * @return number of fall backs
+    */
+   public int getBaudFallbackCount ()
+   {
+      return baudFallbackCount;
+   }
+
    //--------
    //-------- Support methods
    //--------
@@ -2273,13 +2646,13 @@ public class USerialAdapter
          int search_offset = uBuild.search(mState);
 
          // send/receive the search
-         char[] result_array = uTransaction(uBuild);
+         uTransaction(uBuild);
 
          // interpret search result and return
          if (!mState.skipResetOnSearch)
-            uBuild.interpretOneWireReset(result_array [reset_offset]);
+            uBuild.interpretOneWireReset(inBuffer [reset_offset]);
 
-         return uBuild.interpretSearch(mState, result_array, search_offset);
+         return uBuild.interpretSearch(mState, inBuffer, search_offset);
       }
       else
          throw new OneWireIOException("Error communicating with adapter");
@@ -2359,7 +2732,12 @@ public class USerialAdapter
    {
 
       // get the desired baud rate for this operation
-      int baud = UPacketBuilder.getDesiredBaud(operation, owState.oneWireSpeed,
+      int baud;
+
+      if (baudMode == BAUD_MODE_STICKY)
+         baud = stickyBaud;
+      else
+         baud = UPacketBuilder.getDesiredBaud(operation, owState.oneWireSpeed,
                                        maxBaud);
 
       // check if already at the correct speed
@@ -2397,6 +2775,7 @@ public class USerialAdapter
 
       // default, loose communication with adapter
       adapterPresent = false;
+      baudChangeCount++;
 
       // build a message to read the baud rate from the U brick
       uBuild.restart();
@@ -2409,12 +2788,11 @@ public class USerialAdapter
          // send command, no response at this baud rate
          serial.flush();
 
-         RawSendPacket pkt      =
-            ( RawSendPacket ) uBuild.getPackets().nextElement();
-         char[]        temp_buf = new char [pkt.buffer.length()];
+         uBuild.getPacketCount();
 
-         pkt.buffer.getChars(0, pkt.buffer.length(), temp_buf, 0);
-         serial.write(temp_buf);
+         RawSendPacket pkt = uBuild.getPacket(0);
+
+         serial.write(pkt.buffer, 0, pkt.length);
 
          // delay to let things settle
          sleep(5);
@@ -2449,13 +2827,13 @@ public class USerialAdapter
          // send and receive
          serial.flush();
 
-         char[] result_array = uTransaction(uBuild);
+         int result_length = uTransaction(uBuild);
 
          // check the result
-         if (result_array.length == 1)
+         if (result_length == 1)
          {
-            if (((result_array [baud_offset] & 0xF1) == 0)
-                    && ((result_array [baud_offset] & 0x0E) == uState.ubaud))
+            if (((inBuffer [baud_offset] & 0xF1) == 0)
+                    && ((inBuffer [baud_offset] & 0x0E) == uState.ubaud))
             {
                if (doDebugMessages)
                   System.out.println(
@@ -2485,6 +2863,33 @@ public class USerialAdapter
 
       if (doDebugMessages)
          System.out.println("Failed to change baud of DS2480");
+
+      // this rate does not work on this port, so don't try it again
+      if (baudMode == BAUD_MODE_STICKY)
+         lowerStickyBaud();
+   }
+
+   /**
+    * Lowers the sticky baud rate one step, no lower than 9600.
+    */
+   private void lowerStickyBaud ()
+   {
+      stickyErrors = 0;
+
+      if (stickyBaud <= 9600)
+         return;
+
+      if (stickyBaud > 57600)
+         stickyBaud = 57600;
+      else if (stickyBaud > 19200)
+         stickyBaud = 19200;
+      else
+         stickyBaud = 9600;
+
+      baudFallbackCount++;
+
+      if (doDebugMessages)
+         System.out.println("Sticky baud lowered to " + stickyBaud);
    }
 
    /**
@@ -2511,12 +2916,14 @@ public class USerialAdapter
          {
 
             // do a master reset and try again
+            reportEvent(AdapterMetrics.RETRY);
             uMasterReset();
 
             if (!uVerify())
             {
 
                // do a power reset and try again
+               reportEvent(AdapterMetrics.RETRY);
                uPowerReset();
 
                if (!uVerify())
@@ -2649,15 +3056,15 @@ public class USerialAdapter
          int bit_offset       = uBuild.dataBit(true, false);
 
          // send and receive
-         char[] result_array = uTransaction(uBuild);
+         int result_length = uTransaction(uBuild);
 
          // check the result
-         if (result_array.length == (bit_offset + 1))
+         if (result_length == (bit_offset + 1))
          {
-            if (((result_array [baud_offset] & 0xF1) == 0)
-                    && ((result_array [baud_offset] & 0x0E) == uState.ubaud)
-                    && ((result_array [bit_offset] & 0xF0) == 0x90)
-                    && ((result_array [bit_offset] & 0x0C)
+            if (((inBuffer [baud_offset] & 0xF1) == 0)
+                    && ((inBuffer [baud_offset] & 0x0E) == uState.ubaud)
+                    && ((inBuffer [bit_offset] & 0xF0) == 0x90)
+                    && ((inBuffer [bit_offset] & 0x0C)
                         == uState.uSpeedMode))
                return true;
          }
@@ -2677,36 +3084,43 @@ public class USerialAdapter
    }
 
    /**
-    * Write the raw U packet and then read the result.
+    * Write the raw U packet and then read the result.  The result is
+    * left in <code>inBuffer</code>, which is reused from one transaction
+    * to the next.
     *
     * @param  tempBuild  the U Packet Build where the packet to send
     *                     resides
     *
-    * @return  the result array
+    * @return  the number of result bytes in <code>inBuffer</code>
     *
     * @throws OneWireIOException on a 1-Wire communication error
     */
-   private char[] uTransaction (UPacketBuilder tempBuild)
+   private int uTransaction (UPacketBuilder tempBuild)
       throws OneWireIOException
    {
-      int offset;
+      int offset, count;
 
       try
       {
          // clear the buffers
          serial.flush();
-         inBuffer.setLength(0);
+         offset = 0;
+
+         // make sure the input buffer can hold all of the results
+         if (inBuffer.length < tempBuild.totalReturnLength)
+            inBuffer = new byte [tempBuild.totalReturnLength];
 
          // loop to send all of the packets
-         for (Enumeration packet_enum = tempBuild.getPackets();
-                 packet_enum.hasMoreElements(); )
+         int packet_count = tempBuild.getPacketCount();
+
+         for (int i = 0; i < packet_count; i++)
          {
 
             // get the next packet
-            RawSendPacket pkt = ( RawSendPacket ) packet_enum.nextElement();
+            RawSendPacket pkt = tempBuild.getPacket(i);
 
             // bogus packet to indicate need to wait for long DS2480 alarm reset
-            if ((pkt.buffer.length() == 0) && (pkt.returnLength == 0))
+            if ((pkt.length == 0) && (pkt.returnLength == 0))
             {
                sleep(6);
                serial.flush();
@@ -2714,34 +3128,25 @@ public class USerialAdapter
                continue;
             }
 
-            // get the data
-            char[] temp_buf = new char [pkt.buffer.length()];
-
-            pkt.buffer.getChars(0, pkt.buffer.length(), temp_buf, 0);
-
-            // remember number of bytes in input
-            offset = inBuffer.length();
-
             // send the packet
-            serial.write(temp_buf);
+            serial.write(pkt.buffer, 0, pkt.length);
 
             // wait on returnLength bytes in inBound
-            inBuffer.append(serial.readWithTimeout(pkt.returnLength));
-         }
+            count = serial.readWithTimeout(inBuffer, offset, pkt.returnLength);
 
-         // read the return packet
-         char[] ret_buffer = new char [inBuffer.length()];
+            if (count != pkt.returnLength)
+               throw new IOException(
+                  "readWithTimeout, timeout waiting for return bytes (wanted "
+                     + pkt.returnLength + ", got " + count + ")");
 
-         inBuffer.getChars(0, inBuffer.length(), ret_buffer, 0);
+            offset += count;
+         }
 
          // check for extra bytes in inBuffer
-         extraBytesReceived = (inBuffer.length()
-                               > tempBuild.totalReturnLength);
+         extraBytesReceived = (offset > tempBuild.totalReturnLength);
+         stickyErrors       = 0;
 
-         // clear the inbuffer
-         inBuffer.setLength(0);
-
-         return ret_buffer;
+         return offset;
       }
       catch (IOException e)
       {
@@ -2749,11 +3154,42 @@ public class USerialAdapter
          // need to check on adapter
          adapterPresent = false;
 
+         reportEvent(AdapterMetrics.IO_ERROR);
+
+         // too many errors in a row at a high sticky rate, go slower
+         if ((baudMode == BAUD_MODE_STICKY) && (serial.getBaudRate() > 9600)
+                 && (++stickyErrors >= STICKY_ERROR_LIMIT))
+            lowerStickyBaud();
+
          // pass it on
          throw new OneWireIOException(e.toString());
       }
    }
 
+   /**
+    * Sets the level to power delivery, and notes the time it started
+    * if the adapter is measured.
+    */
+   private void startedPowerDelivery ()
+   {
+      owState.oneWireLevel = LEVEL_POWER_DELIVERY;
+      powerDeliveryStart   = (getMetrics() == null) ? 0 : System.nanoTime();
+   }
+
+   /**
+    * Records the time power was delivered, if it was measured.
+    */
+   private void endedPowerDelivery ()
+   {
+      AdapterMetrics m = getMetrics();
+
+      if ((m != null) && (powerDeliveryStart != 0))
+         m.operation(AdapterMetrics.POWER_DELIVERY,
+                     System.nanoTime() - powerDeliveryStart, 0);
+
+      powerDeliveryStart = 0;
+   }
+
    /**
     * Sleep for the specified number of milliseconds
     */
@@ -2833,5 +3269,15 @@ public class USerialAdapter
       if ((maxBaud != 115200) && (maxBaud != 57600) && (maxBaud != 19200)
               && (maxBaud != 9600))
          maxBaud = 115200;
+
+      // check properties for the baud mode
+      String baud_mode_str =
+         OneWireAccessProvider.getProperty("onewire.serial.baudmode");
+
+      if ((baud_mode_str != null)
+              && baud_mode_str.trim().equalsIgnoreCase("sticky"))
+         defaultBaudMode = BAUD_MODE_STICKY;
+      else
+         defaultBaudMode = BAUD_MODE_PER_OPERATION;
    }
 }
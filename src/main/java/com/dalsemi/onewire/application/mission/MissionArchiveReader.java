@@ -0,0 +1,925 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.application.mission;
+
+// imports
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Vector;
+
+import com.dalsemi.onewire.container.MissionCalibration;
+
+
+/**
+ * Reads a mission archive written by
+ * {@link MissionArchiveWriter MissionArchiveWriter}.  The file is
+ * memory-mapped, and only the start of every mission block is read when
+ * the archive is opened, so the samples of a time range are found
+ * without reading or parsing the rest of the file.
+ *
+ * <P>Missions are numbered in the order they were appended.  The
+ * channels of a mission are its columns, numbered from 0; the channel of
+ * the device a column holds is returned by
+ * <code>getChannelNumber</code>.  Time ranges include their start and
+ * exclude their end.  The reader only sees missions appended after it
+ * was opened once <code>refresh</code> is called.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <DL>
+ * <DD> <H4> Example</H4>
+ * Print the samples of one logger in a week:
+ * <PRE> <CODE>
+ *   MissionArchiveReader archive = new MissionArchiveReader("missions.owm");
+ *   int[] missions = archive.getMissions(address, from, from + WEEK);
+ *
+ *   for (int i = 0; i &lt; missions.length; i++)
+ *   {
+ *      int      m      = missions [i];
+ *      int      n      = archive.getSampleCount(m, from, from + WEEK);
+ *      long[]   times  = new long [n];
+ *      double[] values = new double [n];
+ *
+ *      archive.getSamples(m, 0, from, from + WEEK, times, values, 0);
+ *
+ *      for (int s = 0; s &lt; n; s++)
+ *         System.out.println(new Date(times [s]) + " " + values [s]);
+ *   }
+ *   archive.close();
+ * </CODE> </PRE>
+ * </DL>
+ *
+ * @see MissionArchiveWriter
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class MissionArchiveReader
+{
+
+   //--------
+   //-------- Finals
+   //--------
+
+   /** Largest memory-mapped region, unless a single block is larger */
+   public static final int REGION_SIZE = 1 << 30;
+
+   /** Length of the start of a block read when the archive is opened */
+   private static final int BLOCK_HEADER_LENGTH = 4 + 8 + 8 + 8 + 4 + 8;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** File being read */
+   private RandomAccessFile file;
+
+   /** Channel of the file, used to map regions */
+   private FileChannel channel;
+
+   /** Position in the file after the last complete block */
+   private long length;
+
+   /** Mission of every block */
+   private final Vector missions = new Vector();
+
+   /** Start of every region in the file, as a Long */
+   private final Vector regionStarts = new Vector();
+
+   /** Mapped regions, null until used */
+   private MappedByteBuffer[] regions = new MappedByteBuffer [4];
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Opens a mission archive.
+    *
+    * @param  fileName  name of the file
+    *
+    * @throws IOException if the file cannot be read, or is not a mission
+    *         archive
+    */
+   public MissionArchiveReader (String fileName)
+      throws IOException
+   {
+      file = new RandomAccessFile(fileName, "r");
+
+      try
+      {
+         if ((file.length() < MissionArchiveWriter.HEADER_LENGTH)
+                 || (file.readInt() != MissionArchiveWriter.MAGIC))
+            throw new IOException("Not a mission archive: " + fileName);
+
+         int version = file.readInt();
+
+         if (version != MissionArchiveWriter.VERSION)
+            throw new IOException("Unsupported mission archive version "
+                                  + version);
+
+         channel = file.getChannel();
+         length  = MissionArchiveWriter.HEADER_LENGTH;
+
+         refresh();
+      }
+      catch (IOException e)
+      {
+         file.close();
+
+         throw e;
+      }
+   }
+
+   //--------
+   //-------- Archive methods
+   //--------
+
+   /**
+    * Reads the missions appended to the file since it was opened or
+    * last refreshed.
+    *
+    * @return number of missions in the archive
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public synchronized int refresh ()
+      throws IOException
+   {
+      if (file == null)
+         throw new IOException("MissionArchiveReader is closed");
+
+      long fileLength = file.length();
+
+      while (length + BLOCK_HEADER_LENGTH <= fileLength)
+      {
+         file.seek(length);
+
+         int  blockLength = file.readInt();
+         long end         = length + 4 + (blockLength & 0xFFFFFFFFL);
+
+         // a block still being written
+         if (end > fileLength)
+            break;
+
+         Mission m = new Mission();
+
+         m.address    = file.readLong();
+         m.first      = file.readLong();
+         m.last       = file.readLong();
+         m.count      = file.readInt();
+         m.interval   = file.readLong();
+         m.region     = regionStarts.size() - 1;
+
+         // a block that does not fit the last region starts a new one
+         if ((m.region < 0)
+                 || (end - getRegionStart(m.region) > REGION_SIZE))
+         {
+            regionStarts.addElement(new Long(length));
+
+            m.region = regionStarts.size() - 1;
+         }
+
+         m.position = ( int ) (length - getRegionStart(m.region));
+         m.length   = ( int ) (end - length);
+         m.end      = end;
+
+         missions.addElement(m);
+
+         length = end;
+      }
+
+      return missions.size();
+   }
+
+   /**
+    * Gets the number of missions in the archive.
+    *
+    * @return number of missions
+    */
+   public int getMissionCount ()
+   {
+      return missions.size();
+   }
+
+   /**
+    * Gets the missions with samples in a time range.
+    *
+    * @param  from  start of the range, in milliseconds
+    * @param  to    end of the range, in milliseconds
+    *
+    * @return the missions, in the order they were appended
+    */
+   public int[] getMissions (long from, long to)
+   {
+      return findMissions(false, 0, from, to);
+   }
+
+   /**
+    * Gets the missions of one logger with samples in a time range.
+    *
+    * @param  address  address of the logger
+    * @param  from     start of the range, in milliseconds
+    * @param  to       end of the range, in milliseconds
+    *
+    * @return the missions, in the order they were appended
+    */
+   public int[] getMissions (long address, long from, long to)
+   {
+      return findMissions(true, address, from, to);
+   }
+
+   /**
+    * Closes the archive.
+    *
+    * @throws IOException if the file cannot be closed
+    */
+   public synchronized void close ()
+      throws IOException
+   {
+      if (file == null)
+         return;
+
+      regions = new MappedByteBuffer [0];
+
+      file.close();
+
+      file = null;
+   }
+
+   //--------
+   //-------- Mission methods
+   //--------
+
+   /**
+    * Gets the address of the logger of a mission.
+    *
+    * @param  mission  the mission, between 0 and
+    *                  <code>(getMissionCount()-1)</code>
+    *
+    * @return address of the logger
+    */
+   public long getAddress (int mission)
+   {
+      return getMission(mission).address;
+   }
+
+   /**
+    * Gets the time stamp of the first sample of a mission.
+    *
+    * @param  mission  the mission
+    *
+    * @return time stamp, in milliseconds
+    */
+   public long getFirstTimeStamp (int mission)
+   {
+      return getMission(mission).first;
+   }
+
+   /**
+    * Gets the time stamp of the last sample of a mission.
+    *
+    * @param  mission  the mission
+    *
+    * @return time stamp, in milliseconds
+    */
+   public long getLastTimeStamp (int mission)
+   {
+      return getMission(mission).last;
+   }
+
+   /**
+    * Gets the number of samples of every channel of a mission.
+    *
+    * @param  mission  the mission
+    *
+    * @return number of samples
+    */
+   public int getSampleCount (int mission)
+   {
+      return getMission(mission).count;
+   }
+
+   /**
+    * Gets the time between the samples of a mission.
+    *
+    * @param  mission  the mission
+    *
+    * @return time between samples, in milliseconds
+    */
+   public long getSampleInterval (int mission)
+   {
+      return getMission(mission).interval;
+   }
+
+   /**
+    * Gets the number of channels of a mission.
+    *
+    * @param  mission  the mission
+    *
+    * @return number of channels
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public int getChannelCount (int mission)
+      throws IOException
+   {
+      return loadMission(mission).numbers.length;
+   }
+
+   /**
+    * Gets the channel of the device that a column of a mission holds.
+    *
+    * @param  mission  the mission
+    * @param  column   the column, between 0 and
+    *                  <code>(getChannelCount(mission)-1)</code>
+    *
+    * @return channel of the device
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public int getChannelNumber (int mission, int column)
+      throws IOException
+   {
+      return loadMission(mission).numbers [column];
+   }
+
+   /**
+    * Gets the column of a mission that holds a channel of the device.
+    *
+    * @param  mission  the mission
+    * @param  channel  channel of the device
+    *
+    * @return the column, or -1 if the channel is not in the mission
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public int findColumn (int mission, int channel)
+      throws IOException
+   {
+      return loadMission(mission).findColumn(channel);
+   }
+
+   /**
+    * Gets the label of a column of a mission.
+    *
+    * @param  mission  the mission
+    * @param  column   the column
+    *
+    * @return label of the channel
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public String getChannelLabel (int mission, int column)
+      throws IOException
+   {
+      return loadMission(mission).labels [column];
+   }
+
+   /**
+    * Gets how the raw samples of a column of a mission are converted to
+    * their value.
+    *
+    * @param  mission  the mission
+    * @param  column   the column
+    *
+    * @return the conversion of the column
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public MissionCalibration getCalibration (int mission, int column)
+      throws IOException
+   {
+      return loadMission(mission).calibrations [column];
+   }
+
+   //--------
+   //-------- Sample methods
+   //--------
+
+   /**
+    * Gets the time stamp of a sample of a mission.
+    *
+    * @param  mission  the mission
+    * @param  sample   the sample, between 0 and
+    *                  <code>(getSampleCount(mission)-1)</code>
+    *
+    * @return time stamp, in milliseconds
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public long getSampleTimeStamp (int mission, int sample)
+      throws IOException
+   {
+      Mission m = loadMission(mission);
+
+      checkSample(m, sample);
+
+      return m.getTimeStamp(sample);
+   }
+
+   /**
+    * Gets the first sample of a mission taken at or after a time.
+    *
+    * @param  mission  the mission
+    * @param  time     the time, in milliseconds
+    *
+    * @return the sample, or <code>getSampleCount(mission)</code> if all
+    *         samples were taken before the time
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public int getSampleIndex (int mission, long time)
+      throws IOException
+   {
+      return loadMission(mission).getIndex(time);
+   }
+
+   /**
+    * Gets the number of samples of a mission in a time range.
+    *
+    * @param  mission  the mission
+    * @param  from     start of the range, in milliseconds
+    * @param  to       end of the range, in milliseconds
+    *
+    * @return number of samples
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public int getSampleCount (int mission, long from, long to)
+      throws IOException
+   {
+      Mission m = loadMission(mission);
+
+      return Math.max(0, m.getIndex(to) - m.getIndex(from));
+   }
+
+   /**
+    * Gets a raw sample of a column of a mission.
+    *
+    * @param  mission  the mission
+    * @param  column   the column
+    * @param  sample   the sample
+    *
+    * @return the 8 or 16 bits written in the mission log
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public int getSampleAsInteger (int mission, int column, int sample)
+      throws IOException
+   {
+      Mission m = loadMission(mission);
+
+      checkSample(m, sample);
+
+      return m.getRaw(column, sample);
+   }
+
+   /**
+    * Gets the value of a sample of a column of a mission, the same as
+    * the container returned when the mission was archived.
+    *
+    * @param  mission  the mission
+    * @param  column   the column
+    * @param  sample   the sample
+    *
+    * @return value of the sample
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public double getSample (int mission, int column, int sample)
+      throws IOException
+   {
+      Mission m = loadMission(mission);
+
+      checkSample(m, sample);
+
+      return m.getValue(column, sample);
+   }
+
+   /**
+    * Gets the values and time stamps of the samples of a column of a
+    * mission in a time range.
+    *
+    * @param  mission     the mission
+    * @param  column      the column
+    * @param  from        start of the range, in milliseconds
+    * @param  to          end of the range, in milliseconds
+    * @param  timeStamps  array to put the time stamps in, or null
+    * @param  values      array to put the values in, or null
+    * @param  offset      index in the arrays of the first sample
+    *
+    * @return number of samples put in the arrays
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public int getSamples (int mission, int column, long from, long to,
+                          long[] timeStamps, double[] values, int offset)
+      throws IOException
+   {
+      Mission m     = loadMission(mission);
+      int     start = m.getIndex(from);
+      int     count = Math.max(0, m.getIndex(to) - start);
+
+      if (timeStamps != null)
+         checkArray(timeStamps.length, count, offset);
+
+      if (values != null)
+         checkArray(values.length, count, offset);
+
+      for (int i = 0; i < count; i++)
+      {
+         if (timeStamps != null)
+            timeStamps [offset + i] = m.getTimeStamp(start + i);
+
+         if (values != null)
+            values [offset + i] = m.getValue(column, start + i);
+      }
+
+      return count;
+   }
+
+   /**
+    * Gets the raw samples of a column of a mission in a time range.
+    *
+    * @param  mission  the mission
+    * @param  column   the column
+    * @param  from     start of the range, in milliseconds
+    * @param  to       end of the range, in milliseconds
+    * @param  samples  array to put the raw samples in
+    * @param  offset   index in the array of the first sample
+    *
+    * @return number of samples put in the array
+    *
+    * @throws IOException if the file cannot be read
+    */
+   public int getSamplesAsInteger (int mission, int column, long from,
+                                   long to, int[] samples, int offset)
+      throws IOException
+   {
+      Mission m     = loadMission(mission);
+      int     start = m.getIndex(from);
+      int     count = Math.max(0, m.getIndex(to) - start);
+
+      checkArray(samples.length, count, offset);
+
+      for (int i = 0; i < count; i++)
+         samples [offset + i] = m.getRaw(column, start + i);
+
+      return count;
+   }
+
+   //--------
+   //-------- Private Methods
+   //--------
+
+   /**
+    * Finds the missions with samples in a time range, of one logger or
+    * of all.
+    */
+   private int[] findMissions (boolean byAddress, long address, long from,
+                               long to)
+   {
+      int   size  = missions.size();
+      int[] found = new int [size];
+      int   n     = 0;
+
+      for (int i = 0; i < size; i++)
+      {
+         Mission m = ( Mission ) missions.elementAt(i);
+
+         if ((m.first < to) && (m.last >= from)
+                 && (!byAddress || (m.address == address)))
+            found [n++] = i;
+      }
+
+      int[] result = new int [n];
+
+      System.arraycopy(found, 0, result, 0, n);
+
+      return result;
+   }
+
+   /**
+    * Gets a mission, without reading its block.
+    */
+   private Mission getMission (int mission)
+   {
+      return ( Mission ) missions.elementAt(mission);
+   }
+
+   /**
+    * Gets the position in the file of the start of a region.
+    */
+   private long getRegionStart (int region)
+   {
+      return (( Long ) regionStarts.elementAt(region)).longValue();
+   }
+
+   /**
+    * Gets a mission, mapping its region and reading the channels of its
+    * block the first time.
+    */
+   private synchronized Mission loadMission (int mission)
+      throws IOException
+   {
+      Mission m = getMission(mission);
+
+      if (m.numbers != null)
+         return m;
+
+      if (file == null)
+         throw new IOException("MissionArchiveReader is closed");
+
+      // map the region up to the last block read, again if it has grown
+      if (m.region >= regions.length)
+      {
+         MappedByteBuffer[] grown = new MappedByteBuffer [regionStarts.size()];
+
+         System.arraycopy(regions, 0, grown, 0, regions.length);
+
+         regions = grown;
+      }
+
+      long             start  = getRegionStart(m.region);
+      MappedByteBuffer region = regions [m.region];
+
+      if ((region == null) || (start + region.capacity() < m.end))
+      {
+         long end = (m.region + 1 < regionStarts.size())
+                    ? getRegionStart(m.region + 1) : length;
+
+         region = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                              end - start);
+         regions [m.region] = region;
+      }
+
+      m.load(region);
+
+      return m;
+   }
+
+   /**
+    * Checks a sample number.
+    */
+   private static void checkSample (Mission m, int sample)
+   {
+      if ((sample < 0) || (sample >= m.count))
+         throw new IllegalArgumentException("Invalid sample number");
+   }
+
+   /**
+    * Checks that an array of the length holds count elements from offset.
+    */
+   private static void checkArray (int arrayLength, int count, int offset)
+   {
+      if ((offset < 0) || (arrayLength - offset < count))
+         throw new IllegalArgumentException(
+            "Array too small for " + count + " samples");
+   }
+
+   //--------
+   //-------- Mission
+   //--------
+
+   /**
+    * A mission block of the archive.  The start of the block is read when
+    * the archive is opened, the channels when it is first used.
+    */
+   private static final class Mission
+   {
+      /** read when the archive is opened */
+      long address, first, last, interval, end;
+      int  count, region, position, length;
+
+      /** mapped region of the block, once loaded */
+      MappedByteBuffer buffer;
+
+      /** time stamps of every sample, or null if regular */
+      long[] timeStamps;
+
+      /** channels of the block, null until loaded */
+      int[]                numbers;
+      String[]             labels;
+      MissionCalibration[] calibrations;
+
+      /** position of the samples of each channel in the region */
+      int[] samples;
+
+      /** column with the temperature to compensate each channel, or -1 */
+      int[] compensation;
+
+      /**
+       * Reads the channels of the block.
+       */
+      void load (MappedByteBuffer region)
+         throws IOException
+      {
+         int p = position + BLOCK_HEADER_LENGTH;
+
+         if (region.get(p++) == MissionArchiveWriter.TIME_DELTA)
+         {
+            int  next = p + 4 + region.getInt(p);
+            long time = first;
+
+            p += 4;
+
+            timeStamps = new long [count];
+            timeStamps [0] = first;
+
+            for (int i = 1; i < count; i++)
+            {
+               long v     = 0;
+               int  shift = 0;
+               int  b;
+
+               do
+               {
+                  b      = region.get(p++);
+                  v     |= ( long ) (b & 0x7F) << shift;
+                  shift += 7;
+               }
+               while ((b & 0x80) != 0);
+
+               time += interval + ((v >>> 1) ^ -(v & 1));
+               timeStamps [i] = time;
+            }
+
+            p = next;
+         }
+
+         int n = region.get(p++) & 0xFF;
+
+         int[]                numbers      = new int [n];
+         String[]             labels       = new String [n];
+         MissionCalibration[] calibrations = new MissionCalibration [n];
+
+         samples      = new int [n];
+         compensation = new int [n];
+
+         for (int i = 0; i < n; i++)
+         {
+            numbers [i] = region.get(p++) & 0xFF;
+
+            byte[] label = new byte [region.getShort(p) & 0xFFFF];
+
+            p += 2;
+
+            for (int j = 0; j < label.length; j++)
+               label [j] = region.get(p++);
+
+            try
+            {
+               labels [i] = new String(label, "UTF8");
+            }
+            catch (UnsupportedEncodingException e)
+            {
+               labels [i] = new String(label);
+            }
+
+            int bytes = region.get(p);
+
+            calibrations [i] = new MissionCalibration(bytes, region.get(p + 1),
+               region.getDouble(p + 2), region.getDouble(p + 10),
+               region.getDouble(p + 18), region.getDouble(p + 26),
+               region.getDouble(p + 34), region.getDouble(p + 42),
+               region.getDouble(p + 50), region.get(p + 58) != 0,
+               region.get(p + 59), region.getDouble(p + 60));
+
+            p += 68;
+
+            samples [i] = p;
+            p          += count * bytes;
+         }
+
+         if (p != position + length)
+            throw new IOException("Corrupt mission block");
+
+         for (int i = 0; i < n; i++)
+         {
+            compensation [i] = -1;
+
+            if (!calibrations [i].isCompensated())
+               continue;
+
+            for (int j = 0; j < n; j++)
+               if ((j != i)
+                       && (numbers [j] == calibrations [i].getCompensationChannel()))
+                  compensation [i] = j;
+         }
+
+         buffer            = region;
+         this.labels       = labels;
+         this.calibrations = calibrations;
+         this.numbers      = numbers;
+      }
+
+      /**
+       * Finds the column of a channel.
+       */
+      int findColumn (int channel)
+      {
+         for (int i = 0; i < numbers.length; i++)
+            if (numbers [i] == channel)
+               return i;
+
+         return -1;
+      }
+
+      /**
+       * Gets the time stamp of a sample.
+       */
+      long getTimeStamp (int sample)
+      {
+         if (timeStamps != null)
+            return timeStamps [sample];
+
+         return first + sample * interval;
+      }
+
+      /**
+       * Gets the first sample taken at or after a time.
+       */
+      int getIndex (long time)
+      {
+         if (time <= first)
+            return 0;
+
+         if (time > last)
+            return count;
+
+         if ((timeStamps == null) && (interval > 0))
+            return ( int ) ((time - first + interval - 1) / interval);
+
+         int low  = 0;
+         int high = count;
+
+         while (low < high)
+         {
+            int mid = (low + high) >>> 1;
+
+            if (getTimeStamp(mid) < time)
+               low = mid + 1;
+            else
+               high = mid;
+         }
+
+         return low;
+      }
+
+      /**
+       * Gets a raw sample.
+       */
+      int getRaw (int column, int sample)
+      {
+         if (calibrations [column].getSampleBytes() == 2)
+            return buffer.getShort(samples [column] + 2 * sample) & 0xFFFF;
+         else
+            return buffer.get(samples [column] + sample) & 0xFF;
+      }
+
+      /**
+       * Gets the value of a sample, with the temperature of the sample
+       * if the column is compensated.
+       */
+      double getValue (int column, int sample)
+      {
+         MissionCalibration cal = calibrations [column];
+         double             T   = cal.getCompensationTemperature();
+
+         if (compensation [column] >= 0)
+            T = getValue(compensation [column], sample);
+
+         return cal.decode(getRaw(column, sample), T);
+      }
+   }
+}
@@ -0,0 +1,503 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.application.mission;
+
+// imports
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.container.MissionCalibration;
+import com.dalsemi.onewire.container.MissionContainer;
+import com.dalsemi.onewire.container.OneWireContainer21;
+
+
+/**
+ * Appends logger missions to a mission archive, a compact file that keeps
+ * the raw samples of many missions in columns, and defines the format
+ * that {@link MissionArchiveReader MissionArchiveReader} reads.  The raw
+ * samples are kept with the calibration of the mission, so the values
+ * read back are the same as those of the container, and the time stamps
+ * of a mission are stored as the differences from its sample rate,
+ * which for a logger are all 0 and take no space at all.
+ *
+ * <P>The file starts with int <code>MAGIC</code> and int
+ * <code>VERSION</code>, followed by one block per mission:</P>
+ * <UL>
+ * <LI> int length of the rest of the block
+ * <LI> long address of the logger
+ * <LI> long time stamp of the first and of the last sample, in
+ *      milliseconds
+ * <LI> int number of samples
+ * <LI> long time between samples, in milliseconds
+ * <LI> byte <code>TIME_REGULAR</code> if every sample follows the one
+ *      before by exactly the time between samples, or
+ *      <code>TIME_DELTA</code> followed by an int length and, for every
+ *      sample but the first, how much longer it followed the one before,
+ *      as a zig-zag encoded variable length number
+ * <LI> byte number of channels, and for each channel:
+ *   <UL>
+ *   <LI> byte channel number and the label, a short length and UTF-8
+ *        bytes
+ *   <LI> byte bytes per sample and byte shift, doubles scale, offset,
+ *        divisor, calibration coefficients A, B and C, and threshold,
+ *        byte 1 if compensated for temperature, byte compensation
+ *        channel and double compensation temperature, as described by
+ *        {@link MissionCalibration MissionCalibration}
+ *   <LI> the raw samples
+ *   </UL>
+ * </UL>
+ * <P>All numbers are most significant byte first.  A block is only
+ * added once it is complete, and a block cut short by a crash is
+ * dropped when the archive is opened again, so the file can be appended
+ * to for years.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <DL>
+ * <DD> <H4> Example</H4>
+ * Archive the mission of a DS1922:
+ * <PRE> <CODE>
+ *   MissionArchiveWriter archive = new MissionArchiveWriter("missions.owm");
+ *
+ *   owc41.loadMissionResults();
+ *   archive.append(owc41.getAddressAsLong(), owc41);
+ *   archive.close();
+ * </CODE> </PRE>
+ * </DL>
+ *
+ * @see MissionArchiveReader
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class MissionArchiveWriter
+{
+
+   //--------
+   //-------- Finals
+   //--------
+
+   /** First int of a mission archive, 'OWMA' */
+   public static final int MAGIC = 0x4F574D41;
+
+   /** Version of the file format */
+   public static final int VERSION = 1;
+
+   /** Length of the file header */
+   public static final int HEADER_LENGTH = 8;
+
+   /** Time encoding of samples taken exactly at the sample rate */
+   public static final int TIME_REGULAR = 0;
+
+   /** Time encoding with the difference of every sample */
+   public static final int TIME_DELTA = 1;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** File being written */
+   private RandomAccessFile file;
+
+   /** Buffer for the block being written */
+   private BlockBuffer block = new BlockBuffer();
+
+   /** Stream to the block buffer */
+   private DataOutputStream out = new DataOutputStream(block);
+
+   /** Number of missions in the file */
+   private int missionCount;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Opens a mission archive to append missions to it, creating it if
+    * it does not exist.
+    *
+    * @param  fileName  name of the file
+    *
+    * @throws IOException if the file cannot be written, or is not a
+    *         mission archive
+    */
+   public MissionArchiveWriter (String fileName)
+      throws IOException
+   {
+      file = new RandomAccessFile(fileName, "rw");
+
+      try
+      {
+         if (file.length() == 0)
+         {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+
+            return;
+         }
+
+         if (file.length() < HEADER_LENGTH)
+            throw new IOException("Not a mission archive: " + fileName);
+
+         if (file.readInt() != MAGIC)
+            throw new IOException("Not a mission archive: " + fileName);
+
+         int version = file.readInt();
+
+         if (version != VERSION)
+            throw new IOException("Unsupported mission archive version "
+                                  + version);
+
+         // skip the complete blocks and drop what follows
+         long length   = file.length();
+         long position = HEADER_LENGTH;
+
+         while (position + 4 <= length)
+         {
+            file.seek(position);
+
+            long next = position + 4 + (file.readInt() & 0xFFFFFFFFL);
+
+            if (next > length)
+               break;
+
+            position = next;
+
+            missionCount++;
+         }
+
+         file.setLength(position);
+         file.seek(position);
+      }
+      catch (IOException e)
+      {
+         file.close();
+
+         throw e;
+      }
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Appends the loaded mission of a DS1922/DS1923 or another missioning
+    * device.  Channels that are not logged or have no samples are left
+    * out.  Channels that
+    * have the same number of samples share one block, any other channel
+    * is written in a block of its own.
+    *
+    * @param  address  address of the device
+    * @param  mission  device with the mission results loaded
+    *
+    * @return number of blocks appended
+    *
+    * @throws IOException if the file cannot be written
+    * @throws OneWireException if the mission results are not loaded
+    */
+   public synchronized int append (long address, MissionContainer mission)
+      throws IOException, OneWireException
+   {
+      int       channels = mission.getNumberMissionChannels();
+      boolean[] done     = new boolean [channels];
+      int       blocks   = 0;
+
+      for (int first = 0; first < channels; first++)
+      {
+         if (done [first])
+            continue;
+
+         done [first] = true;
+
+         MissionCalibration calibration = mission.getMissionCalibration(first);
+         int                count       = mission.getMissionSampleCount(first);
+
+         if ((calibration == null) || (count == 0))
+            continue;
+
+         // the channels sharing the time stamps of this one
+         int n = 1;
+
+         for (int ch = first + 1; ch < channels; ch++)
+            if (!done [ch] && (mission.getMissionCalibration(ch) != null)
+                    && (mission.getMissionSampleCount(ch) == count))
+               n++;
+
+         int[]                numbers      = new int [n];
+         String[]             labels       = new String [n];
+         MissionCalibration[] calibrations = new MissionCalibration [n];
+         int[][]              samples      = new int [n][];
+
+         for (int ch = first, i = 0; i < n; ch++)
+         {
+            if ((ch != first)
+                    && (done [ch] || (mission.getMissionCalibration(ch) == null)
+                        || (mission.getMissionSampleCount(ch) != count)))
+               continue;
+
+            done [ch]         = true;
+            numbers [i]       = ch;
+            labels [i]        = mission.getMissionLabel(ch);
+            calibrations [i]  = mission.getMissionCalibration(ch);
+            samples [i]       = new int [count];
+
+            for (int s = 0; s < count; s++)
+               samples [i][s] = mission.getMissionSampleAsInteger(ch, s);
+
+            i++;
+         }
+
+         long[] timeStamps = new long [count];
+
+         mission.getMissionSampleTimeStamps(first, timeStamps, 0);
+         writeBlock(address, timeStamps, count,
+                    mission.getMissionSampleRate(first) * 1000L, numbers,
+                    labels, calibrations, samples);
+
+         blocks++;
+      }
+
+      return blocks;
+   }
+
+   /**
+    * Appends the mission of a DS1921.  Nothing is written if the log is
+    * empty.
+    *
+    * @param  owc    the DS1921
+    * @param  state  device state returned by <code>readDevice()</code>
+    * @param  log    temperature log returned by
+    *                <code>getTemperatureLog(state)</code>
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public synchronized void append (OneWireContainer21 owc, byte[] state,
+                                    byte[] log)
+      throws IOException
+   {
+      int count = log.length;
+
+      if (count == 0)
+         return;
+
+      long   interval   = owc.getSampleRate(state) * 60000L;
+      long   time       = owc.getMissionTimeStamp(state).getTime().getTime()
+                          + owc.getFirstLogOffset(state);
+      long[] timeStamps = new long [count];
+      int[]  samples    = new int [count];
+
+      for (int i = 0; i < count; i++)
+      {
+         timeStamps [i] = time + i * interval;
+         samples [i]    = log [i] & 0xFF;
+      }
+
+      // the conversion of a DS1921 is linear in the raw sample
+      double offset = owc.decodeTemperature(( byte ) 0);
+      double scale  = owc.decodeTemperature(( byte ) 1) - offset;
+
+      writeBlock(owc.getAddressAsLong(), timeStamps, count, interval,
+                 new int[]{ 0 }, new String[]{ "Temperature" },
+                 new MissionCalibration[]{
+                    new MissionCalibration(1, 0, scale, offset, 1) },
+                 new int[][]{ samples });
+   }
+
+   /**
+    * Gets the number of missions in the file, including those that were
+    * there when it was opened.
+    *
+    * @return number of missions
+    */
+   public synchronized int getMissionCount ()
+   {
+      return missionCount;
+   }
+
+   /**
+    * Flushes the missions to the file and closes it.
+    *
+    * @throws IOException if the file cannot be written
+    */
+   public synchronized void close ()
+      throws IOException
+   {
+      if (file == null)
+         return;
+
+      file.close();
+
+      file = null;
+   }
+
+   //--------
+   //-------- Private Methods
+   //--------
+
+   /**
+    * Encodes a mission block and appends it to the file in one write.
+    */
+   private void writeBlock (long address, long[] timeStamps, int count,
+                            long interval, int[] numbers, String[] labels,
+                            MissionCalibration[] calibrations,
+                            int[][] samples)
+      throws IOException
+   {
+      if (file == null)
+         throw new IOException("MissionArchiveWriter is closed");
+
+      block.reset();
+      out.writeInt(0);   // length, filled in below
+      out.writeLong(address);
+      out.writeLong(timeStamps [0]);
+      out.writeLong(timeStamps [count - 1]);
+      out.writeInt(count);
+      out.writeLong(interval);
+
+      boolean regular = true;
+
+      for (int i = 1; regular && (i < count); i++)
+         regular = (timeStamps [i] - timeStamps [i - 1] == interval);
+
+      if (regular)
+         out.writeByte(TIME_REGULAR);
+      else
+      {
+         out.writeByte(TIME_DELTA);
+
+         int start = block.size();
+
+         out.writeInt(0);   // length, filled in below
+
+         for (int i = 1; i < count; i++)
+         {
+            long v = timeStamps [i] - timeStamps [i - 1] - interval;
+
+            writeVarLong((v << 1) ^ (v >> 63));
+         }
+
+         patchInt(start, block.size() - start - 4);
+      }
+
+      out.writeByte(numbers.length);
+
+      for (int i = 0; i < numbers.length; i++)
+      {
+         MissionCalibration cal = calibrations [i];
+
+         out.writeByte(numbers [i]);
+         out.writeUTF((labels [i] == null) ? "" : labels [i]);
+         out.writeByte(cal.getSampleBytes());
+         out.writeByte(cal.getShift());
+         out.writeDouble(cal.getScale());
+         out.writeDouble(cal.getOffset());
+         out.writeDouble(cal.getDivisor());
+         out.writeDouble(cal.getCoefficientA());
+         out.writeDouble(cal.getCoefficientB());
+         out.writeDouble(cal.getCoefficientC());
+         out.writeDouble(cal.getThreshold());
+         out.writeByte(cal.isCompensated() ? 1 : 0);
+         out.writeByte(cal.getCompensationChannel());
+         out.writeDouble(cal.getCompensationTemperature());
+
+         int[] column = samples [i];
+
+         if (cal.getSampleBytes() == 2)
+            for (int s = 0; s < count; s++)
+               out.writeShort(column [s]);
+         else
+            for (int s = 0; s < count; s++)
+               out.writeByte(column [s]);
+      }
+
+      out.flush();
+      patchInt(0, block.size() - 4);
+
+      // one write, so the block is either complete or dropped on open
+      file.seek(file.length());
+      file.write(block.getBuffer(), 0, block.size());
+
+      missionCount++;
+   }
+
+   /**
+    * Writes a number as groups of 7 bits, least significant first, with
+    * the high bit set on all but the last group.
+    */
+   private void writeVarLong (long v)
+      throws IOException
+   {
+      while ((v & ~0x7FL) != 0)
+      {
+         out.writeByte(( int ) ((v & 0x7F) | 0x80));
+
+         v >>>= 7;
+      }
+
+      out.writeByte(( int ) v);
+   }
+
+   /**
+    * Overwrites an int in the block buffer.
+    */
+   private void patchInt (int position, int value)
+      throws IOException
+   {
+      out.flush();
+
+      byte[] buf = block.getBuffer();
+
+      buf [position]     = ( byte ) (value >>> 24);
+      buf [position + 1] = ( byte ) (value >>> 16);
+      buf [position + 2] = ( byte ) (value >>> 8);
+      buf [position + 3] = ( byte ) value;
+   }
+
+   /**
+    * Output stream to a reusable buffer, that gives access to the buffer
+    * without copying.
+    */
+   private static final class BlockBuffer
+      extends ByteArrayOutputStream
+   {
+      BlockBuffer ()
+      {
+         super(4096);
+      }
+
+      byte[] getBuffer ()
+      {
+         return buf;
+      }
+   }
+}
@@ -0,0 +1,218 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.application.mission;
+
+// imports
+import java.util.EventObject;
+
+import com.dalsemi.onewire.adapter.DSPortAdapter;
+import com.dalsemi.onewire.container.OneWireContainer;
+import com.dalsemi.onewire.utils.OWPath;
+
+
+/**
+ * The download of one logger by a <code>MissionDownloader</code>, and the
+ * progress of the whole download when it finished.
+ *
+ * <P>A DS1922/DS1923 (<code>OneWireContainer41</code>) keeps the mission it
+ * loaded, so its results are read from the container.  For a DS1921
+ * (<code>OneWireContainer21</code>) the device state and the temperature
+ * log are in the event.</P>
+ *
+ * @see MissionDownloadListener
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class MissionDownloadEvent
+   extends EventObject
+{
+   /** the logger */
+   private final OneWireContainer container;
+
+   /** path to the logger */
+   private final OWPath path;
+
+   /** state read from a DS1921, or null */
+   private final byte[] state;
+
+   /** temperature log read from a DS1921, or null */
+   private final byte[] temperatureLog;
+
+   /** number of samples downloaded */
+   private final int sampleCount;
+
+   /** time the download took, in milliseconds */
+   private final long elapsedMillis;
+
+   /** the reason the download failed, or null */
+   private final Exception exception;
+
+   /** number of loggers finished, this one included */
+   private final int completedCount;
+
+   /** number of loggers being downloaded */
+   private final int totalCount;
+
+   /**
+    * Creates a new event.
+    */
+   MissionDownloadEvent (MissionDownloader source, OneWireContainer container,
+                         OWPath path, byte[] state, byte[] temperatureLog,
+                         int sampleCount, long elapsedMillis,
+                         Exception exception, int completedCount,
+                         int totalCount)
+   {
+      super(source);
+
+      this.container      = container;
+      this.path           = path;
+      this.state          = state;
+      this.temperatureLog = temperatureLog;
+      this.sampleCount    = sampleCount;
+      this.elapsedMillis  = elapsedMillis;
+      this.exception      = exception;
+      this.completedCount = completedCount;
+      this.totalCount     = totalCount;
+   }
+
+   /**
+    * Returns the downloader that sent this event.
+    *
+    * @return the downloader
+    */
+   public MissionDownloader getDownloader ()
+   {
+      return ( MissionDownloader ) getSource();
+   }
+
+   /**
+    * Returns the container of the logger.
+    *
+    * @return the logger
+    */
+   public OneWireContainer getContainer ()
+   {
+      return container;
+   }
+
+   /**
+    * Returns the adapter the logger was downloaded with.
+    *
+    * @return the adapter
+    */
+   public DSPortAdapter getAdapter ()
+   {
+      return container.getAdapter();
+   }
+
+   /**
+    * Returns the path to the logger.
+    *
+    * @return the path
+    */
+   public OWPath getPath ()
+   {
+      return path;
+   }
+
+   /**
+    * Returns the state read from a DS1921 by <code>readDevice()</code>.
+    *
+    * @return the state, or <code>null</code> for other loggers or if the
+    *         download failed
+    */
+   public byte[] getState ()
+   {
+      return state;
+   }
+
+   /**
+    * Returns the temperature log read from a DS1921 by
+    * <code>getTemperatureLog(byte[])</code>.
+    *
+    * @return the log, or <code>null</code> for other loggers or if the
+    *         download failed
+    */
+   public byte[] getTemperatureLog ()
+   {
+      return temperatureLog;
+   }
+
+   /**
+    * Returns the number of samples downloaded from the logger.
+    *
+    * @return the number of samples, 0 if the download failed
+    */
+   public int getSampleCount ()
+   {
+      return sampleCount;
+   }
+
+   /**
+    * Returns the time the download of this logger took.
+    *
+    * @return the time, in milliseconds
+    */
+   public long getElapsedMillis ()
+   {
+      return elapsedMillis;
+   }
+
+   /**
+    * Returns the reason the download failed.
+    *
+    * @return the exception, or <code>null</code> if the download succeeded
+    */
+   public Exception getException ()
+   {
+      return exception;
+   }
+
+   /**
+    * Returns the number of loggers finished, successfully or not, when
+    * this one finished.
+    *
+    * @return the number of loggers finished, this one included
+    */
+   public int getCompletedCount ()
+   {
+      return completedCount;
+   }
+
+   /**
+    * Returns the number of loggers in the download.
+    *
+    * @return the number of loggers
+    */
+   public int getTotalCount ()
+   {
+      return totalCount;
+   }
+}
@@ -0,0 +1,56 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.application.mission;
+
+/**
+ * Receives the progress of a <code>MissionDownloader</code>, one event
+ * for each logger downloaded.  The methods are called from the download
+ * threads, so they should return quickly.
+ *
+ * @see MissionDownloader#addMissionDownloadListener(MissionDownloadListener)
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public interface MissionDownloadListener
+{
+   /**
+    * Called when the mission of a logger was downloaded.
+    *
+    * @param mde the logger and the downloaded log
+    */
+   public void missionDownloaded (MissionDownloadEvent mde);
+
+   /**
+    * Called when downloading the mission of a logger failed.
+    *
+    * @param mde the logger and the exception
+    */
+   public void missionDownloadFailed (MissionDownloadEvent mde);
+}
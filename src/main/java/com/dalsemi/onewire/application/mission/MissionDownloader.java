@@ -0,0 +1,638 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.application.mission;
+
+// imports
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import com.dalsemi.onewire.adapter.DSPortAdapter;
+import com.dalsemi.onewire.application.monitor.AbstractDeviceMonitor;
+import com.dalsemi.onewire.application.monitor.DeviceMonitorEvent;
+import com.dalsemi.onewire.application.monitor.DeviceMonitorEventListener;
+import com.dalsemi.onewire.application.monitor.DeviceMonitorException;
+import com.dalsemi.onewire.container.MissionLogCache;
+import com.dalsemi.onewire.container.OneWireContainer;
+import com.dalsemi.onewire.container.OneWireContainer21;
+import com.dalsemi.onewire.container.OneWireContainer41;
+import com.dalsemi.onewire.utils.OWPath;
+
+
+/**
+ * Downloads the missions of many DS1921 and DS1922/DS1923 loggers, using
+ * all their adapters at the same time.  Loggers are found by one or more
+ * device monitors, or added by hand with their path.
+ *
+ * <P>The loggers are sharded by adapter, and on each adapter grouped by
+ * branch, so that each branch is opened only once.  Every adapter gets its
+ * own download thread, so a docking station with several adapters
+ * downloads on all of them at once.  The loggers of one adapter share its
+ * bus, and each branch is downloaded with exclusive use of the adapter, so
+ * the branches of one adapter are downloaded one after another.</P>
+ *
+ * <P>Each finished logger is reported to the
+ * <code>MissionDownloadListener</code>s, with the number of loggers done so
+ * far.  The total number of samples and the throughput of the last
+ * download can be read afterwards.  With a <code>MissionLogCache</code>,
+ * DS1922/DS1923 loggers only read the samples taken since their last
+ * download.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <DL>
+ * <DD> <H4> Example</H4>
+ * Download every logger found on two adapters:
+ * <PRE> <CODE>
+ *   MissionDownloader downloader = new MissionDownloader();
+ *   NetworkDeviceMonitor monitor1 = new NetworkDeviceMonitor(adapter1);
+ *   NetworkDeviceMonitor monitor2 = new NetworkDeviceMonitor(adapter2);
+ *
+ *   downloader.addDeviceMonitor(monitor1);
+ *   downloader.addDeviceMonitor(monitor2);
+ *   downloader.addMissionDownloadListener(listener);
+ *
+ *   // one search cycle finds the loggers
+ *   monitor1.search(new Vector(), new Vector());
+ *   monitor2.search(new Vector(), new Vector());
+ *
+ *   downloader.downloadAll();
+ *   System.out.println(downloader.getSamplesPerSecond() + " samples/s");
+ * </CODE> </PRE>
+ * </DL>
+ *
+ * @see MissionDownloadListener
+ * @see com.dalsemi.onewire.application.monitor.NetworkDeviceMonitor
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class MissionDownloader
+   implements DeviceMonitorEventListener
+{
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** the logger of each address, keyed by Long */
+   private final Hashtable loggers = new Hashtable();
+
+   /** listeners of the download progress */
+   private final Vector listeners = new Vector();
+
+   /** cache for DS1922/DS1923 mission logs, or null */
+   private MissionLogCache missionLogCache = null;
+
+   /** only one download at a time */
+   private final Object downloadLock = new Object();
+
+   /** progress of the current or last download */
+   private int totalCount, completedCount, failedCount;
+   private long sampleCount, startTime, endTime;
+
+   //--------
+   //-------- Constructor
+   //--------
+
+   /**
+    * Creates a downloader without any loggers.
+    */
+   public MissionDownloader ()
+   {
+      // VOID
+   }
+
+   //--------
+   //-------- Logger methods
+   //--------
+
+   /**
+    * Adds the loggers a device monitor finds, and removes the ones that
+    * depart.  The monitor must be run, or searched, to find them.
+    *
+    * @param monitor the monitor
+    */
+   public void addDeviceMonitor (AbstractDeviceMonitor monitor)
+   {
+      monitor.addDeviceMonitorEventListener(this);
+   }
+
+   /**
+    * Returns <code>true</code> if the container is a logger this class can
+    * download, a DS1921 or a DS1922/DS1923.
+    *
+    * @param owc the container
+    * @return <code>true</code> if it is a logger
+    */
+   public static boolean isLogger (OneWireContainer owc)
+   {
+      return (owc instanceof OneWireContainer21)
+             || (owc instanceof OneWireContainer41);
+   }
+
+   /**
+    * Adds a logger.  A logger already added is replaced.
+    *
+    * @param owc the container of the logger
+    * @param path the path to the logger, or <code>null</code> if it is on
+    *        the main branch of its adapter
+    *
+    * @throws IllegalArgumentException if the container is not a logger
+    */
+   public void addLogger (OneWireContainer owc, OWPath path)
+   {
+      if (!isLogger(owc))
+         throw new IllegalArgumentException(
+            "Not a mission logger: " + owc.getName());
+
+      if (path == null)
+         path = new OWPath(owc.getAdapter());
+
+      loggers.put(new Long(owc.getAddressAsLong()), new Logger(owc, path));
+   }
+
+   /**
+    * Removes a logger.
+    *
+    * @param address address of the logger
+    */
+   public void removeLogger (long address)
+   {
+      loggers.remove(new Long(address));
+   }
+
+   /**
+    * Returns the number of loggers to download.
+    *
+    * @return the number of loggers
+    */
+   public int getLoggerCount ()
+   {
+      return loggers.size();
+   }
+
+   /**
+    * Sets the cache used to download DS1922/DS1923 loggers incrementally.
+    *
+    * @param cache the cache, or <code>null</code> to always read the full
+    *        log
+    *
+    * @see OneWireContainer41#loadMissionResults(MissionLogCache)
+    */
+   public void setMissionLogCache (MissionLogCache cache)
+   {
+      missionLogCache = cache;
+   }
+
+   /**
+    * Returns the cache used to download DS1922/DS1923 loggers.
+    *
+    * @return the cache, or <code>null</code> if none
+    */
+   public MissionLogCache getMissionLogCache ()
+   {
+      return missionLogCache;
+   }
+
+   //--------
+   //-------- Download methods
+   //--------
+
+   /**
+    * Downloads every logger, and returns when all are done.  Loggers that
+    * fail are reported to the listeners, and do not stop the others.
+    *
+    * @return the number of loggers downloaded successfully
+    */
+   public int downloadAll ()
+   {
+      synchronized (downloadLock)
+      {
+         // group the loggers by adapter, and by branch within an adapter
+         Hashtable snapshot = ( Hashtable ) loggers.clone();
+         Vector    adapters = new Vector();
+         Vector    sharded  = new Vector();
+
+         for (Enumeration e = snapshot.elements(); e.hasMoreElements(); )
+         {
+            Logger logger   = ( Logger ) e.nextElement();
+            Vector branches = null;
+
+            // adapters are compared by instance, DSPortAdapter.equals
+            // does not match its hashCode
+            for (int i = 0; (i < adapters.size()) && (branches == null); i++)
+               if (adapters.elementAt(i) == logger.adapter)
+                  branches = ( Vector ) sharded.elementAt(i);
+
+            if (branches == null)
+            {
+               branches = new Vector();
+
+               adapters.addElement(logger.adapter);
+               sharded.addElement(branches);
+            }
+
+            Vector branch = null;
+
+            for (int i = 0; (i < branches.size()) && (branch == null); i++)
+            {
+               Vector b = ( Vector ) branches.elementAt(i);
+
+               if (logger.path.equals((( Logger ) b.elementAt(0)).path))
+                  branch = b;
+            }
+
+            if (branch == null)
+            {
+               branch = new Vector();
+
+               branches.addElement(branch);
+            }
+
+            branch.addElement(logger);
+         }
+
+         synchronized (this)
+         {
+            totalCount     = snapshot.size();
+            completedCount = 0;
+            failedCount    = 0;
+            sampleCount    = 0;
+            startTime      = System.currentTimeMillis();
+            endTime        = 0;
+         }
+
+         // start the thread of every adapter
+         Vector threads = new Vector();
+
+         for (int a = 0; a < adapters.size(); a++)
+         {
+            DSPortAdapter adapter  = ( DSPortAdapter ) adapters.elementAt(a);
+            Vector        branches = ( Vector ) sharded.elementAt(a);
+
+            if (branches.isEmpty())
+               continue;
+
+            Thread t = new Thread(new AdapterWorker(adapter, branches),
+                                  "MissionDownloader-"
+                                  + adapter.getAdapterName() + "-" + a);
+
+            t.setDaemon(true);
+            t.start();
+            threads.addElement(t);
+         }
+
+         for (int i = 0; i < threads.size(); i++)
+         {
+            Thread t = ( Thread ) threads.elementAt(i);
+
+            while (t.isAlive())
+            {
+               try
+               {
+                  t.join();
+               }
+               catch (InterruptedException ie)
+               {
+                  ;
+               }
+            }
+         }
+
+         synchronized (this)
+         {
+            endTime = System.currentTimeMillis();
+
+            return completedCount - failedCount;
+         }
+      }
+   }
+
+   //--------
+   //-------- Progress methods
+   //--------
+
+   /**
+    * Returns the number of loggers in the current or last download.
+    *
+    * @return the number of loggers
+    */
+   public synchronized int getTotalCount ()
+   {
+      return totalCount;
+   }
+
+   /**
+    * Returns the number of loggers finished so far, successfully or not.
+    *
+    * @return the number of loggers finished
+    */
+   public synchronized int getCompletedCount ()
+   {
+      return completedCount;
+   }
+
+   /**
+    * Returns the number of loggers that failed so far.
+    *
+    * @return the number of loggers that failed
+    */
+   public synchronized int getFailedCount ()
+   {
+      return failedCount;
+   }
+
+   /**
+    * Returns the number of samples downloaded so far.
+    *
+    * @return the number of samples
+    */
+   public synchronized long getSampleCount ()
+   {
+      return sampleCount;
+   }
+
+   /**
+    * Returns the time the current or last download has taken.
+    *
+    * @return the time, in milliseconds
+    */
+   public synchronized long getElapsedMillis ()
+   {
+      if (startTime == 0)
+         return 0;
+
+      return ((endTime == 0) ? System.currentTimeMillis()
+                             : endTime) - startTime;
+   }
+
+   /**
+    * Returns the throughput of the current or last download.
+    *
+    * @return samples downloaded per second
+    */
+   public synchronized double getSamplesPerSecond ()
+   {
+      long elapsed = getElapsedMillis();
+
+      return (elapsed == 0) ? 0
+                            : (sampleCount * 1000d) / elapsed;
+   }
+
+   //--------
+   //-------- Event methods
+   //--------
+
+   /**
+    * Adds a listener, to be notified of each logger downloaded.
+    *
+    * @param mdl the listener
+    */
+   public void addMissionDownloadListener (MissionDownloadListener mdl)
+   {
+      if (mdl != null)
+         listeners.addElement(mdl);
+   }
+
+   /**
+    * Removes a listener.
+    *
+    * @param mdl the listener
+    */
+   public void removeMissionDownloadListener (MissionDownloadListener mdl)
+   {
+      listeners.removeElement(mdl);
+   }
+
+   /**
+    * Adds the loggers that arrived.
+    *
+    * @param dme arrival event
+    */
+   public void deviceArrival (DeviceMonitorEvent dme)
+   {
+      for (int i = 0; i < dme.getDeviceCount(); i++)
+      {
+         OneWireContainer owc = dme.getContainerAt(i);
+
+         if (isLogger(owc))
+            addLogger(owc, dme.getPathForContainerAt(i));
+      }
+   }
+
+   /**
+    * Removes the loggers that departed.
+    *
+    * @param dme departure event
+    */
+   public void deviceDeparture (DeviceMonitorEvent dme)
+   {
+      for (int i = 0; i < dme.getDeviceCount(); i++)
+         removeLogger(dme.getAddressAsLongAt(i));
+   }
+
+   /**
+    * Ignores search errors, the monitor retries.
+    *
+    * @param dme the error
+    */
+   public void networkException (DeviceMonitorException dme)
+   {
+      // VOID
+   }
+
+   //--------
+   //-------- Private methods
+   //--------
+
+   /**
+    * Downloads the loggers of one branch, with exclusive use of the
+    * adapter and the branch opened once.
+    */
+   private void downloadBranch (DSPortAdapter adapter, Vector branch)
+   {
+      OWPath path = (( Logger ) branch.elementAt(0)).path;
+      int    next = 0;
+
+      try
+      {
+         adapter.beginExclusive(true);
+
+         try
+         {
+            path.open();
+
+            for (; next < branch.size(); next++)
+               download(( Logger ) branch.elementAt(next));
+
+            path.close();
+         }
+         finally
+         {
+            adapter.endExclusive();
+         }
+      }
+      catch (Exception e)
+      {
+         // the branch could not be opened or closed, fail the loggers
+         // not downloaded yet
+         for (; next < branch.size(); next++)
+            finished(( Logger ) branch.elementAt(next), null, null, 0, 0, e);
+      }
+   }
+
+   /**
+    * Downloads one logger, on an opened branch.
+    */
+   private void download (Logger logger)
+   {
+      long start = System.currentTimeMillis();
+
+      try
+      {
+         if (logger.container instanceof OneWireContainer41)
+         {
+            OneWireContainer41 owc41 = ( OneWireContainer41 ) logger.container;
+
+            owc41.loadMissionResults(missionLogCache);
+            finished(logger, null, null,
+                     owc41.getMissionSampleCount(
+                        OneWireContainer41.TEMPERATURE_CHANNEL),
+                     System.currentTimeMillis() - start, null);
+         }
+         else
+         {
+            OneWireContainer21 owc21 = ( OneWireContainer21 ) logger.container;
+            byte[]             state = owc21.readDevice();
+            byte[]             log   = owc21.getTemperatureLog(state);
+
+            finished(logger, state, log, log.length,
+                     System.currentTimeMillis() - start, null);
+         }
+      }
+      catch (Exception e)
+      {
+         finished(logger, null, null, 0, System.currentTimeMillis() - start,
+                  e);
+      }
+   }
+
+   /**
+    * Counts a finished logger and notifies the listeners.
+    */
+   private void finished (Logger logger, byte[] state, byte[] log,
+                          int samples, long elapsed, Exception exception)
+   {
+      MissionDownloadEvent mde;
+
+      synchronized (this)
+      {
+         completedCount++;
+
+         if (exception != null)
+            failedCount++;
+
+         sampleCount += samples;
+         mde         = new MissionDownloadEvent(this, logger.container,
+                                                logger.path, state, log,
+                                                samples, elapsed, exception,
+                                                completedCount, totalCount);
+      }
+
+      for (int i = 0; i < listeners.size(); i++)
+      {
+         MissionDownloadListener listener =
+            ( MissionDownloadListener ) listeners.elementAt(i);
+
+         if (exception == null)
+            listener.missionDownloaded(mde);
+         else
+            listener.missionDownloadFailed(mde);
+      }
+   }
+
+   //--------
+   //-------- Inner classes
+   //--------
+
+   /**
+    * A logger and the path to it.
+    */
+   private static final class Logger
+   {
+      final OneWireContainer container;
+      final DSPortAdapter    adapter;
+      final OWPath           path;
+
+      Logger (OneWireContainer container, OWPath path)
+      {
+         this.container = container;
+         this.adapter   = container.getAdapter();
+         this.path      = path;
+      }
+   }
+
+   /**
+    * A download thread of one adapter, taking branches off the adapter's
+    * list until it is empty.
+    */
+   private final class AdapterWorker
+      implements Runnable
+   {
+      private final DSPortAdapter adapter;
+      private final Vector        branches;
+
+      AdapterWorker (DSPortAdapter adapter, Vector branches)
+      {
+         this.adapter  = adapter;
+         this.branches = branches;
+      }
+
+      public void run ()
+      {
+         while (true)
+         {
+            Vector branch;
+
+            synchronized (branches)
+            {
+               if (branches.isEmpty())
+                  return;
+
+               branch = ( Vector ) branches.elementAt(0);
+
+               branches.removeElementAt(0);
+            }
+
+            downloadBranch(adapter, branch);
+         }
+      }
+   }
+}
@@ -31,6 +31,7 @@ import java.util.Vector;
 
 import com.dalsemi.onewire.utils.OWPath;
 import com.dalsemi.onewire.adapter.DSPortAdapter;
+import com.dalsemi.onewire.adapter.IncrementalSearch;
 import com.dalsemi.onewire.OneWireException;
 import com.dalsemi.onewire.adapter.OneWireIOException;
 
@@ -51,6 +52,8 @@ public class DeviceMonitor
 
    private boolean doAlarmSearch = false;
 
+   private IncrementalSearch incrementalSearch = null;
+
    /**
     * Create a simple monitor that does not search branches
     *
@@ -75,6 +78,8 @@ public class DeviceMonitor
       {
          this.adapter = adapter;
          defaultPath = new OWPath(adapter);
+         if(incrementalSearch!=null)
+            incrementalSearch = new IncrementalSearch(adapter);
 
          resetSearch();
       }
@@ -114,6 +119,36 @@ public class DeviceMonitor
       return doAlarmSearch;
    }
 
+   /**
+    * Sets this monitor to verify the devices it already knows, instead
+    * of doing a full search every cycle.  A full search is only done
+    * when a new device shows up.  Not used while searching for alarming
+    * parts.
+    *
+    * @param incremental true to search incrementally
+    * @see IncrementalSearch
+    */
+   public void setIncrementalSearch(boolean incremental)
+   {
+      synchronized(sync_flag)
+      {
+         if(!incremental)
+            incrementalSearch = null;
+         else if(incrementalSearch==null)
+            incrementalSearch = new IncrementalSearch(adapter);
+      }
+   }
+
+   /**
+    * See if this monitor searches incrementally
+    *
+    * @return true if this monitor searches incrementally
+    */
+   public boolean getIncrementalSearch()
+   {
+      return incrementalSearch!=null;
+   }
+
 
    /**
     * Performs a search of the 1-Wire network without searching branches
@@ -136,34 +171,52 @@ public class DeviceMonitor
             adapter.targetAllFamilies();
             adapter.setSpeed(DSPortAdapter.SPEED_REGULAR);
 
-            boolean search_result = adapter.findFirstDevice();
+            if (incrementalSearch != null && !doAlarmSearch)
+            {
+               // only verify the devices already found
+               incrementalSearch.search(null, null);
 
-            // loop while devices found
-            while (search_result)
+               long[] found = incrementalSearch.getDeviceAddresses();
+               for (int i = 0; i < found.length; i++)
+               {
+                  Long longAddress = new Long(found[i]);
+                  if(!deviceAddressHash.containsKey(longAddress) && arrivals!=null)
+                     arrivals.addElement(longAddress);
+
+                  deviceAddressHash.put(longAddress, new Integer(max_state_count));
+               }
+            }
+            else
             {
-               // get the 1-Wire address
-               Long longAddress = new Long(adapter.getAddressAsLong());
-               // if requested to do an alarm search, then check device for an alarm condition and save in list
-               if (doAlarmSearch)
+               boolean search_result = adapter.findFirstDevice();
+
+               // loop while devices found
+               while (search_result)
                {
-                  if (adapter.isAlarming(longAddress.longValue()))
+                  // get the 1-Wire address
+                  Long longAddress = new Long(adapter.getAddressAsLong());
+                  // if requested to do an alarm search, then check device for an alarm condition and save in list
+                  if (doAlarmSearch)
+                  {
+                     if (adapter.isAlarming(longAddress.longValue()))
+                     {
+                        if(!deviceAddressHash.containsKey(longAddress) && arrivals!=null)
+                           arrivals.addElement(longAddress);
+
+                        deviceAddressHash.put(longAddress, new Integer(max_state_count));
+                     }
+                  }
+                  else
                   {
                      if(!deviceAddressHash.containsKey(longAddress) && arrivals!=null)
                         arrivals.addElement(longAddress);
 
                      deviceAddressHash.put(longAddress, new Integer(max_state_count));
                   }
-               }
-               else
-               {
-                  if(!deviceAddressHash.containsKey(longAddress) && arrivals!=null)
-                     arrivals.addElement(longAddress);
 
-                  deviceAddressHash.put(longAddress, new Integer(max_state_count));
+                  // search for the next device
+                  search_result = adapter.findNextDevice();
                }
-
-               // search for the next device
-               search_result = adapter.findNextDevice();
             }
          }
          finally
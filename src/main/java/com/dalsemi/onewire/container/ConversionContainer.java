@@ -0,0 +1,117 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+// imports
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.adapter.OneWireIOException;
+
+
+/**
+ * 1-Wire interface class for sensors that can split a conversion into
+ * a 'start' and a 'complete' step.  Between the two steps the device
+ * converts on its own, so the 1-Wire Network does not need to be held
+ * and the adapter can be used for other devices.  This interface is
+ * used by the {@link ConversionScheduler ConversionScheduler} and is
+ * usually not called directly.
+ *
+ * <P>Both steps must be called by a thread that has exclusive use of
+ * the adapter (see <code>DSPortAdapter.beginExclusive</code>), but the
+ * exclusive use does not need to be kept between the steps.</P>
+ *
+ * <P>A device that needs strong pull-up power during the conversion
+ * (parasite power) cannot release the 1-Wire Network and returns
+ * <code>CONVERT_NOT_SPLIT</code> from <code>startConversion</code>.
+ * The caller then does the normal blocking convert method instead.</P>
+ *
+ * @see ConversionScheduler
+ * @see OneWireContainer20
+ * @see OneWireContainer26
+ * @see OneWireContainer28
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public interface ConversionContainer
+   extends OneWireSensor
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Conversion type, temperature (TemperatureContainer)              */
+   public static final int CONVERT_TEMPERATURE = 0;
+
+   /** Conversion type, A/D channel (ADContainer)                       */
+   public static final int CONVERT_AD = 1;
+
+   /** Returned by startConversion if the conversion can not be split  */
+   public static final int CONVERT_NOT_SPLIT = -1;
+
+   //--------
+   //-------- Conversion methods
+   //--------
+
+   /**
+    * Starts a conversion and returns without waiting for it.
+    *
+    * @param  type     conversion type, <code>CONVERT_TEMPERATURE</code> or
+    *                  <code>CONVERT_AD</code>
+    * @param  channel  A/D channel for <code>CONVERT_AD</code>, ignored
+    *                  otherwise
+    * @param  state    current state of the device returned from
+    *                  <code>readDevice()</code>
+    *
+    * @return the time in milliseconds to wait before calling
+    *         <code>completeConversion</code>, or <code>CONVERT_NOT_SPLIT</code>
+    *         if nothing was started and the blocking convert method
+    *         must be used instead
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    *         or if the conversion type is not supported
+    */
+   public int startConversion (int type, int channel, byte[] state)
+      throws OneWireIOException, OneWireException;
+
+   /**
+    * Completes a conversion started with <code>startConversion</code>
+    * and updates the state with the result.
+    *
+    * @param  type     conversion type passed to <code>startConversion</code>
+    * @param  channel  A/D channel passed to <code>startConversion</code>
+    * @param  state    state passed to <code>startConversion</code>
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void completeConversion (int type, int channel, byte[] state)
+      throws OneWireIOException, OneWireException;
+}
@@ -0,0 +1,277 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+// imports
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.adapter.OneWireIOException;
+
+
+/**
+ * A conversion submitted to a {@link ConversionScheduler ConversionScheduler}.
+ * The request is returned right away and is completed later by the
+ * scheduler thread.  The caller can poll <code>isDone()</code>, block
+ * with <code>waitForCompletion</code> or register a
+ * {@link ConversionListener ConversionListener} with the scheduler.
+ *
+ * <P>When the request is done the state array holds the result of the
+ * conversion and can be passed to the container's 'get' methods
+ * (<code>getTemperature</code>, <code>getADVoltage</code>,
+ * <code>getHumidity</code>).</P>
+ *
+ * @see ConversionScheduler
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class ConversionRequest
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Request type, temperature conversion */
+   public static final int TYPE_TEMPERATURE = 0;
+
+   /** Request type, A/D conversion of one channel */
+   public static final int TYPE_AD = 1;
+
+   /** Request type, humidity conversion */
+   public static final int TYPE_HUMIDITY = 2;
+
+   /** Step type for a blocking humidity conversion */
+   static final int STEP_HUMIDITY = 2;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** The container to convert */
+   private final OneWireSensor container;
+
+   /** Request type */
+   private final int type;
+
+   /** A/D channel for TYPE_AD */
+   private final int channel;
+
+   /** Device state, updated with the result */
+   private final byte[] state;
+
+   /** Conversion types of each step, and the channel of each */
+   final int[] stepTypes, stepChannels;
+
+   /** Current step, used by the scheduler */
+   int step = 0;
+
+   /** true if the current step has been started */
+   boolean started = false;
+
+   /** Time the current step may be completed, used by the scheduler */
+   long dueTime = 0;
+
+   /** Set when the request is done */
+   private boolean done = false;
+
+   /** Exception that ended the request, if any */
+   private OneWireException exception = null;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a request, only used by the ConversionScheduler.
+    */
+   ConversionRequest (OneWireSensor container, int type, int channel,
+                      byte[] state)
+   {
+      this.container = container;
+      this.type      = type;
+      this.channel   = channel;
+      this.state     = state;
+
+      switch (type)
+      {
+
+         case TYPE_HUMIDITY :
+            if (container instanceof OneWireContainer26)
+            {
+               // temperature, then the supply voltage and sensor voltage
+               stepTypes    = new int[] { ConversionContainer.CONVERT_TEMPERATURE,
+                                          ConversionContainer.CONVERT_AD,
+                                          ConversionContainer.CONVERT_AD };
+               stepChannels = new int[] { 0, OneWireContainer26.CHANNEL_VDD,
+                                          OneWireContainer26.CHANNEL_VAD };
+            }
+            else
+            {
+               stepTypes    = new int[] { STEP_HUMIDITY };
+               stepChannels = new int[] { 0 };
+            }
+            break;
+         case TYPE_AD :
+            stepTypes    = new int[] { ConversionContainer.CONVERT_AD };
+            stepChannels = new int[] { channel };
+            break;
+         default :
+            stepTypes    = new int[] { ConversionContainer.CONVERT_TEMPERATURE };
+            stepChannels = new int[] { 0 };
+            break;
+      }
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Gets the container of this request.
+    *
+    * @return the container being converted
+    */
+   public OneWireSensor getContainer ()
+   {
+      return container;
+   }
+
+   /**
+    * Gets the type of this request.
+    *
+    * @return TYPE_TEMPERATURE, TYPE_AD or TYPE_HUMIDITY
+    */
+   public int getType ()
+   {
+      return type;
+   }
+
+   /**
+    * Gets the A/D channel of a TYPE_AD request.
+    *
+    * @return the channel
+    */
+   public int getChannel ()
+   {
+      return channel;
+   }
+
+   /**
+    * Gets the device state that is updated with the conversion result.
+    *
+    * @return the state array passed when the request was submitted
+    */
+   public byte[] getState ()
+   {
+      return state;
+   }
+
+   /**
+    * Checks if the request is done, successfully or not.
+    *
+    * @return <code>true</code> if done
+    */
+   public synchronized boolean isDone ()
+   {
+      return done;
+   }
+
+   /**
+    * Gets the exception that ended the request.
+    *
+    * @return the exception, or <code>null</code> if the conversion was
+    *         successful or is not done
+    */
+   public synchronized OneWireException getException ()
+   {
+      return exception;
+   }
+
+   /**
+    * Waits for the request to be done.
+    *
+    * @param  timeout  maximum time to wait in milliseconds, 0 to wait
+    *                  forever
+    *
+    * @return the device state with the conversion result, or
+    *         <code>null</code> if the timeout passed or the thread was
+    *         interrupted first.  The interrupt status of the thread is
+    *         kept.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public synchronized byte[] waitForCompletion (long timeout)
+      throws OneWireIOException, OneWireException
+   {
+      long end = System.currentTimeMillis() + timeout;
+
+      while (!done)
+      {
+         long wait = 0;
+
+         if (timeout > 0)
+         {
+            wait = end - System.currentTimeMillis();
+
+            if (wait <= 0)
+               return null;
+         }
+
+         try
+         {
+            wait(wait);
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+
+            return null;
+         }
+      }
+
+      if (exception instanceof OneWireIOException)
+         throw ( OneWireIOException ) exception;
+      else if (exception != null)
+         throw exception;
+
+      return state;
+   }
+
+   /**
+    * Marks the request as done, used by the scheduler.
+    */
+   synchronized void setDone (OneWireException e)
+   {
+      exception = e;
+      done      = true;
+
+      notifyAll();
+   }
+}
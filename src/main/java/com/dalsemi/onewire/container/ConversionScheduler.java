@@ -0,0 +1,416 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+// imports
+import java.util.Vector;
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.adapter.DSPortAdapter;
+
+
+/**
+ * Schedules temperature, A/D and humidity conversions without holding
+ * the 1-Wire Network while the devices convert.  A conversion is
+ * submitted and a {@link ConversionRequest ConversionRequest} is
+ * returned right away.  The scheduler thread starts the conversion
+ * with exclusive use of the adapter, releases the adapter while the
+ * device converts, and then takes it again to read the result.  While
+ * one device converts the adapter is free for other devices and other
+ * threads, so many slow sensors on the same adapter convert at the
+ * same time.  Other requests for a device that is converting wait until
+ * its conversion is complete.
+ *
+ * <P>Containers that implement {@link ConversionContainer ConversionContainer}
+ * (<code>OneWireContainer20</code>, <code>OneWireContainer26</code> and
+ * <code>OneWireContainer28</code>) are split into 'start' and 'complete'
+ * steps.  Other containers, and devices that need strong pull-up power
+ * during the conversion, are converted with their normal blocking
+ * method while the scheduler holds the adapter.</P>
+ *
+ * <P>The scheduler is a <code>Runnable</code> and must be started in a
+ * thread of its own.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   ConversionScheduler scheduler = new ConversionScheduler();
+ *   (new Thread(scheduler)).start();
+ *
+ *   ConversionRequest[] requests = new ConversionRequest [tcs.length];
+ *   for (int i = 0; i < tcs.length; i++)
+ *      requests [i] = scheduler.submitTemperatureConvert(tcs [i], tcs [i].readDevice());
+ *
+ *   for (int i = 0; i < tcs.length; i++)
+ *   {
+ *      byte[] state = requests [i].waitForCompletion(0);
+ *      System.out.println(tcs [i].getTemperature(state));
+ *   }
+ *
+ *   scheduler.killScheduler();
+ * </CODE> </PRE>
+ *
+ * @see ConversionContainer
+ * @see ConversionRequest
+ * @see ConversionListener
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class ConversionScheduler
+   implements Runnable
+{
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Requests waiting to be started or completed */
+   private final Vector pending = new Vector();
+
+   /**
+    * Containers with a split conversion started and not yet completed.
+    * Other requests for them wait, since a second conversion would
+    * change the device while the first one converts.
+    */
+   private final Vector converting = new Vector();
+
+   /** Listeners for completed requests */
+   private final Vector listeners = new Vector();
+
+   /** Flags for stopping the scheduler thread */
+   protected volatile boolean keepRunning = true, hasCompletelyStopped = false;
+
+   //--------
+   //-------- Submit methods
+   //--------
+
+   /**
+    * Submits a temperature conversion.
+    *
+    * @param  tc     container to convert, must be a OneWireContainer
+    * @param  state  current state of the device returned from
+    *                <code>readDevice()</code>, updated with the result
+    *
+    * @return the request, done when the conversion is complete
+    */
+   public ConversionRequest submitTemperatureConvert (TemperatureContainer tc,
+                                                      byte[] state)
+   {
+      return submit(new ConversionRequest(tc,
+                       ConversionRequest.TYPE_TEMPERATURE, 0, state));
+   }
+
+   /**
+    * Submits an A/D conversion of one channel.
+    *
+    * @param  ad       container to convert, must be a OneWireContainer
+    * @param  channel  channel to convert
+    * @param  state    current state of the device returned from
+    *                  <code>readDevice()</code>, updated with the result
+    *
+    * @return the request, done when the conversion is complete
+    */
+   public ConversionRequest submitADConvert (ADContainer ad, int channel,
+                                             byte[] state)
+   {
+      return submit(new ConversionRequest(ad, ConversionRequest.TYPE_AD,
+                                          channel, state));
+   }
+
+   /**
+    * Submits a humidity conversion.
+    *
+    * @param  hc     container to convert, must be a OneWireContainer
+    * @param  state  current state of the device returned from
+    *                <code>readDevice()</code>, updated with the result
+    *
+    * @return the request, done when the conversion is complete
+    */
+   public ConversionRequest submitHumidityConvert (HumidityContainer hc,
+                                                   byte[] state)
+   {
+      return submit(new ConversionRequest(hc,
+                       ConversionRequest.TYPE_HUMIDITY, 0, state));
+   }
+
+   /**
+    * Adds the request to the pending list.
+    */
+   private ConversionRequest submit (ConversionRequest request)
+   {
+      if (!(request.getContainer() instanceof OneWireContainer))
+         throw new IllegalArgumentException(
+            "ConversionScheduler-container must be a OneWireContainer");
+
+      if (!keepRunning)
+      {
+         request.setDone(new OneWireException(
+            "ConversionScheduler-scheduler stopped"));
+
+         return request;
+      }
+
+      request.dueTime = System.currentTimeMillis();
+
+      synchronized (pending)
+      {
+         pending.addElement(request);
+         pending.notifyAll();
+      }
+
+      return request;
+   }
+
+   //--------
+   //-------- Listener methods
+   //--------
+
+   /**
+    * Add a listener, to be notified when a request is done.
+    *
+    * @param cl conversion listener
+    */
+   public void addConversionListener (ConversionListener cl)
+   {
+      if (cl != null)
+         listeners.addElement(cl);
+   }
+
+   /**
+    * Remove a listener.
+    *
+    * @param cl conversion listener
+    */
+   public void removeConversionListener (ConversionListener cl)
+   {
+      listeners.removeElement(cl);
+   }
+
+   //--------
+   //-------- Scheduler thread methods
+   //--------
+
+   /**
+    * Stops the scheduler thread.  Requests that are still pending are
+    * done with an exception.
+    */
+   public void killScheduler ()
+   {
+      keepRunning = false;
+
+      synchronized (pending)
+      {
+         pending.notifyAll();
+      }
+
+      // wait for the scheduler thread to stop, with a timeout of 5 seconds
+      int i = 0;
+      while (!hasCompletelyStopped && i++ < 500)
+         try{Thread.sleep(10);}catch(Exception e){;}
+   }
+
+   /**
+    * Scheduler thread.  Starts and completes the pending requests in the
+    * order they are due.
+    */
+   public void run ()
+   {
+      hasCompletelyStopped = false;
+
+      while (keepRunning)
+      {
+         ConversionRequest next = null;
+
+         synchronized (pending)
+         {
+            // find the request due first, of the devices not converting
+            for (int i = 0; i < pending.size(); i++)
+            {
+               ConversionRequest r = ( ConversionRequest ) pending.elementAt(i);
+
+               if (!r.started && converting.contains(r.getContainer()))
+                  continue;
+
+               if ((next == null) || (r.dueTime < next.dueTime))
+                  next = r;
+            }
+
+            try
+            {
+               if (next == null)
+               {
+                  pending.wait();
+
+                  continue;
+               }
+
+               long wait = next.dueTime - System.currentTimeMillis();
+
+               if (wait > 0)
+               {
+                  pending.wait(wait);
+
+                  continue;
+               }
+            }
+            catch (InterruptedException ie)
+            {
+               continue;
+            }
+
+            pending.removeElement(next);
+         }
+
+         process(next);
+      }
+
+      // fail anything left
+      synchronized (pending)
+      {
+         for (int i = 0; i < pending.size(); i++)
+            done(( ConversionRequest ) pending.elementAt(i),
+                 new OneWireException("ConversionScheduler-scheduler stopped"));
+
+         pending.removeAllElements();
+      }
+
+      hasCompletelyStopped = true;
+   }
+
+   /**
+    * Runs the next step of a request with exclusive use of the adapter.
+    */
+   private void process (ConversionRequest request)
+   {
+      OneWireSensor    sensor  = request.getContainer();
+      DSPortAdapter    adapter = (( OneWireContainer ) sensor).getAdapter();
+      int              type    = request.stepTypes [request.step];
+      int              channel = request.stepChannels [request.step];
+      byte[]           state   = request.getState();
+      boolean          started = request.started;
+
+      try
+      {
+         adapter.beginExclusive(true);
+
+         try
+         {
+            if (request.started)
+            {
+               // the device should be done converting
+               (( ConversionContainer ) sensor).completeConversion(type,
+                       channel, state);
+            }
+            else
+            {
+               int wait = ConversionContainer.CONVERT_NOT_SPLIT;
+
+               if ((sensor instanceof ConversionContainer)
+                       && (type != ConversionRequest.STEP_HUMIDITY))
+                  wait = (( ConversionContainer ) sensor).startConversion(
+                     type, channel, state);
+
+               if (wait != ConversionContainer.CONVERT_NOT_SPLIT)
+               {
+                  // release the adapter while the device converts
+                  request.started = true;
+                  request.dueTime = System.currentTimeMillis() + wait;
+
+                  converting.addElement(sensor);
+                  requeue(request);
+
+                  return;
+               }
+
+               // convert the normal way, holding the adapter
+               if (type == ConversionContainer.CONVERT_TEMPERATURE)
+                  (( TemperatureContainer ) sensor).doTemperatureConvert(state);
+               else if (type == ConversionContainer.CONVERT_AD)
+                  (( ADContainer ) sensor).doADConvert(channel, state);
+               else
+                  (( HumidityContainer ) sensor).doHumidityConvert(state);
+            }
+         }
+         finally
+         {
+            adapter.endExclusive();
+         }
+
+         // go on to the next step
+         request.step++;
+         request.started = false;
+
+         if (request.step < request.stepTypes.length)
+         {
+            request.dueTime = System.currentTimeMillis();
+
+            requeue(request);
+         }
+         else
+            done(request, null);
+      }
+      catch (OneWireException owe)
+      {
+         done(request, owe);
+      }
+      catch (RuntimeException re)
+      {
+         done(request, new OneWireException(re.toString()));
+      }
+      finally
+      {
+         // the conversion is complete, or failed
+         if (started)
+            converting.removeElement(sensor);
+      }
+   }
+
+   /**
+    * Puts a request back in the pending list.
+    */
+   private void requeue (ConversionRequest request)
+   {
+      synchronized (pending)
+      {
+         pending.addElement(request);
+      }
+   }
+
+   /**
+    * Marks a request done and notifies the listeners.
+    */
+   private void done (ConversionRequest request, OneWireException e)
+   {
+      request.setDone(e);
+
+      for (int i = 0; i < listeners.size(); i++)
+         (( ConversionListener ) listeners.elementAt(i)).conversionComplete(
+            request);
+   }
+}
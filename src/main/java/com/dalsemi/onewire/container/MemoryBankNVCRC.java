@@ -30,6 +30,7 @@ package com.dalsemi.onewire.container;
 
 // imports
 import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.adapter.AdapterMetrics;
 import com.dalsemi.onewire.adapter.OneWireIOException;
 import com.dalsemi.onewire.utils.CRC16;
 import com.dalsemi.onewire.container.OneWireContainer;
@@ -217,6 +218,7 @@ class MemoryBankNVCRC
       {
          sp.forceVerify();
 
+         ib.adapter.reportEvent(AdapterMetrics.CRC_FAILURE);
          throw new OneWireIOException("Invalid CRC16 in packet read");
       }
    }
@@ -358,6 +360,7 @@ class MemoryBankNVCRC
       {
          sp.forceVerify();
 
+         ib.adapter.reportEvent(AdapterMetrics.CRC_FAILURE);
          throw new OneWireIOException("Invalid CRC16 read from device");
       }
 
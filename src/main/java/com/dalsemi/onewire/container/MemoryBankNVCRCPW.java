@@ -30,6 +30,7 @@ package com.dalsemi.onewire.container;
 // imports
 import com.dalsemi.onewire.OneWireException;
 import com.dalsemi.onewire.adapter.DSPortAdapter;
+import com.dalsemi.onewire.adapter.AdapterMetrics;
 import com.dalsemi.onewire.adapter.OneWireIOException;
 import com.dalsemi.onewire.utils.CRC16;
 
@@ -229,6 +230,7 @@ public class MemoryBankNVCRCPW
          if((last_crc & 0x0FF) != ((~raw_buf[raw_buf.length-2]) & 0x0FF))
          {
             sp.forceVerify();
+            ib.adapter.reportEvent(AdapterMetrics.CRC_FAILURE);
             throw new OneWireIOException("Invalid CRC16 read from device.  Password may be incorrect.");
          }
       }
@@ -241,6 +243,7 @@ public class MemoryBankNVCRCPW
             != 0x0000B001)
          {
             sp.forceVerify();
+            ib.adapter.reportEvent(AdapterMetrics.CRC_FAILURE);
             throw new OneWireIOException("Invalid CRC16 read from device.  Password may be incorrect.");
          }
       }
@@ -30,6 +30,7 @@ package com.dalsemi.onewire.container;
 
 // imports
 import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.adapter.AdapterMetrics;
 import com.dalsemi.onewire.adapter.OneWireIOException;
 import com.dalsemi.onewire.utils.CRC16;
 import com.dalsemi.onewire.container.OneWireContainer;
@@ -195,6 +196,7 @@ class MemoryBankScratchCRC
       {
          forceVerify();
 
+         ib.adapter.reportEvent(AdapterMetrics.CRC_FAILURE);
          throw new OneWireIOException("Invalid CRC16 read from device");
       }
 
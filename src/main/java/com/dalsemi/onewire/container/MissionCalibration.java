@@ -0,0 +1,318 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+
+/**
+ * Describes how the raw samples of one channel of a mission log are
+ * converted to their value, so that the raw samples can be kept and
+ * converted later without the device.  A raw sample, as returned by
+ * <code>MissionContainer.getMissionSampleAsInteger</code>, is converted in
+ * these steps:
+ *
+ * <OL>
+ * <LI> it is shifted right by <code>getShift()</code> bits, or left if
+ *      the shift is negative, to the bits of the converter
+ * <LI> the result is multiplied by <code>getScale()</code>, added to
+ *      <code>getOffset()</code> and divided by <code>getDivisor()</code>
+ * <LI> if the value is at least <code>getThreshold()</code>, the error
+ *      <code>A*value*value + B*value + C</code> given by the calibration
+ *      coefficients is subtracted
+ * <LI> if the channel is temperature compensated, the value is corrected
+ *      for the temperature of the sample, as the DS1923 does for humidity
+ * </OL>
+ *
+ * <P>The steps are done in the same order and precision as the
+ * container does them, so the values are the same as those returned by
+ * <code>getMissionSample</code>.</P>
+ *
+ * @see MissionContainer#getMissionCalibration(int)
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class MissionCalibration
+{
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** number of bytes of each raw sample */
+   private final int sampleBytes;
+
+   /** bits to shift the raw sample right, or left if negative */
+   private final int shift;
+
+   /** linear conversion of the shifted sample */
+   private final double scale, offset, divisor;
+
+   /** calibration coefficients of the error */
+   private final double coeffA, coeffB, coeffC;
+
+   /** lowest value that is calibrated */
+   private final double threshold;
+
+   /** true if the value is compensated for temperature */
+   private final boolean compensated;
+
+   /** channel with the temperature for compensation, or -1 */
+   private final int compensationChannel;
+
+   /** temperature for compensation if there is no channel */
+   private final double compensationTemperature;
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates the conversion of a channel that is not calibrated or
+    * compensated.
+    *
+    * @param  sampleBytes  number of bytes of each raw sample, 1 or 2
+    * @param  shift        bits to shift the raw sample right, or left if
+    *                      negative
+    * @param  scale        factor of the shifted sample
+    * @param  offset       added after scaling
+    * @param  divisor      divides the scaled sample
+    */
+   public MissionCalibration (int sampleBytes, int shift, double scale,
+                              double offset, double divisor)
+   {
+      this(sampleBytes, shift, scale, offset, divisor, 0, 0, 0,
+           Double.POSITIVE_INFINITY, false, -1, 0);
+   }
+
+   /**
+    * Creates the conversion of a channel.
+    *
+    * @param  sampleBytes  number of bytes of each raw sample, 1 or 2
+    * @param  shift        bits to shift the raw sample right, or left if
+    *                      negative
+    * @param  scale        factor of the shifted sample
+    * @param  offset       added after scaling
+    * @param  divisor      divides the scaled sample
+    * @param  coeffA       calibration coefficient of the squared value
+    * @param  coeffB       calibration coefficient of the value
+    * @param  coeffC       constant calibration coefficient
+    * @param  threshold    lowest value that is calibrated,
+    *                      <code>Double.POSITIVE_INFINITY</code> for none
+    * @param  compensated  true to compensate the value for temperature
+    * @param  compensationChannel  channel of the same mission with the
+    *                      temperature for compensation, or -1
+    * @param  compensationTemperature  temperature for compensation if
+    *                      there is no such channel
+    */
+   public MissionCalibration (int sampleBytes, int shift, double scale,
+                              double offset, double divisor, double coeffA,
+                              double coeffB, double coeffC, double threshold,
+                              boolean compensated, int compensationChannel,
+                              double compensationTemperature)
+   {
+      if ((sampleBytes < 1) || (sampleBytes > 2))
+         throw new IllegalArgumentException(
+            "Invalid sample size " + sampleBytes);
+
+      this.sampleBytes             = sampleBytes;
+      this.shift                   = shift;
+      this.scale                   = scale;
+      this.offset                  = offset;
+      this.divisor                 = divisor;
+      this.coeffA                  = coeffA;
+      this.coeffB                  = coeffB;
+      this.coeffC                  = coeffC;
+      this.threshold               = threshold;
+      this.compensated             = compensated;
+      this.compensationChannel     = compensationChannel;
+      this.compensationTemperature = compensationTemperature;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Converts a raw sample to its value.
+    *
+    * @param  raw          the raw sample
+    * @param  temperature  temperature of the sample in degrees Celsius,
+    *                      only used if the channel is compensated with
+    *                      the temperature of a channel
+    *
+    * @return value of the sample
+    */
+   public double decode (int raw, double temperature)
+   {
+      int ival = (shift >= 0) ? (raw >> shift) : (raw << -shift);
+      double val = (ival*scale + offset)/divisor;
+
+      if (val >= threshold)
+      {
+         double valsq = val*val;
+         double error = coeffA*valsq + coeffB*val + coeffC;
+         val = val - error;
+      }
+
+      if (compensated)
+      {
+         double T = (compensationChannel < 0) ? compensationTemperature
+                                              : temperature;
+         double gamma = (T>15)?0.00001:-0.00005;
+         T -= 25;
+         val = (val*0.0307 + .0035*T - 0.000043*T*T) /
+            (0.0307 + gamma*T - 0.000002*T*T);
+      }
+
+      return val;
+   }
+
+   /**
+    * Gets the number of bytes of each raw sample.
+    *
+    * @return 1 or 2
+    */
+   public int getSampleBytes ()
+   {
+      return sampleBytes;
+   }
+
+   /**
+    * Gets the bits the raw sample is shifted right, or left if negative.
+    *
+    * @return the shift
+    */
+   public int getShift ()
+   {
+      return shift;
+   }
+
+   /**
+    * Gets the factor of the shifted sample.
+    *
+    * @return the scale
+    */
+   public double getScale ()
+   {
+      return scale;
+   }
+
+   /**
+    * Gets the number added to the scaled sample.
+    *
+    * @return the offset
+    */
+   public double getOffset ()
+   {
+      return offset;
+   }
+
+   /**
+    * Gets the number that divides the scaled sample.
+    *
+    * @return the divisor
+    */
+   public double getDivisor ()
+   {
+      return divisor;
+   }
+
+   /**
+    * Gets the calibration coefficient of the squared value.
+    *
+    * @return coefficient A
+    */
+   public double getCoefficientA ()
+   {
+      return coeffA;
+   }
+
+   /**
+    * Gets the calibration coefficient of the value.
+    *
+    * @return coefficient B
+    */
+   public double getCoefficientB ()
+   {
+      return coeffB;
+   }
+
+   /**
+    * Gets the constant calibration coefficient.
+    *
+    * @return coefficient C
+    */
+   public double getCoefficientC ()
+   {
+      return coeffC;
+   }
+
+   /**
+    * Gets the lowest value that is calibrated.
+    *
+    * @return the threshold, <code>Double.POSITIVE_INFINITY</code> if the
+    *         channel is not calibrated
+    */
+   public double getThreshold ()
+   {
+      return threshold;
+   }
+
+   /**
+    * Checks if the value is compensated for temperature.
+    *
+    * @return true if compensated
+    */
+   public boolean isCompensated ()
+   {
+      return compensated;
+   }
+
+   /**
+    * Gets the channel of the same mission with the temperature for
+    * compensation.
+    *
+    * @return the channel, or -1 if the compensation temperature is used
+    */
+   public int getCompensationChannel ()
+   {
+      return compensationChannel;
+   }
+
+   /**
+    * Gets the temperature for compensation if there is no compensation
+    * channel.
+    *
+    * @return temperature in degrees Celsius
+    */
+   public double getCompensationTemperature ()
+   {
+      return compensationTemperature;
+   }
+}
@@ -312,6 +312,71 @@ public interface MissionContainer
    long getMissionSampleTimeStamp(int channel, int sampleNum)
       throws OneWireException, OneWireIOException;
 
+   /**
+    * Decodes all samples of a channel taken by the current mission,
+    * oldest first, in one pass.  The values are the same as those
+    * returned by <code>getMissionSample</code>.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @param values array to put the samples in
+    * @param offset index in values of the first sample
+    * @return the number of samples put in values
+    */
+   int getMissionSamples(int channel, double[] values, int offset)
+      throws OneWireException, OneWireIOException;
+
+   /**
+    * Decodes all samples of a channel taken by the current mission,
+    * oldest first, in one pass, rounded to float.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @param values array to put the samples in
+    * @param offset index in values of the first sample
+    * @return the number of samples put in values
+    */
+   int getMissionSamples(int channel, float[] values, int offset)
+      throws OneWireException, OneWireIOException;
+
+   /**
+    * Gets the time, in milliseconds, that each sample of a channel was
+    * taken by the current mission, oldest first.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @param timeStamps array to put the time stamps in
+    * @param offset index in timeStamps of the first time stamp
+    * @return the number of time stamps put in timeStamps
+    */
+   int getMissionSampleTimeStamps(int channel, long[] timeStamps, int offset)
+      throws OneWireException, OneWireIOException;
+
+   /**
+    * Gets an iterator over the samples of the current mission, which
+    * reads the mission log while the samples are decoded instead of
+    * loading it all first.  Loaded mission results may be dropped, so
+    * <code>loadMissionResults</code> must be called again before the
+    * other mission result methods.
+    *
+    * @return iterator over the samples, oldest first
+    */
+   MissionSampleIterator getMissionSampleIterator()
+      throws OneWireException, OneWireIOException;
+
+   /**
+    * Gets how the raw samples of a channel, as returned by
+    * <code>getMissionSampleAsInteger</code>, are converted to the values
+    * returned by <code>getMissionSample</code>.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @return the conversion of the channel, or <code>null</code> if the
+    *         channel is not logged
+    */
+   MissionCalibration getMissionCalibration(int channel)
+      throws OneWireException, OneWireIOException;
+
    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
    // - Mission Resolution and Range
    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
@@ -0,0 +1,378 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+// imports
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+
+/**
+ * Keeps the mission log of each DS1922/DS1923 logger that has been
+ * downloaded, so that the next download only has to read the samples
+ * taken since.  For every logger the cache holds the mission time stamp,
+ * the number of samples the device had logged, and the samples
+ * themselves.  A cache can be saved to a stream and loaded again, so a
+ * program that polls its loggers periodically keeps the benefit across
+ * restarts.
+ *
+ * <P>The cache is used by
+ * {@link OneWireContainer41#loadMissionResults(MissionLogCache)
+ * OneWireContainer41.loadMissionResults(MissionLogCache)}.  If the
+ * logger started a new mission since the cached download, or so many
+ * samples were taken that the whole log was overwritten, the full log
+ * is read as usual.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <DL>
+ * <DD> <H4> Example</H4>
+ * Download a logger every hour, reading only the new samples:
+ * <PRE> <CODE>
+ *   MissionLogCache cache = new MissionLogCache();
+ *
+ *   // restore the state of the previous run, if any
+ *   if (file.exists())
+ *      cache.load(new FileInputStream(file));
+ *
+ *   owc41.loadMissionResults(cache);
+ *
+ *   cache.save(new FileOutputStream(file));
+ * </CODE> </PRE>
+ * </DL>
+ *
+ * <P>The stream starts with int <code>MAGIC</code>, int
+ * <code>VERSION</code> and int number of loggers, followed by one entry
+ * per logger: long address, long mission time stamp, int sample rate in
+ * seconds, int sample count, byte temperature bytes per sample, byte
+ * data bytes per sample, and the temperature log and data log, each an
+ * int length and the bytes.  All numbers are most significant byte
+ * first.</P>
+ *
+ * @see OneWireContainer41
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class MissionLogCache
+{
+
+   //--------
+   //-------- Finals
+   //--------
+
+   /** First int of a saved cache, 'OWML' */
+   public static final int MAGIC = 0x4F574D4C;
+
+   /** Version of the stream format */
+   public static final int VERSION = 1;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Entry for each logger, keyed by the address as a Long */
+   private Hashtable entries = new Hashtable();
+
+   //--------
+   //-------- Constructor
+   //--------
+
+   /**
+    * Creates an empty cache.
+    */
+   public MissionLogCache ()
+   {
+      // VOID
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Gets the number of samples the logger had taken at the last
+    * download, counting from the start of the mission.
+    *
+    * @param  address  address of the logger
+    *
+    * @return the number of samples, or -1 if the logger is not in the
+    *         cache
+    */
+   public synchronized int getSampleCount (long address)
+   {
+      Entry entry = get(address);
+
+      return (entry == null) ? -1 : entry.sampleCount;
+   }
+
+   /**
+    * Gets the mission time stamp of the last download.
+    *
+    * @param  address  address of the logger
+    *
+    * @return the time the mission started, in milliseconds, or -1 if the
+    *         logger is not in the cache
+    */
+   public synchronized long getMissionTimeStamp (long address)
+   {
+      Entry entry = get(address);
+
+      return (entry == null) ? -1 : entry.missionTimeStamp;
+   }
+
+   /**
+    * Gets the addresses of the loggers in the cache.
+    *
+    * @return enumeration of <code>Long</code> addresses
+    */
+   public synchronized Enumeration getAddresses ()
+   {
+      return ((Hashtable) entries.clone()).keys();
+   }
+
+   /**
+    * Removes a logger from the cache, so that its next download reads
+    * the full log.
+    *
+    * @param  address  address of the logger
+    */
+   public synchronized void remove (long address)
+   {
+      entries.remove(new Long(address));
+   }
+
+   /**
+    * Removes all loggers from the cache.
+    */
+   public synchronized void clear ()
+   {
+      entries.clear();
+   }
+
+   /**
+    * Gets the number of loggers in the cache.
+    *
+    * @return the number of loggers
+    */
+   public synchronized int size ()
+   {
+      return entries.size();
+   }
+
+   /**
+    * Writes the cache to a stream.  The stream is flushed but not closed.
+    *
+    * @param  out  stream to write to
+    *
+    * @throws IOException if writing fails
+    */
+   public synchronized void save (OutputStream out)
+      throws IOException
+   {
+      DataOutputStream data = new DataOutputStream(out);
+
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      data.writeInt(entries.size());
+
+      for (Enumeration e = entries.keys(); e.hasMoreElements(); )
+      {
+         Long  address = (Long) e.nextElement();
+         Entry entry   = (Entry) entries.get(address);
+
+         data.writeLong(address.longValue());
+         data.writeLong(entry.missionTimeStamp);
+         data.writeInt(entry.sampleRate);
+         data.writeInt(entry.sampleCount);
+         data.writeByte(entry.temperatureBytes);
+         data.writeByte(entry.dataBytes);
+         data.writeInt(entry.temperatureLog.length);
+         data.write(entry.temperatureLog);
+         data.writeInt(entry.dataLog.length);
+         data.write(entry.dataLog);
+      }
+
+      data.flush();
+   }
+
+   /**
+    * Reads loggers from a stream written by <code>save</code>, replacing
+    * the entries of the same loggers already in the cache.  The stream is
+    * not closed.
+    *
+    * @param  in  stream to read from
+    *
+    * @throws IOException if reading fails, the stream is not a saved
+    *         cache, or the logs of an entry do not match its sample count
+    */
+   public synchronized void load (InputStream in)
+      throws IOException
+   {
+      DataInputStream data = new DataInputStream(in);
+
+      if (data.readInt() != MAGIC)
+         throw new IOException("MissionLogCache: not a mission log cache");
+
+      int version = data.readInt();
+
+      if (version != VERSION)
+         throw new IOException("MissionLogCache: unsupported version "
+                               + version);
+
+      Hashtable loaded = new Hashtable();
+
+      for (int count = data.readInt(); count > 0; count--)
+      {
+         long  address = data.readLong();
+         Entry entry   = new Entry();
+
+         entry.missionTimeStamp = data.readLong();
+         entry.sampleRate       = data.readInt();
+         entry.sampleCount      = data.readInt();
+         entry.temperatureBytes = data.readByte();
+         entry.dataBytes        = data.readByte();
+         entry.temperatureLog   = readLog(data);
+         entry.dataLog          = readLog(data);
+
+         if (!isConsistent(entry))
+            throw new IOException("MissionLogCache: logs of "
+                                  + Long.toHexString(address)
+                                  + " do not match the sample count");
+
+         loaded.put(new Long(address), entry);
+      }
+
+      // only change the cache once the whole stream was read
+      for (Enumeration e = loaded.keys(); e.hasMoreElements(); )
+      {
+         Object address = e.nextElement();
+
+         entries.put(address, loaded.get(address));
+      }
+   }
+
+   /**
+    * Reads one log, an int length and the bytes.
+    */
+   private static byte[] readLog (DataInputStream data)
+      throws IOException
+   {
+      int length = data.readInt();
+
+      if ((length < 0) || (length > OneWireContainer41.MISSION_LOG_SIZE))
+         throw new IOException("MissionLogCache: invalid log length "
+                               + length);
+
+      byte[] log = new byte [length];
+
+      data.readFully(log);
+
+      return log;
+   }
+
+   /**
+    * Checks that the logs of an entry hold the samples its count and
+    * layout call for, as <code>OneWireContainer41</code> would store them:
+    * every sample up to the capacity of the log, the newest after that.
+    */
+   private static boolean isConsistent (Entry entry)
+   {
+      int sampleBytes = entry.temperatureBytes + entry.dataBytes;
+
+      if ((entry.temperatureBytes < 0) || (entry.dataBytes < 0)
+            || (sampleBytes < 1) || (sampleBytes > 4)
+            || (entry.sampleCount < 0))
+         return false;
+
+      // the log holds a whole number of samples of the combined size
+      int logSize = (sampleBytes == 3)
+                    ? OneWireContainer41.ODD_MISSION_LOG_SIZE
+                    : OneWireContainer41.MISSION_LOG_SIZE;
+      int samples = Math.min(entry.sampleCount, logSize / sampleBytes);
+
+      return (entry.temperatureLog.length
+                 == samples * entry.temperatureBytes)
+             && (entry.dataLog.length == samples * entry.dataBytes);
+   }
+
+   /**
+    * Gets the entry of a logger, or null if it is not in the cache.
+    */
+   synchronized Entry get (long address)
+   {
+      return (Entry) entries.get(new Long(address));
+   }
+
+   /**
+    * Sets the entry of a logger.
+    */
+   synchronized void put (long address, Entry entry)
+   {
+      entries.put(new Long(address), entry);
+   }
+
+   //--------
+   //-------- Entry
+   //--------
+
+   /**
+    * The downloaded mission of one logger.  The logs hold the samples
+    * oldest first, as <code>OneWireContainer41</code> keeps them, and
+    * are not changed once the entry is in the cache.
+    */
+   static final class Entry
+   {
+      /** time the mission started, in milliseconds */
+      long missionTimeStamp;
+
+      /** time between samples, in seconds */
+      int sampleRate;
+
+      /** number of samples taken since the mission started */
+      int sampleCount;
+
+      /** bytes per temperature sample, 0 if not logged */
+      int temperatureBytes;
+
+      /** bytes per data sample, 0 if not logged */
+      int dataBytes;
+
+      /** temperature samples, oldest first */
+      byte[] temperatureLog;
+
+      /** data samples, oldest first */
+      byte[] dataLog;
+   }
+}
@@ -0,0 +1,124 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+// imports
+import com.dalsemi.onewire.OneWireException;
+import com.dalsemi.onewire.adapter.OneWireIOException;
+
+
+/**
+ * Iterates over the samples of a mission, oldest first, reading the
+ * mission log from the device as the samples are needed.  Each call to
+ * <code>nextSample</code> moves to the next sample, whose value on every
+ * logged channel and whose time stamp can then be read.  Exporting a
+ * mission this way needs no buffer for the whole log, and the first
+ * samples can be processed before the last pages are read.
+ *
+ * <H3> Usage </H3>
+ *
+ * <DL>
+ * <DD> <H4> Example</H4>
+ * Print the temperature log of a mission:
+ * <PRE> <CODE>
+ *   MissionSampleIterator samples = missionContainer.getMissionSampleIterator();
+ *
+ *   while (samples.hasMoreSamples())
+ *   {
+ *      samples.nextSample();
+ *      System.out.println(new Date(samples.getSampleTimeStamp()) + " "
+ *                         + samples.getSample(0));
+ *   }
+ * </CODE> </PRE>
+ * </DL>
+ *
+ * @see MissionContainer#getMissionSampleIterator()
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public interface MissionSampleIterator
+{
+   /**
+    * Returns <code>true</code> if there is a sample after the current one.
+    *
+    * @return <code>true</code> if <code>nextSample</code> can be called
+    */
+   boolean hasMoreSamples ();
+
+   /**
+    * Moves to the next sample, reading more of the mission log if
+    * needed.
+    *
+    * @throws java.util.NoSuchElementException if there are no more
+    *         samples
+    */
+   void nextSample ()
+      throws OneWireException, OneWireIOException;
+
+   /**
+    * Gets the number of the current sample, the same as the
+    * <code>sampleNum</code> of <code>MissionContainer.getMissionSample</code>.
+    *
+    * @return the sample number, -1 before the first sample
+    */
+   int getSampleNumber ();
+
+   /**
+    * Gets the time the current sample was taken.
+    *
+    * @return the sample's timestamp, in milliseconds
+    */
+   long getSampleTimeStamp ();
+
+   /**
+    * Gets the value of the current sample on a channel, the same as
+    * <code>MissionContainer.getMissionSample</code> returns.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @return the value of the sample
+    *
+    * @throws IllegalArgumentException if the channel is not logged
+    */
+   double getSample (int channel);
+
+   /**
+    * Gets the current sample on a channel as the 8 or 16 bits written in
+    * the mission log, the same as
+    * <code>MissionContainer.getMissionSampleAsInteger</code> returns.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @return the sample as a whole integer
+    *
+    * @throws IllegalArgumentException if the channel is not logged
+    */
+   int getSampleAsInteger (int channel);
+}
@@ -91,7 +91,7 @@ import com.dalsemi.onewire.adapter.*;
  */
 public class OneWireContainer20
    extends OneWireContainer
-   implements ADContainer
+   implements ADContainer, ConversionContainer
 {
 
    //--------
@@ -688,6 +688,85 @@ public class OneWireContainer20
       doADConvert(input_select_mask, read_out_control, time, state);
    }
 
+   //--------
+   //-------- Conversion Container Methods
+   //--------
+
+   /**
+    * Starts a voltage conversion on the specified channel without waiting
+    * for it to complete.  The conversion is only split when the device
+    * is set to external power, on parasite power it needs strong pull-up
+    * power for the whole conversion and <CODE>CONVERT_NOT_SPLIT</CODE>
+    * is returned.
+    *
+    * @param type must be <CODE>CONVERT_AD</CODE>
+    * @param channel 0,1,2,3 representing the channels A,B,C,D
+    * @param state current state of this
+    *               device returned from <CODE>readDevice()</CODE>
+    *
+    * @return milliseconds to wait before <CODE>completeConversion()</CODE>,
+    *         or <CODE>CONVERT_NOT_SPLIT</CODE>
+    *
+    * @throws OneWireIOException Data was not written correctly
+    * @throws OneWireException Could not find part, or type not supported
+    * @throws IllegalArgumentException Invalid channel number passed
+    */
+   public int startConversion (int type, int channel, byte[] state)
+      throws OneWireIOException, OneWireException
+   {
+      if (type != CONVERT_AD)
+         throw new OneWireException(
+            "OneWireContainer20 - Conversion type not supported.");
+
+      // check for valid channel value
+      if ((channel < 0) || (channel > 3))
+         throw new IllegalArgumentException("Invalid channel number");
+
+      if (!isPowerExternal(state))
+         return CONVERT_NOT_SPLIT;
+
+      // Create the command block to be sent, same as doADConvert(int,byte[])
+      byte[] raw_buf = new byte [5];
+
+      raw_buf [0] = CONVERT_COMMAND;
+      raw_buf [1] = ( byte ) (0x01 << channel);
+      raw_buf [2] = ( byte ) (PRESET_TO_ZEROS << channel);
+      raw_buf [3] = ( byte ) 0xFF;
+      raw_buf [4] = ( byte ) 0xFF;
+
+      // Send command block.
+      if (!adapter.select(address))
+         throw new OneWireException("OneWireContainer20 - Device not found.");
+
+      adapter.dataBlock(raw_buf, 0, 5);
+
+      // check the CRC result
+      if (CRC16.compute(raw_buf, 0, 5, 0) != 0x0000B001)
+         throw new OneWireIOException(
+            "OneWireContainer20 - Failure during conversion - Bad CRC");
+
+      // fixed max conversion time
+      return (1440 / 1000) + 10;
+   }
+
+   /**
+    * Completes a conversion started with <CODE>startConversion()</CODE>.
+    * The result stays in the device and is read with
+    * <CODE>getADVoltage()</CODE>, so nothing is done here.
+    *
+    * @param type must be <CODE>CONVERT_AD</CODE>
+    * @param channel 0,1,2,3 representing the channels A,B,C,D
+    * @param state current state of this
+    *               device returned from <CODE>readDevice()</CODE>
+    *
+    * @throws OneWireIOException Data was not read correctly
+    * @throws OneWireException Could not find part
+    */
+   public void completeConversion (int type, int channel, byte[] state)
+      throws OneWireIOException, OneWireException
+   {
+   }
+
    //--------
    //-------- A/D 'get' Methods
    //--------
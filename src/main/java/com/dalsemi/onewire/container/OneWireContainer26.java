@@ -71,7 +71,8 @@ import java.util.*;
  */
 public class OneWireContainer26
    extends OneWireContainer
-   implements ADContainer, TemperatureContainer, ClockContainer, HumidityContainer
+   implements ADContainer, TemperatureContainer, ClockContainer, HumidityContainer,
+              ConversionContainer
 {
 
    /**
@@ -1904,6 +1905,92 @@ public class OneWireContainer26
       doADConvert(CHANNEL_VAD,state);
    }
 
+   //--------
+   //-------- Conversion Container Methods
+   //--------
+
+   /**
+    * Starts a temperature or voltage conversion without waiting for it
+    * to complete.  The current sense channel is not converted and returns
+    * <CODE>CONVERT_NOT_SPLIT</CODE>.
+    *
+    * @param type <CODE>CONVERT_TEMPERATURE</CODE> or <CODE>CONVERT_AD</CODE>
+    * @param channel A/D channel for <CODE>CONVERT_AD</CODE>
+    * @param state  current state of the
+    *               device returned from <CODE>readDevice()</CODE>
+    *
+    * @return milliseconds to wait before <CODE>completeConversion()</CODE>,
+    *         or <CODE>CONVERT_NOT_SPLIT</CODE>
+    *
+    * @throws OneWireIOException Error writing data
+    * @throws OneWireException Could not find part
+    */
+   public int startConversion (int type, int channel, byte[] state)
+      throws OneWireIOException, OneWireException
+   {
+      int  msDelay;
+      byte command;
+
+      if (type == CONVERT_TEMPERATURE)
+      {
+         command = CONVERT_TEMP_COMMAND;
+         msDelay = 10;
+      }
+      else if (channel == CHANNEL_VSENSE)
+         return CONVERT_NOT_SPLIT;
+      else
+      {
+         setFlag(AD_FLAG, channel == CHANNEL_VDD);
+
+         command = CONVERT_VOLTAGE_COMMAND;
+         msDelay = 4;
+      }
+
+      if (doSpeedEnable)
+         doSpeed();
+
+      if (!adapter.select(address))
+         throw new OneWireException("OneWireContainer26-Device not found.");
+
+      adapter.putByte(command);
+
+      return msDelay;
+   }
+
+   /**
+    * Completes a conversion started with <CODE>startConversion()</CODE>
+    * and updates <CODE>state</CODE> with the result.
+    *
+    * @param type <CODE>CONVERT_TEMPERATURE</CODE> or <CODE>CONVERT_AD</CODE>
+    * @param channel A/D channel for <CODE>CONVERT_AD</CODE>
+    * @param state  current state of the
+    *               device returned from <CODE>readDevice()</CODE>
+    *
+    * @throws OneWireIOException Error reading data
+    * @throws OneWireException Could not find part
+    */
+   public void completeConversion (int type, int channel, byte[] state)
+      throws OneWireIOException, OneWireException
+   {
+      byte[] data = readPage(0);
+
+      if (type == CONVERT_TEMPERATURE)
+      {
+         state [2] = data [2];
+         state [1] = data [1];
+      }
+      else
+      {
+
+         //let's update state with this info
+         System.arraycopy(data, 0, state, 0, 8);
+
+         // save off the voltage in our state's holdindg area
+         state [24 + channel * 2]     = data [4];
+         state [24 + channel * 2 + 1] = data [3];
+      }
+   }
+
    //--------
    //-------- Humidity 'get' Methods
    //--------
@@ -75,7 +75,7 @@ import com.dalsemi.onewire.adapter.*;
  */
 public class OneWireContainer28
    extends OneWireContainer
-   implements TemperatureContainer
+   implements TemperatureContainer, ConversionContainer
 {
 
    //-------------------------------------------------------------------------
@@ -363,7 +363,8 @@ public class OneWireContainer28
    public void doTemperatureConvert (byte[] state)
       throws OneWireIOException, OneWireException
    {
-      int msDelay = 750;   // in milliseconds
+      // calculate duration of delay according to resolution desired
+      int msDelay = getConversionDelay(state);   // in milliseconds
 
       // select the device
       if (adapter.select(address))
@@ -375,26 +376,6 @@ public class OneWireContainer28
          // send the convert temperature command
          adapter.putByte(CONVERT_TEMPERATURE_COMMAND);
 
-         // calculate duration of delay according to resolution desired
-         switch (state [4])
-         {
-
-            case RESOLUTION_9_BIT :
-               msDelay = 94;
-               break;
-            case RESOLUTION_10_BIT :
-               msDelay = 188;
-               break;
-            case RESOLUTION_11_BIT :
-               msDelay = 375;
-               break;
-            case RESOLUTION_12_BIT :
-               msDelay = 750;
-               break;
-            default :
-               msDelay = 750;
-         }   // switch
-
          // delay for specified amount of time
          try
          {
@@ -423,6 +404,97 @@ public class OneWireContainer28
       }
    }
 
+   /**
+    * Gets the conversion time for the resolution in <code>state</code>.
+    *
+    * @param  state byte array with device state information
+    *
+    * @return conversion time in milliseconds
+    */
+   private int getConversionDelay (byte[] state)
+   {
+      switch (state [4])
+      {
+
+         case RESOLUTION_9_BIT :
+            return 94;
+         case RESOLUTION_10_BIT :
+            return 188;
+         case RESOLUTION_11_BIT :
+            return 375;
+         default :
+            return 750;
+      }   // switch
+   }
+
+   //--------
+   //-------- Conversion Container Methods
+   //--------
+
+   /**
+    * Starts a temperature conversion without waiting for it to complete.
+    * A DS18B20 on parasite power needs strong pull-up power for the
+    * whole conversion, so the conversion is not split and
+    * <code>CONVERT_NOT_SPLIT</code> is returned.
+    *
+    * @param  type     must be <code>CONVERT_TEMPERATURE</code>
+    * @param  channel  not used
+    * @param  state    byte array with device state information
+    *
+    * @return milliseconds to wait before <code>completeConversion()</code>,
+    *         or <code>CONVERT_NOT_SPLIT</code>
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a communication or setup error with the 1-Wire
+    *         adapter, or if <code>type</code> is not supported
+    *
+    * @see    #completeConversion
+    */
+   public int startConversion (int type, int channel, byte[] state)
+      throws OneWireIOException, OneWireException
+   {
+      if (type != CONVERT_TEMPERATURE)
+         throw new OneWireException(
+            "OneWireContainer28-conversion type not supported");
+
+      if (!isExternalPowerSupplied())
+         return CONVERT_NOT_SPLIT;
+
+      // select the device
+      if (!adapter.select(address))
+         throw new OneWireIOException(
+            "OneWireContainer28-device not present");
+
+      // send the convert temperature command
+      adapter.putByte(CONVERT_TEMPERATURE_COMMAND);
+
+      return getConversionDelay(state);
+   }
+
+   /**
+    * Completes a temperature conversion started with
+    * <code>startConversion()</code> and reads the result into
+    * <code>state</code>.
+    *
+    * @param  type     must be <code>CONVERT_TEMPERATURE</code>
+    * @param  channel  not used
+    * @param  state    byte array with device state information
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a communication or setup error with the 1-Wire
+    *         adapter
+    *
+    * @see    #startConversion
+    */
+   public void completeConversion (int type, int channel, byte[] state)
+      throws OneWireIOException, OneWireException
+   {
+      byte[] scratch = recallE2();
+
+      System.arraycopy(scratch, 0, state, 0,
+                       Math.min(scratch.length, state.length));
+   }
+
    //--------
    //-------- Temperature 'get' Methods
    //--------
@@ -922,8 +922,11 @@ public class OneWireContainer41 extends OneWireContainer
          // exclude password from CRC 16
          if(CRC16.compute(buffer, 11, buffer.length-11, CRC16.compute(buffer, 0, 3, 0))
             != 0x0000B001)
+         {
+            adapter.reportEvent(AdapterMetrics.CRC_FAILURE);
             throw new OneWireIOException(
                "Invalid CRC16 read from device.  Password may be incorrect or a sample may be in progress.");
+         }
 
          return buffer [11];
       }
@@ -2089,6 +2092,170 @@ public class OneWireContainer41 extends OneWireContainer
     */
    public synchronized void loadMissionResults()
       throws OneWireException, OneWireIOException
+   {
+      loadMissionResults(null);
+   }
+
+   /**
+    * Loads the results of the currently running mission, reading only
+    * the samples taken since the last download kept in
+    * <code>cache</code>.  The new samples are merged with the cached
+    * ones, and the cache is updated.  If the cache holds no download of
+    * the current mission, or the whole log was overwritten since, the
+    * full log is read.  Must be called before all mission result/status
+    * methods.
+    *
+    * @param cache downloaded mission logs, or <code>null</code> to
+    *        always read the full log
+    *
+    * @see MissionLogCache
+    */
+   public synchronized void loadMissionResults(MissionLogCache cache)
+      throws OneWireException, OneWireIOException
+   {
+      int maxSamples = loadMissionRegister();
+
+      // where the oldest sample is in the log
+      int offsetDepth = rolledOver ? (sampleCountTotal % maxSamples) : 0;
+
+      // figure out where the temperature bytes end, that's where
+      // the data bytes begin
+      int temperatureLogSize = temperatureBytes * maxSamples;
+
+      // samples downloaded before, if they are of this mission and
+      // not all overwritten since
+      MissionLogCache.Entry cached = null;
+      if(cache!=null)
+      {
+         cached = cache.get(getAddressAsLong());
+         if(cached!=null
+            && (cached.missionTimeStamp!=missionTimeStamp
+                || cached.sampleRate!=sampleRate
+                || cached.temperatureBytes!=temperatureBytes
+                || cached.dataBytes!=dataBytes
+                || cached.sampleCount>sampleCountTotal
+                || (sampleCountTotal-cached.sampleCount)>=maxSamples
+                || (sampleCountTotal>maxSamples && !rolledOver)))
+            cached = null;
+      }
+
+      if(cached!=null)
+      {
+         // read just the new samples, where the ring wrote them
+         temperatureLog = loadNewSamples(cached.temperatureLog, 0,
+                                         temperatureBytes, maxSamples,
+                                         cached.sampleCount);
+         dataLog = loadNewSamples(cached.dataLog, temperatureLogSize/32,
+                                  dataBytes, maxSamples,
+                                  cached.sampleCount);
+      }
+      else
+      {
+         // temperature log
+         temperatureLog = new byte[sampleCount*temperatureBytes];
+         // data log
+         dataLog = new byte[sampleCount*dataBytes];
+         // cache for entire log
+         byte[] missionLogBuffer = new byte[Math.max(temperatureLog.length, dataLog.length)];
+
+         if(temperatureLog.length>0)
+         {
+            // read the data log for temperature
+            readLogBytes(0, 0, missionLogBuffer, 0, temperatureLog.length);
+
+            // get the temperature bytes in order
+            int offsetIndex = offsetDepth*temperatureBytes;
+            System.arraycopy(missionLogBuffer, offsetIndex,
+                             temperatureLog, 0,
+                             temperatureLog.length-offsetIndex);
+            System.arraycopy(missionLogBuffer, 0,
+                             temperatureLog, temperatureLog.length-offsetIndex,
+                             offsetIndex);
+         }
+
+         if(dataLog.length>0)
+         {
+            // read the data log for humidity
+            readLogBytes(temperatureLogSize/32, 0, missionLogBuffer, 0,
+                         dataLog.length);
+
+            // get the data bytes in order
+            int offsetIndex = offsetDepth*dataBytes;
+            System.arraycopy(missionLogBuffer, offsetIndex,
+                             dataLog, 0,
+                             dataLog.length-offsetIndex);
+            System.arraycopy(missionLogBuffer, 0,
+                             dataLog, dataLog.length-offsetIndex,
+                             offsetIndex);
+         }
+      }
+
+      if(cache!=null)
+      {
+         MissionLogCache.Entry entry = new MissionLogCache.Entry();
+         entry.missionTimeStamp = missionTimeStamp;
+         entry.sampleRate = sampleRate;
+         entry.sampleCount = sampleCountTotal;
+         entry.temperatureBytes = temperatureBytes;
+         entry.dataBytes = dataBytes;
+         entry.temperatureLog = temperatureLog;
+         entry.dataLog = dataLog;
+         cache.put(getAddressAsLong(), entry);
+      }
+
+      isMissionLoaded = true;
+   }
+
+   /**
+    * Reads the samples of one channel taken since <code>oldCount</code>
+    * from the ring of <code>maxSamples</code> samples that starts at page
+    * <code>firstPage</code> of the data log, and appends them to
+    * <code>oldLog</code>.  The oldest samples are dropped if the ring
+    * rolled over.
+    *
+    * @param oldLog samples downloaded before, oldest first
+    * @param firstPage first page of the channel in the data log
+    * @param bytes bytes per sample, 0 if the channel is not logged
+    * @param maxSamples number of samples in the ring
+    * @param oldCount number of samples taken when oldLog was downloaded
+    * @return the samples in the log, oldest first
+    */
+   private byte[] loadNewSamples(byte[] oldLog, int firstPage, int bytes,
+                                 int maxSamples, int oldCount)
+      throws OneWireException, OneWireIOException
+   {
+      byte[] newLog = new byte[sampleCount*bytes];
+      int newBytes = (sampleCountTotal-oldCount)*bytes;
+      int oldBytes = newLog.length-newBytes;
+
+      // keep the newest of the samples downloaded before
+      System.arraycopy(oldLog, oldLog.length-oldBytes, newLog, 0, oldBytes);
+
+      if(newBytes>0)
+      {
+         // the new samples start where the last download stopped, and
+         // may wrap around to the start of the ring
+         int ringSize = maxSamples*bytes;
+         int start = (oldCount%maxSamples)*bytes;
+         int len = Math.min(newBytes, ringSize-start);
+
+         readLogBytes(firstPage, start, newLog, oldBytes, len);
+         if(len<newBytes)
+            readLogBytes(firstPage, 0, newLog, oldBytes+len, newBytes-len);
+      }
+
+      return newLog;
+   }
+
+   /**
+    * Reads the register pages and sets up the mission variables: the
+    * sample count, rate and layout, the mission time stamp and the
+    * rollover state.  The logs themselves are not read.
+    *
+    * @return the number of samples the log holds per channel
+    */
+   private int loadMissionRegister()
+      throws OneWireException, OneWireIOException
    {
       // read the register contents
       missionRegister = readDevice();
@@ -2186,100 +2353,60 @@ public class OneWireContainer41 extends OneWireContainer
          throw new OneWireException("Device Error: rollover was not enabled, but it did occur.");
       }
 
-      // figure out where the temperature bytes end, that's where
-      // the data bytes begin
-      int temperatureLogSize = temperatureBytes * maxSamples;
-
       // calculate first log entry time offset, in samples
       timeOffset = ((wrapCount * maxSamples) + offsetDepth);
 
-      // temperature log
-      temperatureLog = new byte[sampleCount*temperatureBytes];
-      // data log
-      dataLog = new byte[sampleCount*dataBytes];
-      // cache for entire log
-      byte[] missionLogBuffer = new byte[Math.max(temperatureLog.length, dataLog.length)];
+      return maxSamples;
+   }
+
+   /**
+    * Reads <code>len</code> bytes from the data log, starting
+    * <code>offset</code> bytes into page <code>firstPage</code>.  Each page
+    * is read with its CRC, and retried on an error.
+    *
+    * @param firstPage page of the data log that offset is relative to
+    * @param offset first byte to read, relative to the start of firstPage
+    * @param buffer array to put the bytes in
+    * @param off offset into buffer to put the first byte
+    * @param len number of bytes to read
+    */
+   private void readLogBytes(int firstPage, int offset, byte[] buffer,
+                             int off, int len)
+      throws OneWireException, OneWireIOException
+   {
       byte[] pagebuffer = new byte[32];
+      int page = firstPage + offset/32;
+      int lastPage = firstPage + (offset+len-1)/32;
+      int pageOffset = offset%32;
+      int retryCnt = MAX_READ_RETRY_CNT;
 
-      if(temperatureLog.length>0)
+      while(page<=lastPage)
       {
-         // read the data log for temperature
-         int numPages = (temperatureLog.length/32)
-                        + ((temperatureLog.length%32)>0?1:0);
-         int retryCnt = MAX_READ_RETRY_CNT;
-         for(int i=0; i<numPages; )
+         try
          {
-            try
-            {
-               log.readPageCRC(i, i>0 && retryCnt==MAX_READ_RETRY_CNT,
-                               pagebuffer, 0);
-               System.arraycopy(pagebuffer, 0, missionLogBuffer, i*32,
-                                Math.min(32, temperatureLog.length-(i*32)));
-               retryCnt = MAX_READ_RETRY_CNT;
-               i++;
-            }
-            catch(OneWireIOException owioe)
-            {
-               if(--retryCnt == 0)
-                  throw owioe;
-            }
-            catch(OneWireException owe)
-            {
-               if(--retryCnt == 0)
-                  throw owe;
-            }
+            log.readPageCRC(page, page>firstPage+offset/32
+                                  && retryCnt==MAX_READ_RETRY_CNT,
+                            pagebuffer, 0);
+
+            int count = Math.min(32-pageOffset, len);
+            System.arraycopy(pagebuffer, pageOffset, buffer, off, count);
+            off += count;
+            len -= count;
+            pageOffset = 0;
+            retryCnt = MAX_READ_RETRY_CNT;
+            page++;
          }
-
-         // get the temperature bytes in order
-         int offsetIndex = offsetDepth*temperatureBytes;
-         System.arraycopy(missionLogBuffer, offsetIndex,
-                          temperatureLog, 0,
-                          temperatureLog.length-offsetIndex);
-         System.arraycopy(missionLogBuffer, 0,
-                          temperatureLog, temperatureLog.length-offsetIndex,
-                          offsetIndex);
-      }
-
-      if(dataLog.length>0)
-      {
-         // read the data log for humidity
-         int numPages = (dataLog.length/32)
-                        + ((dataLog.length%32)>0?1:0);
-         int retryCnt = MAX_READ_RETRY_CNT;
-         for(int i=0; i<numPages; )
+         catch(OneWireIOException owioe)
          {
-            try
-            {
-               log.readPageCRC((temperatureLogSize/32) + i, i>0 && retryCnt==MAX_READ_RETRY_CNT,
-                               pagebuffer, 0);
-               System.arraycopy(pagebuffer, 0, missionLogBuffer, i*32,
-                                Math.min(32, dataLog.length-(i*32)));
-               retryCnt = MAX_READ_RETRY_CNT;
-               i++;
-            }
-            catch(OneWireIOException owioe)
-            {
-               if(--retryCnt == 0)
-                  throw owioe;
-            }
-            catch(OneWireException owe)
-            {
-               if(--retryCnt == 0)
-                  throw owe;
-            }
+            if(--retryCnt == 0)
+               throw owioe;
+         }
+         catch(OneWireException owe)
+         {
+            if(--retryCnt == 0)
+               throw owe;
          }
-
-         // get the data bytes in order
-         int offsetIndex = offsetDepth*dataBytes;
-         System.arraycopy(missionLogBuffer, offsetIndex,
-                          dataLog, 0,
-                          dataLog.length-offsetIndex);
-         System.arraycopy(missionLogBuffer, 0,
-                          dataLog, dataLog.length-offsetIndex,
-                          offsetIndex);
       }
-
-      isMissionLoaded = true;
    }
 
    /**
@@ -2503,57 +2630,14 @@ public class OneWireContainer41 extends OneWireContainer
       if(sampleNum>=sampleCount || sampleNum<0)
          throw new IllegalArgumentException("Invalid sample number");
 
-      double val = 0;
       if(channel==TEMPERATURE_CHANNEL)
-      {
-         val = decodeTemperature(
-                  temperatureLog, sampleNum*temperatureBytes, temperatureBytes, true);
-						
-		 if (useTempCalibrationRegisters && (partNumber != PART_NUMBER_DS1922E)) // DS1922E does not use calibration registers
-         {
-				if ((partNumber == PART_NUMBER_DS1922F) && (val < 130.0)) // !!!
-				{ // !!!
-				  // !!! do nothing -- the DS1922F only gets software corrected above 130 degrees Celsius
-				} // !!!
-				else // !!!
-				{ // !!!			
-					double valsq = val*val;
-					double error
-						= tempCoeffA*valsq + tempCoeffB*val + tempCoeffC;
-					val = val - error;
-				} // !!!
-         }
-
-      }
+         return decodeTemperatureSample(temperatureLog,
+                                        sampleNum*temperatureBytes);
       else if(channel==DATA_CHANNEL)
-      {
-         if(hasHumiditySensor && !adForceResults)
-         {
-            val = decodeHumidity(dataLog, sampleNum*dataBytes, dataBytes, true);
-
-            if(useTemperatureCompensation)
-            {
-               double T;
-               if(!overrideTemperatureLog
-                  && getMissionSampleCount(TEMPERATURE_CHANNEL)>0)
-                  T = getMissionSample(TEMPERATURE_CHANNEL, sampleNum);
-               else
-                  T = (double)defaultTempCompensationValue;
-               double gamma = (T>15)?0.00001:-0.00005;
-               T -= 25;
-               val = (val*0.0307 + .0035*T - 0.000043*T*T) /
-                  (0.0307 + gamma*T - 0.000002*T*T);
-            }
-         }
-         else
-         {
-            val = getADVoltage(dataLog, sampleNum*dataBytes, dataBytes, true);
-         }
-      }
+         return decodeDataSample(dataLog, sampleNum*dataBytes,
+                                 temperatureLog, sampleNum*temperatureBytes);
       else
          throw new IllegalArgumentException("Invalid Channel");
-
-      return val;
    }
 
 
@@ -2582,35 +2666,13 @@ public class OneWireContainer41 extends OneWireContainer
       if(sampleNum>=sampleCount || sampleNum<0)
          throw new IllegalArgumentException("Invalid sample number");
 
-      int i=0;
       if(channel==TEMPERATURE_CHANNEL)
-      {
-         if(temperatureBytes==2)
-         {
-            i = ((0x0FF&temperatureLog[sampleNum*temperatureBytes])<<8)
-              | ((0x0FF&temperatureLog[sampleNum*temperatureBytes+1]));
-         }
-         else
-         {
-            i = (0x0FF&temperatureLog[sampleNum*temperatureBytes]);
-         }
-      }
+         return decodeInteger(temperatureLog, sampleNum*temperatureBytes,
+                              temperatureBytes);
       else if(channel==DATA_CHANNEL)
-      {
-         if(dataBytes==2)
-         {
-            i = ((0x0FF&dataLog[sampleNum*dataBytes])<<8)
-              | ((0x0FF&dataLog[sampleNum*dataBytes+1]));
-         }
-         else
-         {
-            i = (0x0FF&dataLog[sampleNum*dataBytes]);
-         }
-      }
+         return decodeInteger(dataLog, sampleNum*dataBytes, dataBytes);
       else
          throw new IllegalArgumentException("Invalid Channel");
-
-      return i;
    }
 
 
@@ -2634,6 +2696,95 @@ public class OneWireContainer41 extends OneWireContainer
       return delta*1000L + missionTimeStamp;
    }
 
+   /**
+    * Decodes all samples of a channel in the loaded mission log, oldest
+    * first, in one pass.  The values are the same as those returned by
+    * <code>getMissionSample</code>.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @param values array to put the samples in
+    * @param offset index in values of the first sample
+    * @return the number of samples put in values, 0 if the channel is
+    *         not logged
+    */
+   public int getMissionSamples(int channel, double[] values, int offset)
+      throws OneWireException, OneWireIOException
+   {
+      return decodeMissionSamples(channel, values, null, offset);
+   }
+
+   /**
+    * Decodes all samples of a channel in the loaded mission log, oldest
+    * first, in one pass.  The values are the same as those returned by
+    * <code>getMissionSample</code>, rounded to float.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @param values array to put the samples in
+    * @param offset index in values of the first sample
+    * @return the number of samples put in values, 0 if the channel is
+    *         not logged
+    */
+   public int getMissionSamples(int channel, float[] values, int offset)
+      throws OneWireException, OneWireIOException
+   {
+      return decodeMissionSamples(channel, null, values, offset);
+   }
+
+   /**
+    * Gets the time stamps of all samples of a channel in the loaded
+    * mission log, oldest first.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @param timeStamps array to put the time stamps in, in milliseconds
+    * @param offset index in timeStamps of the first time stamp
+    * @return the number of time stamps put in timeStamps, 0 if the
+    *         channel is not logged
+    */
+   public int getMissionSampleTimeStamps(int channel, long[] timeStamps,
+                                         int offset)
+      throws OneWireException, OneWireIOException
+   {
+      int count = getLoggedSampleCount(channel, timeStamps.length, offset);
+
+      long step = sampleRate*1000L;
+      long time = missionTimeStamp + timeOffset*step;
+      for(int i=0; i<count; i++)
+      {
+         timeStamps[offset+i] = time;
+         time += step;
+      }
+
+      return count;
+   }
+
+   /**
+    * Gets an iterator over the samples of the current mission, which
+    * reads the data log a few pages at a time while the samples are
+    * decoded, instead of loading the whole log first.  The register
+    * pages are read right away.  Any loaded mission results are
+    * dropped, so <code>loadMissionResults</code> must be called again
+    * before the other mission result methods.
+    *
+    * @return iterator over the samples, oldest first
+    *
+    * @see MissionSampleIterator
+    */
+   public synchronized MissionSampleIterator getMissionSampleIterator()
+      throws OneWireException, OneWireIOException
+   {
+      // the loaded logs no longer match the registers
+      isMissionLoaded = false;
+      temperatureLog = null;
+      dataLog = null;
+
+      int maxSamples = loadMissionRegister();
+
+      return new LogIterator(maxSamples);
+   }
+
    /**
     * Returns <code>true</code> if a mission is currently running.
     * @return <code>true</code> if a mission is currently running.
@@ -2716,6 +2867,62 @@ public class OneWireContainer41 extends OneWireContainer
       return timeOffset*sampleRate*1000L;
    }
 
+   /**
+    * Gets how the raw samples of a channel of the loaded mission are
+    * converted to their value, with the calibration and temperature
+    * compensation settings of this container.
+    *
+    * @param channel the mission channel, between <code>0</code> and
+    *        <code>(getNumberOfMissionChannels()-1)</code>
+    * @return the conversion of the channel, or <code>null</code> if the
+    *         channel is not logged
+    */
+   public MissionCalibration getMissionCalibration(int channel)
+      throws OneWireException, OneWireIOException
+   {
+      if(!isMissionLoaded)
+         throw new OneWireException("Must load mission results first.");
+
+      if(channel==TEMPERATURE_CHANNEL)
+      {
+         if(temperatureBytes==0)
+            return null;
+
+         // DS1922E does not use calibration registers, and the DS1922F only
+         // gets software corrected above 130 degrees Celsius
+         double threshold = Double.POSITIVE_INFINITY;
+         if(useTempCalibrationRegisters && (partNumber != PART_NUMBER_DS1922E))
+            threshold = (partNumber == PART_NUMBER_DS1922F)
+                      ? 130.0 : Double.NEGATIVE_INFINITY;
+
+         return new MissionCalibration(temperatureBytes, 0,
+            (temperatureBytes==2) ? 1/512d : 1/2d, temperatureRangeLow-1, 1,
+            tempCoeffA, tempCoeffB, tempCoeffC, threshold, false, -1, 0);
+      }
+      else if(channel==DATA_CHANNEL)
+      {
+         if(dataBytes==0)
+            return null;
+
+         int shift = dataBytes*8 - adDeviceBits;
+         double scale = adReferenceVoltage/(1<<adDeviceBits);
+         if(!hasHumiditySensor || adForceResults)
+            return new MissionCalibration(dataBytes, shift, scale, 0, 1);
+
+         // formula from the HIH-3610 sensor datasheet
+         return new MissionCalibration(dataBytes, shift, scale, -.958, .0307,
+            humdCoeffA, humdCoeffB, humdCoeffC,
+            useHumdCalibrationRegisters ? Double.NEGATIVE_INFINITY
+                                        : Double.POSITIVE_INFINITY,
+            useTemperatureCompensation,
+            (!overrideTemperatureLog && temperatureBytes>0)
+               ? TEMPERATURE_CHANNEL : -1,
+            defaultTempCompensationValue);
+      }
+      else
+         throw new IllegalArgumentException("Invalid Channel");
+   }
+
    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
    // - Mission Resolutions
    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
@@ -4989,6 +5196,128 @@ public class OneWireContainer41 extends OneWireContainer
       {;}
    }
 
+   /**
+    * Gets the number of samples of a logged channel, after checking that
+    * an array of <code>length</code> elements holds them from
+    * <code>offset</code>.
+    */
+   private int getLoggedSampleCount(int channel, int length, int offset)
+      throws OneWireException
+   {
+      if(!isMissionLoaded)
+         throw new OneWireException("Must load mission results first.");
+
+      int bytes;
+      if(channel==TEMPERATURE_CHANNEL)
+         bytes = temperatureBytes;
+      else if(channel==DATA_CHANNEL)
+         bytes = dataBytes;
+      else
+         throw new IllegalArgumentException("Invalid Channel");
+
+      int count = (bytes==0) ? 0 : sampleCount;
+      if(offset<0 || (length-offset)<count)
+         throw new IllegalArgumentException(
+            "Array too small for " + count + " samples");
+
+      return count;
+   }
+
+   /**
+    * Decodes all samples of a channel into either a double or a float
+    * array.
+    */
+   private int decodeMissionSamples(int channel, double[] dvalues,
+                                    float[] fvalues, int offset)
+      throws OneWireException
+   {
+      int count = getLoggedSampleCount(channel,
+         (dvalues!=null) ? dvalues.length : fvalues.length, offset);
+
+      byte[] samples = (channel==TEMPERATURE_CHANNEL) ? temperatureLog : dataLog;
+      int bytes = (channel==TEMPERATURE_CHANNEL) ? temperatureBytes : dataBytes;
+      for(int i=0, p=0, t=0; i<count; i++, p+=bytes, t+=temperatureBytes)
+      {
+         double val;
+         if(channel==TEMPERATURE_CHANNEL)
+            val = decodeTemperatureSample(samples, p);
+         else
+            val = decodeDataSample(samples, p, temperatureLog, t);
+
+         if(dvalues!=null)
+            dvalues[offset+i] = val;
+         else
+            fvalues[offset+i] = (float)val;
+      }
+
+      return count;
+   }
+
+   /**
+    * helper method for decoding a temperature sample of the mission log,
+    * corrected with the calibration registers
+    */
+   private final double decodeTemperatureSample(byte[] samples, int offset)
+   {
+      double val = decodeTemperature(samples, offset, temperatureBytes, true);
+
+      // DS1922E does not use calibration registers, and the DS1922F only
+      // gets software corrected above 130 degrees Celsius
+      if(useTempCalibrationRegisters && (partNumber != PART_NUMBER_DS1922E)
+         && !((partNumber == PART_NUMBER_DS1922F) && (val < 130.0)))
+      {
+         double valsq = val*val;
+         double error
+            = tempCoeffA*valsq + tempCoeffB*val + tempCoeffC;
+         val = val - error;
+      }
+
+      return val;
+   }
+
+   /**
+    * helper method for decoding a data sample of the mission log, as
+    * percent RH or as a voltage.  The temperature sample taken at the
+    * same time is used for temperature compensation.
+    */
+   private final double decodeDataSample(byte[] samples, int offset,
+                                         byte[] temperatures,
+                                         int temperatureOffset)
+   {
+      if(!hasHumiditySensor || adForceResults)
+         return getADVoltage(samples, offset, dataBytes, true);
+
+      double val = decodeHumidity(samples, offset, dataBytes, true);
+
+      if(useTemperatureCompensation)
+      {
+         double T;
+         if(!overrideTemperatureLog && temperatureBytes>0)
+            T = decodeTemperatureSample(temperatures, temperatureOffset);
+         else
+            T = (double)defaultTempCompensationValue;
+         double gamma = (T>15)?0.00001:-0.00005;
+         T -= 25;
+         val = (val*0.0307 + .0035*T - 0.000043*T*T) /
+            (0.0307 + gamma*T - 0.000002*T*T);
+      }
+
+      return val;
+   }
+
+   /**
+    * helper method for getting a sample of the mission log as the 8 or 16
+    * bits written in the log
+    */
+   private static final int decodeInteger(byte[] samples, int offset,
+                                          int length)
+   {
+      if(length==2)
+         return ((0x0FF&samples[offset])<<8) | (0x0FF&samples[offset+1]);
+      else
+         return (0x0FF&samples[offset]);
+   }
+
    /**
     * helper method for decoding temperature values
     */
@@ -5198,4 +5527,140 @@ public class OneWireContainer41 extends OneWireContainer
             "setADVoltage, data", data, offset, length);
       //\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
    }
+
+   //--------
+   //-------- Sample iterator
+   //--------
+
+   /**
+    * Reads the log of one channel a few pages at a time, for the
+    * <code>LogIterator</code>.
+    */
+   private class LogChannel
+   {
+      /** first page of the channel in the data log */
+      private final int firstPage;
+      /** bytes per sample, 0 if the channel is not logged */
+      private final int bytes;
+      /** bytes of the channel's log that hold samples */
+      private final int limit;
+      /** the bytes read, 8 pages at most */
+      private final byte[] buffer = new byte[256];
+      /** offset in the channel's log of buffer[0], -1 if none read */
+      private int bufferStart = -1;
+      /** number of bytes in the buffer */
+      private int bufferLength = 0;
+
+      LogChannel(int firstPage, int bytes, int limit)
+      {
+         this.firstPage = firstPage;
+         this.bytes = bytes;
+         this.limit = limit;
+      }
+
+      /**
+       * Returns the offset in buffer of the sample at position p of the
+       * log, reading the pages from p on if they are not in the buffer.
+       */
+      int locate(int p)
+         throws OneWireException, OneWireIOException
+      {
+         int pos = p*bytes;
+         if(bufferStart<0 || pos<bufferStart || pos>=bufferStart+bufferLength)
+         {
+            bufferStart = pos - (pos%32);
+            bufferLength = Math.min(buffer.length, limit-bufferStart);
+            readLogBytes(firstPage, bufferStart, buffer, 0, bufferLength);
+         }
+         return pos - bufferStart;
+      }
+   }
+
+   /**
+    * Iterates over the samples of a mission, oldest first, reading the
+    * data log as it goes.
+    */
+   private class LogIterator
+      implements MissionSampleIterator
+   {
+      private final int count, maxSamples, offsetDepth;
+      private final long step, firstTimeStamp;
+      private final LogChannel temperatures, data;
+      private int sampleNum = -1;
+      private int temperatureOffset = 0, dataOffset = 0;
+
+      LogIterator(int maxSamples)
+      {
+         this.count = sampleCount;
+         this.maxSamples = maxSamples;
+         this.offsetDepth = rolledOver ? (sampleCountTotal % maxSamples) : 0;
+         this.step = sampleRate*1000L;
+         this.firstTimeStamp = missionTimeStamp + timeOffset*step;
+         this.temperatures = new LogChannel(0, temperatureBytes,
+                                            sampleCount*temperatureBytes);
+         this.data = new LogChannel((temperatureBytes*maxSamples)/32,
+                                    dataBytes, sampleCount*dataBytes);
+      }
+
+      public boolean hasMoreSamples()
+      {
+         return (sampleNum+1)<count;
+      }
+
+      public void nextSample()
+         throws OneWireException, OneWireIOException
+      {
+         if(!hasMoreSamples())
+            throw new NoSuchElementException("No more samples");
+
+         sampleNum++;
+         int p = (offsetDepth + sampleNum) % maxSamples;
+         if(temperatures.bytes>0)
+            temperatureOffset = temperatures.locate(p);
+         if(data.bytes>0)
+            dataOffset = data.locate(p);
+      }
+
+      public int getSampleNumber()
+      {
+         return sampleNum;
+      }
+
+      public long getSampleTimeStamp()
+      {
+         checkSample();
+         return firstTimeStamp + sampleNum*step;
+      }
+
+      public double getSample(int channel)
+      {
+         checkSample();
+         if(channel==TEMPERATURE_CHANNEL && temperatures.bytes>0)
+            return decodeTemperatureSample(temperatures.buffer,
+                                           temperatureOffset);
+         else if(channel==DATA_CHANNEL && data.bytes>0)
+            return decodeDataSample(data.buffer, dataOffset,
+                                    temperatures.buffer, temperatureOffset);
+         else
+            throw new IllegalArgumentException("Invalid Channel");
+      }
+
+      public int getSampleAsInteger(int channel)
+      {
+         checkSample();
+         if(channel==TEMPERATURE_CHANNEL && temperatures.bytes>0)
+            return decodeInteger(temperatures.buffer, temperatureOffset,
+                                 temperatures.bytes);
+         else if(channel==DATA_CHANNEL && data.bytes>0)
+            return decodeInteger(data.buffer, dataOffset, data.bytes);
+         else
+            throw new IllegalArgumentException("Invalid Channel");
+      }
+
+      private void checkSample()
+      {
+         if(sampleNum<0)
+            throw new IllegalStateException("nextSample not called");
+      }
+   }
 }
\ No newline at end of file
@@ -0,0 +1,541 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+// imports
+import java.util.Vector;
+import com.dalsemi.onewire.*;
+import com.dalsemi.onewire.adapter.*;
+
+
+//----------------------------------------------------------------------------
+
+/**
+ * <P> Remembers the fastest speed that each device on a 1-Wire Network
+ * works at.  The first time a device is seen it is profiled: if both
+ * the device and the adapter support overdrive, the device is put in
+ * overdrive with an 'Overdrive Match ROM' and must answer several
+ * times in a row.  The result is cached by address, so later accesses
+ * go straight to the cached speed.</P>
+ *
+ * <P> <code>order</code> sets the speed of each container and groups
+ * the overdrive devices at the end of the list.  <code>prepare</code>
+ * sends one 'Overdrive Skip ROM' when the first overdrive device is
+ * reached, which puts every overdrive device in overdrive at once, so
+ * the adapter stays in overdrive for the whole group and
+ * <code>OneWireContainer.doSpeed</code> only has to check each device
+ * is present.  Memory reads on parts like the DS1996 and DS1963 then
+ * run at overdrive speed.</P>
+ *
+ * <P> A device that fails in overdrive is demoted to regular speed
+ * with <code>demote</code> and stays there until it is forgotten.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   SpeedManager speeds = new SpeedManager(adapter);
+ *   Vector ordered = speeds.order(containers);
+ *
+ *   for (int i = 0; i < ordered.size(); i++)
+ *   {
+ *      OneWireContainer owc = (OneWireContainer) ordered.elementAt(i);
+ *      try
+ *      {
+ *         speeds.prepare(owc);
+ *         // read memory banks of owc
+ *      }
+ *      catch (OneWireIOException e)
+ *      {
+ *         // retry at regular speed if it was in overdrive
+ *         if (speeds.demote(owc))
+ *            i--;
+ *      }
+ *   }
+ * </CODE> </PRE>
+ *
+ * @see OneWireContainer#setSpeed(int,boolean)
+ * @see OneWireContainer#doSpeed()
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class SpeedManager
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Speed returned for an address that has not been profiled */
+   public static final int SPEED_UNKNOWN = -1;
+
+   /** Number of times in a row a device must answer in overdrive */
+   public static final int PROFILE_PASSES = 3;
+
+   /** Overdrive Skip ROM command */
+   private static final byte OVERDRIVE_SKIP_ROM_COMMAND = 0x3C;
+
+   /** Overdrive Match ROM command */
+   private static final byte OVERDRIVE_MATCH_ROM_COMMAND = 0x69;
+
+   /** Initial number of slots in the speed cache, a power of 2 */
+   private static final int INITIAL_CAPACITY = 32;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Adapter the devices are on */
+   private DSPortAdapter adapter;
+
+   /** Addresses in the speed cache, 0 marks an empty slot */
+   private long[] keys = new long [INITIAL_CAPACITY];
+
+   /** Cached speed of the address in the same slot of keys */
+   private byte[] speeds = new byte [INITIAL_CAPACITY];
+
+   /** Number of addresses in the speed cache */
+   private int size = 0;
+
+   /** Number of devices profiled */
+   private int profileCount = 0;
+
+   /** Number of devices demoted from overdrive */
+   private int demotionCount = 0;
+
+   /** Copy of the address sent with Overdrive Match ROM */
+   private byte[] addressCopy = new byte [8];
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a speed manager for the devices on the provided adapter.
+    *
+    * @param  adapter  adapter the devices are on
+    */
+   public SpeedManager (DSPortAdapter adapter)
+   {
+      this.adapter = adapter;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Gets the cached speed of a device.
+    *
+    * @param  address  address of the device
+    *
+    * @return <code>DSPortAdapter.SPEED_REGULAR</code>,
+    *         <code>DSPortAdapter.SPEED_OVERDRIVE</code>, or
+    *         <code>SPEED_UNKNOWN</code> if the device has not been
+    *         profiled
+    */
+   public synchronized int getSpeed (long address)
+   {
+      int i = slot(address);
+
+      return (keys [i] == 0) ? SPEED_UNKNOWN : speeds [i];
+   }
+
+   /**
+    * Gets the speed of a device, profiling it if it is not in the cache,
+    * and sets the container to that speed without fall back.
+    *
+    * @param  owc  container of the device
+    *
+    * @return <code>DSPortAdapter.SPEED_REGULAR</code> or
+    *         <code>DSPortAdapter.SPEED_OVERDRIVE</code>
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public int profile (OneWireContainer owc)
+      throws OneWireIOException, OneWireException
+   {
+      long address = owc.getAddressAsLong();
+      int  speed   = getSpeed(address);
+
+      if (speed == SPEED_UNKNOWN)
+      {
+         speed = profileSpeed(owc);
+
+         synchronized (this)
+         {
+            put(address, speed);
+
+            profileCount++;
+         }
+      }
+
+      owc.setSpeed(speed, false);
+
+      return speed;
+   }
+
+   /**
+    * Profiles every container that is not in the cache, sets the speed
+    * of each, and returns them with the regular speed devices first and
+    * the overdrive devices grouped at the end.  The order within each
+    * group is kept.
+    *
+    * @param  containers  Vector of <code>OneWireContainer</code>
+    *
+    * @return new Vector of the same containers, grouped by speed
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public Vector order (Vector containers)
+      throws OneWireIOException, OneWireException
+   {
+      Vector regular   = new Vector(containers.size());
+      Vector overdrive = new Vector();
+
+      try
+      {
+         adapter.beginExclusive(true);
+
+         for (int i = 0; i < containers.size(); i++)
+         {
+            OneWireContainer owc = ( OneWireContainer ) containers.elementAt(i);
+
+            if (profile(owc) == DSPortAdapter.SPEED_OVERDRIVE)
+               overdrive.addElement(owc);
+            else
+               regular.addElement(owc);
+         }
+
+         // leave every device at regular speed
+         adapter.setSpeed(DSPortAdapter.SPEED_REGULAR);
+      }
+      finally
+      {
+         adapter.endExclusive();
+      }
+
+      for (int i = 0; i < overdrive.size(); i++)
+         regular.addElement(overdrive.elementAt(i));
+
+      return regular;
+   }
+
+   /**
+    * Gets the adapter ready to access a device at its cached speed.  If
+    * the device is an overdrive device and the adapter is not in
+    * overdrive, every overdrive device is put in overdrive at once.  The
+    * device must have been profiled.
+    *
+    * @param  owc  container of the device
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void prepare (OneWireContainer owc)
+      throws OneWireIOException, OneWireException
+   {
+      int speed = getSpeed(owc.getAddressAsLong());
+
+      if (speed == SPEED_UNKNOWN)
+         throw new OneWireException(
+            "SpeedManager-prepare: device has not been profiled");
+
+      owc.setSpeed(speed, false);
+
+      if ((speed == DSPortAdapter.SPEED_OVERDRIVE)
+              && (adapter.getSpeed() != DSPortAdapter.SPEED_OVERDRIVE))
+         enterOverdrive();
+   }
+
+   /**
+    * Puts every overdrive capable device on the 1-Wire Network in
+    * overdrive with an 'Overdrive Skip ROM', and leaves the adapter in
+    * overdrive.  The next reset at regular speed puts the devices back
+    * to regular speed.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public void enterOverdrive ()
+      throws OneWireIOException, OneWireException
+   {
+      if (!adapter.canOverdrive())
+         throw new OneWireException(
+            "SpeedManager-enterOverdrive: adapter does not support overdrive");
+
+      try
+      {
+         adapter.beginExclusive(true);
+         adapter.setSpeed(DSPortAdapter.SPEED_REGULAR);
+         adapter.reset();
+         adapter.putByte(OVERDRIVE_SKIP_ROM_COMMAND);
+         adapter.setSpeed(DSPortAdapter.SPEED_OVERDRIVE);
+      }
+      finally
+      {
+         adapter.endExclusive();
+      }
+   }
+
+   /**
+    * Demotes a device that failed in overdrive to regular speed, in the
+    * cache and in the container, and sets the adapter back to regular
+    * speed.
+    *
+    * @param  owc  container of the device
+    *
+    * @return <code>true</code> if the device was cached as overdrive, so
+    *         a retry at regular speed may work
+    */
+   public boolean demote (OneWireContainer owc)
+   {
+      long address = owc.getAddressAsLong();
+
+      synchronized (this)
+      {
+         if (getSpeed(address) != DSPortAdapter.SPEED_OVERDRIVE)
+            return false;
+
+         put(address, DSPortAdapter.SPEED_REGULAR);
+
+         demotionCount++;
+      }
+
+      owc.setSpeed(DSPortAdapter.SPEED_REGULAR, false);
+
+      try
+      {
+         adapter.setSpeed(DSPortAdapter.SPEED_REGULAR);
+      }
+      catch (OneWireException e)
+      {
+         // VOID, the next doSpeed sets the speed again
+      }
+
+      return true;
+   }
+
+   /**
+    * Removes a device from the cache, so it is profiled again the next
+    * time it is seen.
+    *
+    * @param  address  address of the device
+    */
+   public synchronized void forget (long address)
+   {
+      int i = slot(address);
+
+      if (keys [i] == 0)
+         return;
+
+      keys [i] = 0;
+      size--;
+
+      // move up the rest of the probe sequence
+      int mask = keys.length - 1;
+
+      for (int j = (i + 1) & mask; keys [j] != 0; j = (j + 1) & mask)
+      {
+         long key   = keys [j];
+         byte speed = speeds [j];
+
+         keys [j] = 0;
+
+         int k = slot(key);
+
+         keys [k]   = key;
+         speeds [k] = speed;
+      }
+   }
+
+   /**
+    * Removes every device from the cache.
+    */
+   public synchronized void clear ()
+   {
+      for (int i = 0; i < keys.length; i++)
+         keys [i] = 0;
+
+      size = 0;
+   }
+
+   /**
+    * Gets the number of devices in the cache.
+    *
+    * @return number of devices
+    */
+   public synchronized int size ()
+   {
+      return size;
+   }
+
+   /**
+    * Gets the number of devices profiled since this manager was created.
+    *
+    * @return number of devices profiled
+    */
+   public synchronized int getProfileCount ()
+   {
+      return profileCount;
+   }
+
+   /**
+    * Gets the number of devices demoted from overdrive since this manager
+    * was created.
+    *
+    * @return number of devices demoted
+    */
+   public synchronized int getDemotionCount ()
+   {
+      return demotionCount;
+   }
+
+   //--------
+   //-------- Private Methods
+   //--------
+
+   /**
+    * Finds the fastest speed the device answers at reliably.
+    */
+   private int profileSpeed (OneWireContainer owc)
+      throws OneWireIOException, OneWireException
+   {
+      if ((owc.getMaxSpeed() < DSPortAdapter.SPEED_OVERDRIVE)
+              || !adapter.canOverdrive())
+         return DSPortAdapter.SPEED_REGULAR;
+
+      int speed = DSPortAdapter.SPEED_OVERDRIVE;
+
+      for (int pass = 0; pass < PROFILE_PASSES; pass++)
+      {
+         if (!overdriveMatch(owc.getAddress()))
+         {
+            speed = DSPortAdapter.SPEED_REGULAR;
+
+            break;
+         }
+      }
+
+      // a reset at regular speed takes the device out of overdrive
+      adapter.setSpeed(DSPortAdapter.SPEED_REGULAR);
+
+      return speed;
+   }
+
+   /**
+    * Puts one device in overdrive and checks it answers there.
+    */
+   private boolean overdriveMatch (byte[] address)
+      throws OneWireException
+   {
+      try
+      {
+         adapter.setSpeed(DSPortAdapter.SPEED_REGULAR);
+         adapter.reset();
+         adapter.putByte(OVERDRIVE_MATCH_ROM_COMMAND);
+         adapter.setSpeed(DSPortAdapter.SPEED_OVERDRIVE);
+
+         System.arraycopy(address, 0, addressCopy, 0, 8);
+         adapter.dataBlock(addressCopy, 0, 8);
+
+         return adapter.isPresent(address);
+      }
+      catch (OneWireIOException e)
+      {
+         return false;
+      }
+   }
+
+   /**
+    * Adds or replaces the speed of an address, growing the cache at
+    * half full.
+    */
+   private void put (long address, int speed)
+   {
+      int i = slot(address);
+
+      if (keys [i] == 0)
+      {
+         if ((size + 1) * 2 > keys.length)
+         {
+            grow();
+
+            i = slot(address);
+         }
+
+         keys [i] = address;
+         size++;
+      }
+
+      speeds [i] = ( byte ) speed;
+   }
+
+   /**
+    * Doubles the number of slots in the cache.
+    */
+   private void grow ()
+   {
+      long[] old_keys   = keys;
+      byte[] old_speeds = speeds;
+
+      keys   = new long [old_keys.length * 2];
+      speeds = new byte [old_keys.length * 2];
+
+      for (int i = 0; i < old_keys.length; i++)
+      {
+         if (old_keys [i] != 0)
+         {
+            int j = slot(old_keys [i]);
+
+            keys [j]   = old_keys [i];
+            speeds [j] = old_speeds [i];
+         }
+      }
+   }
+
+   /**
+    * Finds the slot of an address, or the empty slot where it would go.
+    * The family code is in the low byte of the address and the CRC in
+    * the high byte, so both halves are mixed into the hash.
+    */
+   private int slot (long address)
+   {
+      int mask = keys.length - 1;
+      int h    = ( int ) (address ^ (address >>> 32));
+      int i    = (h ^ (h >>> 16)) & mask;
+
+      while ((keys [i] != 0) && (keys [i] != address))
+         i = (i + 1) & mask;
+
+      return i;
+   }
+}
@@ -0,0 +1,469 @@
+
+/*---------------------------------------------------------------------------
+ * Copyright (C) 2003 Maxim Integrated Products, All Rights Reserved.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included
+ * in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS
+ * OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY,  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL MAXIM INTEGRATED PRODUCTS BE LIABLE FOR ANY CLAIM, DAMAGES
+ * OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * Except as contained in this notice, the name of Maxim Integrated Products
+ * shall not be used except as stated in the Maxim Integrated Products
+ * Branding Policy.
+ *---------------------------------------------------------------------------
+ */
+
+package com.dalsemi.onewire.container;
+
+// imports
+import java.util.Hashtable;
+import java.util.Vector;
+import com.dalsemi.onewire.*;
+import com.dalsemi.onewire.utils.*;
+import com.dalsemi.onewire.adapter.*;
+
+
+//----------------------------------------------------------------------------
+
+/**
+ * <P> Converts the temperature of every thermometer on a 1-Wire Network
+ * branch at the same time.  A single 'Skip ROM' convert command with a
+ * strong pull-up is sent to all devices, followed by one wait for the
+ * conversion, and then the scratchpad of every thermometer is read and
+ * CRC checked.  Converting N thermometers takes about one conversion
+ * time plus the read time, instead of N conversion times with
+ * <code>TemperatureContainer.doTemperatureConvert</code>.</P>
+ *
+ * <P> The supported families are <B>10</B> (DS18S20/DS1920),
+ * <B>22</B> (DS1822), <B>28</B> (DS18B20) and <B>3B</B> (DS1825).
+ * The scratchpads are read with a
+ * {@link com.dalsemi.onewire.adapter.TransactionBatch TransactionBatch}
+ * so adapters that support batching read all of them in a few
+ * round-trips.</P>
+ *
+ * <P> Warning, the 'Skip ROM' convert command is received by every
+ * device on the branch, so the branch should only contain thermometers
+ * (and devices that ignore the command).  Use an <code>OWPath</code>
+ * to open the branch before calling <code>sweep</code>.</P>
+ *
+ * <H3> Usage </H3>
+ *
+ * <PRE> <CODE>
+ *   TemperatureSweep sweep = new TemperatureSweep(adapter);
+ *   Hashtable temps = sweep.sweep();
+ *
+ *   // temps maps Long address to Double temperature in Celsius
+ * </CODE> </PRE>
+ *
+ * @see TemperatureContainer
+ * @see OneWireContainer28
+ * @see OneWireContainer10
+ *
+ * @version    0.00, 1 Sep 2003
+ * @author     DS
+ */
+public class TemperatureSweep
+{
+
+   //--------
+   //-------- Static Final Variables
+   //--------
+
+   /** Skip ROM command */
+   private static final byte SKIP_ROM_COMMAND = ( byte ) 0xCC;
+
+   /** Convert temperature command */
+   private static final byte CONVERT_TEMPERATURE_COMMAND = 0x44;
+
+   /** Read scratchpad command */
+   private static final byte READ_SCRATCHPAD_COMMAND = ( byte ) 0xBE;
+
+   /** Default conversion delay, the 12 bit conversion time */
+   public static final int DEFAULT_CONVERSION_DELAY = 750;
+
+   //--------
+   //-------- Variables
+   //--------
+
+   /** Adapter the thermometers are on */
+   private DSPortAdapter adapter;
+
+   /** Conversion delay in milliseconds */
+   private int conversionDelay = DEFAULT_CONVERSION_DELAY;
+
+   /** Addresses that failed to read in the last sweep */
+   private Vector failedAddresses = new Vector();
+
+   /** Batch reused for reading the scratchpads */
+   private TransactionBatch batch = new TransactionBatch();
+
+   /** Read scratchpad command followed by 9 bytes to read */
+   private byte[] readBlock = new byte [10];
+
+   /** Scratchpad buffer */
+   private byte[] scratch = new byte [9];
+
+   //--------
+   //-------- Constructors
+   //--------
+
+   /**
+    * Creates a temperature sweep on the provided adapter.
+    *
+    * @param  adapter  adapter the thermometers are on
+    */
+   public TemperatureSweep (DSPortAdapter adapter)
+   {
+      this.adapter = adapter;
+   }
+
+   //--------
+   //-------- Methods
+   //--------
+
+   /**
+    * Sets the time to wait for the conversion to complete.  The default
+    * is 750 ms, the 12 bit conversion time.  If all the thermometers on
+    * the branch are set to a lower resolution this can be lowered
+    * (94 ms for 9 bit, 188 ms for 10 bit and 375 ms for 11 bit).
+    *
+    * @param  ms  conversion delay in milliseconds
+    */
+   public void setConversionDelay (int ms)
+   {
+      conversionDelay = ms;
+   }
+
+   /**
+    * Gets the time to wait for the conversion to complete.
+    *
+    * @return conversion delay in milliseconds
+    */
+   public int getConversionDelay ()
+   {
+      return conversionDelay;
+   }
+
+   /**
+    * Checks if the family code is a thermometer supported by the sweep.
+    *
+    * @param  family  family code
+    *
+    * @return <code>true</code> if the family is supported
+    */
+   public static boolean isSupportedFamily (int family)
+   {
+      switch (family & 0x7F)
+      {
+
+         case 0x10 :
+         case 0x22 :
+         case 0x28 :
+         case 0x3B :
+            return true;
+         default :
+            return false;
+      }
+   }
+
+   /**
+    * Searches the current branch for supported thermometers, converts
+    * all of them at once and reads their temperatures.
+    *
+    * @return Hashtable of <code>Long</code> address to <code>Double</code>
+    *         temperature in Celsius.  Devices that could not be read are
+    *         left out, see <code>getFailedAddresses()</code>.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public Hashtable sweep ()
+      throws OneWireIOException, OneWireException
+   {
+      try
+      {
+         adapter.beginExclusive(true);
+
+         // find the thermometers
+         Vector found = new Vector();
+         boolean more = adapter.findFirstDevice();
+
+         while (more)
+         {
+            long address = adapter.getAddressAsLong();
+
+            if (isSupportedFamily(( int ) address & 0xFF))
+               found.addElement(new Long(address));
+
+            more = adapter.findNextDevice();
+         }
+
+         long[] addresses = new long [found.size()];
+
+         for (int i = 0; i < addresses.length; i++)
+            addresses [i] = (( Long ) found.elementAt(i)).longValue();
+
+         return doSweep(addresses);
+      }
+      finally
+      {
+         adapter.endExclusive();
+      }
+   }
+
+   /**
+    * Converts all thermometers on the current branch at once and reads
+    * the temperatures of the provided addresses.  Addresses of
+    * unsupported families are left out of the result.
+    *
+    * @param  addresses  addresses of the thermometers to read
+    *
+    * @return Hashtable of <code>Long</code> address to <code>Double</code>
+    *         temperature in Celsius.  Devices that could not be read are
+    *         left out, see <code>getFailedAddresses()</code>.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   public Hashtable sweep (long[] addresses)
+      throws OneWireIOException, OneWireException
+   {
+      try
+      {
+         adapter.beginExclusive(true);
+
+         return doSweep(addresses);
+      }
+      finally
+      {
+         adapter.endExclusive();
+      }
+   }
+
+   /**
+    * Gets the addresses that could not be read in the last sweep, because
+    * they were not present or their scratchpad failed the CRC check.
+    *
+    * @return Vector of <code>Long</code> addresses
+    */
+   public Vector getFailedAddresses ()
+   {
+      return failedAddresses;
+   }
+
+   /**
+    * Converts and reads the thermometers, the caller has exclusive use
+    * of the adapter.
+    */
+   private Hashtable doSweep (long[] addresses)
+      throws OneWireIOException, OneWireException
+   {
+      Hashtable results = new Hashtable();
+
+      failedAddresses.removeAllElements();
+
+      // convert all the devices on the branch
+      convertAll();
+
+      // read every scratchpad, then retry the ones that failed once
+      Vector failed = readAll(addresses, results);
+
+      if (failed.size() > 0)
+      {
+         long[] retry = new long [failed.size()];
+
+         for (int i = 0; i < retry.length; i++)
+            retry [i] = (( Long ) failed.elementAt(i)).longValue();
+
+         failed = readAll(retry, results);
+      }
+
+      for (int i = 0; i < failed.size(); i++)
+         failedAddresses.addElement(failed.elementAt(i));
+
+      return results;
+   }
+
+   /**
+    * Sends the 'Skip ROM' convert temperature command with a strong
+    * pull-up and waits for the conversion to complete.
+    *
+    * @throws OneWireIOException on a 1-Wire communication error
+    * @throws OneWireException on a setup error with the 1-Wire adapter
+    */
+   private void convertAll ()
+      throws OneWireIOException, OneWireException
+   {
+      adapter.setSpeed(DSPortAdapter.SPEED_REGULAR);
+
+      int rslt = adapter.reset();
+
+      if ((rslt != DSPortAdapter.RESET_PRESENCE)
+              && (rslt != DSPortAdapter.RESET_ALARM))
+         throw new OneWireIOException(
+            "TemperatureSweep-no devices present");
+
+      adapter.putByte(SKIP_ROM_COMMAND);
+
+      // Setup Power Delivery
+      adapter.setPowerDuration(DSPortAdapter.DELIVERY_INFINITE);
+      adapter.startPowerDelivery(DSPortAdapter.CONDITION_AFTER_BYTE);
+
+      // send the convert temperature command
+      adapter.putByte(CONVERT_TEMPERATURE_COMMAND);
+
+      // delay for the conversion
+      try
+      {
+         Thread.sleep(conversionDelay);
+      }
+      catch (InterruptedException e){}
+
+      // Turn power back to normal.
+      adapter.setPowerNormal();
+
+      // check to see if the temperature conversion is over
+      if (adapter.getByte() != 0xFF)
+         throw new OneWireIOException(
+            "TemperatureSweep-temperature conversion not complete");
+   }
+
+   /**
+    * Reads the scratchpads of the provided addresses in one batch and
+    * puts the temperatures of the ones with a valid CRC in the results.
+    * A scratchpad with invalid temperature data fails like a bad CRC.
+    *
+    * @return Vector of <code>Long</code> addresses that failed
+    */
+   private Vector readAll (long[] addresses, Hashtable results)
+      throws OneWireIOException, OneWireException
+   {
+      Vector failed = new Vector();
+      int[] selects = new int [addresses.length];
+      int[] blocks  = new int [addresses.length];
+
+      // build the batch
+      readBlock [0] = READ_SCRATCHPAD_COMMAND;
+
+      for (int i = 1; i < 10; i++)
+         readBlock [i] = ( byte ) 0xFF;
+
+      batch.clear();
+
+      for (int i = 0; i < addresses.length; i++)
+      {
+         if (!isSupportedFamily(( int ) addresses [i] & 0xFF))
+         {
+            selects [i] = -1;
+
+            continue;
+         }
+
+         selects [i] = batch.addSelect(addresses [i]);
+         blocks [i]  = batch.addBlock(readBlock, 0, 10);
+      }
+
+      adapter.executeBatch(batch);
+
+      // interpret the scratchpads
+      for (int i = 0; i < addresses.length; i++)
+      {
+         if (selects [i] < 0)
+            continue;
+
+         Long address = new Long(addresses [i]);
+
+         batch.getBlock(blocks [i], readBlock, 0);
+         System.arraycopy(readBlock, 1, scratch, 0, 9);
+
+         if (!batch.isSelected(selects [i]) || !isValidScratchpad(scratch))
+         {
+            failed.addElement(address);
+
+            continue;
+         }
+
+         try
+         {
+            results.put(address,
+                        new Double(decodeTemperature(( int ) addresses [i]
+                                                     & 0xFF, scratch)));
+         }
+         catch (OneWireIOException e)
+         {
+            failed.addElement(address);
+         }
+      }
+
+      return failed;
+   }
+
+   /**
+    * Checks the CRC of a scratchpad.  A scratchpad of all 0xFF's (no
+    * device answered) is not valid.
+    */
+   private static boolean isValidScratchpad (byte[] scratchpad)
+   {
+      boolean all_ones = true;
+
+      for (int i = 0; i < 9; i++)
+         if (scratchpad [i] != ( byte ) 0xFF)
+            all_ones = false;
+
+      return (!all_ones && (CRC8.compute(scratchpad, 0, 9) == 0));
+   }
+
+   /**
+    * Decodes the temperature in Celsius from a scratchpad.
+    *
+    * @param  family      family code of the device
+    * @param  scratchpad  the 9 byte scratchpad
+    *
+    * @return temperature in Celsius
+    *
+    * @throws OneWireIOException if the temperature data is invalid
+    */
+   public static double decodeTemperature (int family, byte[] scratchpad)
+      throws OneWireIOException
+   {
+      if ((family & 0x7F) == 0x10)
+      {
+         // all the upper 8 bits should be the same by sign extension
+         if (((scratchpad [1] & 0x0ff) != 0x00)
+                 && ((scratchpad [1] & 0x0ff) != 0x0FF))
+            throw new OneWireIOException("Invalid temperature data!");
+
+         short  temp = ( short ) ((scratchpad [0] & 0x0ff)
+                                  | (scratchpad [1] << 8));
+         double cr   = (scratchpad [6] & 0x0ff);
+         double cpc  = (scratchpad [7] & 0x0ff);
+
+         // use the count remaining for the extended resolution
+         if (cpc == 0)
+            return temp / 2.0;
+
+         return ( double ) (temp >> 1) - 0.25 + (cpc - cr) / cpc;
+      }
+      else
+      {
+         int inttemperature = scratchpad [1];   // sign extended
+
+         inttemperature = (inttemperature << 8) | (scratchpad [0] & 0xFF);
+
+         return ( double ) inttemperature / 16.0;
+      }
+   }
+}